@@ -0,0 +1,83 @@
+package com.functions;
+
+import com.azure.cosmos.CosmosClientBuilder;
+import com.azure.cosmos.CosmosDatabase;
+import com.azure.data.tables.TableClientBuilder;
+import com.azure.messaging.servicebus.ServiceBusClientBuilder;
+import com.azure.storage.queue.QueueClientBuilder;
+import com.functions.azure.CosmosDocumentContainer;
+import com.functions.azure.ServiceBusQueueSink;
+import com.functions.azure.StorageQueueSink;
+import com.functions.azure.TableClientPersonTable;
+import com.functions.cosmos.DocumentContainer;
+import com.functions.journal.OutputSink;
+import com.functions.table.PersonTable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Azure SDK clients for the functions that call a service directly instead of through a
+ * binding. Only built with the azure-sdk profile (mvn -Pazure-sdk, gradle -PazureSdk), which
+ * adds the SDKs and src/azure/java; the functions that use it are in commented blocks, and
+ * opening one needs the profile.
+ */
+final class AzureClients {
+    private static CosmosDatabase cosmosDatabase;
+
+    private AzureClients() {
+    }
+
+    /**
+     * A table in the AzureWebJobsStorage account, which the table bindings use too.
+     */
+    static PersonTable personTable(String tableName) {
+        return new TableClientPersonTable(new TableClientBuilder()
+            .connectionString(System.getenv("AzureWebJobsStorage"))
+            .tableName(tableName)
+            .buildClient());
+    }
+
+    /**
+     * A queue in the AzureWebJobsStorage account.
+     */
+    static OutputSink storageQueue(String queueName) {
+        return new StorageQueueSink(new QueueClientBuilder()
+            .connectionString(System.getenv("AzureWebJobsStorage"))
+            .queueName(queueName)
+            .buildClient());
+    }
+
+    /**
+     * A queue in the AzureWebJobsServiceBus namespace, which the Service Bus bindings use too.
+     */
+    static OutputSink serviceBusQueue(String queueName) {
+        return new ServiceBusQueueSink(new ServiceBusClientBuilder()
+            .connectionString(System.getenv("AzureWebJobsServiceBus"))
+            .sender()
+            .queueName(queueName)
+            .buildClient());
+    }
+
+    /**
+     * A container of the CosmosDBDatabaseName database in the AzureWebJobsCosmosDBConnectionString
+     * account, which the Cosmos DB bindings use too. The containers share one client.
+     */
+    static synchronized DocumentContainer cosmosContainer(String containerName) {
+        if (cosmosDatabase == null) {
+            Map<String, String> connection = new HashMap<>();
+            for (String part : System.getenv("AzureWebJobsCosmosDBConnectionString").split(";")) {
+                String[] pair = part.split("=", 2);
+                if (pair.length == 2) {
+                    connection.put(pair[0].trim(), pair[1].trim());
+                }
+            }
+            cosmosDatabase = new CosmosClientBuilder()
+                .endpoint(connection.get("AccountEndpoint"))
+                .key(connection.get("AccountKey"))
+                .buildClient()
+                .getDatabase(System.getenv("CosmosDBDatabaseName"));
+        }
+        return new CosmosDocumentContainer(cosmosDatabase.getContainer(containerName));
+    }
+}
@@ -0,0 +1,48 @@
+package com.functions.azure;
+
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.functions.CosmosDBTriggerFunction.Document;
+import com.functions.cosmos.DocumentContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link DocumentContainer} on a CosmosContainer from azure-cosmos.
+ * <p>
+ * The id lookup is a query rather than a point read, as the input binding's was, because the
+ * functions do not know the document's partition key.
+ */
+public class CosmosDocumentContainer implements DocumentContainer {
+    private final CosmosContainer container;
+
+    public CosmosDocumentContainer(CosmosContainer container) {
+        this.container = container;
+    }
+
+    @Override
+    public String findJsonById(String id) {
+        SqlQuerySpec query = new SqlQuerySpec("SELECT * FROM f WHERE f.id = @id", new SqlParameter("@id", id));
+        for (JsonNode item : container.queryItems(query, new CosmosQueryRequestOptions(), JsonNode.class)) {
+            return item.toString();
+        }
+        return null;
+    }
+
+    @Override
+    public List<Document> findByName(String name) {
+        SqlQuerySpec query = new SqlQuerySpec("SELECT f.id, f.name FROM f WHERE f.name = @name", new SqlParameter("@name", name));
+        List<Document> items = new ArrayList<>();
+        container.queryItems(query, new CosmosQueryRequestOptions(), Document.class).forEach(items::add);
+        return items;
+    }
+
+    @Override
+    public void upsert(Document document) {
+        container.upsertItem(document);
+    }
+}
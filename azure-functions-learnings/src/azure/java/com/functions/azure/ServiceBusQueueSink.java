@@ -0,0 +1,44 @@
+package com.functions.azure;
+
+import com.azure.messaging.servicebus.ServiceBusMessage;
+import com.azure.messaging.servicebus.ServiceBusMessageBatch;
+import com.azure.messaging.servicebus.ServiceBusSenderClient;
+import com.functions.journal.OutputSink;
+
+import java.util.List;
+
+/**
+ * {@link OutputSink} on a ServiceBusSenderClient from azure-messaging-servicebus.
+ * <p>
+ * The records go out in as few message batches as the sender's size limit allows, in order. A
+ * record too large for an empty batch can never be sent; it fails with an
+ * IllegalArgumentException, and the spillover sender parks it after its retries.
+ */
+public class ServiceBusQueueSink implements OutputSink {
+    private final ServiceBusSenderClient sender;
+
+    public ServiceBusQueueSink(ServiceBusSenderClient sender) {
+        this.sender = sender;
+    }
+
+    @Override
+    public void send(List<byte[]> records) {
+        ServiceBusMessageBatch batch = sender.createMessageBatch();
+        for (byte[] record : records) {
+            ServiceBusMessage message = new ServiceBusMessage(record);
+            if (!batch.tryAddMessage(message)) {
+                if (batch.getCount() > 0) {
+                    sender.sendMessages(batch);
+                    batch = sender.createMessageBatch();
+                }
+                if (!batch.tryAddMessage(message)) {
+                    throw new IllegalArgumentException("A record of " + record.length + " bytes does not fit in a Service Bus batch of "
+                        + batch.getMaxSizeInBytes() + " bytes");
+                }
+            }
+        }
+        if (batch.getCount() > 0) {
+            sender.sendMessages(batch);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.functions.azure;
+
+import com.azure.storage.queue.QueueClient;
+import com.functions.journal.OutputSink;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * {@link OutputSink} on a QueueClient from azure-storage-queue.
+ * <p>
+ * A storage queue takes one message per request, so the records are sent one by one, as UTF-8
+ * text like the queue output binding writes them. A failure part way leaves the earlier records
+ * sent; the spillover sender retries the whole batch, so they arrive again, which its
+ * at-least-once delivery already allows.
+ */
+public class StorageQueueSink implements OutputSink {
+    private final QueueClient client;
+
+    public StorageQueueSink(QueueClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public void send(List<byte[]> records) {
+        for (byte[] record : records) {
+            client.sendMessage(new String(record, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.functions.azure;
+
+import com.azure.core.http.rest.PagedResponse;
+import com.azure.data.tables.TableClient;
+import com.azure.data.tables.models.ListEntitiesOptions;
+import com.azure.data.tables.models.TableEntity;
+import com.azure.data.tables.models.TableServiceException;
+import com.azure.data.tables.models.TableTransactionAction;
+import com.azure.data.tables.models.TableTransactionActionType;
+import com.azure.data.tables.models.TableTransactionFailedException;
+import com.functions.TableFunction.Person;
+import com.functions.table.PersonPage;
+import com.functions.table.PersonQuery;
+import com.functions.table.PersonTable;
+import com.functions.table.TableTransactionException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link PersonTable} on a TableClient from azure-data-tables.
+ * <p>
+ * Transactions insert or replace every entity, as the stand-in did. The service names the
+ * operation that failed a transaction, which becomes the failed index; throttling, timeouts
+ * and server errors are transient. A range-scan page is the first page the service returns
+ * with any entity in it, and the next page starts just after its last RowKey; the service does
+ * not report how many rows it examined, so a page counts the entities it holds as scanned.
+ */
+public class TableClientPersonTable implements PersonTable {
+    private static final int NOT_FOUND = 404;
+
+    private final TableClient client;
+
+    public TableClientPersonTable(TableClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public void submitTransaction(String partitionKey, List<Person> batch) throws TableTransactionException {
+        List<TableTransactionAction> actions = new ArrayList<>(batch.size());
+        for (Person person : batch) {
+            actions.add(new TableTransactionAction(TableTransactionActionType.UPSERT_REPLACE, toEntity(person)));
+        }
+        try {
+            client.submitTransaction(actions);
+        } catch (TableTransactionFailedException e) {
+            Integer failedIndex = e.getFailedTransactionActionIndex();
+            if (failedIndex != null && !isTransient(e)) {
+                throw TableTransactionException.entityFailure(failedIndex, e.getMessage());
+            }
+            throw toTransactionException(e);
+        } catch (TableServiceException e) {
+            throw toTransactionException(e);
+        }
+    }
+
+    @Override
+    public Person get(String partitionKey, String rowKey) {
+        try {
+            return toPerson(client.getEntity(partitionKey, rowKey));
+        } catch (TableServiceException e) {
+            if (e.getResponse() != null && e.getResponse().getStatusCode() == NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public PersonPage query(PersonQuery query, String continuationToken) {
+        String from = continuationToken != null
+            ? PersonPage.decodeToken(continuationToken, query.getPartitionKey())
+            : query.getFromRowKey();
+        ListEntitiesOptions options = new ListEntitiesOptions()
+            .setFilter(query.toODataFilter(from))
+            .setSelect(query.selects(PersonQuery.NAME)
+                ? Arrays.asList("PartitionKey", "RowKey", PersonQuery.NAME)
+                : Arrays.asList("PartitionKey", "RowKey"))
+            .setTop(query.getPageSize());
+        List<Person> entities = new ArrayList<>();
+        String nextRowKey = null;
+        // A filtered page can come back empty with a continuation; those are skipped
+        for (PagedResponse<TableEntity> response : client.listEntities(options, null, null).iterableByPage()) {
+            for (TableEntity entity : response.getValue()) {
+                entities.add(toPerson(entity));
+            }
+            if (response.getContinuationToken() == null) {
+                break;
+            }
+            if (!entities.isEmpty()) {
+                // The smallest RowKey after the last one returned
+                nextRowKey = entities.get(entities.size() - 1).RowKey + '\0';
+                break;
+            }
+        }
+        return PersonPage.of(query.getPartitionKey(), entities, nextRowKey, entities.size());
+    }
+
+    private static TableTransactionException toTransactionException(TableServiceException e) {
+        return isTransient(e)
+            ? TableTransactionException.transientFailure(e.getMessage())
+            : new TableTransactionException(e.getMessage(), -1, false);
+    }
+
+    private static boolean isTransient(TableServiceException e) {
+        if (e.getResponse() == null) {
+            return true;
+        }
+        int status = e.getResponse().getStatusCode();
+        return status == 408 || status == 429 || status >= 500;
+    }
+
+    private static TableEntity toEntity(Person person) {
+        return new TableEntity(person.PartitionKey, person.RowKey).addProperty(PersonQuery.NAME, person.Name);
+    }
+
+    private static Person toPerson(TableEntity entity) {
+        Object name = entity.getProperty(PersonQuery.NAME);
+        return new Person(entity.getPartitionKey(), entity.getRowKey(), name == null ? null : name.toString());
+    }
+}
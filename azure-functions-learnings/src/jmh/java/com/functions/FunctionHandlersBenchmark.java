@@ -0,0 +1,77 @@
+package com.functions;
+
+import com.microsoft.azure.functions.HttpResponseMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every live function handler called directly with mocked bindings, see {@link FunctionHandlers}.
+ * Throughput and sampled latency per handler; run with "-prof gc" (the jmh profile does) for the
+ * allocation rate per operation. The baseline is this benchmark's JSON result, written to
+ * src/jmh/baseline.json by the command in the jmh profile, on the same JDK and machine size as
+ * the runs compared against it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FunctionHandlersBenchmark {
+    private FunctionHandlers handlers;
+
+    @Setup
+    public void setUp() {
+        handlers = new FunctionHandlers();
+    }
+
+    @Benchmark
+    public HttpResponseMessage httpTriggerQuery() {
+        return handlers.httpTriggerQuery();
+    }
+
+    @Benchmark
+    public HttpResponseMessage httpTriggerBody() {
+        return handlers.httpTriggerBody();
+    }
+
+    @Benchmark
+    public HttpResponseMessage httpTriggerJavaVersion() {
+        return handlers.httpTriggerJavaVersion();
+    }
+
+    @Benchmark
+    public String capitalize() {
+        return handlers.capitalize();
+    }
+
+    @Benchmark
+    public String citiesOrchestrator() {
+        return handlers.citiesOrchestrator();
+    }
+
+    @Benchmark
+    public String citiesBatchedOrchestrator() {
+        return handlers.citiesBatchedOrchestrator();
+    }
+
+    @Benchmark
+    public double chainingOrchestrator() {
+        return handlers.chainingOrchestrator();
+    }
+
+    @Benchmark
+    public Integer fanOutFanInOrchestrator() {
+        return handlers.fanOutFanInOrchestrator();
+    }
+}
@@ -0,0 +1,75 @@
+package com.functions.eventgrid;
+
+import com.functions.eventgrid.EventGridEventFootprint.LegacyEvent;
+import com.functions.json.JsonStreamReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events/sec of the compact {@link EventGridEvent} with {@link EventGridEventCodec}, against the
+ * previous mutable all-String model serialized reflectively. Every score is per event: decoding
+ * parses a delivery of {@link EventGridEventFootprint#EVENTS_PER_DELIVERY} events, so read
+ * gc.alloc.rate.norm from "-prof gc" as bytes/event. Retained bytes/event are measured by
+ * {@link EventGridEventFootprint}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventGridEventCodecBenchmark {
+    private String delivery;
+    private LegacyEvent legacy;
+    private EventGridEvent compact;
+
+    @Setup
+    public void setUp() throws Exception {
+        delivery = EventGridEventFootprint.delivery();
+        legacy = LegacyEvent.read(new JsonStreamReader(EventGridEventFootprint.EVENT));
+        compact = EventGridEventCodec.read(EventGridEventFootprint.EVENT);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EventGridEventFootprint.EVENTS_PER_DELIVERY)
+    public List<Object> decodeLegacy() throws Exception {
+        JsonStreamReader reader = new JsonStreamReader(delivery);
+        List<Object> events = new ArrayList<>(EventGridEventFootprint.EVENTS_PER_DELIVERY);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            events.add(LegacyEvent.read(reader));
+        }
+        return events;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EventGridEventFootprint.EVENTS_PER_DELIVERY)
+    public List<Object> decodeCompact() throws Exception {
+        List<Object> events = new ArrayList<>(EventGridEventFootprint.EVENTS_PER_DELIVERY);
+        EventGridBatchParser.parse(delivery).forEachRemaining(events::add);
+        return events;
+    }
+
+    @Benchmark
+    public String encodeLegacyReflective() throws Exception {
+        return LegacyEvent.writeReflectively(legacy);
+    }
+
+    @Benchmark
+    public String encodeCompact() {
+        return EventGridEventCodec.toJson(compact);
+    }
+}
@@ -0,0 +1,126 @@
+package com.functions.logging;
+
+import com.functions.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+/**
+ * Per-invocation latency of a handler that logs eight metadata lines, like the Event Hub
+ * metadata sample: eager string building and synchronous logging ("sync"), against
+ * {@link FunctionLog} with the async appender ("async"), with sampling one in ten ("sampled")
+ * and with the default rate limit ("limited"). The logger formats every record and writes it to
+ * a discarding stream, standing in for the worker's handler.
+ * <p>
+ * Invocations run back to back, faster than one writer thread can format on a small machine,
+ * so the async rows can fill the buffer and drop records. The "dropped" counter reports how
+ * many were lost that way, apart from those sampling and the rate limit drop by design; an
+ * async row only measures moving the work off the invocation thread, rather than skipping it,
+ * while that counter is zero.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FunctionLogBenchmark {
+    private static final int LINES = 8;
+
+    @Param({"sync", "async", "sampled", "limited"})
+    public String mode;
+
+    private Logger logger;
+    private FunctionLog log;
+    private final Map<String, Object> properties = new HashMap<>();
+    private long sequence;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Records {
+        public long dropped;
+    }
+
+    @Setup
+    public void setUp() {
+        logger = Logger.getLogger("benchmark.function");
+        logger.setUseParentHandlers(false);
+        for (Handler handler : logger.getHandlers()) {
+            logger.removeHandler(handler);
+        }
+        logger.addHandler(new StreamHandler(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, new SimpleFormatter()));
+        properties.put("correlationId", "3f2a9c1e-77d4-4d1e-9b8a-2c6f0e5d4b11");
+        properties.put("source", "orders");
+        properties.put("retry", 0);
+
+        MetricsRegistry registry = new MetricsRegistry();
+        AsyncLogAppender appender = AsyncLogAppender.global();
+        switch (mode) {
+            case "async":
+                log = new FunctionLog("async", 1, 0, appender, registry);
+                break;
+            case "sampled":
+                log = new FunctionLog("sampled", 10, 0, appender, registry);
+                break;
+            case "limited":
+                log = new FunctionLog("limited", 1, 200, appender, registry);
+                break;
+            default:
+                log = null;
+        }
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+    public void drain() {
+        // Every iteration starts with an empty buffer
+        AsyncLogAppender.global().flush(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void invocation(Records records) {
+        String message = "message-" + sequence;
+        long sequenceNumber = sequence++;
+        if (log == null) {
+            for (int line = 0; line < LINES; line++) {
+                logger.info("Properties for " + message + " line " + line + "=" + properties + " sequence=" + sequenceNumber);
+            }
+            return;
+        }
+        long droppedBefore = log.getBufferFull();
+        for (int line = 0; line < LINES; line++) {
+            int current = line;
+            log.log(logger, Level.INFO, (Supplier<String>)
+                () -> "Properties for " + message + " line " + current + "=" + properties + " sequence=" + sequenceNumber, null);
+        }
+        records.dropped += log.getBufferFull() - droppedBefore;
+    }
+}
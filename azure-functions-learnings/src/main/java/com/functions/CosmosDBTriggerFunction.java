@@ -1,11 +1,21 @@
 package com.functions;
 
+import com.functions.cosmos.ChangeFeedBatchProcessor;
+import com.functions.cosmos.DocumentContainer;
+import com.functions.cosmos.MaterializedView;
+import com.functions.cosmos.NameView;
+import com.functions.cosmos.ViewDocument;
+import com.functions.execution.FunctionWrapper;
+import com.functions.execution.SingleFlight;
+import com.functions.metrics.MetricsRegistry;
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.*;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Azure Functions with Azure Cosmos DB.
@@ -13,132 +23,292 @@ import java.util.Optional;
 public class CosmosDBTriggerFunction {
 
     /**
-     * This function will be invoked when a message is posted to
-     * /api/CosmosDBInputId?docId={docId} contents are provided as the input to this
-     * function.
+     * The Cosmos DB functions need a Cosmos DB account, and the ones that call the container
+     * directly need the azure-sdk profile for {@link DocumentContainer}'s client, so they stay
+     * commented together with the view, change-feed processor and single-flight they drive.
+     * Until they are enabled those classes only run in their tests and benchmarks.
+     * <p>
+     * The view of ItemsCollectionIn, the container the input endpoints read, that
+     * CosmosItemsView maintains from that container's feed. It is loaded from its snapshot and
+     * journal on first use and snapshotted by the maintenance timer every
+     * LEARNING_view_snapshot_seconds. The endpoints only answer from it once it is within
+     * LEARNING_view_caught_up_seconds of the feed.
      */
     /*
+    static final class ItemsView {
+        static final MaterializedView INSTANCE = MaterializedView.fromSettings("ItemsCollectionIn");
+        static final long CAUGHT_UP_LAG_MILLIS = MaterializedView.caughtUpLagMillis();
+
+        static boolean isServing() {
+            return INSTANCE.isCaughtUp(CAUGHT_UP_LAG_MILLIS);
+        }
+
+        static {
+            // Bounds how much journal a restarted instance replays
+            long interval = MaterializedView.snapshotIntervalMillis();
+            TimerTriggerFunction.MAINTENANCE.register("items-view-snapshot", budget -> {
+                INSTANCE.snapshotIfDue(interval);
+                return true;
+            });
+        }
+    }
+
+    *//**
+     * The retries of CosmosTriggerAndOutput's retry policy; after them the host checkpoints past
+     * a batch that still fails.
+     *//*
+    static final int OUTPUT_RETRIES = 5;
+
+    *//**
+     * Fans each ItemCollectionIn batch out over LEARNING_changefeed_workers threads, keeping the
+     * changes to each document id in feed order, and counts the batches that exhaust
+     * {@link #OUTPUT_RETRIES}.
+     *//*
+    static final class ItemsProcessor {
+        static final ChangeFeedBatchProcessor INSTANCE = ChangeFeedBatchProcessor.fromSettings("ItemCollectionIn", OUTPUT_RETRIES);
+    }
+
+    *//**
+     * This function will be invoked when a message is posted to
+     * /api/CosmosDBInputId?docId={docId} and answers from {@link ItemsView} instead of reading
+     * the document from the container. Until the view has caught up it runs the input
+     * binding's read through ITEMS_IN: a CosmosDBInput binding would read before the
+     * function body on every request, view or not.
+     *//*
+    private static final FunctionWrapper COSMOS_DB_INPUT_ID = FunctionWrapper.of("CosmosDBInputId");
+
     @FunctionName("CosmosDBInputId")
     public HttpResponseMessage CosmosDBInputId(@HttpTrigger(name = "req", methods = {HttpMethod.GET,
         HttpMethod.POST}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
-                                               @CosmosDBInput(name = "item", databaseName = "%CosmosDBDatabaseName%", containerName = "ItemsCollectionIn", connection = "AzureWebJobsCosmosDBConnectionString", id = "{docId}") String item,
                                                final ExecutionContext context) {
+        return COSMOS_DB_INPUT_ID.http(request, context, () -> {
+            context.getLogger().info("Java HTTP trigger processed a request.");
 
-        context.getLogger().info("Java HTTP trigger processed a request.");
+            String docId = request.getQueryParameters().get("docId");
+            String item;
+            if (ItemsView.isServing()) {
+                ViewDocument document = ItemsView.INSTANCE.get(docId);
+                item = document != null ? document.getJson() : null;
+            } else {
+                item = ITEMS_IN.findJsonById(docId);
+            }
 
-        if (item != null) {
-            return request.createResponseBuilder(HttpStatus.OK).body("Received Document" + item).build();
-        } else {
-            return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body("Did not find expected item in ItemsCollectionIn").build();
-        }
+            if (item != null) {
+                return request.createResponseBuilder(HttpStatus.OK).body("Received Document" + item).build();
+            } else {
+                return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Did not find expected item in ItemsCollectionIn").build();
+            }
+        });
     }
 
+    private static final FunctionWrapper COSMOS_DB_INPUT_ID_POJO = FunctionWrapper.of("CosmosDBInputIdPOJO");
+
     @FunctionName("CosmosDBInputIdPOJO")
     public HttpResponseMessage CosmosDBInputIdPOJO(@HttpTrigger(name = "req", methods = {HttpMethod.GET,
         HttpMethod.POST}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
                                                    @CosmosDBInput(name = "item", databaseName = "%CosmosDBDatabaseName%", containerName = "ItemsCollectionIn", connection = "AzureWebJobsCosmosDBConnectionString", id = "{docId}") Document item,
                                                    final ExecutionContext context) {
+        return COSMOS_DB_INPUT_ID_POJO.http(request, context, () -> {
+            context.getLogger().info("Java HTTP trigger processed a request.");
 
-        context.getLogger().info("Java HTTP trigger processed a request.");
-
-        if (item != null) {
-            return request.createResponseBuilder(HttpStatus.OK).body("Received Document with Id " + item.id).build();
-        } else {
-            return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body("Did not find expected item in ItemsCollectionIn").build();
-        }
+            if (item != null) {
+                return request.createResponseBuilder(HttpStatus.OK).body("Received Document with Id " + item.id).build();
+            } else {
+                return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Did not find expected item in ItemsCollectionIn").build();
+            }
+        });
     }
 
 
+    *//**
+     * ItemsCollectionIn through the Cosmos SDK client of the azure-sdk profile, for the queries
+     * that go through {@link #NAME_QUERIES}; a CosmosDBInput binding runs its query before the
+     * function body, where it cannot be coalesced.
+     *//*
+    private static final DocumentContainer ITEMS_IN = AzureClients.cosmosContainer("ItemsCollectionIn");
+
+    private static final long NAME_QUERY_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final SingleFlight<List<String>, List<Document>> NAME_QUERIES = new SingleFlight<>("cosmos-name-query", NAME_QUERY_WAIT_MILLIS, MetricsRegistry.global());
+
+    *//**
+     * SELECT f.id, f.name FROM f WHERE f.name = {name}. When a name trends, the requests for it
+     * that arrive while its query is running share that query's result instead of each running
+     * it; the list is shared, so callers must not modify it. A request waits at most
+     * NAME_QUERY_WAIT_MILLIS for another request's query and then fails, rather than hanging
+     * on a query that does not return.
+     *//*
+    private static List<Document> queryByName(String functionName, String name) {
+        return NAME_QUERIES.call(SingleFlight.key(functionName, name), () -> Collections.unmodifiableList(ITEMS_IN.findByName(name)));
+    }
+
     *//**
      * This function will be invoked when a message is posted to
      * /api/CosmosDBInputQuery?name=joe Receives input with list of items matching
      * the sqlQuery
      *//*
+    private static final FunctionWrapper COSMOS_DB_INPUT_QUERY_POJO_ARRAY = FunctionWrapper.of("CosmosDBInputQueryPOJOArray");
+
     @FunctionName("CosmosDBInputQueryPOJOArray")
     public HttpResponseMessage CosmosDBInputQueryPOJOArray(@HttpTrigger(name = "req", methods = {HttpMethod.GET,
         HttpMethod.POST}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
-                                                           @CosmosDBInput(name = "items", databaseName = "%CosmosDBDatabaseName%", containerName = "ItemsCollectionIn", connection = "AzureWebJobsCosmosDBConnectionString", sqlQuery = "SELECT f.id, f.name FROM f WHERE f.name = {name}") Document[] items,
                                                            @CosmosDBOutput(name = "itemsOut", databaseName = "%CosmosDBDatabaseName%", containerName = "ItemsCollectionOut", connection = "AzureWebJobsCosmosDBConnectionString") OutputBinding<Document[]> itemsOut,
                                                            final ExecutionContext context) {
-        context.getLogger().info("Java HTTP trigger processed a request.");
-
-        if (items.length >= 2) {
-            itemsOut.setValue(items);
-            return request.createResponseBuilder(HttpStatus.OK).body("Hello, " + items[0].name).build();
-        } else {
-            return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body("Did not find expected items in CosmosDB input list").build();
-        }
+        return COSMOS_DB_INPUT_QUERY_POJO_ARRAY.http(request, context, () -> {
+            context.getLogger().info("Java HTTP trigger processed a request.");
+
+            Document[] items = queryByName("CosmosDBInputQueryPOJOArray", request.getQueryParameters().get("name")).toArray(new Document[0]);
+
+            if (items.length >= 2) {
+                itemsOut.setValue(items);
+                return request.createResponseBuilder(HttpStatus.OK).body("Hello, " + items[0].name).build();
+            } else {
+                return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Did not find expected items in CosmosDB input list").build();
+            }
+        });
     }
 
+    private static final FunctionWrapper COSMOS_DB_INPUT_QUERY_POJO_LIST = FunctionWrapper.of("CosmosDBInputQueryPOJOList");
+
     @FunctionName("CosmosDBInputQueryPOJOList")
     public HttpResponseMessage CosmosDBInputQueryPOJOList(@HttpTrigger(name = "req", methods = {HttpMethod.GET,
         HttpMethod.POST}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
-                                                          @CosmosDBInput(name = "item", databaseName = "%CosmosDBDatabaseName%", containerName = "ItemsCollectionIn", connection = "AzureWebJobsCosmosDBConnectionString", sqlQuery = "SELECT f.id, f.name FROM f WHERE f.name = {name}") List<Document> items,
                                                           @CosmosDBOutput(name = "itemsOut", databaseName = "%CosmosDBDatabaseName%", containerName = "ItemsCollectionOut", connection = "AzureWebJobsCosmosDBConnectionString") OutputBinding<List<Document>> itemsOut,
                                                           final ExecutionContext context) {
-        context.getLogger().info("Java HTTP trigger processed a request.");
-
-        if (items.size() >= 2) {
-            itemsOut.setValue(items);
-            return request.createResponseBuilder(HttpStatus.OK).body("Hello, " + items.get(0).name).build();
-        } else {
-            return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body("Did not find expected items in CosmosDB input list").build();
-        }
+        return COSMOS_DB_INPUT_QUERY_POJO_LIST.http(request, context, () -> {
+            context.getLogger().info("Java HTTP trigger processed a request.");
+
+            List<Document> items = queryByName("CosmosDBInputQueryPOJOList", request.getQueryParameters().get("name"));
+
+            if (items.size() >= 2) {
+                itemsOut.setValue(items);
+                return request.createResponseBuilder(HttpStatus.OK).body("Hello, " + items.get(0).name).build();
+            } else {
+                return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Did not find expected items in CosmosDB input list").build();
+            }
+        });
     }
 
+    *//**
+     * Answers {@code WHERE f.name = {name}} from {@link ItemsView}'s name index instead of
+     * running the query against the container, and runs the binding's query through
+     * {@link #queryByName} until the view has caught up.
+     *//*
+    private static final FunctionWrapper COSMOS_DB_INPUT_QUERY = FunctionWrapper.of("CosmosDBInputQuery");
+
     @FunctionName("CosmosDBInputQuery")
     public HttpResponseMessage CosmosDBInputQuery(@HttpTrigger(name = "req", methods = {HttpMethod.GET,
         HttpMethod.POST}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
-                                                  @CosmosDBInput(name = "item", databaseName = "%CosmosDBDatabaseName%", containerName = "ItemsCollectionIn", connection = "AzureWebJobsCosmosDBConnectionString", sqlQuery = "SELECT f.id, f.name FROM f WHERE f.name = {name}") List<String> items,
                                                   final ExecutionContext context) {
-        context.getLogger().info("Java HTTP trigger processed a request.");
+        return COSMOS_DB_INPUT_QUERY.http(request, context, () -> {
+            context.getLogger().info("Java HTTP trigger processed a request.");
 
-        // Parse query parameters
-        String query = request.getQueryParameters().get("name");
-        String name = request.getBody().orElse(query);
+            // Parse query parameters
+            String query = request.getQueryParameters().get("name");
+            String name = request.getBody().orElse(query);
+            int count = ItemsView.isServing() ? ItemsView.INSTANCE.query(name).getCount() : queryByName("CosmosDBInputQuery", name).size();
 
-        if (items.size() >= 2) {
-            return request.createResponseBuilder(HttpStatus.OK).body("Hello, " + name).build();
-        } else {
-            return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body("Did not find expected items in CosmosDB input list").build();
-        }
+            if (count >= 2) {
+                return request.createResponseBuilder(HttpStatus.OK).body("Hello, " + name).build();
+            } else {
+                return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Did not find expected items in CosmosDB input list").build();
+            }
+        });
+    }
+
+    *//**
+     * /api/CosmosDBNameView?name=joe: the documents with that name and their count and latest
+     * _ts, from {@link ItemsView}.
+     *//*
+    private static final FunctionWrapper COSMOS_DB_NAME_VIEW = FunctionWrapper.of("CosmosDBNameView");
+
+    @FunctionName("CosmosDBNameView")
+    public HttpResponseMessage CosmosDBNameView(@HttpTrigger(name = "req", methods = {HttpMethod.GET},
+        authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
+                                                final ExecutionContext context) {
+        return COSMOS_DB_NAME_VIEW.http(request, context, () -> {
+            NameView view = ItemsView.INSTANCE.query(request.getQueryParameters().get("name"));
+            return request.createResponseBuilder(HttpStatus.OK).header("Content-Type", "application/json").body(view.toJson()).build();
+        });
+    }
+
+    *//**
+     * Keeps {@link ItemsView} up to date and writes nothing. Each change-feed batch is applied
+     * before the function returns, so the lease only checkpoints batches the view's journal
+     * holds. Every instance needs the whole feed for a complete view, hence a lease prefix per
+     * instance, and a new instance starts from the beginning of the feed; that costs each
+     * instance a read of the container, but no writes. The leases of an instance that is gone
+     * stay in the lease container under its WEBSITE_INSTANCE_ID prefix until they are deleted.
+     *//*
+    private static final FunctionWrapper COSMOS_ITEMS_VIEW = FunctionWrapper.of("CosmosItemsView");
+
+    @FunctionName("CosmosItemsView")
+    public void CosmosItemsView(
+        @CosmosDBTrigger(name = "itemIn", databaseName = "%CosmosDBDatabaseName%", containerName = "ItemsCollectionIn", leaseContainerName = "leases", leaseContainerPrefix = "%WEBSITE_INSTANCE_ID%", startFromBeginning = true, connection = "AzureWebJobsCosmosDBConnectionString", createLeaseContainerIfNotExists = true) List<String> inputItems,
+        final ExecutionContext context) {
+
+        int changed = ItemsView.INSTANCE.apply(inputItems);
+        COSMOS_ITEMS_VIEW.getLog().info(context, () -> "Applied " + changed + " of " + inputItems.size() + " changes to " + ItemsView.INSTANCE);
     }
 
     *//**
      * This function will be invoked when a post request with file to
      * http://localhost:7071/api/CosmosDBOutput. A new document will add to the
      * container.
+     * It shares one lease across the instances, so each change is written to ItemCollectionOut
+     * once; the view is maintained by CosmosItemsView.
+     * Each document is upserted through {@link #ITEMS_OUT} rather than the output binding, so
+     * the writes overlap on {@link ItemsProcessor}'s threads instead of the binding writing them
+     * one after another after the function returns, and the function returns, letting the lease
+     * checkpoint, only once every write is done. A failed batch is retried with backoff, but
+     * only {@link #OUTPUT_RETRIES} times: after that the host checkpoints past it and its
+     * documents are not written. ItemsProcessor counts those batches in
+     * changefeed_skipped_batches_total, and the last attempt logs a warning naming them.
      *//*
+    private static final DocumentContainer ITEMS_OUT = AzureClients.cosmosContainer("ItemCollectionOut");
+
+    private static final FunctionWrapper COSMOS_TRIGGER_AND_OUTPUT = FunctionWrapper.of("CosmosTriggerAndOutput");
+
     @FunctionName("CosmosTriggerAndOutput")
+    @ExponentialBackoffRetry(maxRetryCount = OUTPUT_RETRIES, minimumInterval = "00:00:01", maximumInterval = "00:01:00")
     public void CosmosTriggerAndOutput(
-        @CosmosDBTrigger(name = "itemIn", databaseName = "%CosmosDBDatabaseName%", containerName = "ItemCollectionIn", leaseContainerName = "leases", connection = "AzureWebJobsCosmosDBConnectionString", createLeaseContainerIfNotExists = true) Object inputItem,
-        @CosmosDBOutput(name = "itemOut", databaseName = "%CosmosDBDatabaseName%", containerName = "ItemCollectionOut", connection = "AzureWebJobsCosmosDBConnectionString") OutputBinding<Document> outPutItem,
+        @CosmosDBTrigger(name = "itemIn", databaseName = "%CosmosDBDatabaseName%", containerName = "ItemCollectionIn", leaseContainerName = "leases", connection = "AzureWebJobsCosmosDBConnectionString", createLeaseContainerIfNotExists = true) List<String> inputItems,
         final ExecutionContext context) {
 
-        context.getLogger().info("Java Cosmos DB trigger function executed. Received document: " + inputItem);
-
-        ArrayList inputItems = (ArrayList) inputItem;
-        String objString = inputItems.get(0).toString();
-        String[] arrOfStr = objString.split("=", 2);
-        String[] arrOfStrWithId = arrOfStr[1].split(",", 2);
-        String docId = arrOfStrWithId[0];
+        COSMOS_TRIGGER_AND_OUTPUT.getLog().info(context, () -> "Java Cosmos DB trigger function executed. Received " + inputItems.size() + " documents");
 
-        context.getLogger().info("Writing to CosmosDB output binding Document id: " + docId);
-        Document testDoc = new Document();
-        testDoc.id = docId;
-        testDoc.Description = "testdescription";
-        outPutItem.setValue(testDoc);
+        long skippedBefore = ItemsProcessor.INSTANCE.getSkippedBatches();
+        try {
+            ChangeFeedBatchProcessor.BatchReport report = ItemsProcessor.INSTANCE.process(inputItems, document -> {
+                Document testDoc = new Document();
+                testDoc.id = document.getId();
+                testDoc.name = document.getName();
+                testDoc.Description = "testdescription";
+                ITEMS_OUT.upsert(testDoc);
+            });
+            COSMOS_TRIGGER_AND_OUTPUT.getLog().info(context, () -> "Upserted " + report.getItems() + " documents into ItemCollectionOut: " + report);
+        } catch (CompletionException e) {
+            if (ItemsProcessor.INSTANCE.getSkippedBatches() > skippedBefore) {
+                COSMOS_TRIGGER_AND_OUTPUT.getLog().warning(context, () -> "Giving up on " + inputItems.size() + " documents after " + (OUTPUT_RETRIES + 1) + " attempts", e);
+            }
+            throw e;
+        }
     }
 
-    public class Document {
+    */
+
+    /**
+     * A document of ItemsCollectionIn and ItemCollectionOut, as the functions bind it and
+     * {@link DocumentContainer} returns and writes it.
+     */
+    public static class Document {
         public String id;
         public String name;
         public String Description;
     }
-    */
 }
@@ -1,9 +1,24 @@
 package com.functions;
 
+import com.functions.eventgrid.EventGridBatchParser;
+import com.functions.eventgrid.EventGridDispatcher;
+import com.functions.eventgrid.EventGridEvent;
+import com.functions.eventgrid.EventGridEventCodec;
+import com.functions.eventgrid.EventGridEventTemplate;
+import com.functions.eventgrid.EventGridPublisher;
+import com.functions.eventgrid.EventTimeClock;
+import com.functions.eventgrid.HttpEventGridTransport;
+import com.functions.execution.FunctionWrapper;
+import com.functions.metrics.MetricsRegistry;
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.*;
 
+import java.io.IOException;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Azure Functions with Event Grid trigger.
@@ -12,105 +27,161 @@ import java.util.Optional;
 public class EventGridTriggerFunction {
     /**
      * This function will be invoked when an event is received from Event Grid.
+     * The delivery (a single event or an array of events) is parsed as a stream and each event is
+     * routed by eventType / subject prefix to the handlers registered on DISPATCHER. Only one
+     * payload in a hundred is logged; per event type counters replace the rest.
      */
     /*
+    private static final String BLOB_SUBJECT_PREFIX = "/blobServices/default/containers/";
+    private static final String TEST_DATA_PREFIX = "test-uuid: ";
+
+    private static final EventGridDispatcher DISPATCHER = new EventGridDispatcher(Runtime.getRuntime().availableProcessors(), 100)
+        .on("test-event-1", EventGridTriggerFunction::handleTestEvent)
+        .onSubjectPrefix(BLOB_SUBJECT_PREFIX, EventGridTriggerFunction::handleBlobEvent)
+        .otherwise(EventGridTriggerFunction::handleUnknownEvent);
+
     @FunctionName("EventGridTriggerJava")
     public void eventGridHandler(
         @EventGridTrigger(name = "eventgrid") String eventContent,
         final ExecutionContext context
     ) {
-        context.getLogger().info("Java Event Grid trigger function executed.");
-        context.getLogger().info(eventContent);
+        EventGridDispatcher.DispatchResult result = DISPATCHER.dispatch(EventGridBatchParser.parse(eventContent), context.getLogger());
+        context.getLogger().info("Java Event Grid trigger function executed: " + result + " throughput=" + DISPATCHER.throughputByEventType());
+        if (!result.getFailedEventIds().isEmpty()) {
+            // Fail the invocation so Event Grid redelivers; handlers must tolerate the successful events again
+            throw new IllegalStateException("Event Grid handlers failed for events " + result.getFailedEventIds());
+        }
+    }
+
+    *//**
+     * Events sent by EventGridOutputBindingJava carry "test-uuid: " and a UUID. Anything else
+     * fails the event, so Event Grid retries it and finally dead-letters it.
+     *//*
+    private static void handleTestEvent(EventGridEvent event) {
+        String data = event.getData();
+        if (data == null || !data.startsWith(TEST_DATA_PREFIX)) {
+            throw new IllegalArgumentException("Event " + event.getId() + " has no test uuid: " + data);
+        }
+        UUID.fromString(data.substring(TEST_DATA_PREFIX.length()).trim());
+        MetricsRegistry.global().counter("eventgrid_test_events_total", "test-event-1 events with a valid test uuid.").increment();
+    }
+
+    *//**
+     * Storage events name the blob in the subject: /blobServices/default/containers/{container}/blobs/{blob}.
+     *//*
+    private static void handleBlobEvent(EventGridEvent event) {
+        String path = event.getSubject().substring(BLOB_SUBJECT_PREFIX.length());
+        int blobs = path.indexOf("/blobs/");
+        if (blobs <= 0 || blobs + "/blobs/".length() == path.length()) {
+            throw new IllegalArgumentException("Event " + event.getId() + " does not name a blob: " + event.getSubject());
+        }
+        MetricsRegistry.global().counter("eventgrid_blob_events_total", "Storage blob events, per container and event type.",
+            "container", path.substring(0, blobs), "event_type", String.valueOf(event.getEventType())).increment();
+    }
+
+    *//**
+     * Event types nobody subscribed for on purpose are acknowledged, so they are not redelivered,
+     * and counted so a new subscription filter shows up on the metrics endpoint.
+     *//*
+    private static void handleUnknownEvent(EventGridEvent event) {
+        MetricsRegistry.global().counter("eventgrid_unhandled_events_total", "Events no handler is registered for.",
+            "event_type", String.valueOf(event.getEventType())).increment();
     }
 
     *//**
      * This function will be invoked when a http trigger is received, and sends a custom event to Event Grid.
      *//*
+    private static final FunctionWrapper EVENT_GRID_OUTPUT_BINDING = FunctionWrapper.of("EventGridOutputBindingJava");
+
     @FunctionName("EventGridOutputBindingJava")
     public HttpResponseMessage eventGridOutputBinding(
         @HttpTrigger(name = "req", methods = {HttpMethod.GET, HttpMethod.POST},
             authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
         @EventGridOutput(name = "outputEvent",
             topicEndpointUri = "AzureWebJobsEventGridOutputBindingTopicUriString",
-            topicKeySetting = "AzureWebJobsEventGridOutputBindingTopicKeyString") OutputBinding<EventGridEvent> outputEvent,
+            topicKeySetting = "AzureWebJobsEventGridOutputBindingTopicKeyString") OutputBinding<String> outputEvent,
         final ExecutionContext context
     ) {
-        context.getLogger().info("Java HTTP trigger processed a request.");
+        return EVENT_GRID_OUTPUT_BINDING.http(request, context, () -> {
+            context.getLogger().info("Java HTTP trigger processed a request.");
 
-        // Parse query parameter
-        String query = request.getQueryParameters().get("testuuid");
-        String message = request.getBody().orElse(query);
-        context.getLogger().info("testuuid:" + message);
+            // Parse query parameter
+            String query = request.getQueryParameters().get("testuuid");
+            String message = request.getBody().orElse(query);
+            context.getLogger().info("testuuid:" + message);
 
-        final EventGridEvent eventGridOutputDocument = new EventGridEvent();
-        eventGridOutputDocument.setId("test-id");
-        eventGridOutputDocument.setEventType("test-event-1");
-        eventGridOutputDocument.setEventTime("2020-01-31T10:10:10+00:00");
-        eventGridOutputDocument.setDataVersion("1.0");
-        eventGridOutputDocument.setSubject("test-subject");
-        eventGridOutputDocument.setData("test-uuid: " + message);
+            final EventGridEvent eventGridOutputDocument = EventGridEvent.withStringData("test-id", "test-event-1", "test-subject",
+                EventTimeClock.parseMillis("2020-01-31T10:10:10+00:00"), "1.0", "test-uuid: " + message);
 
-        outputEvent.setValue(eventGridOutputDocument);
+            // Serialized by hand instead of reflectively by the worker
+            outputEvent.setValue(EventGridEventCodec.toJson(eventGridOutputDocument));
 
-        return request.createResponseBuilder(HttpStatus.OK).build();
+            return request.createResponseBuilder(HttpStatus.OK).build();
+        });
     }
     */
-}
-
-
-class EventGridEvent {
-    private String id;
-    private String eventType;
-    private String subject;
-    private String eventTime;
-    private String dataVersion;
-    private String data;
-
-    public String getId() {
-        return id;
-    }
-
-    public String getData() {
-        return data;
-    }
 
-    public void setData(String data) {
-        this.data = data;
-    }
-
-    public String getDataVersion() {
-        return dataVersion;
-    }
-
-    public void setDataVersion(String dataVersion) {
-        this.dataVersion = dataVersion;
-    }
-
-    public String getEventTime() {
-        return eventTime;
-    }
-
-    public void setEventTime(String eventTime) {
-        this.eventTime = eventTime;
-    }
-
-    public String getSubject() {
-        return subject;
-    }
-
-    public void setSubject(String subject) {
-        this.subject = subject;
-    }
-
-    public String getEventType() {
-        return eventType;
+    /**
+     * Same as EventGridOutputBindingJava, but events from concurrent invocations are batched into
+     * shared requests of up to 1 MB. The output binding posts once per invocation, so the publisher
+     * is built from the same app settings on the first request and outlives the individual
+     * invocations; without those settings the function fails every request.
+     */
+    private static final EventGridEventTemplate TEST_EVENT = new EventGridEventTemplate("test-event-1", "test-subject", "1.0");
+    private static final long PUBLISH_TIMEOUT_SECONDS = 60;
+    private static EventGridPublisher publisher;
+
+    private static synchronized EventGridPublisher publisher() {
+        if (publisher == null) {
+            String topicEndpoint = System.getenv("AzureWebJobsEventGridOutputBindingTopicUriString");
+            if (topicEndpoint == null) {
+                throw new IllegalStateException("AzureWebJobsEventGridOutputBindingTopicUriString is not set");
+            }
+            try {
+                publisher = new EventGridPublisher(new HttpEventGridTransport(topicEndpoint,
+                    System.getenv("AzureWebJobsEventGridOutputBindingTopicKeyString")), 20);
+            } catch (IOException e) {
+                throw new IllegalStateException("Invalid Event Grid topic endpoint", e);
+            }
+            EventGridPublisher created = publisher;
+            TimerTriggerFunction.MAINTENANCE.register("eventgrid-publisher-flush", budget -> {
+                created.flush();
+                return true;
+            });
+        }
+        return publisher;
     }
 
-    public void setEventType(String eventType) {
-        this.eventType = eventType;
-    }
+    private static final FunctionWrapper EVENT_GRID_BATCHED_PUBLISH = FunctionWrapper.of("EventGridBatchedPublishJava");
 
-    public void setId(String id) {
-        this.id = id;
+    @FunctionName("EventGridBatchedPublishJava")
+    public HttpResponseMessage eventGridBatchedPublish(
+        @HttpTrigger(name = "req", methods = {HttpMethod.GET, HttpMethod.POST},
+            authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context
+    ) {
+        return EVENT_GRID_BATCHED_PUBLISH.http(request, context, () -> {
+            String query = request.getQueryParameters().get("testuuid");
+            String message = request.getBody().orElse(query);
+            EventGridPublisher shared = publisher();
+
+            // Wait for the shared batch so a failed publish still fails this request, but not for
+            // longer than the function timeout would allow
+            try {
+                shared.publish(TEST_EVENT, "test-uuid: " + message).get(PUBLISH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                return request.createResponseBuilder(HttpStatus.GATEWAY_TIMEOUT).body("Event Grid topic did not accept the event in time").build();
+            } catch (ExecutionException e) {
+                context.getLogger().warning("Event Grid publish failed: " + e.getCause());
+                return request.createResponseBuilder(HttpStatus.BAD_GATEWAY).body("Event Grid topic rejected the event").build();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return request.createResponseBuilder(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+            context.getLogger().info("Event Grid publisher: events=" + shared.getEventsPublished() + " requests=" + shared.getRequestsSent());
+
+            return request.createResponseBuilder(HttpStatus.OK).build();
+        });
     }
 }
+
@@ -1,11 +1,21 @@
 package com.functions;
 
+import com.functions.execution.FunctionWrapper;
+import com.functions.metrics.MetricsRegistry;
+import com.functions.pipeline.StagePipeline;
+import com.functions.windowing.WindowResult;
+import com.functions.windowing.WindowedAggregator;
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.OutputBinding;
 import com.microsoft.azure.functions.annotation.*;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Azure Functions with Azure Event Hub.
@@ -13,17 +23,42 @@ import java.util.Map;
  */
 public class EventHubTriggerFunction {
     /**
-     * This function will be invoked when a new message is received at the specified EventHub. The message contents are provided as input to this function.
+     * EventHubTriggerAndOutputJSON, hub test-outputjson-java, EventHubOutputJson, queue
+     * test-eventhuboutputjson-java. Fused, the trigger function writes the queue itself.
      */
     /*
+    public static final StagePipeline<List<String>, String> OUTPUT_JSON_PIPELINE = StagePipeline.<List<String>>builder("EventHubOutputJson")
+        .map("first-message", messages -> messages.get(0))
+        .hop("test-outputjson-java")
+        .build()
+        .registerMetrics(MetricsRegistry.global());
+
+    *//**
+     * EventHubTriggerCardinalityOne, hub test-outputone-java, EventHubOutputInputOne, queue
+     * test-eventhuboutputone-java.
+     *//*
+    public static final StagePipeline<String, String> OUTPUT_ONE_PIPELINE = StagePipeline.<String>builder("EventHubOutputInputOne")
+        .hop("test-outputone-java")
+        .build()
+        .registerMetrics(MetricsRegistry.global());
+
+    *//**
+     * This function will be invoked when a new message is received at the specified EventHub. The message contents are provided as input to this function.
+     * It binds both ends of OUTPUT_JSON_PIPELINE and writes only the one the topology uses.
+     *//*
     @FunctionName("EventHubTriggerAndOutputJSON")
     public void EventHubTriggerAndOutputJSON(
         @EventHubTrigger(name = "messages", eventHubName = "test-inputjson-java", connection = "AzureWebJobsEventHubSender", cardinality = Cardinality.MANY) List<String> messages,
-        @EventHubOutput(name = "output", eventHubName = "test-outputjson-java", connection = "AzureWebJobsEventHubSender") OutputBinding<String> output,
+        @EventHubOutput(name = "output", eventHubName = "test-outputjson-java", connection = "AzureWebJobsEventHubSender") OutputBinding<List<String>> output,
+        @QueueOutput(name = "queue", queueName = "test-eventhuboutputjson-java", connection = "AzureWebJobsStorage") OutputBinding<List<String>> queue,
         final ExecutionContext context
     ) {
         context.getLogger().info("Java Event Hub trigger received " + messages.size() + " messages");
-        output.setValue(messages.get(0));
+        if (OUTPUT_JSON_PIPELINE.isFused()) {
+            queue.setValue(OUTPUT_JSON_PIPELINE.process(messages));
+        } else {
+            output.setValue(OUTPUT_JSON_PIPELINE.runSegment(0, Collections.singletonList(messages)));
+        }
     }
 
     @FunctionName("EventHubTriggerCardinalityOneEventMetadata")
@@ -54,6 +89,8 @@ public class EventHubTriggerFunction {
         context.getLogger().info("SequenceNumber: " + sequenceNumber);
     }
 
+    private static final FunctionWrapper METADATA = FunctionWrapper.of("EventHubTriggerCardinalityManyEventMetadata");
+
     @FunctionName("EventHubTriggerCardinalityManyEventMetadata")
     public void EventHubTriggerCardinalityManyEventMetadata(
         @EventHubTrigger(
@@ -71,14 +108,77 @@ public class EventHubTriggerFunction {
         @BindingName("SequenceNumberArray") List<Long> sequenceNumberArray,
         final ExecutionContext context
     ) {
-        context.getLogger().info("Java Event Hub trigger received " + messages.length + " messages");
-        context.getLogger().info("message[0]=" + messages[0]);
-        context.getLogger().info("Properties for message[0]=" + propertiesArray[0]);
-        context.getLogger().info("SystemProperties for message[0]="+ systemPropertiesArray[0]);
-        context.getLogger().info("EnqueuedTimeUtc for message[0]=" + enqueuedTimeUtcArray.get(0));
-        context.getLogger().info("Offset for message[0]=" + offsetArray.get(0));
-        context.getLogger().info("PartitionKey for message[0]=" + partitionKeyArray.get(0));
-        context.getLogger().info("SequenceNumber for message[0]=" + sequenceNumberArray.get(0));
+        // Built on the log writer thread, and only for the records that are kept
+        METADATA.getLog().info(context, () -> "Java Event Hub trigger received " + messages.length + " messages");
+        METADATA.getLog().info(context, () -> "message[0]=" + messages[0]);
+        METADATA.getLog().info(context, () -> "Properties for message[0]=" + propertiesArray[0]);
+        METADATA.getLog().info(context, () -> "SystemProperties for message[0]="+ systemPropertiesArray[0]);
+        METADATA.getLog().info(context, () -> "EnqueuedTimeUtc for message[0]=" + enqueuedTimeUtcArray.get(0));
+        METADATA.getLog().info(context, () -> "Offset for message[0]=" + offsetArray.get(0));
+        METADATA.getLog().info(context, () -> "PartitionKey for message[0]=" + partitionKeyArray.get(0));
+        METADATA.getLog().info(context, () -> "SequenceNumber for message[0]=" + sequenceNumberArray.get(0));
+    }
+
+    *//**
+     * Per-PartitionKey windows over EnqueuedTimeUtc for EventHubWindowedAggregation, sized by the
+     * LEARNING_window_* settings. Held lazily, so loading this class does not read the snapshot.
+     *//*
+    static final class PartitionKeyWindows {
+        static final long SIZE_MILLIS = secondsSetting("LEARNING_window_size_seconds", 60);
+        static final WindowedAggregator INSTANCE = new WindowedAggregator("EventHubWindowedAggregation", SIZE_MILLIS,
+            secondsSetting("LEARNING_window_slide_seconds", TimeUnit.MILLISECONDS.toSeconds(SIZE_MILLIS)),
+            secondsSetting("LEARNING_window_lateness_seconds", 10),
+            snapshotFile());
+    }
+
+    private static long secondsSetting(String name, long defaultSeconds) {
+        String configured = System.getenv(name);
+        return TimeUnit.SECONDS.toMillis(configured != null ? Long.parseLong(configured.trim()) : defaultSeconds);
+    }
+
+    private static Path snapshotFile() {
+        String configured = System.getenv("LEARNING_window_snapshot");
+        return configured != null ? Paths.get(configured) : Paths.get(System.getProperty("java.io.tmpdir"), "eventhub-windows.snapshot");
+    }
+
+    *//**
+     * Counts and sums the "value" field of the messages per PartitionKey in windows over their
+     * EnqueuedTimeUtc, and writes each window once the watermark has passed its end. The
+     * snapshot is written before returning, so the hub only checkpoints events whose effect is
+     * already on disk.
+     *//*
+    @FunctionName("EventHubWindowedAggregation")
+    public void EventHubWindowedAggregation(
+        @EventHubTrigger(
+            name = "messages",
+            eventHubName = "test-input-java",
+            connection = "AzureWebJobsEventHubSender",
+            dataType = "string",
+            cardinality = Cardinality.MANY
+        ) String[] messages,
+        @BindingName("PartitionContext") Map<String, Object> partitionContext,
+        @BindingName("EnqueuedTimeUtcArray") List<Object> enqueuedTimeUtcArray,
+        @BindingName("PartitionKeyArray") List<String> partitionKeyArray,
+        @BindingName("SequenceNumberArray") List<Long> sequenceNumberArray,
+        @QueueOutput(name = "windows", queueName = "test-eventhubwindows-java", connection = "AzureWebJobsStorage") OutputBinding<List<String>> windows,
+        final ExecutionContext context
+    ) {
+        WindowedAggregator aggregator = PartitionKeyWindows.INSTANCE;
+        Object partition = partitionContext != null ? partitionContext.get("PartitionId") : null;
+        String partitionId = partition != null ? partition.toString() : null;
+        for (int i = 0; i < messages.length; i++) {
+            aggregator.add(partitionId, sequenceNumberArray.get(i), partitionKeyArray.get(i),
+                WindowedAggregator.eventTimeMillis(enqueuedTimeUtcArray.get(i)), WindowedAggregator.numberField(messages[i], "value", 0));
+        }
+        // The snapshot keeps these as pending until this partition's next invocation
+        List<String> closed = new ArrayList<>();
+        for (WindowResult window : aggregator.closeWindows(partitionId)) {
+            closed.add(window.toJson());
+        }
+        aggregator.snapshot();
+        if (!closed.isEmpty()) {
+            windows.setValue(closed);
+        }
     }
 
     @FunctionName("EventHubTriggerAndOutputString")
@@ -97,24 +197,31 @@ public class EventHubTriggerFunction {
     @FunctionName("EventHubTriggerCardinalityOne")
     public void EventHubTriggerCardinalityOne(
         @EventHubTrigger(name = "message", eventHubName = "test-inputOne-java", connection = "AzureWebJobsEventHubSender", dataType = "string", cardinality = Cardinality.ONE) String message,
-        @EventHubOutput(name = "output", eventHubName = "test-outputone-java", connection = "AzureWebJobsEventHubSender") OutputBinding<String> output,
+        @EventHubOutput(name = "output", eventHubName = "test-outputone-java", connection = "AzureWebJobsEventHubSender") OutputBinding<List<String>> output,
+        @QueueOutput(name = "queue", queueName = "test-eventhuboutputone-java", connection = "AzureWebJobsStorage") OutputBinding<List<String>> queue,
         final ExecutionContext context
     ) {
         context.getLogger().info("Java Event Hub trigger received message" + message);
-        output.setValue(message);
+        if (OUTPUT_ONE_PIPELINE.isFused()) {
+            queue.setValue(OUTPUT_ONE_PIPELINE.process(message));
+        } else {
+            output.setValue(OUTPUT_ONE_PIPELINE.runSegment(0, Collections.singletonList(message)));
+        }
     }
 
     *//**
      * This function verifies the above functions
+     * With the pipelines fused nothing arrives on their intermediate hubs, and the hop functions
+     * below stay idle; with LEARNING_pipeline_topology=multi-hop they run the second segment.
      *//*
     @FunctionName("EventHubOutputJson")
     public void TestEventHubOutputJson(
         @EventHubTrigger(name = "message", eventHubName = "test-outputjson-java", connection = "AzureWebJobsEventHubSender") String message,
-        @QueueOutput(name = "output", queueName = "test-eventhuboutputjson-java", connection = "AzureWebJobsStorage") OutputBinding<String> output,
+        @QueueOutput(name = "output", queueName = "test-eventhuboutputjson-java", connection = "AzureWebJobsStorage") OutputBinding<List<String>> output,
         final ExecutionContext context
     ) {
         context.getLogger().info("Java Event Hub Output function processed a message: " + message);
-        output.setValue(message);
+        output.setValue(OUTPUT_JSON_PIPELINE.runSegment(1, Collections.singletonList(message)));
     }
 
     @FunctionName("EventHubOutput")
@@ -130,11 +237,11 @@ public class EventHubTriggerFunction {
     @FunctionName("EventHubOutputInputOne")
     public void TestEventHubOutputInputOne(
         @EventHubTrigger(name = "message", eventHubName = "test-outputone-java", connection = "AzureWebJobsEventHubSender", cardinality = Cardinality.ONE) String message,
-        @QueueOutput(name = "output", queueName = "test-eventhuboutputone-java", connection = "AzureWebJobsStorage") OutputBinding<String> output,
+        @QueueOutput(name = "output", queueName = "test-eventhuboutputone-java", connection = "AzureWebJobsStorage") OutputBinding<List<String>> output,
         final ExecutionContext context
     ) {
         context.getLogger().info("Java Event Hub Output function processed a message: " + message);
-        output.setValue(message);
+        output.setValue(OUTPUT_ONE_PIPELINE.runSegment(1, Collections.singletonList(message)));
     }
 
     @FunctionName("EventHubTriggerAndOutputBinaryCardinalityManyListBinary")
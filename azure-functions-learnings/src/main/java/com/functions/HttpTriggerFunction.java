@@ -6,6 +6,8 @@
 
 package com.functions;
 
+import com.functions.execution.FunctionWrapper;
+import com.functions.startup.StartupProfiler;
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpMethod;
 import com.microsoft.azure.functions.HttpRequestMessage;
@@ -24,10 +26,17 @@ import java.util.Optional;
 public class HttpTriggerFunction {
     public static int count = 1;
 
+    private static final FunctionWrapper HTTP_TRIGGER = FunctionWrapper.of("HttpTrigger");
+    private static final FunctionWrapper HTTP_TRIGGER_RETRY = FunctionWrapper.of("HttpTriggerRetry");
+    private static final FunctionWrapper HTTP_TRIGGER_JAVA_VERSION = FunctionWrapper.of("HttpTriggerJavaVersion");
+    private static final FunctionWrapper HTTP_TRIGGER_STARTUP_PROFILE = FunctionWrapper.of("HttpTriggerStartupProfile");
+
     /**
      * This function listens at endpoint "/api/HttpExample". Two ways to invoke it using "curl" command in bash:
      * 1. curl -d "HTTP Body" {your host}/api/HttpExample
      * 2. curl "{your host}/api/HttpExample?name=HTTP%20Query"
+     * Requests beyond the admission limits are answered 429 or 503 before reaching it. The body
+     * does no blocking I/O, so it runs on the invocation thread.
      */
     @FunctionName("HttpTrigger")
     public HttpResponseMessage run(
@@ -37,17 +46,19 @@ public class HttpTriggerFunction {
                 authLevel = AuthorizationLevel.ANONYMOUS)
                 HttpRequestMessage<Optional<String>> request,
             final ExecutionContext context) {
-        context.getLogger().info("Java HTTP trigger processed a request.");
+        return HTTP_TRIGGER.http(request, context, () -> {
+            HTTP_TRIGGER.getLog().info(context, "Java HTTP trigger processed a request.");
 
-        // Parse query parameter
-        final String query = request.getQueryParameters().get("name");
-        final String name = request.getBody().orElse(query);
+            // Parse query parameter
+            final String query = request.getQueryParameters().get("name");
+            final String name = request.getBody().orElse(query);
 
-        if (name == null) {
-            return request.createResponseBuilder(HttpStatus.BAD_REQUEST).body("Please pass a name on the query string or in the request body").build();
-        } else {
-            return request.createResponseBuilder(HttpStatus.OK).body("Hello, " + name).build();
-        }
+            if (name == null) {
+                return request.createResponseBuilder(HttpStatus.BAD_REQUEST).body("Please pass a name on the query string or in the request body").build();
+            } else {
+                return request.createResponseBuilder(HttpStatus.OK).body("Hello, " + name).build();
+            }
+        });
     }
 
     /**
@@ -63,22 +74,24 @@ public class HttpTriggerFunction {
             authLevel = AuthorizationLevel.ANONYMOUS)
             HttpRequestMessage<Optional<String>> request,
         final ExecutionContext context) throws Exception {
-        context.getLogger().info("Java HTTP trigger processed a request.");
+        return HTTP_TRIGGER_RETRY.callHttp(request, context, () -> {
+            HTTP_TRIGGER_RETRY.getLog().info(context, "Java HTTP trigger processed a request.");
 
-        if(count<3) {
-            count ++;
-            throw new Exception("error");
-        }
+            if(count<3) {
+                count ++;
+                throw new Exception("error");
+            }
 
-        // Parse query parameter
-        final String query = request.getQueryParameters().get("name");
-        final String name = request.getBody().orElse(query);
+            // Parse query parameter
+            final String query = request.getQueryParameters().get("name");
+            final String name = request.getBody().orElse(query);
 
-        if (name == null) {
-            return request.createResponseBuilder(HttpStatus.BAD_REQUEST).body("Please pass a name on the query string or in the request body").build();
-        } else {
-            return request.createResponseBuilder(HttpStatus.OK).body(name).build();
-        }
+            if (name == null) {
+                return request.createResponseBuilder(HttpStatus.BAD_REQUEST).body("Please pass a name on the query string or in the request body").build();
+            } else {
+                return request.createResponseBuilder(HttpStatus.OK).body(name).build();
+            }
+        });
     }
 
     /**
@@ -94,10 +107,31 @@ public class HttpTriggerFunction {
             HttpRequestMessage<Optional<String>> request,
         final ExecutionContext context
     ) {
-        context.getLogger().info("Java HTTP trigger processed a request.");
-        final String javaVersion = getJavaVersion();
-        context.getLogger().info("Function - HttpTriggerJavaVersion" + javaVersion);
-        return request.createResponseBuilder(HttpStatus.OK).body(javaVersion).build();
+        return HTTP_TRIGGER_JAVA_VERSION.http(request, context, () -> {
+            HTTP_TRIGGER_JAVA_VERSION.getLog().info(context, "Java HTTP trigger processed a request.");
+            final String javaVersion = getJavaVersion();
+            HTTP_TRIGGER_JAVA_VERSION.getLog().info(context, () -> "Function - HttpTriggerJavaVersion" + javaVersion);
+            return request.createResponseBuilder(HttpStatus.OK).body(javaVersion).build();
+        });
+    }
+
+    /**
+     * This function listens at endpoint "/api/HttpTriggerStartupProfile".
+     * It reports how long after the JVM started each function of this worker was first invoked,
+     * so it needs a function key like the Metrics endpoint. Like every HTTP-triggered function it
+     * is behind admission control, with limits of its own.
+     */
+    @FunctionName("HttpTriggerStartupProfile")
+    public static HttpResponseMessage HttpTriggerStartupProfile(
+        @HttpTrigger(
+            name = "req",
+            methods = {HttpMethod.GET},
+            authLevel = AuthorizationLevel.FUNCTION)
+            HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context
+    ) {
+        return HTTP_TRIGGER_STARTUP_PROFILE.http(request, context,
+            () -> request.createResponseBuilder(HttpStatus.OK).body(StartupProfiler.report()).build());
     }
 
     public static String getJavaVersion() {
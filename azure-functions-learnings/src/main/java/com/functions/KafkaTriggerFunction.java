@@ -1,12 +1,25 @@
 package com.functions;
 
+import com.functions.execution.FunctionWrapper;
+import com.functions.kafka.ForwardedOffsets;
+import com.functions.kafka.KafkaBatch;
+import com.functions.kafka.KafkaBatchingProducer;
+import com.functions.kafka.KafkaDedupIndex;
+import com.functions.kafka.KafkaProducerConfig;
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 public class KafkaTriggerFunction {
     /*
+    private static final FunctionWrapper KAFKA_OUTPUT = FunctionWrapper.of("HttpTriggerAndKafkaOutput");
+    private static final FunctionWrapper KAFKA_BATCHED_OUTPUT = FunctionWrapper.of("HttpTriggerAndKafkaBatchedOutput");
+
     @FunctionName("HttpTriggerAndKafkaOutput")
     public HttpResponseMessage HttpTriggerAndKafkaOutput(
         @HttpTrigger(name = "req", methods = {HttpMethod.GET}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
@@ -21,11 +34,62 @@ public class KafkaTriggerFunction {
             protocol = BrokerProtocol.SASLSSL
         ) OutputBinding<String> output,
         final ExecutionContext context) {
-        String message = request.getQueryParameters().get("message");
-        message = request.getBody().orElse(message);
-        context.getLogger().info("Java Http trigger received Message:" + message + " messages for Kafka Output");
-        output.setValue(message);
-        return request.createResponseBuilder(HttpStatus.OK).body(message).build();
+        return KAFKA_OUTPUT.http(request, context, () -> {
+            String message = request.getBody().orElse(request.getQueryParameters().get("message"));
+            context.getLogger().info("Java Http trigger received Message:" + message + " messages for Kafka Output");
+            output.setValue(message);
+            return request.createResponseBuilder(HttpStatus.OK).body(message).build();
+        });
+    }
+
+    *//**
+     * Batched variant of HttpTriggerAndKafkaOutput for high-QPS ingest: the body carries one
+     * message per line, and they leave in batches of up to batch.size for the partition of the
+     * "key" query parameter. A request whose "idempotencyKey" query parameter matches one that
+     * was handed to the binding recently is not sent again; its key is recorded once the output
+     * is set, and the host writes the output after the body returns, so a request whose write
+     * fails there is still treated as sent by this instance. Every message goes out through
+     * this invocation's own output binding before it is acknowledged; holding records for a
+     * later invocation would lose them when the instance is recycled or scaled in.
+     *//*
+    private static final KafkaBatchingProducer BATCHING_PRODUCER = new KafkaBatchingProducer("ci",
+        KafkaProducerConfig.defaults().partitions(6).batchSizeBytes(64 * 1024));
+
+    @FunctionName("HttpTriggerAndKafkaBatchedOutput")
+    public HttpResponseMessage HttpTriggerAndKafkaBatchedOutput(
+        @HttpTrigger(name = "req", methods = {HttpMethod.GET, HttpMethod.POST}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
+        @KafkaOutput(
+            name = "httpTriggerAndKafkaBatchedOutput",
+            topic = "ci",
+            brokerList = "%BrokerList%",
+            username = "%ConfluentCloudUsername%",
+            password = "%ConfluentCloudPassword%",
+            authenticationMode = BrokerAuthenticationMode.PLAIN,
+            sslCaLocation = "confluent_cloud_cacert.pem",
+            protocol = BrokerProtocol.SASLSSL,
+            batchSize = 10000,
+            enableIdempotence = true
+        ) OutputBinding<String[]> output,
+        final ExecutionContext context) {
+        return KAFKA_BATCHED_OUTPUT.http(request, context, () -> {
+            String body = request.getBody().orElse(request.getQueryParameters().get("message"));
+            String key = request.getQueryParameters().get("key");
+            String idempotencyKey = request.getQueryParameters().get("idempotencyKey");
+            List<String> messages = body == null ? new ArrayList<>() : Arrays.asList(body.split("\\r?\\n"));
+            List<KafkaBatch> batches = BATCHING_PRODUCER.sendNow(key, idempotencyKey, messages);
+            if (batches.isEmpty()) {
+                return request.createResponseBuilder(HttpStatus.OK)
+                    .body(messages.isEmpty() ? "no messages" : "duplicate idempotency key " + idempotencyKey).build();
+            }
+            List<String> values = new ArrayList<>(messages.size());
+            for (KafkaBatch batch : batches) {
+                values.addAll(Arrays.asList(batch.values()));
+            }
+            context.getLogger().info("Java Http trigger sending " + values.size() + " messages in " + batches.size() + " batches for Kafka Output");
+            output.setValue(values.toArray(new String[0]));
+            BATCHING_PRODUCER.acknowledge(batches);
+            return request.createResponseBuilder(HttpStatus.OK).body(values.size() + " messages").build();
+        });
     }
 
     @FunctionName("KafkaTriggerAndKafkaOutput")
@@ -47,5 +111,56 @@ public class KafkaTriggerFunction {
         context.getLogger().info("Java Kafka Output function processed a message: " + message);
         output.setValue(message);
     }
+
+    *//**
+     * Deduplicating bridge for KafkaTriggerAndKafkaOutput. Rebalances redeliver records that were
+     * already forwarded, often to another instance. The record coordinates are checked against
+     * DEDUP_INDEX, a bounded bloom filter + exact set that only knows what this instance
+     * forwarded, and then against FORWARDED, each partition's forwarded offset in
+     * LEARNING_kafka_offset_directory, which every instance shares. Both record a record only
+     * once the body has set the output, so a delivery that fails is forwarded again on
+     * redelivery. The host writes the queue message after the body returns; a record whose
+     * write fails there is still marked forwarded.
+     *//*
+    private static final KafkaDedupIndex DEDUP_INDEX = new KafkaDedupIndex(1_000_000, 0.001, 100_000);
+
+    private static final ForwardedOffsets FORWARDED = ForwardedOffsets.fromSettings();
+
+    static {
+        TimerTriggerFunction.MAINTENANCE.register("kafka-dedup-generation", budget -> {
+            DEDUP_INDEX.expireGeneration(TimeUnit.MINUTES.toMillis(30));
+            return true;
+        });
+    }
+
+    @FunctionName("KafkaTriggerAndQueueDedupBridge")
+    public void KafkaTriggerAndQueueDedupBridge(
+        @KafkaTrigger(
+            name = "kafkaTriggerAndQueueDedupBridge",
+            topic = "ci",
+            brokerList = "%BrokerList%",
+            consumerGroup = "$Default",
+            username = "%ConfluentCloudUsername%",
+            password = "%ConfluentCloudPassword%",
+            authenticationMode = BrokerAuthenticationMode.PLAIN,
+            protocol = BrokerProtocol.SASLSSL,
+            sslCaLocation = "confluent_cloud_cacert.pem",
+            dataType = "string"
+        ) String message,
+        @BindingName("Topic") String topic,
+        @BindingName("Partition") Integer partition,
+        @BindingName("Offset") Long offset,
+        @QueueOutput(name = "output", queueName = "test-kafka-output-cardinality-one-java", connection = "AzureWebJobsStorage") OutputBinding<String> output,
+        final ExecutionContext context) {
+        if (DEDUP_INDEX.check(topic, partition, offset) || FORWARDED.isForwarded(topic, partition, offset)) {
+            context.getLogger().info("Java Kafka bridge suppressed redelivered record " + KafkaDedupIndex.key(topic, partition, offset)
+                + " (" + DEDUP_INDEX + ", " + FORWARDED + ")");
+            return;
+        }
+        output.setValue(message);
+        // A failed write fails the invocation, so the host does not write the output either
+        FORWARDED.markForwarded(topic, partition, offset);
+        DEDUP_INDEX.markCommitted(topic, partition, offset);
+    }
     */
 }
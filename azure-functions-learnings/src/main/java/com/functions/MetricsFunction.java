@@ -0,0 +1,52 @@
+package com.functions;
+
+import com.functions.execution.FunctionWrapper;
+import com.functions.metrics.MetricsRegistry;
+import com.functions.startup.StartupProfiler;
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpMethod;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Exposes the metrics of this worker in the Prometheus text format.
+ */
+public class MetricsFunction {
+    private static final FunctionWrapper METRICS = FunctionWrapper.of("Metrics");
+
+    /**
+     * This function listens at endpoint "/api/metrics". Point a Prometheus scrape job at it with the
+     * function key in the x-functions-key header. Every instance reports only its own invocations.
+     * Scrapes go through admission control like any HTTP request, but against the limits of this
+     * function alone, so an overloaded function does not turn its own metrics away.
+     */
+    @FunctionName("Metrics")
+    public HttpResponseMessage metrics(
+        @HttpTrigger(
+            name = "req",
+            methods = {HttpMethod.GET},
+            authLevel = AuthorizationLevel.FUNCTION,
+            route = "metrics")
+            HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context) {
+        return METRICS.http(request, context, () -> {
+            MetricsRegistry registry = MetricsRegistry.global();
+            for (Map.Entry<String, Long> entry : StartupProfiler.timeToFirstInvocation().entrySet()) {
+                double seconds = entry.getValue() / 1e3;
+                registry.gauge("function_first_invocation_seconds", "Time from JVM start to the first invocation.",
+                    () -> seconds, "function", entry.getKey());
+            }
+            return request.createResponseBuilder(HttpStatus.OK)
+                .header("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+                .body(registry.toPrometheusText())
+                .build();
+        });
+    }
+}
@@ -1,65 +1,127 @@
 package com.functions;
 
+import com.functions.claimcheck.ClaimCheck;
+import com.functions.claimcheck.ClaimCheckedPayload;
+import com.functions.execution.FunctionWrapper;
+import com.functions.journal.SpilloverSender;
+import com.functions.json.JsonStreamReader;
+import com.functions.maintenance.ShardedWorkload;
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Azure Functions with Azure Storage Queue.
  * https://docs.microsoft.com/en-us/azure/azure-functions/functions-bindings-storage-queue-trigger?tabs=java
  */
 public class QueueTriggerFunction {
+    static {
+        // Blobs outlive the longest a reference can wait in a queue, the claim-check's message
+        // TTL setting plus a day. The blob store is shared, so the instances split the expiry by
+        // shard instead of all listing the same blobs; a shard is done once a slice finds fewer
+        // than it could delete
+        TimerTriggerFunction.registerSharded("claim-check-expiry", new ShardedWorkload() {
+            @Override
+            public int shardCount() {
+                return ClaimCheck.EXPIRY_SHARDS;
+            }
+
+            @Override
+            public boolean runSlice(int shard, int budget) throws IOException {
+                ClaimCheck claimCheck = ClaimCheck.shared();
+                return claimCheck.expire(shard, claimCheck.getBlobMaxAgeMillis(), budget) < budget;
+            }
+        });
+    }
+
+    /**
+     * Serializes the POJO itself so an oversized one can be sent as a claim-check reference; the
+     * binding would otherwise serialize it after the function returns, past any size check. The
+     * output is therefore bound as a String rather than a TestData: the message is the same
+     * {"id":...} JSON the binding wrote for a TestData, or a reference to it once it is over
+     * the threshold, which a consumer turns back into the JSON with ClaimCheck.resolve.
+     */
+    private static final FunctionWrapper QUEUE_TRIGGER_AND_OUTPUT_POJO = FunctionWrapper.of("QueueTriggerAndOutputPOJO");
+
+    @FunctionName("QueueTriggerAndOutputPOJO")
+    public void queuetriggerandoutputPOJO(
+        @QueueTrigger(name = "message", queueName = "test-input-java-pojo", connection = "AzureWebJobsStorage") TestData message,
+        @QueueOutput(name = "output", queueName = "test-output-java-pojo", connection = "AzureWebJobsStorage") OutputBinding<String> output,
+        final ExecutionContext context
+    ) {
+        QUEUE_TRIGGER_AND_OUTPUT_POJO.run(context, () -> {
+            context.getLogger().info("Java Queue trigger POJO function processed a message: " + message.id);
+            StringBuilder json = new StringBuilder("{\"id\":");
+            JsonStreamReader.writeQuoted(json, message.id);
+            output.setValue(ClaimCheck.shared().offload(json.append('}').toString()));
+        });
+    }
+
+    public static class TestData {
+        public String id;
+    }
+
     /**
      * This function will be invoked when a http request is received. The message contents are provided as output to this function.
+     * The output goes through a queue client rather than the output binding, whose write happens
+     * after the function returns: while test-output-java throttles, messages spill to the local
+     * journal and are sent in order once it recovers. The sender decides between sending and
+     * spilling under one lock, so concurrent invocations send one at a time and none overtakes a
+     * message another is spilling. Needs the azure-sdk profile and LEARNING_journal_directory.
      */
     /*
+    private static final SpilloverSender OUTPUT_QUEUE = SpilloverSender.fromSettings("test-output-java",
+        AzureClients.storageQueue("test-output-java"));
+
+    *//**
+     * A large message arrives as a claim-check reference; it is forwarded as it is, so the
+     * payload is only downloaded by whoever finally reads it with payload.get().
+     *//*
     @FunctionName("QueueTriggerAndOutput")
     public void queuetriggerandoutput(
         @QueueTrigger(name = "message", queueName = "test-input-java", connection = "AzureWebJobsStorage") String message,
-        @QueueOutput(name = "output", queueName = "test-output-java", connection = "AzureWebJobsStorage") OutputBinding<String> output,
         final ExecutionContext context
     ) {
-        context.getLogger().info("Java Queue trigger function processed a message: " + message);
-        output.setValue(message);
+        ClaimCheckedPayload payload = ClaimCheck.shared().resolve(message);
+        context.getLogger().info("Java Queue trigger function processed a message of " + payload.length() + " bytes"
+            + (payload.isClaimChecked() ? " (claim-checked)" : ": " + message));
+        OUTPUT_QUEUE.send(payload.getMessage().getBytes(StandardCharsets.UTF_8));
     }
 
+    private static final FunctionWrapper QUEUE_OUTPUT_POJO_LIST = FunctionWrapper.of("QueueOutputPOJOList");
+
     @FunctionName("QueueOutputPOJOList")
     public HttpResponseMessage QueueOutputPOJOList(@HttpTrigger(name = "req", methods = {HttpMethod.GET,
         HttpMethod.POST}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
                                                    @QueueOutput(name = "output", queueName = "test-output-java-pojo", connection = "AzureWebJobsStorage") OutputBinding<List<TestData>> itemsOut,
                                                    final ExecutionContext context) {
-        context.getLogger().info("Java HTTP trigger processed a request.");
-
-        String query = request.getQueryParameters().get("queueMessageId");
-        String queueMessageId = request.getBody().orElse(query);
-        itemsOut.setValue(new ArrayList<TestData>());
-        if (queueMessageId != null) {
-            TestData testData1 = new TestData();
-            testData1.id = "msg1" + queueMessageId;
-            TestData testData2 = new TestData();
-            testData2.id = "msg2" + queueMessageId;
-
-            itemsOut.getValue().add(testData1);
-            itemsOut.getValue().add(testData2);
-
-            return request.createResponseBuilder(HttpStatus.OK).body("Hello, " + queueMessageId).build();
-        } else {
-            return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body("Did not find expected items in CosmosDB input list").build();
-        }
-    }
+        return QUEUE_OUTPUT_POJO_LIST.http(request, context, () -> {
+            context.getLogger().info("Java HTTP trigger processed a request.");
 
-    @FunctionName("QueueTriggerAndOutputPOJO")
-    public void queuetriggerandoutputPOJO(
-        @QueueTrigger(name = "message", queueName = "test-input-java-pojo", connection = "AzureWebJobsStorage") TestData message,
-        @QueueOutput(name = "output", queueName = "test-output-java-pojo", connection = "AzureWebJobsStorage") OutputBinding<TestData> output,
-        final ExecutionContext context
-    ) {
-        context.getLogger().info("Java Queue trigger POJO function processed a message: " + message.id);
-        output.setValue(message);
+            String query = request.getQueryParameters().get("queueMessageId");
+            String queueMessageId = request.getBody().orElse(query);
+            itemsOut.setValue(new ArrayList<TestData>());
+            if (queueMessageId != null) {
+                TestData testData1 = new TestData();
+                testData1.id = "msg1" + queueMessageId;
+                TestData testData2 = new TestData();
+                testData2.id = "msg2" + queueMessageId;
+
+                itemsOut.getValue().add(testData1);
+                itemsOut.getValue().add(testData2);
+
+                return request.createResponseBuilder(HttpStatus.OK).body("Hello, " + queueMessageId).build();
+            } else {
+                return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Did not find expected items in CosmosDB input list").build();
+            }
+        });
     }
 
     @FunctionName("QueueTriggerMetadata")
@@ -73,10 +135,6 @@ public class QueueTriggerFunction {
         testData.id = metadataId;
         output.setValue(testData);
     }
-
-    public static class TestData {
-        public String id;
-    }
     */
 }
 
@@ -1,11 +1,18 @@
 package com.functions;
 
+import com.functions.claimcheck.ClaimCheck;
+import com.functions.claimcheck.ClaimCheckedPayload;
+import com.functions.execution.FunctionWrapper;
+import com.functions.journal.SpilloverSender;
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpMethod;
 import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
 import com.microsoft.azure.functions.OutputBinding;
 import com.microsoft.azure.functions.annotation.*;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 /**
@@ -15,14 +22,27 @@ import java.util.Optional;
 public class ServiceBusQueueTriggerFunction {
 
     /*
+    private static final SpilloverSender SINGLE_OUTPUT = SpilloverSender.fromSettings("test-servicebusqueuesingle-java",
+        AzureClients.serviceBusQueue("test-servicebusqueuesingle-java"));
+
+    *//**
+     * Copies the message to the test-servicebusqueuesingle-java queue of the same namespace with a
+     * Service Bus sender, and completes the message even while that queue throttles; the copy
+     * waits in the spill journal instead of the message being redelivered and processed again.
+     * Needs the azure-sdk profile and LEARNING_journal_directory. Sends from
+     * concurrent invocations go through the sender's lock one at a time, so the copies keep the
+     * order they were journaled in. A claim-check reference is copied as it is, without
+     * downloading the payload.
+     *//*
     @FunctionName("ServiceBusQueueTrigger")
     public void serviceBusQueueTrigger(
         @ServiceBusQueueTrigger(name = "message", queueName = "SBQueueNameSingle", connection = "AzureWebJobsServiceBus") String message,
-        @QueueOutput(name = "output", queueName = "test-servicebusqueuesingle-java", connection = "AzureWebJobsStorage") OutputBinding<String> output,
         final ExecutionContext context
     ) {
-        context.getLogger().info("Java Service Bus Queue trigger function processed a message: " + message);
-        output.setValue(message);
+        ClaimCheckedPayload payload = ClaimCheck.shared().resolve(message);
+        context.getLogger().info("Java Service Bus Queue trigger function processed a message of " + payload.length() + " bytes"
+            + (payload.isClaimChecked() ? " (claim-checked)" : ": " + message));
+        SINGLE_OUTPUT.send(payload.getMessage().getBytes(StandardCharsets.UTF_8));
     }
 
     @FunctionName("ServiceBusQueueBatchTrigger")
@@ -37,16 +57,23 @@ public class ServiceBusQueueTriggerFunction {
 
     *//**
      * This function will be invoked when a http request is received. The message contents are provided as output to this function.
+     * It answers 202 once the message is handed to the binding, or 429/503 when admission
+     * control turns the request away.
      *//*
+    private static final FunctionWrapper SERVICE_BUS_QUEUE_OUTPUT = FunctionWrapper.of("ServiceBusQueueOutput");
+
     @FunctionName("ServiceBusQueueOutput")
-    public void serviceBusQueueOutput(
+    public HttpResponseMessage serviceBusQueueOutput(
         @HttpTrigger(name = "req", methods = {HttpMethod.GET, HttpMethod.POST}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
         @ServiceBusQueueOutput(name = "output", queueName = "%SBQueueName%", connection = "AzureWebJobsServiceBus") OutputBinding<String> output,
         final ExecutionContext context
     ) {
-        String message = request.getBody().orElse("default message");
-        output.setValue(message);
-        context.getLogger().info("Java Service Bugs Queue output function got a message: " + message);
+        return SERVICE_BUS_QUEUE_OUTPUT.http(request, context, () -> {
+            String message = request.getBody().orElse("default message");
+            output.setValue(ClaimCheck.shared().offload(message));
+            context.getLogger().info("Java Service Bugs Queue output function got a message: " + message);
+            return request.createResponseBuilder(HttpStatus.ACCEPTED).build();
+        });
     }
     */
 
@@ -1,9 +1,12 @@
 package com.functions;
 
-
+import com.functions.claimcheck.ClaimCheck;
+import com.functions.execution.FunctionWrapper;
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpMethod;
 import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
 import com.microsoft.azure.functions.OutputBinding;
 import com.microsoft.azure.functions.annotation.*;
 
@@ -52,16 +55,23 @@ public class ServiceBusTopicTriggerFunction {
 
     *//**
      * This function will be invoked when a http request is received. The message contents are provided as output to this function.
+     * It answers 202 once the message is handed to the binding, or 429/503 when admission
+     * control turns the request away.
      *//*
+    private static final FunctionWrapper SERVICE_BUS_TOPIC_OUTPUT = FunctionWrapper.of("ServiceBusTopicOutput");
+
     @FunctionName("ServiceBusTopicOutput")
-    public void serviceBusTopicOutput(
+    public HttpResponseMessage serviceBusTopicOutput(
         @HttpTrigger(name = "req", methods = {HttpMethod.GET, HttpMethod.POST}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
         @ServiceBusTopicOutput(name = "message", topicName = "%SBTopicName%", subscriptionName = "%SBTopicSubName%", connection = "AzureWebJobsServiceBus") OutputBinding<String> output,
         final ExecutionContext context
     ) {
-        String message = request.getBody().orElse("default message");
-        output.setValue(message);
-        context.getLogger().info("Java Service Bus Topic output function got a message: " + message);
+        return SERVICE_BUS_TOPIC_OUTPUT.http(request, context, () -> {
+            String message = request.getBody().orElse("default message");
+            output.setValue(ClaimCheck.shared().offload(message));
+            context.getLogger().info("Java Service Bus Topic output function got a message: " + message);
+            return request.createResponseBuilder(HttpStatus.ACCEPTED).build();
+        });
     }
     */
 }
@@ -1,18 +1,49 @@
 package com.functions;
 
+import com.functions.execution.FunctionWrapper;
+import com.functions.table.BatchedTableWriter;
+import com.functions.table.PersonCache;
+import com.functions.table.PersonFilter;
+import com.functions.table.PersonPage;
+import com.functions.table.PersonQuery;
+import com.functions.table.PersonTable;
+import com.functions.table.TableBatchSink;
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpMethod;
 import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
 import com.microsoft.azure.functions.OutputBinding;
 import com.microsoft.azure.functions.annotation.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 
 /**
  * Azure Functions with Azure Storage table.
  * https://docs.microsoft.com/en-us/azure/azure-functions/functions-bindings-storage-table-output?tabs=java
  */
 public class TableFunction {
+    /**
+     * Person rows shared by the TableInput lookups and invalidated by TableOutput writes. The
+     * cache is per instance, so a row written through another instance can be read stale here
+     * for up to the 60 s TTL.
+     */
+    public static final PersonCache PERSON_CACHE = new PersonCache(10_000, 60, 10, TimeUnit.SECONDS);
+
+    static {
+        // One slice per round: the TTL runs from load time, so expired entries are spread through
+        // the LRU order and further slices would mostly revisit live ones
+        TimerTriggerFunction.MAINTENANCE.register("person-cache-expiry", budget -> {
+            PERSON_CACHE.expire(budget);
+            return true;
+        });
+    }
+
     /**
      * This function will be invoked when a new queue message is received.
      */
@@ -27,19 +58,136 @@ public class TableFunction {
         context.getLogger().info("Java Table Input function processed a Person entity:" + personEntity);
     }
 
+    *//**
+     * Cached variant of TableInput. Many queue messages reference the same rows, so the point read
+     * goes through PERSON_CACHE instead of a TableInput binding that reads on every invocation.
+     * PERSON_READER is the point read used on a miss, TableClient.getEntity on the Person table;
+     * PERSON_TABLE comes from {@link AzureClients}, so this block needs the azure-sdk profile.
+     *//*
+    private static final PersonTable PERSON_TABLE = AzureClients.personTable("Person");
+    private static final BiFunction<String, String, Person> PERSON_READER = PERSON_TABLE::get;
+
+    @FunctionName("TableInputCached")
+    public void tableInputCachedJava(
+        @QueueTrigger(name = "message", queueName = "mytablequeue", connection = "AzureWebJobsStorage") String message,
+        final ExecutionContext context
+    ) {
+        Person person = PERSON_CACHE.get("firstPartition", message, PERSON_READER);
+        context.getLogger().info("Java Table Input function processed a Person entity:" + (person == null ? null : person.Name)
+            + " cache " + PERSON_CACHE);
+    }
+
     *//**
      * This function will be invoked when a new http request is received at the specified path.
+     * It answers 202 once the entity is handed to the binding, or 429/503 when admission
+     * control turns the request away.
      *//*
+    private static final FunctionWrapper TABLE_OUTPUT = FunctionWrapper.of("TableOutput");
+
     @FunctionName("TableOutput")
-    public void tableOutputJava(
+    public HttpResponseMessage tableOutputJava(
         @HttpTrigger(name = "req", methods = {HttpMethod.GET, HttpMethod.POST}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
         @TableOutput(name = "myOutputTable", tableName = "Person", connection = "AzureWebJobsStorage") OutputBinding<Person> myOutputTable,
         final ExecutionContext context
     ) {
-        String httpbody = request.getBody().orElse("default");
-        myOutputTable.setValue(new Person(httpbody + "Partition", httpbody + "Row", httpbody + "Name"));
-        context.getLogger().info("Java Table Output function write a new entity into table Person with name: " + httpbody + "Name");
+        return TABLE_OUTPUT.http(request, context, () -> {
+            String httpbody = request.getBody().orElse("default");
+            Person person = new Person(httpbody + "Partition", httpbody + "Row", httpbody + "Name");
+            myOutputTable.setValue(person);
+            PERSON_CACHE.invalidate(person.PartitionKey, person.RowKey);
+            context.getLogger().info("Java Table Output function write a new entity into table Person with name: " + httpbody + "Name");
+            return request.createResponseBuilder(HttpStatus.ACCEPTED).build();
+        });
+    }
+
+    *//**
+     * Batched variant of TableOutput. The body holds one "partitionKey,rowKey,name" line per entity;
+     * entities are grouped by PartitionKey and written as entity-group transactions through
+     * PERSON_SINK, TableClient.submitTransaction on the Person table, before the response is sent.
+     * The partitions left at the end are written concurrently on the function's executor. Rows
+     * the service rejects are reported with a 207 instead of failing their whole transaction.
+     *//*
+    private static final TableBatchSink PERSON_SINK = PERSON_TABLE;
+
+    private static final FunctionWrapper TABLE_OUTPUT_BATCH = FunctionWrapper.of("TableOutputBatch");
+
+    @FunctionName("TableOutputBatch")
+    public HttpResponseMessage tableOutputBatchJava(
+        @HttpTrigger(name = "req", methods = {HttpMethod.POST}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context
+    ) {
+        return TABLE_OUTPUT_BATCH.http(request, context, () -> {
+            BatchedTableWriter writer = new BatchedTableWriter(PERSON_SINK);
+            List<Person> people = new ArrayList<>();
+            for (String line : request.getBody().orElse("").split("\n")) {
+                String[] fields = line.trim().split(",", 3);
+                if (fields.length == 3) {
+                    people.add(new Person(fields[0], fields[1], fields[2]));
+                }
+            }
+            BatchedTableWriter.FlushResult result = writer.addAll(people);
+            result.merge(writer.flush(TABLE_OUTPUT_BATCH.getExecutor()));
+            for (Person person : people) {
+                PERSON_CACHE.invalidate(person.PartitionKey, person.RowKey);
+            }
+            context.getLogger().info("Java Table Output batch function wrote entities into table Person: " + result);
+            return request.createResponseBuilder(result.getFailed().isEmpty() ? HttpStatus.OK : HttpStatus.MULTI_STATUS)
+                .body(result.toString()).build();
+        });
+    }
+
+    *//**
+     * Partition range-scan for reporting jobs: one paged query instead of N point reads.
+     * /api/TableRangeScan?partitionKey=p&from=a&to=b&select=Name&nameStartsWith=J&continuation=...
+     * The query, filter included, is sent as one OData $filter and $select, so the table does the
+     * filtering and projection; the next page's token is returned in the x-ms-continuation header.
+     *//*
+    private static final BiFunction<PersonQuery, String, PersonPage> PERSON_QUERY = PERSON_TABLE::query;
+
+    private static final FunctionWrapper TABLE_RANGE_SCAN = FunctionWrapper.of("TableRangeScan");
+
+    @FunctionName("TableRangeScan")
+    public HttpResponseMessage tableRangeScanJava(
+        @HttpTrigger(name = "req", methods = {HttpMethod.GET}, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
+        final ExecutionContext context
+    ) {
+        return TABLE_RANGE_SCAN.http(request, context, () -> {
+            Map<String, String> params = request.getQueryParameters();
+            String partitionKey = params.get("partitionKey");
+            if (partitionKey == null) {
+                return request.createResponseBuilder(HttpStatus.BAD_REQUEST).body("Please pass a partitionKey on the query string").build();
+            }
+            PersonQuery query;
+            String continuation = params.get("continuation");
+            try {
+                query = PersonQuery.partition(partitionKey)
+                    .rowKeyRange(params.get("from"), params.get("to"))
+                    .pageSize(Integer.parseInt(params.getOrDefault("top", "100")));
+                String select = params.get("select");
+                if (select != null) {
+                    query.select(select.isEmpty() ? new String[0] : select.split(","));
+                }
+                String prefix = params.get("nameStartsWith");
+                if (prefix != null) {
+                    query.filter(PersonFilter.startsWith(PersonQuery.NAME, prefix));
+                }
+                if (continuation != null) {
+                    PersonPage.decodeToken(continuation, partitionKey);
+                }
+            } catch (IllegalArgumentException e) {
+                // Also a top that is not a number: NumberFormatException is an IllegalArgumentException
+                return request.createResponseBuilder(HttpStatus.BAD_REQUEST).body(e.getMessage()).build();
+            }
+            PersonPage page = PERSON_QUERY.apply(query, continuation);
+            context.getLogger().info("Java Table range scan returned " + page.getEntities().size() + " of " + page.getScanned() + " scanned entities");
+            HttpResponseMessage.Builder response = request.createResponseBuilder(HttpStatus.OK).body(page.getEntities());
+            if (page.getContinuationToken() != null) {
+                response.header("x-ms-continuation", page.getContinuationToken());
+            }
+            return response.build();
+        });
     }
+    */
 
     public static class Person {
         public String PartitionKey;
@@ -52,6 +200,5 @@ public class TableFunction {
             this.Name = n;
         }
     }
-    */
 }
 
@@ -1,10 +1,28 @@
 package com.functions;
 
+import com.functions.execution.FunctionWrapper;
+import com.functions.maintenance.FileLeaseStore;
+import com.functions.maintenance.LeaseStore;
+import com.functions.maintenance.MaintenanceEngine;
+import com.functions.maintenance.MaintenanceTask;
+import com.functions.maintenance.ScheduleInterval;
+import com.functions.maintenance.ShardedMaintenanceTask;
+import com.functions.maintenance.ShardedWorkload;
+import com.functions.maintenance.TimerInfo;
 import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.OutputBinding;
 import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.QueueOutput;
+import com.microsoft.azure.functions.annotation.QueueTrigger;
 import com.microsoft.azure.functions.annotation.TimerTrigger;
 
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Azure Functions with Timer trigger.
@@ -14,14 +32,135 @@ import java.time.LocalDateTime;
  * Time trigger requires a storage account to run.
  */
 public class TimerTriggerFunction {
+    private static final long DEFAULT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long INTERVAL_MILLIS = ScheduleInterval.shortestMillis(System.getenv("LEARNING_schedule_cron"), DEFAULT_INTERVAL_MILLIS);
+    /**
+     * Two thirds of the schedule's interval, so a run never overlaps the next one, and at most
+     * four minutes, below the default five-minute function timeout.
+     */
+    private static final long TIME_BOX_MILLIS = Math.min(INTERVAL_MILLIS * 2 / 3, TimeUnit.MINUTES.toMillis(4));
+    private static final FunctionWrapper TIMER_TRIGGER = FunctionWrapper.of("TimerTrigger");
+
+    /**
+     * Housekeeping for the shared caches, dedup indexes and batchers. Functions that own such a
+     * component register a task for it here from their static initializer, so only the
+     * components of loaded functions are maintained.
+     */
+    public static final MaintenanceEngine MAINTENANCE = new MaintenanceEngine(checkpointFile(), MaintenanceEngine.DEFAULT_SLICE_BUDGET);
+
+    /**
+     * Shard leases for periodic work on shared state, in LEARNING_lease_directory, which must be
+     * storage every instance mounts: there is no default, because a local directory would let
+     * every instance take every shard. Opened on the first sharded slice, so registering
+     * sharded work needs no lease directory; without one, the sharded tasks fail their slices
+     * and the rest of the maintenance still runs.
+     */
+    private static LeaseStore shardLeases;
+
+    private static synchronized LeaseStore shardLeases() {
+        if (shardLeases == null) {
+            shardLeases = new FileLeaseStore(sharedLeaseDirectory());
+        }
+        return shardLeases;
+    }
+
+    private static Path sharedLeaseDirectory() {
+        String configured = System.getenv("LEARNING_lease_directory");
+        if (configured == null || configured.trim().isEmpty()) {
+            throw new IllegalStateException("Sharded maintenance needs LEARNING_lease_directory set to a directory every instance mounts");
+        }
+        Path directory = Paths.get(configured.trim()).toAbsolutePath().normalize();
+        if (directory.startsWith(Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize())) {
+            throw new IllegalStateException("LEARNING_lease_directory " + directory + " is in the instance-local temp directory");
+        }
+        return directory;
+    }
+
+    private static Path checkpointFile() {
+        return setting("LEARNING_maintenance_checkpoint", "timer-maintenance.properties");
+    }
+
+    private static Path setting(String name, String defaultFileName) {
+        String configured = System.getenv(name);
+        return configured != null ? Paths.get(configured) : Paths.get(System.getProperty("java.io.tmpdir"), defaultFileName);
+    }
+
+    private static String instanceId() {
+        String instance = System.getenv("WEBSITE_INSTANCE_ID");
+        return instance != null ? instance : ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    /**
+     * Registers work on shared state, split into shards that the instances running this timer
+     * divide among themselves through leases instead of one instance doing all of it. Leases
+     * outlive a few missed runs before another instance may take them over.
+     */
+    public static void registerSharded(String name, ShardedWorkload workload) {
+        MAINTENANCE.register(name, new MaintenanceTask() {
+            private ShardedMaintenanceTask task;
+
+            @Override
+            public boolean runSlice(int budget) throws Exception {
+                if (task == null) {
+                    task = new ShardedMaintenanceTask(name, workload, shardLeases(), instanceId(), 3 * INTERVAL_MILLIS);
+                }
+                return task.runSlice(budget);
+            }
+        });
+    }
+
     /**
      * This function will be invoked periodically according to the specified schedule.
      * The below function is executed each time the minutes have a value divisible by five
+     * Each run does a time-boxed slice of maintenance and resumes where the previous one stopped;
+     * a past-due run also catches up on the rounds that were missed.
      */
     @FunctionName("TimerTrigger")
     public void timerHandler(
         @TimerTrigger(name = "timerInfo", schedule = "%LEARNING_schedule_cron%") String timerInfo,
         final ExecutionContext context) {
-        context.getLogger().info("Java Timer trigger function executed at: " + LocalDateTime.now());
+        runMaintenance(TIMER_TRIGGER, timerInfo, context);
+    }
+
+    private static void runMaintenance(FunctionWrapper function, String timerInfo, ExecutionContext context) {
+        function.run(context, () -> {
+            TimerInfo timer = TimerInfo.parse(timerInfo);
+            int catchUpRounds = MAINTENANCE.catchUpRounds(timer.isPastDue(), timer.getIntervalMillis(INTERVAL_MILLIS));
+            MaintenanceEngine.RunReport report = MAINTENANCE.run(TIME_BOX_MILLIS, catchUpRounds, context.getLogger());
+            LocalDateTime executedAt = LocalDateTime.now();
+            function.getLog().info(context, () -> "Java Timer trigger function executed at: " + executedAt
+                + " pastDue=" + timer.isPastDue() + " maintenance: " + report);
+        });
+    }
+
+    /**
+     * Scale-out variant. The host runs a timer on one instance at a time, so the timer only fans
+     * out tick messages; the queue trigger spreads them over the instances and each one runs its
+     * own maintenance, claiming its share of the sharded work through the shard leases. Every
+     * tick carries the timer's schedule status, so a past-due timer makes each instance catch up.
+     */
+    private static final int TICKS_PER_RUN = 8;
+    private static final FunctionWrapper TIMER_MAINTENANCE_FAN_OUT = FunctionWrapper.of("TimerMaintenanceFanOut");
+    private static final FunctionWrapper MAINTENANCE_TICK = FunctionWrapper.of("MaintenanceTick");
+
+    @FunctionName("TimerMaintenanceFanOut")
+    public void timerMaintenanceFanOut(
+        @TimerTrigger(name = "timerInfo", schedule = "%LEARNING_schedule_cron%") String timerInfo,
+        @QueueOutput(name = "ticks", queueName = "maintenance-ticks-java", connection = "AzureWebJobsStorage") OutputBinding<List<String>> ticks,
+        final ExecutionContext context) {
+        TIMER_MAINTENANCE_FAN_OUT.run(context, () -> {
+            List<String> messages = new ArrayList<>(TICKS_PER_RUN);
+            for (int i = 0; i < TICKS_PER_RUN; i++) {
+                messages.add(timerInfo);
+            }
+            ticks.setValue(messages);
+        });
+    }
+
+    @FunctionName("MaintenanceTick")
+    public void maintenanceTick(
+        @QueueTrigger(name = "tick", queueName = "maintenance-ticks-java", connection = "AzureWebJobsStorage") String timerInfo,
+        final ExecutionContext context) {
+        runMaintenance(MAINTENANCE_TICK, timerInfo, context);
     }
 }
@@ -0,0 +1,215 @@
+package com.functions.admission;
+
+import com.functions.metrics.Counter;
+import com.functions.metrics.MetricsRegistry;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for one HTTP-triggered function, applied by wrapping the function body.
+ * Functions get it through {@link com.functions.execution.FunctionWrapper#http}, which every
+ * HTTP-triggered function runs in.
+ * A request over the function's rate limit is answered 429, and one that would exceed its
+ * adaptive concurrency limit is answered 503, both with a Retry-After header and without
+ * running the body, so an overloaded worker spends microseconds on the excess instead of
+ * queueing it until everything times out. Admitted invocations report their latency to the
+ * {@link ConcurrencyLimit}, which moves the limit.
+ * <p>
+ * Configured by app settings; without any, every request is admitted and only counted:
+ * <ul>
+ * <li>{@code LEARNING_admission_limit}: "gradient", "aimd" or "off" (default)</li>
+ * <li>{@code LEARNING_admission_initial_limit}, {@code _min_limit}, {@code _max_limit}: 20, 1 and 1000 by default</li>
+ * <li>{@code LEARNING_admission_latency_target_ms}: the AIMD latency target, 1000 by default</li>
+ * <li>{@code LEARNING_admission_rate_<function>} or {@code LEARNING_admission_rate}: requests per
+ * second, unlimited by default, with bursts of {@code LEARNING_admission_burst} (one second's worth)</li>
+ * </ul>
+ * Exports admission_requests_total with outcome="admitted", "rate_limited" or "overloaded",
+ * admission_limit and admission_in_flight.
+ */
+public final class AdmissionController {
+    public static final String LIMIT_SETTING = "LEARNING_admission_limit";
+    public static final String INITIAL_LIMIT_SETTING = "LEARNING_admission_initial_limit";
+    public static final String MIN_LIMIT_SETTING = "LEARNING_admission_min_limit";
+    public static final String MAX_LIMIT_SETTING = "LEARNING_admission_max_limit";
+    public static final String LATENCY_TARGET_SETTING = "LEARNING_admission_latency_target_ms";
+    public static final String RATE_SETTING = "LEARNING_admission_rate";
+    public static final String BURST_SETTING = "LEARNING_admission_burst";
+    static final long OVERLOADED_RETRY_AFTER_SECONDS = 1;
+    private static final Map<String, AdmissionController> FUNCTIONS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final ConcurrencyLimit limit;
+    private final TokenBucket rate;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Counter admitted;
+    private final Counter rateLimited;
+    private final Counter overloaded;
+
+    /**
+     * @param limit null for no concurrency limit
+     * @param rate null for no rate limit
+     */
+    public AdmissionController(String name, ConcurrencyLimit limit, TokenBucket rate, MetricsRegistry registry) {
+        this.name = name;
+        this.limit = limit;
+        this.rate = rate;
+        String help = "HTTP requests by whether they were admitted or rejected.";
+        this.admitted = registry.counter("admission_requests_total", help, "function", name, "outcome", "admitted");
+        this.rateLimited = registry.counter("admission_requests_total", help, "function", name, "outcome", "rate_limited");
+        this.overloaded = registry.counter("admission_requests_total", help, "function", name, "outcome", "overloaded");
+        if (limit != null) {
+            registry.gauge("admission_limit", "Invocations the function may run at once.", limit::getLimit, "function", name);
+        }
+        registry.gauge("admission_in_flight", "Admitted invocations currently running.", inFlight::get, "function", name);
+    }
+
+    /**
+     * The controller configured by the app settings for this function, created on first use.
+     */
+    public static AdmissionController of(String functionName) {
+        return FUNCTIONS.computeIfAbsent(functionName, AdmissionController::fromSettings);
+    }
+
+    public HttpResponseMessage admit(HttpRequestMessage<?> request, Supplier<HttpResponseMessage> body) {
+        HttpResponseMessage rejection = tryAdmit(request);
+        if (rejection != null) {
+            return rejection;
+        }
+        int running = inFlight.get();
+        long start = System.nanoTime();
+        try {
+            return body.get();
+        } finally {
+            release(start, running);
+        }
+    }
+
+    /**
+     * For bodies that throw checked exceptions.
+     */
+    public HttpResponseMessage call(HttpRequestMessage<?> request, Callable<HttpResponseMessage> body) throws Exception {
+        HttpResponseMessage rejection = tryAdmit(request);
+        if (rejection != null) {
+            return rejection;
+        }
+        int running = inFlight.get();
+        long start = System.nanoTime();
+        try {
+            return body.call();
+        } finally {
+            release(start, running);
+        }
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * The current concurrency limit, or {@link Integer#MAX_VALUE} without one.
+     */
+    public int getLimit() {
+        return limit != null ? limit.getLimit() : Integer.MAX_VALUE;
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    public long getRejected() {
+        return rateLimited.get() + overloaded.get();
+    }
+
+    @Override
+    public String toString() {
+        return "AdmissionController{" + name + ", " + limit + ", " + rate + "}";
+    }
+
+    /**
+     * Takes a rate token and a concurrency slot, or returns the rejection to send.
+     */
+    private HttpResponseMessage tryAdmit(HttpRequestMessage<?> request) {
+        if (rate != null) {
+            long waitNanos = rate.tryAcquire();
+            if (waitNanos > 0) {
+                rateLimited.increment();
+                return reject(request, HttpStatus.TOO_MANY_REQUESTS, Math.max(1, ceilSeconds(waitNanos)), "Rate limit exceeded");
+            }
+        }
+        int running = inFlight.incrementAndGet();
+        if (limit != null && running > limit.getLimit()) {
+            inFlight.decrementAndGet();
+            overloaded.increment();
+            return reject(request, HttpStatus.SERVICE_UNAVAILABLE, OVERLOADED_RETRY_AFTER_SECONDS, "Too many requests in progress");
+        }
+        admitted.increment();
+        return null;
+    }
+
+    private void release(long start, int running) {
+        if (limit != null) {
+            limit.onSample(System.nanoTime() - start, running);
+        }
+        inFlight.decrementAndGet();
+    }
+
+    private static HttpResponseMessage reject(HttpRequestMessage<?> request, HttpStatus status, long retryAfterSeconds, String reason) {
+        return request.createResponseBuilder(status)
+            .header("Retry-After", Long.toString(retryAfterSeconds))
+            .body(reason + ", retry after " + retryAfterSeconds + " s")
+            .build();
+    }
+
+    private static long ceilSeconds(long nanos) {
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    static AdmissionController fromSettings(String functionName) {
+        int initial = intSetting(INITIAL_LIMIT_SETTING, 20);
+        int min = intSetting(MIN_LIMIT_SETTING, 1);
+        int max = intSetting(MAX_LIMIT_SETTING, 1000);
+        String configured = setting(LIMIT_SETTING);
+        ConcurrencyLimit limit;
+        switch (configured == null ? "off" : configured.trim().toLowerCase(Locale.ROOT)) {
+            case "off":
+                limit = null;
+                break;
+            case "aimd":
+                limit = new AimdLimit(initial, min, max, intSetting(LATENCY_TARGET_SETTING, 1000), 0.9);
+                break;
+            case "gradient":
+                limit = new GradientLimit(initial, min, max);
+                break;
+            default:
+                throw new IllegalArgumentException(LIMIT_SETTING + " must be gradient, aimd or off: " + configured);
+        }
+        String rate = setting(RATE_SETTING + "_" + functionName);
+        rate = rate != null ? rate : setting(RATE_SETTING);
+        TokenBucket bucket = null;
+        if (rate != null) {
+            double perSecond = Double.parseDouble(rate.trim());
+            bucket = new TokenBucket(perSecond, intSetting(BURST_SETTING, (int) Math.max(1, Math.ceil(perSecond))));
+        }
+        return new AdmissionController(functionName, limit, bucket, MetricsRegistry.global());
+    }
+
+    private static int intSetting(String name, int defaultValue) {
+        String value = setting(name);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    private static String setting(String name) {
+        String value = System.getProperty(name);
+        return value != null ? value : System.getenv(name);
+    }
+}
@@ -0,0 +1,50 @@
+package com.functions.admission;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Additive increase, multiplicative decrease: the limit grows by one for each invocation that
+ * completes within the latency target while the limit is in use, and is cut by
+ * {@code backoffRatio} for each one that does not.
+ * <p>
+ * Simple and predictable, but it needs a latency target: set too high, the limit only drops
+ * once requests are already slow; set too low, a healthy function is throttled.
+ */
+public final class AimdLimit implements ConcurrencyLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetNanos;
+    private final double backoffRatio;
+    private volatile int limit;
+
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, long targetLatencyMillis, double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Invalid AIMD limit: min=" + minLimit + " max=" + maxLimit + " backoff=" + backoffRatio);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public synchronized void onSample(long latencyNanos, int inFlight) {
+        if (latencyNanos > targetNanos) {
+            limit = Math.max(minLimit, (int) (limit * backoffRatio));
+        } else if (inFlight * 2 >= limit) {
+            // Only grow while the limit is what holds requests back
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AimdLimit{" + limit + ", target=" + TimeUnit.NANOSECONDS.toMillis(targetNanos) + " ms}";
+    }
+}
@@ -0,0 +1,18 @@
+package com.functions.admission;
+
+/**
+ * How many invocations of a function may run at once, adjusted from the latency of the ones
+ * that completed.
+ */
+public interface ConcurrencyLimit {
+
+    int getLimit();
+
+    /**
+     * Called when an admitted invocation completes.
+     *
+     * @param latencyNanos how long it ran
+     * @param inFlight how many invocations were running when it was admitted, itself included
+     */
+    void onSample(long latencyNanos, int inFlight);
+}
@@ -0,0 +1,69 @@
+package com.functions.admission;
+
+/**
+ * Sizes the limit from the ratio of the long-run latency to the recent latency, without a
+ * latency target.
+ * <p>
+ * While invocations complete about as fast as they usually do, the gradient is 1 and the limit
+ * grows by a small queue allowance, about the square root of the limit. When requests start to
+ * queue inside the worker, the recent latency rises above the long-run average and the limit
+ * shrinks in proportion (by at most half per sample, smoothed). The long-run average drifts
+ * towards the recent latency, so a function that became slower for good settles at a new
+ * limit instead of being throttled forever. The limit does not grow while less than half of
+ * it is in use, since those samples say nothing about a larger one.
+ */
+public final class GradientLimit implements ConcurrencyLimit {
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double SHORT_WINDOW_WEIGHT = 2.0 / (10 + 1);
+    private static final double LONG_WINDOW_WEIGHT = 2.0 / (600 + 1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double estimate;
+    private double shortLatency;
+    private double longLatency;
+    private volatile int limit;
+
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid gradient limit: min=" + minLimit + " max=" + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimate = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimate;
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public synchronized void onSample(long latencyNanos, int inFlight) {
+        if (longLatency == 0) {
+            shortLatency = latencyNanos;
+            longLatency = latencyNanos;
+            return;
+        }
+        shortLatency += (latencyNanos - shortLatency) * SHORT_WINDOW_WEIGHT;
+        longLatency += (shortLatency - longLatency) * LONG_WINDOW_WEIGHT;
+        if (longLatency > shortLatency * 2) {
+            // Latency dropped for good (a cold start ended, a dependency recovered): catch up faster
+            longLatency *= 0.95;
+        }
+        if (inFlight * 2 < estimate) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+        double target = estimate * gradient + Math.sqrt(estimate);
+        estimate = Math.max(minLimit, Math.min(maxLimit, estimate * (1 - SMOOTHING) + target * SMOOTHING));
+        limit = (int) estimate;
+    }
+
+    @Override
+    public String toString() {
+        return "GradientLimit{" + limit + "}";
+    }
+}
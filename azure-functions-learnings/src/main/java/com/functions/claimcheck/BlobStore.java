@@ -0,0 +1,22 @@
+package com.functions.claimcheck;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where {@link ClaimCheck} keeps offloaded payloads: a blob container in Azure, or a
+ * {@link LocalDirectoryBlobStore} when running locally.
+ */
+public interface BlobStore {
+    void put(String name, byte[] content) throws IOException;
+
+    byte[] get(String name) throws IOException;
+
+    void delete(String name) throws IOException;
+
+    /**
+     * Up to {@code max} blobs whose name starts with {@code prefix}, last written before
+     * {@code cutoffMillis}.
+     */
+    List<String> listOlderThan(String prefix, long cutoffMillis, int max) throws IOException;
+}
@@ -0,0 +1,242 @@
+package com.functions.claimcheck;
+
+import com.functions.kafka.KafkaCompression;
+import com.functions.metrics.Counter;
+import com.functions.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claim-check for queue and Service Bus payloads: a payload over the threshold is compressed,
+ * stored as a blob, and replaced by a small reference message; {@link #resolve(String)} turns a
+ * received message back into its payload, fetching the blob only when the body is read.
+ * <p>
+ * Blobs are named by the SHA-256 of the payload, so an invocation that is retried stores the
+ * same blob again instead of leaving an orphan. Several consumers may read one reference (topic
+ * subscriptions), so consumers do not delete blobs; {@link #expire(long, int)} removes them once
+ * they are older than {@link #getBlobMaxAgeMillis()}: the message TTL of the queues that carry
+ * the references, after which no message can still be in flight, plus a day of grace for
+ * invocations still running and clock skew. The store is shared by every
+ * instance, so expiry can be split into {@link #EXPIRY_SHARDS} shards by the first hex digit of
+ * the blob name and divided among the instances with {@link #expire(int, long, int)}.
+ * <p>
+ * The threshold comes from {@code LEARNING_claimcheck_threshold_bytes} (48 KiB by default, which
+ * leaves room for base64 in a 64 KiB storage queue message), the TTL from
+ * {@code LEARNING_claimcheck_message_ttl_seconds} (seven days, the storage queue default; set it
+ * to the longest TTL of any queue or subscription the references travel through, or -1 if
+ * messages never expire) and the blobs go to {@code LEARNING_claimcheck_directory}. That must be
+ * storage every instance and consumer mounts; only a local run, where WEBSITE_INSTANCE_ID is not
+ * set, falls back to the temp directory.
+ */
+public final class ClaimCheck {
+    public static final String THRESHOLD_SETTING = "LEARNING_claimcheck_threshold_bytes";
+    public static final String DIRECTORY_SETTING = "LEARNING_claimcheck_directory";
+    public static final String MESSAGE_TTL_SETTING = "LEARNING_claimcheck_message_ttl_seconds";
+    public static final int DEFAULT_THRESHOLD_BYTES = 48 * 1024;
+    public static final long DEFAULT_MESSAGE_TTL_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final long EXPIRY_GRACE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    public static final int EXPIRY_SHARDS = 16;
+    static final String REFERENCE_PREFIX = "{\"claimCheck\":\"";
+
+    private static volatile ClaimCheck shared;
+
+    private final BlobStore store;
+    private final int thresholdBytes;
+    private final long messageTtlMillis;
+    private final Counter inline;
+    private final Counter offloaded;
+    private final Counter resolved;
+    private final Counter bytesOffloaded;
+
+    /**
+     * @param messageTtlMillis the longest a reference can wait in a queue, or negative if messages never expire
+     */
+    public ClaimCheck(BlobStore store, int thresholdBytes, long messageTtlMillis, MetricsRegistry registry) {
+        this.store = store;
+        this.thresholdBytes = thresholdBytes;
+        this.messageTtlMillis = messageTtlMillis;
+        String help = "Outgoing payloads by whether they were sent inline or as a claim-check reference.";
+        this.inline = registry.counter("claimcheck_payloads_total", help, "outcome", "inline");
+        this.offloaded = registry.counter("claimcheck_payloads_total", help, "outcome", "offloaded");
+        this.resolved = registry.counter("claimcheck_resolved_total", "Claim-check references whose body a consumer read.");
+        this.bytesOffloaded = registry.counter("claimcheck_offloaded_bytes_total", "Uncompressed payload bytes kept off the broker.");
+    }
+
+    /**
+     * The claim-check configured by the app settings, created on first use.
+     *
+     * @throws IllegalStateException outside a local run, if LEARNING_claimcheck_directory is not
+     *                               set or is in the temp directory; every call throws again
+     */
+    public static ClaimCheck shared() {
+        ClaimCheck instance = shared;
+        if (instance == null) {
+            synchronized (ClaimCheck.class) {
+                if (shared == null) {
+                    shared = fromSettings();
+                }
+                instance = shared;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * The message to send for {@code payload}: the payload itself, or a reference to the blob
+     * now holding it.
+     */
+    public String offload(String payload) {
+        byte[] raw = payload.getBytes(StandardCharsets.UTF_8);
+        // A small payload that looks like a reference is offloaded too, so it cannot be misread
+        if (raw.length <= thresholdBytes && !isReference(payload)) {
+            inline.increment();
+            return payload;
+        }
+        String name = sha256Hex(raw) + ".gz";
+        try {
+            store.put(name, KafkaCompression.GZIP.compress(raw));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot store claim-check blob " + name, e);
+        }
+        offloaded.increment();
+        bytesOffloaded.add(raw.length);
+        return REFERENCE_PREFIX + name + "\",\"bytes\":" + raw.length + "}";
+    }
+
+    public static boolean isReference(String message) {
+        return message != null && message.startsWith(REFERENCE_PREFIX);
+    }
+
+    /**
+     * Whether {@code name} is one {@link #offload(String)} writes: 64 lowercase hex digits and
+     * ".gz", so a reference cannot name a path outside the store.
+     */
+    static boolean isBlobName(String name) {
+        if (name == null || name.length() != 67 || !name.endsWith(".gz")) {
+            return false;
+        }
+        for (int i = 0; i < 64; i++) {
+            if (Character.digit(name.charAt(i), 16) < 0 || Character.isUpperCase(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wraps a received message; nothing is fetched until {@link ClaimCheckedPayload#get()}.
+     */
+    public ClaimCheckedPayload resolve(String message) {
+        return new ClaimCheckedPayload(this, message);
+    }
+
+    /**
+     * Deletes up to {@code budget} blobs written more than {@code maxAgeMillis} ago.
+     *
+     * @return how many were deleted
+     */
+    public int expire(long maxAgeMillis, int budget) throws IOException {
+        return expire("", maxAgeMillis, budget);
+    }
+
+    /**
+     * Like {@link #expire(long, int)}, for the blobs of one shard, whose names start with the
+     * hex digit {@code shard}.
+     */
+    public int expire(int shard, long maxAgeMillis, int budget) throws IOException {
+        if (shard < 0 || shard >= EXPIRY_SHARDS) {
+            throw new IllegalArgumentException("Shard " + shard + " outside 0.." + (EXPIRY_SHARDS - 1));
+        }
+        return expire(String.valueOf(Character.forDigit(shard, 16)), maxAgeMillis, budget);
+    }
+
+    private int expire(String prefix, long maxAgeMillis, int budget) throws IOException {
+        // Long.MAX_VALUE, for messages that never expire, still leaves a cutoff in the past
+        List<String> expired = store.listOlderThan(prefix, System.currentTimeMillis() - maxAgeMillis, budget);
+        for (String name : expired) {
+            store.delete(name);
+        }
+        return expired.size();
+    }
+
+    String fetch(String blobName) {
+        try {
+            byte[] payload = KafkaCompression.GZIP.decompress(store.get(blobName));
+            resolved.increment();
+            return new String(payload, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read claim-check blob " + blobName, e);
+        }
+    }
+
+    public int getThresholdBytes() {
+        return thresholdBytes;
+    }
+
+    /**
+     * How old a blob must be before {@link #expire(long, int)} may delete it: the message TTL
+     * plus a day, or Long.MAX_VALUE if messages never expire.
+     */
+    public long getBlobMaxAgeMillis() {
+        return messageTtlMillis < 0 ? Long.MAX_VALUE : messageTtlMillis + EXPIRY_GRACE_MILLIS;
+    }
+
+    @Override
+    public String toString() {
+        return "ClaimCheck{" + store + ", threshold=" + thresholdBytes + "}";
+    }
+
+    private static String sha256Hex(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every JRE has SHA-256", e);
+        }
+    }
+
+    private static ClaimCheck fromSettings() {
+        String threshold = setting(THRESHOLD_SETTING);
+        String ttl = setting(MESSAGE_TTL_SETTING);
+        return new ClaimCheck(
+            new LocalDirectoryBlobStore(storeDirectory()),
+            threshold != null ? Integer.parseInt(threshold.trim()) : DEFAULT_THRESHOLD_BYTES,
+            ttl != null ? TimeUnit.SECONDS.toMillis(Long.parseLong(ttl.trim())) : DEFAULT_MESSAGE_TTL_MILLIS,
+            MetricsRegistry.global());
+    }
+
+    private static Path storeDirectory() {
+        String configured = setting(DIRECTORY_SETTING);
+        Path temp = Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize();
+        // Only the Azure host sets WEBSITE_INSTANCE_ID; a local run may keep the blobs in the temp directory
+        boolean local = System.getenv("WEBSITE_INSTANCE_ID") == null;
+        if (configured == null || configured.trim().isEmpty()) {
+            if (!local) {
+                throw new IllegalStateException("Claim-check needs " + DIRECTORY_SETTING + " set to storage every instance and consumer mounts");
+            }
+            return temp.resolve("claim-check");
+        }
+        Path directory = Paths.get(configured.trim()).toAbsolutePath().normalize();
+        if (!local && directory.startsWith(temp)) {
+            throw new IllegalStateException(DIRECTORY_SETTING + " " + directory + " is in the instance-local temp directory");
+        }
+        return directory;
+    }
+
+    private static String setting(String name) {
+        String value = System.getProperty(name);
+        return value != null ? value : System.getenv(name);
+    }
+}
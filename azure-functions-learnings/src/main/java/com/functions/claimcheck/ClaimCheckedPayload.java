@@ -0,0 +1,89 @@
+package com.functions.claimcheck;
+
+import com.functions.json.JsonStreamReader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A received message that may be a claim-check reference. The blob is fetched and decompressed
+ * the first time {@link #get()} is called, so a handler that only routes or forwards the message
+ * never downloads the payload. A message that starts like a reference but does not parse as
+ * one, or names a blob offload() could not have written, is taken as an inline payload.
+ */
+public final class ClaimCheckedPayload {
+    private final ClaimCheck claimCheck;
+    private final String message;
+    private final String blobName;
+    private long bytes;
+    private String body;
+
+    ClaimCheckedPayload(ClaimCheck claimCheck, String message) {
+        this.claimCheck = claimCheck;
+        this.message = message;
+        String name = null;
+        long size = -1;
+        if (ClaimCheck.isReference(message)) {
+            try {
+                JsonStreamReader reader = new JsonStreamReader(message);
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if (field.equals("claimCheck")) {
+                        name = reader.nextString();
+                    } else if (field.equals("bytes")) {
+                        size = reader.nextLong();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } catch (IOException | NumberFormatException e) {
+                name = null;
+            }
+        }
+        if (ClaimCheck.isBlobName(name) && size >= 0) {
+            this.blobName = name;
+            this.bytes = size;
+        } else {
+            // Not a reference offload() wrote, so it is delivered as the message it is
+            this.blobName = null;
+            this.bytes = -1;
+            this.body = message;
+        }
+    }
+
+    public boolean isClaimChecked() {
+        return blobName != null;
+    }
+
+    /**
+     * The payload's size in UTF-8 bytes, known without fetching it.
+     */
+    public long length() {
+        if (bytes < 0) {
+            bytes = message.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return bytes;
+    }
+
+    /**
+     * The message as received: the payload itself or the reference. Forward this to pass the
+     * payload on without fetching it.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public String get() {
+        if (body == null) {
+            body = claimCheck.fetch(blobName);
+        }
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        return isClaimChecked() ? "ClaimCheckedPayload{" + blobName + ", " + bytes + " bytes}" : "ClaimCheckedPayload{inline, " + length() + " bytes}";
+    }
+}
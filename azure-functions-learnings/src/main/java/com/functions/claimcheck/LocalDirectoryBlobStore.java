@@ -0,0 +1,70 @@
+package com.functions.claimcheck;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link BlobStore} in a local directory, standing in for a blob container in tests and when
+ * running the functions locally. Blobs are written to a temporary file and moved into place, so
+ * a reader never sees half a payload.
+ */
+public class LocalDirectoryBlobStore implements BlobStore {
+    private final Path directory;
+
+    public LocalDirectoryBlobStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void put(String name, byte[] content) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, name, ".tmp");
+        Files.write(temp, content);
+        try {
+            Files.move(temp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public byte[] get(String name) throws IOException {
+        return Files.readAllBytes(directory.resolve(name));
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        Files.deleteIfExists(directory.resolve(name));
+    }
+
+    @Override
+    public List<String> listOlderThan(String prefix, long cutoffMillis, int max) throws IOException {
+        List<String> names = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return names;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                if (names.size() >= max) {
+                    break;
+                }
+                // Includes temporary files a crashed writer left behind
+                if (Files.getLastModifiedTime(file).toMillis() < cutoffMillis) {
+                    names.add(file.getFileName().toString());
+                }
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return "LocalDirectoryBlobStore{" + directory + "}";
+    }
+}
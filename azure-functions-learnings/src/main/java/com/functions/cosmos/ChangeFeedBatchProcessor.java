@@ -0,0 +1,276 @@
+package com.functions.cosmos;
+
+import com.functions.metrics.Counter;
+import com.functions.metrics.Histogram;
+import com.functions.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Processes a whole change-feed batch on a pool of worker threads while keeping the feed's
+ * order for each key.
+ * <p>
+ * The batch is split into lanes by the hash of each document's ordering key (its id by
+ * default), one lane per worker, and each lane is handled in feed order; documents with the
+ * same key always share a lane, so their changes are never handled out of order or at the same
+ * time. {@link #process(List, ItemHandler)} returns once every lane is done, and the trigger
+ * checkpoints the lease only after the function returns, so a checkpoint never covers an
+ * unfinished document. A failing document stops its lane (later changes to its keys wait) and
+ * fails the batch once the other lanes finish; with a retry policy on the function the batch
+ * is delivered again, so handlers must tolerate seeing a document twice.
+ * <p>
+ * The retries are bounded: once the function's {@code maxRetryCount} retries have failed too,
+ * the host gives up on the batch and checkpoints past it, and its documents are not delivered
+ * again. The processor recognises a redelivered batch by its size and first and last
+ * documents, and counts the batch in changefeed_skipped_batches_total when the last attempt
+ * fails, so lost batches show up on a dashboard rather than only in the logs.
+ * <p>
+ * The pool has {@code LEARNING_changefeed_workers} threads, one per core by default. Exports
+ * changefeed_items_total, whose rate is the items per second, changefeed_batch_seconds, and
+ * changefeed_checkpoint_lag_seconds: how long after the newest document in a batch was
+ * written the batch was ready to checkpoint.
+ */
+public final class ChangeFeedBatchProcessor implements AutoCloseable {
+    public static final String WORKERS_SETTING = "LEARNING_changefeed_workers";
+
+    /**
+     * The per-document work. Called from several threads at once, but never concurrently for
+     * documents with the same ordering key.
+     */
+    public interface ItemHandler {
+        void handle(ViewDocument document) throws Exception;
+    }
+
+    private final String name;
+    private final int workers;
+    private final Function<ViewDocument, String> orderingKey;
+    private final int maxRetryCount;
+    private final ExecutorService pool;
+    /** Failed attempts of batches that may still be retried, by {@link #fingerprint(List)}. */
+    private final Map<String, Integer> failedAttempts = new ConcurrentHashMap<>();
+
+    private final Counter items;
+    private final Counter failedBatches;
+    private final Counter skippedBatches;
+    private final Histogram batchDuration;
+    private final Histogram checkpointLag;
+
+    /**
+     * @param orderingKey   the key whose changes must be handled in order, such as the id or the partition key
+     * @param maxRetryCount the maxRetryCount of the function's retry policy, 0 without one
+     */
+    public ChangeFeedBatchProcessor(String name, int workers, Function<ViewDocument, String> orderingKey, int maxRetryCount, MetricsRegistry registry) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("A change feed processor needs at least one worker: " + workers);
+        }
+        this.name = name;
+        this.workers = workers;
+        this.orderingKey = orderingKey;
+        this.maxRetryCount = maxRetryCount;
+        AtomicInteger threadNumber = new AtomicInteger();
+        // The calling thread runs one lane itself, so the pool needs one thread fewer
+        this.pool = workers > 1 ? Executors.newFixedThreadPool(workers - 1, r -> {
+            Thread t = new Thread(r, "changefeed-" + name + "-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }) : null;
+        this.items = registry.counter("changefeed_items_total", "Change-feed documents processed.", "processor", name);
+        this.failedBatches = registry.counter("changefeed_failed_batches_total", "Change-feed batch attempts that failed and were not checkpointed.", "processor", name);
+        this.skippedBatches = registry.counter("changefeed_skipped_batches_total", "Change-feed batches that failed every retry, which the host checkpointed past.", "processor", name);
+        this.batchDuration = registry.histogram("changefeed_batch_seconds", "Time to process a change-feed batch.", "processor", name);
+        this.checkpointLag = registry.histogram("changefeed_checkpoint_lag_seconds", "Time from the newest write in a batch until the batch could be checkpointed.", "processor", name);
+    }
+
+    /**
+     * A processor ordering by document id, with {@code LEARNING_changefeed_workers} workers, for
+     * a function whose retry policy has {@code maxRetryCount} retries.
+     */
+    public static ChangeFeedBatchProcessor fromSettings(String name, int maxRetryCount) {
+        String configured = setting(WORKERS_SETTING);
+        int workers = configured != null ? Integer.parseInt(configured.trim()) : Runtime.getRuntime().availableProcessors();
+        return new ChangeFeedBatchProcessor(name, workers, ViewDocument::getId, maxRetryCount, MetricsRegistry.global());
+    }
+
+    /**
+     * Parses the batch and handles it with {@link #processDocuments(List, ItemHandler)}.
+     */
+    public BatchReport process(List<String> batch, ItemHandler handler) {
+        List<ViewDocument> documents = new ArrayList<>(batch.size());
+        for (String json : batch) {
+            documents.add(ViewDocument.parse(json));
+        }
+        return processDocuments(documents, handler);
+    }
+
+    /**
+     * Handles every document of an already parsed batch and returns when all are done.
+     *
+     * @throws CompletionException wrapping the first failure, after every lane has stopped
+     */
+    public BatchReport processDocuments(List<ViewDocument> batch, ItemHandler handler) {
+        long start = System.nanoTime();
+        int laneCount = Math.max(1, Math.min(workers, batch.size()));
+        List<List<ViewDocument>> lanes = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            lanes.add(new ArrayList<>(batch.size() / laneCount + 1));
+        }
+        long newestSeconds = 0;
+        for (ViewDocument document : batch) {
+            String key = orderingKey.apply(document);
+            int lane = key == null ? 0 : (key.hashCode() & Integer.MAX_VALUE) % laneCount;
+            lanes.get(lane).add(document);
+            newestSeconds = Math.max(newestSeconds, document.getTimestampSeconds());
+        }
+
+        List<Future<Integer>> running = new ArrayList<>(laneCount - 1);
+        for (int i = 1; i < laneCount; i++) {
+            List<ViewDocument> lane = lanes.get(i);
+            running.add(pool.submit(() -> runLane(lane, handler)));
+        }
+        Throwable failure = null;
+        int handled = 0;
+        try {
+            handled += runLane(lanes.get(0), handler);
+        } catch (Exception e) {
+            failure = e;
+        }
+        for (Future<Integer> lane : running) {
+            try {
+                handled += lane.get();
+            } catch (ExecutionException e) {
+                failure = failure != null ? failure : e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = failure != null ? failure : e;
+            }
+        }
+        items.add(handled);
+        long elapsed = System.nanoTime() - start;
+        batchDuration.recordNanos(elapsed);
+        String fingerprint = fingerprint(batch);
+        if (failure != null) {
+            failedBatches.increment();
+            int attempts = failedAttempts.merge(fingerprint, 1, Integer::sum);
+            if (attempts <= maxRetryCount) {
+                throw new CompletionException(name + " failed after handling " + handled + " of " + batch.size() + " documents"
+                    + " (attempt " + attempts + " of " + (maxRetryCount + 1) + ")", failure);
+            }
+            failedAttempts.remove(fingerprint);
+            skippedBatches.increment();
+            throw new CompletionException(name + " failed after handling " + handled + " of " + batch.size() + " documents"
+                + " on the last of " + attempts + " attempts; the host checkpoints past the batch", failure);
+        }
+        failedAttempts.remove(fingerprint);
+        long lagMillis = newestSeconds > 0 ? System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(newestSeconds) : 0;
+        checkpointLag.recordNanos(TimeUnit.MILLISECONDS.toNanos(lagMillis));
+        return new BatchReport(batch.size(), laneCount, elapsed, lagMillis);
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public long getItemsProcessed() {
+        return items.get();
+    }
+
+    public long getSkippedBatches() {
+        return skippedBatches.get();
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeFeedBatchProcessor{" + name + ", workers=" + workers + "}";
+    }
+
+    /**
+     * Identifies a batch across its retries, which deliver the same documents again.
+     */
+    private static String fingerprint(List<ViewDocument> batch) {
+        if (batch.isEmpty()) {
+            return "";
+        }
+        ViewDocument first = batch.get(0);
+        ViewDocument last = batch.get(batch.size() - 1);
+        return batch.size() + ":" + first.getId() + "@" + first.getVersion() + ":" + last.getId() + "@" + last.getVersion();
+    }
+
+    /**
+     * Handles the lane's documents in order, stopping at the first failure.
+     */
+    private static int runLane(List<ViewDocument> lane, ItemHandler handler) throws Exception {
+        for (ViewDocument document : lane) {
+            handler.handle(document);
+        }
+        return lane.size();
+    }
+
+    private static String setting(String name) {
+        String value = System.getProperty(name);
+        return value != null ? value : System.getenv(name);
+    }
+
+    /**
+     * What one batch took: for the invocation's log line.
+     */
+    public static final class BatchReport {
+        private final int items;
+        private final int lanes;
+        private final long nanos;
+        private final long checkpointLagMillis;
+
+        BatchReport(int items, int lanes, long nanos, long checkpointLagMillis) {
+            this.items = items;
+            this.lanes = lanes;
+            this.nanos = nanos;
+            this.checkpointLagMillis = checkpointLagMillis;
+        }
+
+        public int getItems() {
+            return items;
+        }
+
+        public int getLanes() {
+            return lanes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getItemsPerSecond() {
+            return nanos > 0 ? items * 1e9 / nanos : 0;
+        }
+
+        /**
+         * How long after the newest document's _ts the batch was ready to checkpoint.
+         */
+        public long getCheckpointLagMillis() {
+            return checkpointLagMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d items in %d lanes, %.1f ms, %.0f items/s, checkpoint lag %d ms",
+                items, lanes, nanos / 1e6, getItemsPerSecond(), checkpointLagMillis);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.functions.cosmos;
+
+import com.functions.CosmosDBTriggerFunction.Document;
+
+import java.util.List;
+
+/**
+ * The container calls the Cosmos DB functions make themselves instead of through a binding:
+ * CosmosDBInputId's read while {@link MaterializedView} is catching up, the name queries that
+ * go through a {@link com.functions.execution.SingleFlight}, and the upserts
+ * {@link ChangeFeedBatchProcessor} overlaps.
+ */
+public interface DocumentContainer {
+    /**
+     * {@code SELECT * FROM f WHERE f.id = @id}: the document as JSON, or null if there is none.
+     */
+    String findJsonById(String id);
+
+    /**
+     * {@code SELECT f.id, f.name FROM f WHERE f.name = @name}.
+     */
+    List<Document> findByName(String name);
+
+    /**
+     * Inserts the document or replaces the one with its id.
+     */
+    void upsert(Document document);
+}
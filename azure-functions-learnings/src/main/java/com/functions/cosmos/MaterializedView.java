@@ -0,0 +1,349 @@
+package com.functions.cosmos;
+
+import com.functions.journal.SpillJournal;
+import com.functions.metrics.Counter;
+import com.functions.metrics.Histogram;
+import com.functions.metrics.MetricsRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory view of a Cosmos DB container, kept up to date from its change feed, that
+ * answers by-id lookups and {@code WHERE f.name = {name}} queries without a round trip to the
+ * database.
+ * <p>
+ * {@link #apply(List)} takes one change-feed batch. A document replaces the one with its id
+ * unless it is older (lower _lsn, or _ts when there is no _lsn), so a batch delivered again
+ * after a restart changes nothing; a soft-deleted document is removed. Each name a batch
+ * touched gets a new immutable {@link NameView}, so {@link #query(String)} and
+ * {@link #get(String)} read without locking while the single writer applies the next batch.
+ * <p>
+ * The view is only as durable as its files. Every applied document is first appended to a
+ * local {@link SpillJournal}; {@link #snapshot()} writes all documents to a snapshot file and
+ * then consumes the journal. A restarted instance loads the snapshot and replays the journal,
+ * which brings it back to the batch the trigger last checkpointed, and the change feed
+ * continues from there. Without a directory the view lives in memory only and has to be
+ * rebuilt from the start of the feed.
+ * <p>
+ * A view that is still reading the feed from the beginning, or catching up after a restart,
+ * answers from old data. {@link #isCaughtUp(long)} tells the readers whether the last batch it
+ * applied was written recently enough for the view to be served; until then they go to the
+ * container. A view whose container gets no writes stays behind until the next one arrives.
+ * <p>
+ * Exports materialized_view_lag_seconds, the time from a document's _ts to the moment the view
+ * served it (with _ts's one-second resolution), materialized_view_documents and
+ * materialized_view_changes_total with outcome="applied" or "stale".
+ */
+public final class MaterializedView implements AutoCloseable {
+    public static final String DIRECTORY_SETTING = "LEARNING_view_directory";
+    public static final String SNAPSHOT_INTERVAL_SETTING = "LEARNING_view_snapshot_seconds";
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 300;
+    public static final String CAUGHT_UP_SETTING = "LEARNING_view_caught_up_seconds";
+    public static final long DEFAULT_CAUGHT_UP_SECONDS = 60;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final String name;
+    private final Path snapshotFile;
+    private final SpillJournal journal;
+
+    private final Map<String, ViewDocument> byId = new ConcurrentHashMap<>();
+    private final Map<String, NameView> byName = new ConcurrentHashMap<>();
+    // Writer-side membership of each name, published as NameViews; guarded by this
+    private final Map<String, LinkedHashMap<String, ViewDocument>> members = new HashMap<>();
+    private long lastSnapshotNanos = System.nanoTime();
+    /** Apply time minus the newest _ts of the last batch; Long.MAX_VALUE before the first. */
+    private volatile long lastBatchLagMillis = Long.MAX_VALUE;
+
+    private final Histogram lag;
+    private final Counter applied;
+    private final Counter stale;
+
+    /**
+     * @param directory where the snapshot and journal are kept, or null to keep the view in memory only
+     */
+    public MaterializedView(String name, Path directory, MetricsRegistry registry) {
+        this.name = name;
+        this.snapshotFile = directory != null ? directory.resolve("view.snapshot") : null;
+        this.journal = directory != null
+            ? SpillJournal.open(directory.resolve("journal"), SpillJournal.DEFAULT_SEGMENT_BYTES, SpillJournal.DEFAULT_MAX_SEGMENTS, false)
+            : null;
+        this.lag = registry.histogram("materialized_view_lag_seconds", "Time from a document's write until the view served it.", "view", name);
+        String help = "Change-feed documents by whether they changed the view.";
+        this.applied = registry.counter("materialized_view_changes_total", help, "view", name, "outcome", "applied");
+        this.stale = registry.counter("materialized_view_changes_total", help, "view", name, "outcome", "stale");
+        registry.gauge("materialized_view_documents", "Documents held by the view.", byId::size, "view", name);
+        restore();
+    }
+
+    /**
+     * A view kept under {@code LEARNING_view_directory}/name, the temp directory by default.
+     */
+    public static MaterializedView fromSettings(String name) {
+        String directory = setting(DIRECTORY_SETTING);
+        Path root = directory != null ? Paths.get(directory) : Paths.get(System.getProperty("java.io.tmpdir"), "materialized-views");
+        return new MaterializedView(name, root.resolve(name), MetricsRegistry.global());
+    }
+
+    /**
+     * The snapshot interval from {@code LEARNING_view_snapshot_seconds}, five minutes by default.
+     */
+    public static long snapshotIntervalMillis() {
+        String configured = setting(SNAPSHOT_INTERVAL_SETTING);
+        return TimeUnit.SECONDS.toMillis(configured != null ? Long.parseLong(configured.trim()) : DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+    }
+
+    /**
+     * The lag up to which the view counts as caught up, from {@code LEARNING_view_caught_up_seconds},
+     * a minute by default.
+     */
+    public static long caughtUpLagMillis() {
+        String configured = setting(CAUGHT_UP_SETTING);
+        return TimeUnit.SECONDS.toMillis(configured != null ? Long.parseLong(configured.trim()) : DEFAULT_CAUGHT_UP_SECONDS);
+    }
+
+    /**
+     * Applies one change-feed batch, in feed order.
+     *
+     * @return how many documents changed the view; the others were older than what it holds
+     */
+    public int apply(List<String> documents) {
+        List<ViewDocument> parsed = new ArrayList<>(documents.size());
+        for (String json : documents) {
+            parsed.add(ViewDocument.parse(json));
+        }
+        return applyDocuments(parsed);
+    }
+
+    /**
+     * Like {@link #apply(List)}, for a batch the caller has already parsed, so a function that
+     * also hands the batch to a {@link ChangeFeedBatchProcessor} parses it once.
+     */
+    public int applyDocuments(List<ViewDocument> parsed) {
+        long newestSeconds = Long.MIN_VALUE;
+        for (ViewDocument document : parsed) {
+            newestSeconds = Math.max(newestSeconds, document.getTimestampSeconds());
+        }
+        long nowMillis = System.currentTimeMillis();
+        int changed = 0;
+        synchronized (this) {
+            Set<String> touched = new HashSet<>();
+            for (ViewDocument document : parsed) {
+                if (isStale(document)) {
+                    stale.increment();
+                    continue;
+                }
+                journal(document);
+                applyLocked(document, touched);
+                applied.increment();
+                lag.recordNanos(TimeUnit.MILLISECONDS.toNanos(nowMillis - TimeUnit.SECONDS.toMillis(document.getTimestampSeconds())));
+                changed++;
+            }
+            publish(touched);
+        }
+        if (!parsed.isEmpty()) {
+            // Stale documents count too: a batch replayed from the start of the feed is old
+            lastBatchLagMillis = Math.max(0, nowMillis - TimeUnit.SECONDS.toMillis(newestSeconds));
+        }
+        return changed;
+    }
+
+    /**
+     * Whether the last batch applied was written at most {@code maxLagMillis} before it was
+     * applied. False until the first batch, including after a restore.
+     */
+    public boolean isCaughtUp(long maxLagMillis) {
+        return lastBatchLagMillis <= maxLagMillis;
+    }
+
+    /**
+     * The documents named {@code name}; an empty view if there are none.
+     */
+    public NameView query(String name) {
+        NameView view = name != null ? byName.get(name) : null;
+        return view != null ? view : NameView.empty(name);
+    }
+
+    /**
+     * The document with this id, or null.
+     */
+    public ViewDocument get(String id) {
+        return id != null ? byId.get(id) : null;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public int names() {
+        return byName.size();
+    }
+
+    /**
+     * Writes every document to the snapshot file, replacing it atomically where the file
+     * system allows, and then consumes the journal it supersedes. Holds the writer lock while
+     * writing, which delays the next batch but not queries.
+     */
+    public synchronized void snapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            Path parent = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, snapshotFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 << 10))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(byId.size());
+                for (ViewDocument document : byId.values()) {
+                    byte[] json = document.getJson().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(json.length);
+                    out.write(json);
+                }
+            }
+            try {
+                Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write view snapshot " + snapshotFile, e);
+        }
+        journal.commit((int) journal.getDepthRecords());
+        lastSnapshotNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes a snapshot if documents were applied since the last one and it is at least
+     * {@code intervalMillis} old.
+     *
+     * @return true if a snapshot was written
+     */
+    public synchronized boolean snapshotIfDue(long intervalMillis) {
+        if (journal == null || journal.getDepthRecords() == 0
+            || System.nanoTime() - lastSnapshotNanos < TimeUnit.MILLISECONDS.toNanos(intervalMillis)) {
+            return false;
+        }
+        snapshot();
+        return true;
+    }
+
+    /**
+     * Documents applied since the last snapshot, which a restart would replay.
+     */
+    public synchronized long getJournaledDocuments() {
+        return journal != null ? journal.getDepthRecords() : 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MaterializedView{" + name + ", documents=" + byId.size() + ", names=" + byName.size() + "}";
+    }
+
+    private boolean isStale(ViewDocument document) {
+        ViewDocument current = byId.get(document.getId());
+        return current != null && document.getVersion() < current.getVersion();
+    }
+
+    private void journal(ViewDocument document) {
+        if (journal == null) {
+            return;
+        }
+        byte[] record = document.getJson().getBytes(StandardCharsets.UTF_8);
+        if (!journal.append(record)) {
+            // A snapshot makes the journaled documents redundant and empties it
+            snapshot();
+            if (!journal.append(record)) {
+                throw new IllegalStateException("View journal " + name + " cannot hold a document of " + record.length + " bytes");
+            }
+        }
+    }
+
+    private void applyLocked(ViewDocument document, Set<String> touched) {
+        ViewDocument current = document.isDeleted() ? byId.remove(document.getId()) : byId.put(document.getId(), document);
+        if (current != null && current.getName() != null) {
+            LinkedHashMap<String, ViewDocument> previous = members.get(current.getName());
+            if (previous != null) {
+                previous.remove(current.getId());
+            }
+            touched.add(current.getName());
+        }
+        if (!document.isDeleted() && document.getName() != null) {
+            members.computeIfAbsent(document.getName(), n -> new LinkedHashMap<>()).put(document.getId(), document);
+            touched.add(document.getName());
+        }
+    }
+
+    private void publish(Set<String> touched) {
+        for (String touchedName : touched) {
+            LinkedHashMap<String, ViewDocument> documents = members.get(touchedName);
+            if (documents == null || documents.isEmpty()) {
+                members.remove(touchedName);
+                byName.remove(touchedName);
+                continue;
+            }
+            long lastModified = 0;
+            for (ViewDocument document : documents.values()) {
+                lastModified = Math.max(lastModified, document.getTimestampSeconds());
+            }
+            byName.put(touchedName, new NameView(touchedName, new ArrayList<>(documents.values()), lastModified));
+        }
+    }
+
+    private synchronized void restore() {
+        Set<String> touched = new HashSet<>();
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 64 << 10))) {
+                if (in.readInt() == SNAPSHOT_VERSION) {
+                    for (int i = in.readInt(); i > 0; i--) {
+                        byte[] json = new byte[in.readInt()];
+                        in.readFully(json);
+                        applyLocked(ViewDocument.parse(new String(json, StandardCharsets.UTF_8)), touched);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read view snapshot " + snapshotFile, e);
+            }
+        }
+        if (journal != null) {
+            for (byte[] record : journal.peek(Integer.MAX_VALUE)) {
+                ViewDocument document = ViewDocument.parse(new String(record, StandardCharsets.UTF_8));
+                if (!isStale(document)) {
+                    applyLocked(document, touched);
+                }
+            }
+        }
+        publish(touched);
+    }
+
+    private static String setting(String name) {
+        String value = System.getProperty(name);
+        return value != null ? value : System.getenv(name);
+    }
+}
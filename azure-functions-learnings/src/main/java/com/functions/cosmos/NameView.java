@@ -0,0 +1,74 @@
+package com.functions.cosmos;
+
+import com.functions.json.JsonStreamReader;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The documents sharing one name, as of the last change-feed batch that touched them, with the
+ * aggregates the read endpoints need. Immutable: a batch publishes a new instance, so readers
+ * never see a half-applied batch.
+ */
+public final class NameView {
+    private final String name;
+    private final List<ViewDocument> documents;
+    private final long lastModifiedSeconds;
+
+    NameView(String name, List<ViewDocument> documents, long lastModifiedSeconds) {
+        this.name = name;
+        this.documents = Collections.unmodifiableList(documents);
+        this.lastModifiedSeconds = lastModifiedSeconds;
+    }
+
+    static NameView empty(String name) {
+        return new NameView(name, Collections.<ViewDocument>emptyList(), 0);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The documents in the order they were first seen.
+     */
+    public List<ViewDocument> getDocuments() {
+        return documents;
+    }
+
+    public int getCount() {
+        return documents.size();
+    }
+
+    /**
+     * The latest _ts among the documents, in epoch seconds, or 0 if there are none.
+     */
+    public long getLastModifiedSeconds() {
+        return lastModifiedSeconds;
+    }
+
+    /**
+     * The aggregates and the id and name of each document, the projection of
+     * {@code SELECT f.id, f.name FROM f WHERE f.name = {name}}.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(64 + documents.size() * 48).append("{\"name\":");
+        JsonStreamReader.writeQuoted(json, name);
+        json.append(",\"count\":").append(documents.size())
+            .append(",\"lastModified\":").append(lastModifiedSeconds)
+            .append(",\"items\":[");
+        for (int i = 0; i < documents.size(); i++) {
+            json.append(i == 0 ? "{\"id\":" : ",{\"id\":");
+            JsonStreamReader.writeQuoted(json, documents.get(i).getId());
+            json.append(",\"name\":");
+            JsonStreamReader.writeQuoted(json, name);
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    @Override
+    public String toString() {
+        return "NameView{" + name + ", count=" + documents.size() + "}";
+    }
+}
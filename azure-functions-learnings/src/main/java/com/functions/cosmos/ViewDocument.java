@@ -0,0 +1,117 @@
+package com.functions.cosmos;
+
+import com.functions.json.JsonStreamReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * One change-feed document as the view keeps it: the fields the view indexes and versions by,
+ * and the document's JSON as it arrived.
+ */
+public final class ViewDocument {
+    private final String id;
+    private final String name;
+    private final long timestampSeconds;
+    private final long version;
+    private final boolean deleted;
+    private final String json;
+
+    ViewDocument(String id, String name, long timestampSeconds, long version, boolean deleted, String json) {
+        this.id = id;
+        this.name = name;
+        this.timestampSeconds = timestampSeconds;
+        this.version = version;
+        this.deleted = deleted;
+        this.json = json;
+    }
+
+    /**
+     * Reads id, name, _ts, _lsn and deleted from the top level of a document and skips the
+     * rest. The version is _lsn, which orders every change within a logical partition, or _ts
+     * when the feed does not carry it.
+     */
+    public static ViewDocument parse(String json) {
+        String id = null;
+        String name = null;
+        long timestamp = 0;
+        long lsn = -1;
+        boolean deleted = false;
+        try {
+            JsonStreamReader reader = new JsonStreamReader(json);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (reader.peek() == JsonStreamReader.Token.NULL) {
+                    reader.skipValue();
+                    continue;
+                }
+                switch (field) {
+                    case "id":
+                        id = reader.nextString();
+                        break;
+                    case "name":
+                        name = reader.nextString();
+                        break;
+                    case "_ts":
+                        timestamp = reader.nextLong();
+                        break;
+                    case "_lsn":
+                        lsn = reader.nextLong();
+                        break;
+                    case "deleted":
+                        deleted = "true".equals(reader.nextString());
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot parse change feed document", e);
+        }
+        if (id == null) {
+            throw new IllegalArgumentException("Change feed document has no id: " + json);
+        }
+        return new ViewDocument(id, name, timestamp, lsn >= 0 ? lsn : timestamp, deleted, json);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * The indexed name, or null if the document has none.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The _ts system property: when the document was last written, in epoch seconds.
+     */
+    public long getTimestampSeconds() {
+        return timestampSeconds;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * True for a soft delete ({@code "deleted": true}). The change feed does not report hard
+     * deletes, so writers mark a document deleted before removing or expiring it.
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return json;
+    }
+}
@@ -1,7 +1,11 @@
 package com.functions.durableLearnings;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
+import com.functions.execution.FunctionWrapper;
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpMethod;
 import com.microsoft.azure.functions.HttpRequestMessage;
@@ -10,6 +14,7 @@ import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
 import com.microsoft.durabletask.DurableTaskClient;
+import com.microsoft.durabletask.Task;
 import com.microsoft.durabletask.TaskOrchestrationContext;
 import com.microsoft.durabletask.azurefunctions.DurableActivityTrigger;
 import com.microsoft.durabletask.azurefunctions.DurableClientContext;
@@ -43,17 +48,36 @@ import com.microsoft.durabletask.azurefunctions.DurableOrchestrationTrigger;
  */
 public class DurableFunction {
 
+	private static final FunctionWrapper START_ORCHESTRATION = FunctionWrapper.of("StartOrchestration");
+	private static final FunctionWrapper CITIES = FunctionWrapper.of("Cities");
+	private static final FunctionWrapper CAPITALIZE = FunctionWrapper.of("Capitalize");
+	private static final FunctionWrapper CITIES_BATCHED = FunctionWrapper.of("CitiesBatched");
+	private static final FunctionWrapper CAPITALIZE_BATCH = FunctionWrapper.of("CapitalizeBatch");
+	private static final String[] DEFAULT_CITIES = { "Tokyo", "London", "Seattle", "Austin" };
+	/** Chunks CitiesBatched spreads its input over, so large inputs still use several activity workers. */
+	static final int MAX_PARALLEL_CHUNKS = 16;
+	/** Smallest chunk worth an activity round trip once the input is split at all. */
+	static final int MIN_CHUNK_ITEMS = 8;
+	/** Largest chunk payload; the extension moves queue messages over about 45 KB to blobs. */
+	static final int MAX_CHUNK_BYTES = 32 * 1024;
+
 	@FunctionName("StartOrchestration")
 	public HttpResponseMessage startOrchestration(@HttpTrigger(name = "req", methods = { HttpMethod.GET,
 			HttpMethod.POST }, authLevel = AuthorizationLevel.ANONYMOUS) HttpRequestMessage<Optional<String>> request,
 			@DurableClientInput(name = "durableContext") DurableClientContext durableContext,
 			final ExecutionContext context) {
-		context.getLogger().info("Java HTTP trigger processed a request.");
+		return START_ORCHESTRATION.http(request, context, () -> {
+			START_ORCHESTRATION.getLog().info(context, "Java HTTP trigger processed a request.");
 
-		DurableTaskClient client = durableContext.getClient();
-		String instanceId = client.scheduleNewOrchestrationInstance("Cities");
-		context.getLogger().info("Created new Java orchestration with instance ID = " + instanceId);
-		return durableContext.createCheckStatusResponse(request, instanceId);
+			DurableTaskClient client = durableContext.getClient();
+			// ?cities=Tokyo,London,... runs the batch variant over the given cities
+			String cities = request.getQueryParameters().get("cities");
+			String instanceId = cities != null
+					? client.scheduleNewOrchestrationInstance("CitiesBatched", cities.split(","))
+					: client.scheduleNewOrchestrationInstance("Cities");
+			START_ORCHESTRATION.getLog().info(context, () -> "Created new Java orchestration with instance ID = " + instanceId);
+			return durableContext.createCheckStatusResponse(request, instanceId);
+		});
 	}
 
 	/**
@@ -63,12 +87,14 @@ public class DurableFunction {
 	 */
 	@FunctionName("Cities")
 	public String citiesOrchestrator(@DurableOrchestrationTrigger(name = "ctx") TaskOrchestrationContext ctx) {
-		String result = "";
-		result += ctx.callActivity("Capitalize", "Tokyo", String.class).await() + ", ";
-		result += ctx.callActivity("Capitalize", "London", String.class).await() + ", ";
-		result += ctx.callActivity("Capitalize", "Seattle", String.class).await() + ", ";
-		result += ctx.callActivity("Capitalize", "Austin", String.class).await();
-		return result;
+		return CITIES.record(null, () -> {
+			String result = "";
+			result += ctx.callActivity("Capitalize", "Tokyo", String.class).await() + ", ";
+			result += ctx.callActivity("Capitalize", "London", String.class).await() + ", ";
+			result += ctx.callActivity("Capitalize", "Seattle", String.class).await() + ", ";
+			result += ctx.callActivity("Capitalize", "Austin", String.class).await();
+			return result;
+		});
 	}
 
 	/**
@@ -76,8 +102,104 @@ public class DurableFunction {
 	 */
 	@FunctionName("Capitalize")
 	public String capitalize(@DurableActivityTrigger(name = "name") String name, final ExecutionContext context) {
-		context.getLogger().info("Capitalizing: " + name);
-		return name.toUpperCase();
+		return CAPITALIZE.record(context, () -> {
+			CAPITALIZE.getLog().info(context, () -> "Capitalizing: " + name);
+			return name.toUpperCase();
+		});
+	}
+
+	/**
+	 * Batch variant of Cities for many inputs: one CapitalizeBatch call per chunk of
+	 * cities, all chunks in flight at once. Every activity call adds a TaskScheduled and
+	 * a TaskCompleted event to the history and costs a queue round trip plus a replay of
+	 * the whole history, so n cities in the {@link #chunks(List)} cost one of those per chunk
+	 * instead of n. Input is the array of cities, the four of Cities without one.
+	 */
+	@FunctionName("CitiesBatched")
+	public String citiesBatchedOrchestrator(@DurableOrchestrationTrigger(name = "ctx") TaskOrchestrationContext ctx) {
+		return CITIES_BATCHED.record(null, () -> {
+			String[] input = ctx.getInput(String[].class);
+			List<String> cities = Arrays.asList(input != null ? input : DEFAULT_CITIES);
+			List<Task<String[]>> chunks = new ArrayList<>();
+			for (List<String> chunk : chunks(cities)) {
+				chunks.add(ctx.callActivity("CapitalizeBatch", chunk.toArray(new String[0]), String[].class));
+			}
+			List<String> result = new ArrayList<>(cities.size());
+			for (String[] capitalized : ctx.allOf(chunks).await()) {
+				result.addAll(Arrays.asList(capitalized));
+			}
+			return String.join(", ", result);
+		});
+	}
+
+	/**
+	 * Capitalizes a chunk of names in one invocation and returns them in input order. The work
+	 * is a toUpperCase per name, so it runs inline: handing it to other threads would cost more
+	 * than it does.
+	 */
+	@FunctionName("CapitalizeBatch")
+	public String[] capitalizeBatch(@DurableActivityTrigger(name = "names") String[] names, final ExecutionContext context) {
+		return CAPITALIZE_BATCH.record(context, () -> {
+			CAPITALIZE_BATCH.getLog().info(context, () -> "Capitalizing " + names.length + " names");
+			String[] capitalized = new String[names.length];
+			for (int i = 0; i < names.length; i++) {
+				capitalized[i] = names[i].toUpperCase();
+			}
+			return capitalized;
+		});
+	}
+
+	/**
+	 * The CapitalizeBatch calls for this input, in input order. A chunk takes the next
+	 * n / {@link #MAX_PARALLEL_CHUNKS} names, but at least {@link #MIN_CHUNK_ITEMS}, and is
+	 * closed early if the next name would take the JSON of the chunk past
+	 * {@link #MAX_CHUNK_BYTES}. A name that is larger by itself gets a chunk of its own.
+	 */
+	static List<List<String>> chunks(List<String> names) {
+		int spread = Math.max(MIN_CHUNK_ITEMS, (names.size() + MAX_PARALLEL_CHUNKS - 1) / MAX_PARALLEL_CHUNKS);
+		List<List<String>> chunks = new ArrayList<>();
+		int from = 0;
+		// The brackets of the JSON array
+		long bytes = 2;
+		for (int i = 0; i < names.size(); i++) {
+			long element = jsonBytes(names.get(i));
+			if (i > from && (i - from == spread || bytes + element > MAX_CHUNK_BYTES)) {
+				chunks.add(names.subList(from, i));
+				from = i;
+				bytes = 2;
+			}
+			bytes += element;
+		}
+		if (from < names.size()) {
+			chunks.add(names.subList(from, names.size()));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Bytes of a name as a JSON array element: its UTF-8 encoding with quotes, backslashes
+	 * and control characters escaped, the quotes around it and the comma after it.
+	 */
+	static long jsonBytes(String name) {
+		long bytes = 3;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == '"' || c == '\\') {
+				bytes += 2;
+			} else if (c < 0x20) {
+				bytes += 6;
+			} else if (c < 0x80) {
+				bytes += 1;
+			} else if (c < 0x800) {
+				bytes += 2;
+			} else if (Character.isHighSurrogate(c)) {
+				// With its low surrogate, four bytes for the pair
+				bytes += 2;
+			} else {
+				bytes += Character.isLowSurrogate(c) ? 2 : 3;
+			}
+		}
+		return bytes;
 	}
 
 }
@@ -3,6 +3,7 @@ package com.functions.durableLearnings;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import com.functions.execution.FunctionWrapper;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.durabletask.Task;
 import com.microsoft.durabletask.TaskOrchestrationContext;
@@ -13,6 +14,8 @@ import com.microsoft.durabletask.azurefunctions.DurableOrchestrationTrigger;
  */
 public class DurableFunctionFanOutFanIn {
 
+	private static final FunctionWrapper FAN_OUT_FAN_IN = FunctionWrapper.of("FanOutFanIn");
+
 	/*
 	 * Fan out/fan in
 	 * 
@@ -22,14 +25,16 @@ public class DurableFunctionFanOutFanIn {
 	 */
 	@FunctionName("FanOutFanIn")
 	public Integer fanOutFanInOrchestrator(@DurableOrchestrationTrigger(name = "ctx") TaskOrchestrationContext ctx) {
-		// Get the list of work-items to process in parallel
-		List<?> batch = ctx.callActivity("F1", List.class).await();
-		// Schedule each task to run in parallel
-		List<Task<Integer>> parallelTasks = batch.stream().map(item -> ctx.callActivity("F2", item, Integer.class))
-				.collect(Collectors.toList());
-		// Wait for all tasks to complete, then return the aggregated sum of the results
-		List<Integer> results = ctx.allOf(parallelTasks).await();
-		return results.stream().reduce(0, Integer::sum);
+		return FAN_OUT_FAN_IN.record(null, () -> {
+			// Get the list of work-items to process in parallel
+			List<?> batch = ctx.callActivity("F1", List.class).await();
+			// Schedule each task to run in parallel
+			List<Task<Integer>> parallelTasks = batch.stream().map(item -> ctx.callActivity("F2", item, Integer.class))
+					.collect(Collectors.toList());
+			// Wait for all tasks to complete, then return the aggregated sum of the results
+			List<Integer> results = ctx.allOf(parallelTasks).await();
+			return results.stream().reduce(0, Integer::sum);
+		});
 	}
 
 }
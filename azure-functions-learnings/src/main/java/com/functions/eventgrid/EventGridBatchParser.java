@@ -0,0 +1,65 @@
+package com.functions.eventgrid;
+
+import com.functions.json.JsonStreamReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams {@link EventGridEvent}s out of an Event Grid delivery.
+ * <p>
+ * Event Grid delivers a JSON array of events, while a single-event trigger payload is a bare
+ * object; both are accepted. Events are materialized one at a time as the iterator advances,
+ * and the {@code data} member is kept as raw JSON text so handlers decide whether to parse it
+ * (see {@link EventGridEventCodec}).
+ */
+public class EventGridBatchParser implements Iterator<EventGridEvent> {
+    private final JsonStreamReader reader;
+    private boolean array;
+    private boolean started;
+    private boolean singleConsumed;
+
+    public EventGridBatchParser(Reader in) {
+        this.reader = new JsonStreamReader(in);
+    }
+
+    public static EventGridBatchParser parse(String content) {
+        return new EventGridBatchParser(new StringReader(content));
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            if (!started) {
+                started = true;
+                array = reader.peek() == JsonStreamReader.Token.BEGIN_ARRAY;
+                if (array) {
+                    reader.beginArray();
+                }
+            }
+            if (array) {
+                return reader.hasNext();
+            }
+            return !singleConsumed && reader.peek() == JsonStreamReader.Token.BEGIN_OBJECT;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public EventGridEvent next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            singleConsumed = !array;
+            return EventGridEventCodec.read(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
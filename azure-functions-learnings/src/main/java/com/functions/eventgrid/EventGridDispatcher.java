@@ -0,0 +1,203 @@
+package com.functions.eventgrid;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Routes Event Grid events to registered handlers and runs independent events in parallel.
+ * <p>
+ * A handler is chosen by exact {@code eventType} first, then by the longest registered
+ * {@code subject} prefix, then the fallback. Events that share a subject are treated as
+ * dependent and run in delivery order; events with different subjects run concurrently on the
+ * worker pool. Dispatch starts while the batch is still being parsed.
+ * <p>
+ * Instead of logging every payload, one event in {@code sampleEvery} is logged in full; per
+ * event type counters give throughput without log volume.
+ */
+public class EventGridDispatcher implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface EventHandler {
+        void handle(EventGridEvent event) throws Exception;
+    }
+
+    private final Map<String, EventHandler> byEventType = new ConcurrentHashMap<>();
+    private final TreeMap<String, EventHandler> bySubjectPrefix = new TreeMap<>();
+    private volatile EventHandler fallback;
+    private final ExecutorService workers;
+    private final int sampleEvery;
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final long startedNanos = System.nanoTime();
+
+    private final ConcurrentHashMap<String, LongAdder> handledByType = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder unrouted = new LongAdder();
+
+    public EventGridDispatcher(int parallelism, int sampleEvery) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "eventgrid-dispatch-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.sampleEvery = Math.max(1, sampleEvery);
+    }
+
+    public EventGridDispatcher on(String eventType, EventHandler handler) {
+        byEventType.put(eventType, handler);
+        return this;
+    }
+
+    public EventGridDispatcher onSubjectPrefix(String subjectPrefix, EventHandler handler) {
+        synchronized (bySubjectPrefix) {
+            bySubjectPrefix.put(subjectPrefix, handler);
+        }
+        return this;
+    }
+
+    public EventGridDispatcher otherwise(EventHandler handler) {
+        this.fallback = handler;
+        return this;
+    }
+
+    /**
+     * Dispatches every event and waits until all of them have been handled. If the batch fails
+     * to parse part way, the events already dispatched are still waited for before the parse
+     * error is rethrown, so no handler outlives the invocation.
+     */
+    public DispatchResult dispatch(Iterator<EventGridEvent> events, Logger logger) {
+        Map<String, CompletableFuture<Void>> tails = new HashMap<>();
+        List<String> errors = new ArrayList<>();
+        int dispatched = 0;
+        try {
+            while (events.hasNext()) {
+                EventGridEvent event = events.next();
+                dispatched++;
+                if (sampleCounter.getAndIncrement() % sampleEvery == 0) {
+                    logger.info("Sampled Event Grid event id=" + event.getId() + " type=" + event.getEventType()
+                        + " subject=" + event.getSubject() + " data=" + event.getData());
+                }
+                EventHandler handler = route(event);
+                if (handler == null) {
+                    unrouted.increment();
+                    continue;
+                }
+                Runnable task = () -> run(handler, event, logger, errors);
+                String subject = event.getSubject() == null ? "" : event.getSubject();
+                CompletableFuture<Void> tail = tails.get(subject);
+                tails.put(subject, tail == null
+                    ? CompletableFuture.runAsync(task, workers)
+                    : tail.thenRunAsync(task, workers));
+            }
+        } finally {
+            CompletableFuture.allOf(tails.values().toArray(new CompletableFuture<?>[0])).join();
+        }
+        synchronized (errors) {
+            return new DispatchResult(dispatched, new ArrayList<>(errors));
+        }
+    }
+
+    private void run(EventHandler handler, EventGridEvent event, Logger logger, List<String> errors) {
+        try {
+            handler.handle(event);
+            String type = event.getEventType() == null ? "<none>" : event.getEventType();
+            handledByType.computeIfAbsent(type, k -> new LongAdder()).increment();
+        } catch (Exception e) {
+            failures.increment();
+            logger.log(Level.WARNING, "Event Grid handler failed for event " + event.getId(), e);
+            synchronized (errors) {
+                errors.add(event.getId());
+            }
+        }
+    }
+
+    EventHandler route(EventGridEvent event) {
+        if (event.getEventType() != null) {
+            EventHandler handler = byEventType.get(event.getEventType());
+            if (handler != null) {
+                return handler;
+            }
+        }
+        String subject = event.getSubject();
+        if (subject != null) {
+            synchronized (bySubjectPrefix) {
+                // Keys sort so that every prefix of subject is <= subject; walk down to the longest match
+                for (Map.Entry<String, EventHandler> entry : bySubjectPrefix.headMap(subject, true).descendingMap().entrySet()) {
+                    if (subject.startsWith(entry.getKey())) {
+                        return entry.getValue();
+                    }
+                }
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Events handled per second, per event type, since the dispatcher was created.
+     */
+    public Map<String, Double> throughputByEventType() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startedNanos) / 1e9);
+        Map<String, Double> rates = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : handledByType.entrySet()) {
+            rates.put(entry.getKey(), entry.getValue().sum() / seconds);
+        }
+        return rates;
+    }
+
+    public long handled(String eventType) {
+        LongAdder counter = handledByType.get(eventType);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getUnrouted() {
+        return unrouted.sum();
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    /**
+     * Outcome of one delivered batch.
+     */
+    public static class DispatchResult {
+        private final int dispatched;
+        private final List<String> failedEventIds;
+
+        DispatchResult(int dispatched, List<String> failedEventIds) {
+            this.dispatched = dispatched;
+            this.failedEventIds = failedEventIds;
+        }
+
+        public int getDispatched() {
+            return dispatched;
+        }
+
+        public List<String> getFailedEventIds() {
+            return failedEventIds;
+        }
+
+        @Override
+        public String toString() {
+            return "dispatched=" + dispatched + " failed=" + failedEventIds.size();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.functions.eventgrid;
+
+import com.functions.json.JsonStreamReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Event Grid event schema, as sent by EventGridOutputBindingJava and received by the trigger.
+ * <p>
+ * Instances are immutable and compact: {@code eventType} and {@code dataVersion} come from a
+ * small shared pool, so millions of events reference a handful of strings; {@code eventTime}
+ * is held as epoch milliseconds; {@code data} is kept as the raw JSON text from the wire and
+ * only decoded when {@link #getData()} is called. Use {@link EventGridEventCodec} to read and
+ * write the wire format.
+ */
+public final class EventGridEvent {
+    /** Bounds the pool so a producer sending random event types cannot grow it without limit. */
+    private static final int MAX_POOLED_VALUES = 1024;
+    private static final ConcurrentHashMap<String, String> POOL = new ConcurrentHashMap<>();
+
+    private final String id;
+    private final String eventType;
+    private final String subject;
+    private final long eventTimeMillis;
+    private final String dataVersion;
+    private final String rawData;
+    /** Decoded lazily; a racy single-check is fine because decoding is idempotent. */
+    private String data;
+
+    public EventGridEvent(String id, String eventType, String subject, long eventTimeMillis, String dataVersion, String rawData) {
+        this.id = id;
+        this.eventType = pooled(eventType);
+        this.subject = subject;
+        this.eventTimeMillis = eventTimeMillis;
+        this.dataVersion = pooled(dataVersion);
+        this.rawData = rawData;
+    }
+
+    /**
+     * Creates an event whose {@code data} is a JSON string.
+     */
+    public static EventGridEvent withStringData(String id, String eventType, String subject, long eventTimeMillis,
+                                                String dataVersion, String data) {
+        String rawData = null;
+        if (data != null) {
+            StringBuilder quoted = new StringBuilder(data.length() + 2);
+            JsonStreamReader.writeQuoted(quoted, data);
+            rawData = quoted.toString();
+        }
+        EventGridEvent event = new EventGridEvent(id, eventType, subject, eventTimeMillis, dataVersion, rawData);
+        event.data = data;
+        return event;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public long getEventTimeMillis() {
+        return eventTimeMillis;
+    }
+
+    public String getDataVersion() {
+        return dataVersion;
+    }
+
+    /**
+     * The data member as JSON text, exactly as it will be written back to the wire.
+     */
+    public String getRawData() {
+        return rawData;
+    }
+
+    /**
+     * The data member as a string: decoded if it is a JSON string, otherwise its raw JSON text.
+     */
+    public String getData() {
+        String decoded = data;
+        if (decoded == null && rawData != null) {
+            decoded = rawData.startsWith("\"") ? decodeString(rawData) : rawData;
+            data = decoded;
+        }
+        return decoded;
+    }
+
+    @Override
+    public String toString() {
+        return "EventGridEvent{id=" + id + ", eventType=" + eventType + ", subject=" + subject + ", eventTime=" + eventTimeMillis + "}";
+    }
+
+    static String pooled(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = POOL.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (POOL.size() >= MAX_POOLED_VALUES) {
+            return value;
+        }
+        existing = POOL.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    private static String decodeString(String json) {
+        try {
+            return new JsonStreamReader(json).nextString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.functions.eventgrid;
+
+import com.functions.json.JsonStreamReader;
+
+import java.io.IOException;
+
+/**
+ * Hand-written JSON codec for {@link EventGridEvent}, so events never go through reflective
+ * serialization.
+ * <p>
+ * Reading streams members straight into the constructor arguments and keeps {@code data} as
+ * raw text; writing appends into a caller-supplied builder so a whole batch shares one buffer.
+ * {@code eventTime} is required by the Event Grid schema, so an event without one is rejected
+ * rather than read as the epoch and written back as 1970.
+ */
+public final class EventGridEventCodec {
+    private static final EventTimeClock CLOCK = new EventTimeClock();
+
+    private EventGridEventCodec() {
+    }
+
+    public static EventGridEvent read(JsonStreamReader reader) throws IOException {
+        String id = null;
+        String eventType = null;
+        String subject = null;
+        String eventTime = null;
+        String dataVersion = null;
+        String rawData = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "id":
+                    id = reader.nextString();
+                    break;
+                case "eventType":
+                    eventType = reader.nextSymbol();
+                    break;
+                case "subject":
+                    subject = reader.nextString();
+                    break;
+                case "eventTime":
+                    eventTime = reader.nextString();
+                    break;
+                case "dataVersion":
+                    dataVersion = reader.nextSymbol();
+                    break;
+                case "data":
+                    rawData = reader.peek() == JsonStreamReader.Token.NULL ? reader.nextString() : reader.nextRawValue();
+                    break;
+                default:
+                    // topic, metadataVersion and unknown members are not used by the handlers
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (eventTime == null) {
+            throw new IOException("Event " + id + " has no eventTime");
+        }
+        return new EventGridEvent(id, eventType, subject, EventTimeClock.parseMillis(eventTime), dataVersion, rawData);
+    }
+
+    public static EventGridEvent read(String json) throws IOException {
+        return read(new JsonStreamReader(json));
+    }
+
+    public static StringBuilder write(EventGridEvent event, StringBuilder out) {
+        out.append("{\"id\":");
+        writeString(out, event.getId());
+        out.append(",\"eventType\":");
+        writeString(out, event.getEventType());
+        out.append(",\"subject\":");
+        writeString(out, event.getSubject());
+        out.append(",\"eventTime\":\"").append(CLOCK.format(event.getEventTimeMillis()));
+        out.append("\",\"dataVersion\":");
+        writeString(out, event.getDataVersion());
+        out.append(",\"data\":").append(event.getRawData() == null ? "null" : event.getRawData());
+        return out.append('}');
+    }
+
+    public static String toJson(EventGridEvent event) {
+        return write(event, new StringBuilder(192)).toString();
+    }
+
+    /**
+     * Writes the events as the JSON array an Event Grid topic accepts.
+     */
+    public static String toJsonArray(Iterable<EventGridEvent> events) {
+        StringBuilder out = new StringBuilder(1024).append('[');
+        for (EventGridEvent event : events) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            write(event, out);
+        }
+        return out.append(']').toString();
+    }
+
+    private static void writeString(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+        } else {
+            JsonStreamReader.writeQuoted(out, value);
+        }
+    }
+}
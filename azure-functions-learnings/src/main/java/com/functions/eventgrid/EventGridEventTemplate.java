@@ -0,0 +1,46 @@
+package com.functions.eventgrid;
+
+import com.functions.json.JsonStreamReader;
+/**
+ * The fields that are the same for every event a function publishes (eventType, subject,
+ * dataVersion), serialized once into a JSON fragment that the publisher splices into each event.
+ */
+public class EventGridEventTemplate {
+    private final String eventType;
+    private final String subject;
+    private final String dataVersion;
+    private final String staticFields;
+
+    public EventGridEventTemplate(String eventType, String subject, String dataVersion) {
+        this.eventType = eventType;
+        this.subject = subject;
+        this.dataVersion = dataVersion;
+        StringBuilder json = new StringBuilder(96);
+        json.append(",\"eventType\":");
+        JsonStreamReader.writeQuoted(json, eventType);
+        json.append(",\"subject\":");
+        JsonStreamReader.writeQuoted(json, subject);
+        json.append(",\"dataVersion\":");
+        JsonStreamReader.writeQuoted(json, dataVersion);
+        this.staticFields = json.toString();
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getDataVersion() {
+        return dataVersion;
+    }
+
+    /**
+     * The pre-serialized static members, starting with a comma.
+     */
+    String staticFields() {
+        return staticFields;
+    }
+}
@@ -0,0 +1,228 @@
+package com.functions.eventgrid;
+
+import com.functions.json.JsonStreamReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared, batching Event Grid publisher for HTTP-triggered functions.
+ * <p>
+ * Every caller serializes its own event (ids and timestamps come from lock-free generators and
+ * the static fields from a pre-serialized {@link EventGridEventTemplate}) and only takes the
+ * batch lock to append the finished bytes. A batch is posted as one JSON array when the next
+ * event would push it past the topic's 1 MB request limit, or when it has lingered for
+ * {@code lingerMs}. Concurrent invocations therefore share outbound requests, and each
+ * caller gets a future that completes when its batch has been accepted by the topic.
+ * <p>
+ * A failed post is retried after an exponential backoff with full jitter, so instances that
+ * failed together do not retry together, but only for transport errors and the statuses
+ * {@link EventGridTopicException#isRetryable()} accepts; other rejections fail the batch at
+ * once. Retries wait on the timer, not on a sender thread.
+ */
+public class EventGridPublisher implements AutoCloseable {
+    /** Event Grid rejects requests larger than 1 MB. */
+    public static final int MAX_BATCH_BYTES = 1024 * 1024;
+    private static final int MAX_SEND_ATTEMPTS = 3;
+    private static final long BASE_BACKOFF_MILLIS = 100;
+
+    private final EventGridTransport transport;
+    private final int maxBatchBytes;
+    private final long lingerNanos;
+    private final EventIdGenerator ids = new EventIdGenerator();
+    private final EventTimeClock clock = new EventTimeClock();
+    private final ExecutorService senders;
+    private final ScheduledExecutorService lingerTimer;
+    private final Object lock = new Object();
+    private Batch current = new Batch();
+
+    private final LongAdder eventsPublished = new LongAdder();
+    private final LongAdder requestsSent = new LongAdder();
+    private final LongAdder requestsFailed = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    public EventGridPublisher(EventGridTransport transport, long lingerMs) {
+        this(transport, MAX_BATCH_BYTES, lingerMs, 2);
+    }
+
+    public EventGridPublisher(EventGridTransport transport, int maxBatchBytes, long lingerMs, int senderThreads) {
+        if (maxBatchBytes < 2 || maxBatchBytes > MAX_BATCH_BYTES) {
+            throw new IllegalArgumentException("maxBatchBytes must be at most " + MAX_BATCH_BYTES);
+        }
+        this.transport = transport;
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, r -> daemon(r, "eventgrid-publish-" + threadNumber.incrementAndGet()));
+        this.lingerTimer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "eventgrid-linger"));
+        long tick = Math.max(1, lingerMs / 2);
+        lingerTimer.scheduleAtFixedRate(this::sealLingering, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues an event whose data is a JSON string.
+     *
+     * @return completes when the batch holding the event has been posted
+     */
+    public CompletableFuture<Void> publish(EventGridEventTemplate template, String data) {
+        StringBuilder json = new StringBuilder(128 + (data == null ? 0 : data.length()));
+        json.append("{\"id\":\"").append(ids.nextId())
+            .append("\",\"eventTime\":\"").append(clock.now()).append('"')
+            .append(template.staticFields())
+            .append(",\"data\":");
+        if (data == null) {
+            json.append("null");
+        } else {
+            JsonStreamReader.writeQuoted(json, data);
+        }
+        json.append('}');
+        return append(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Posts whatever is pending without waiting for the linger timer.
+     */
+    public CompletableFuture<Void> flush() {
+        Batch sealed;
+        synchronized (lock) {
+            sealed = current;
+            current = new Batch();
+        }
+        return send(sealed);
+    }
+
+    public long getEventsPublished() {
+        return eventsPublished.sum();
+    }
+
+    public long getRequestsSent() {
+        return requestsSent.sum();
+    }
+
+    public long getRequestsFailed() {
+        return requestsFailed.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public void close() {
+        lingerTimer.shutdown();
+        flush().join();
+        senders.shutdown();
+    }
+
+    private CompletableFuture<Void> append(byte[] event) {
+        if (event.length + 2 > maxBatchBytes) {
+            CompletableFuture<Void> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new IllegalArgumentException("Event of " + event.length + " bytes exceeds the batch limit"));
+            return rejected;
+        }
+        Batch sealed = null;
+        CompletableFuture<Void> sent;
+        synchronized (lock) {
+            if (!current.fits(event.length, maxBatchBytes)) {
+                sealed = current;
+                current = new Batch();
+            }
+            current.add(event);
+            sent = current.sent;
+        }
+        if (sealed != null) {
+            send(sealed);
+        }
+        return sent;
+    }
+
+    private void sealLingering() {
+        Batch sealed = null;
+        synchronized (lock) {
+            if (current.count > 0 && System.nanoTime() - current.createdNanos >= lingerNanos) {
+                sealed = current;
+                current = new Batch();
+            }
+        }
+        if (sealed != null) {
+            send(sealed);
+        }
+    }
+
+    private CompletableFuture<Void> send(Batch batch) {
+        if (batch.count == 0) {
+            batch.sent.complete(null);
+            return batch.sent;
+        }
+        byte[] body = batch.seal();
+        senders.execute(() -> attempt(batch, body, 1));
+        return batch.sent;
+    }
+
+    private void attempt(Batch batch, byte[] body, int attempt) {
+        try {
+            transport.post(body, batch.count);
+            requestsSent.increment();
+            eventsPublished.add(batch.count);
+            batch.sent.complete(null);
+        } catch (IOException e) {
+            boolean retryable = !(e instanceof EventGridTopicException) || ((EventGridTopicException) e).isRetryable();
+            if (retryable && attempt < MAX_SEND_ATTEMPTS) {
+                long backoff = ThreadLocalRandom.current().nextLong(BASE_BACKOFF_MILLIS << (attempt - 1)) + 1;
+                try {
+                    lingerTimer.schedule(() -> senders.execute(() -> attempt(batch, body, attempt + 1)), backoff, TimeUnit.MILLISECONDS);
+                    retries.increment();
+                    return;
+                } catch (RejectedExecutionException closed) {
+                    // Closing: fail the batch rather than retry
+                }
+            }
+            requestsFailed.increment();
+            batch.sent.completeExceptionally(e);
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static final class Batch {
+        private final ByteArrayOutputStream json = new ByteArrayOutputStream(16 * 1024);
+        private final CompletableFuture<Void> sent = new CompletableFuture<>();
+        private final long createdNanos = System.nanoTime();
+        private int count;
+
+        Batch() {
+            json.write('[');
+        }
+
+        boolean fits(int eventBytes, int maxBatchBytes) {
+            // existing bytes + separator + event + closing bracket
+            return json.size() + 1 + eventBytes + 1 <= maxBatchBytes;
+        }
+
+        void add(byte[] event) {
+            if (count++ > 0) {
+                json.write(',');
+            }
+            json.write(event, 0, event.length);
+        }
+
+        byte[] seal() {
+            json.write(']');
+            return json.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.functions.eventgrid;
+
+import java.io.IOException;
+
+/**
+ * A topic answered a publish with an error status.
+ */
+public class EventGridTopicException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public EventGridTopicException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Timeouts, throttling and server errors may succeed on a later attempt; other statuses,
+     * such as a bad key or a malformed event, will not.
+     */
+    public boolean isRetryable() {
+        return status == 408 || status == 429 || status >= 500;
+    }
+}
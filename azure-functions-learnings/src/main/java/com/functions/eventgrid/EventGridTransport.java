@@ -0,0 +1,10 @@
+package com.functions.eventgrid;
+
+import java.io.IOException;
+
+/**
+ * Sends one serialized JSON array of events to an Event Grid topic.
+ */
+public interface EventGridTransport {
+    void post(byte[] jsonArray, int eventCount) throws IOException;
+}
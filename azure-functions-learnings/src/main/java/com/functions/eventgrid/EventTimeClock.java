@@ -0,0 +1,139 @@
+package com.functions.eventgrid;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats the current time as an Event Grid eventTime ("2020-01-31T10:10:10.123Z").
+ * <p>
+ * The date-time part changes once a second, so it is formatted once per second and cached in
+ * an immutable holder published through a volatile field; the milliseconds are appended by
+ * hand. Readers never lock and never run a DateTimeFormatter on the hot path.
+ * <p>
+ * {@link #parseMillis(String)} is the inverse used when decoding events; sub-millisecond
+ * digits (Event Grid sends up to seven) are truncated.
+ */
+public class EventTimeClock {
+    private static final DateTimeFormatter SECONDS = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").withZone(ZoneOffset.UTC);
+
+    private volatile Second cached = new Second(-1, null);
+
+    public String now() {
+        return format(System.currentTimeMillis());
+    }
+
+    public String format(long epochMillis) {
+        long epochSecond = Math.floorDiv(epochMillis, 1000);
+        Second second = cached;
+        if (second.epochSecond != epochSecond) {
+            second = new Second(epochSecond, SECONDS.format(Instant.ofEpochSecond(epochSecond)));
+            cached = second;
+        }
+        int millis = (int) Math.floorMod(epochMillis, 1000L);
+        StringBuilder out = new StringBuilder(24).append(second.text).append('.');
+        if (millis < 100) {
+            out.append('0');
+        }
+        if (millis < 10) {
+            out.append('0');
+        }
+        return out.append(millis).append('Z').toString();
+    }
+
+    /**
+     * Parses an ISO-8601 timestamp to epoch milliseconds. The common
+     * {@code yyyy-MM-ddTHH:mm:ss[.fraction](Z|+hh:mm|-hh:mm)} shape is parsed by hand; anything
+     * else falls back to {@link OffsetDateTime#parse(CharSequence)}.
+     */
+    public static long parseMillis(String text) {
+        int length = text.length();
+        if (length >= 20 && text.charAt(4) == '-' && text.charAt(7) == '-' && text.charAt(10) == 'T'
+            && text.charAt(13) == ':' && text.charAt(16) == ':') {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 2);
+            int day = digits(text, 8, 2);
+            int hour = digits(text, 11, 2);
+            int minute = digits(text, 14, 2);
+            int second = digits(text, 17, 2);
+            int pos = 19;
+            int millis = 0;
+            if (pos < length && text.charAt(pos) == '.') {
+                int scale = 100;
+                for (pos++; pos < length && isDigit(text.charAt(pos)); pos++) {
+                    millis += (text.charAt(pos) - '0') * scale;
+                    scale /= 10;
+                }
+            }
+            int offsetSeconds = Integer.MIN_VALUE;
+            if (pos == length - 1 && (text.charAt(pos) == 'Z' || text.charAt(pos) == 'z')) {
+                offsetSeconds = 0;
+            } else if (pos == length - 6 && (text.charAt(pos) == '+' || text.charAt(pos) == '-') && text.charAt(pos + 3) == ':') {
+                int offset = digits(text, pos + 1, 2) * 3600 + digits(text, pos + 4, 2) * 60;
+                offsetSeconds = text.charAt(pos) == '-' ? -offset : offset;
+            }
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= daysInMonth(year, month) && hour >= 0 && hour <= 23
+                && minute >= 0 && minute <= 59 && second >= 0 && second <= 59 && offsetSeconds != Integer.MIN_VALUE) {
+                long epochDay = epochDay(year, month, day);
+                return (epochDay * 86_400 + hour * 3600 + minute * 60 + second - offsetSeconds) * 1000 + millis;
+            }
+        }
+        return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+    }
+
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Days since 1970-01-01 in the proleptic Gregorian calendar (same algorithm as LocalDate.toEpochDay).
+     */
+    private static long epochDay(int year, int month, int day) {
+        long y = year;
+        long total = 365 * y;
+        total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return total - 719_528;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return isLeapYear(year) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    private static boolean isLeapYear(long year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static final class Second {
+        private final long epochSecond;
+        private final String text;
+
+        Second(long epochSecond, String text) {
+            this.epochSecond = epochSecond;
+            this.text = text;
+        }
+    }
+}
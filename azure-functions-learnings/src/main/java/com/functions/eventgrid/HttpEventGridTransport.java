@@ -0,0 +1,68 @@
+package com.functions.eventgrid;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Posts event batches to a topic endpoint with the aeg-sas-key header, as the output binding does.
+ * Connecting and reading the response are bounded by timeouts, so a topic that stops answering
+ * fails the post instead of holding a sender thread; an error status is reported as an
+ * {@link EventGridTopicException}.
+ */
+public class HttpEventGridTransport implements EventGridTransport {
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5_000;
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 30_000;
+
+    private final URL topicEndpoint;
+    private final String topicKey;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    public HttpEventGridTransport(String topicEndpoint, String topicKey) throws IOException {
+        this(topicEndpoint, topicKey, DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    public HttpEventGridTransport(String topicEndpoint, String topicKey, int connectTimeoutMillis, int readTimeoutMillis) throws IOException {
+        if (connectTimeoutMillis <= 0 || readTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Timeouts must be positive");
+        }
+        this.topicEndpoint = new URL(topicEndpoint);
+        this.topicKey = topicKey;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public void post(byte[] jsonArray, int eventCount) throws IOException {
+        // The connection is not disconnected so the socket stays in the JDK keep-alive cache
+        HttpURLConnection connection = (HttpURLConnection) topicEndpoint.openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(jsonArray.length);
+        connection.setRequestProperty("Content-Type", "application/json");
+        if (topicKey != null) {
+            connection.setRequestProperty("aeg-sas-key", topicKey);
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(jsonArray);
+        }
+        int status = connection.getResponseCode();
+        // Drain the body so the connection can be reused for the next batch
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                byte[] discard = new byte[512];
+                while (in.read(discard) != -1) {
+                    // discard
+                }
+            }
+        }
+        if (status >= 300) {
+            throw new EventGridTopicException(status, "Event Grid topic returned HTTP " + status + " for " + eventCount + " events");
+        }
+    }
+}
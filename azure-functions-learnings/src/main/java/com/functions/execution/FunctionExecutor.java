@@ -0,0 +1,200 @@
+package com.functions.execution;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the independent blocking calls of a function body (Cosmos lookups, Table reads, Service
+ * Bus sends) concurrently on virtual threads or platform threads, or one after another inline
+ * on the invocation thread.
+ * <p>
+ * The worker already runs invocations concurrently, so moving a whole body, or a body's single
+ * blocking call, onto this executor adds a thread hop and no concurrency: the invocation thread
+ * just waits for the other one. What pays is overlapping the calls within one invocation, with
+ * {@link #invokeAll(List)} or several {@link #submit(Callable)}s.
+ * <p>
+ * The mode is opt-in through the {@code LEARNING_function_threads} setting ("virtual",
+ * "platform" or "inline", the default). Virtual threads are looked up reflectively so the
+ * project still builds for Java 8; on a JDK without them "virtual" falls back to a platform
+ * pool of {@code LEARNING_function_platform_threads} threads. Virtual threads pay off most for
+ * wide fan-outs: a thousand parked lookups cost a thousand small heap objects instead of a
+ * thousand stacks.
+ */
+public final class FunctionExecutor implements AutoCloseable {
+    public enum Mode { INLINE, PLATFORM, VIRTUAL }
+
+    public static final String MODE_SETTING = "LEARNING_function_threads";
+    public static final String PLATFORM_THREADS_SETTING = "LEARNING_function_platform_threads";
+    private static final int DEFAULT_PLATFORM_THREADS = 64;
+
+    private final Mode mode;
+    private final ExecutorService executor;
+
+    private FunctionExecutor(Mode mode, ExecutorService executor) {
+        this.mode = mode;
+        this.executor = executor;
+    }
+
+    /**
+     * The executor configured by the app settings, created on first use.
+     */
+    public static FunctionExecutor shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    public static FunctionExecutor inline() {
+        return new FunctionExecutor(Mode.INLINE, null);
+    }
+
+    public static FunctionExecutor platform(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new FunctionExecutor(Mode.PLATFORM, Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "function-body-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    /**
+     * A virtual thread per task, or a platform pool of {@code fallbackThreads} if the JDK has no
+     * virtual threads.
+     */
+    public static FunctionExecutor virtual(int fallbackThreads) {
+        ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+        return virtualThreads != null ? new FunctionExecutor(Mode.VIRTUAL, virtualThreads) : platform(fallbackThreads);
+    }
+
+    public static boolean virtualThreadsSupported() {
+        return VirtualThreads.FACTORY != null;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> body) {
+        if (executor == null) {
+            try {
+                return CompletableFuture.completedFuture(body.call());
+            } catch (Exception e) {
+                CompletableFuture<T> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> callInline(body), executor);
+    }
+
+    /**
+     * Runs independent blocking calls concurrently and returns their results in order. The first
+     * failure is rethrown: runtime exceptions and errors as they are, checked exceptions wrapped
+     * in a {@link CompletionException}.
+     */
+    public <T> List<T> invokeAll(List<? extends Callable<T>> calls) {
+        List<T> results = new ArrayList<>(calls.size());
+        if (executor == null) {
+            for (Callable<T> call : calls) {
+                results.add(callInline(call));
+            }
+            return results;
+        }
+        try {
+            for (Future<T> future : executor.invokeAll(calls)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FunctionExecutor{" + mode + "}";
+    }
+
+    private static <T> T callInline(Callable<T> body) {
+        try {
+            return body.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (VirtualThreads.FACTORY == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) VirtualThreads.FACTORY.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // JDK 19 and 20 have the method as a preview API that fails without --enable-preview
+            return null;
+        }
+    }
+
+    static FunctionExecutor fromSettings() {
+        String configured = setting(MODE_SETTING);
+        String threads = setting(PLATFORM_THREADS_SETTING);
+        int platformThreads = threads != null ? Integer.parseInt(threads.trim()) : DEFAULT_PLATFORM_THREADS;
+        Mode mode = configured == null ? Mode.INLINE : Mode.valueOf(configured.trim().toUpperCase(Locale.ROOT));
+        switch (mode) {
+            case VIRTUAL:
+                return virtual(platformThreads);
+            case PLATFORM:
+                return platform(platformThreads);
+            default:
+                return inline();
+        }
+    }
+
+    private static String setting(String name) {
+        String value = System.getProperty(name);
+        return value != null ? value : System.getenv(name);
+    }
+
+    private static final class SharedHolder {
+        static final FunctionExecutor INSTANCE = fromSettings();
+    }
+
+    private static final class VirtualThreads {
+        static final Method FACTORY = lookup();
+
+        private static Method lookup() {
+            try {
+                return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    }
+}
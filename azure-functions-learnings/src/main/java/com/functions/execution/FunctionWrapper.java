@@ -0,0 +1,135 @@
+package com.functions.execution;
+
+import com.functions.admission.AdmissionController;
+import com.functions.logging.FunctionLog;
+import com.functions.metrics.FunctionMetrics;
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Everything a function body runs inside, looked up once per function:
+ * <pre>
+ * private static final FunctionWrapper HTTP_TRIGGER = FunctionWrapper.of("HttpTrigger");
+ * ...
+ * return HTTP_TRIGGER.http(request, context, () -> {
+ *     HTTP_TRIGGER.getLog().info(context, "...");
+ *     ...
+ * });
+ * </pre>
+ * {@link #http} is how every HTTP-triggered function runs: its {@link AdmissionController}
+ * answers requests over the limits configured for the function before the body, and the {@link FunctionMetrics} record the
+ * admitted ones. Other triggers use {@link #record}, {@link #call} or {@link #run}, which record
+ * metrics without admission. All of them flush the function's {@link FunctionLog} when the body
+ * returns, so its records are published within the invocation. The log and the shared
+ * {@link FunctionExecutor} come with it. The admission controller is created on the first HTTP
+ * request, so functions that never see one export no admission metrics.
+ */
+public final class FunctionWrapper {
+    private static final Map<String, FunctionWrapper> FUNCTIONS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final FunctionMetrics metrics;
+    private final FunctionLog log;
+    private volatile AdmissionController admission;
+
+    private FunctionWrapper(String name) {
+        this.name = name;
+        this.metrics = FunctionMetrics.of(name);
+        this.log = FunctionLog.of(name);
+    }
+
+    public static FunctionWrapper of(String functionName) {
+        return FUNCTIONS.computeIfAbsent(functionName, FunctionWrapper::new);
+    }
+
+    /**
+     * Runs an HTTP-triggered body if the request is admitted, recording its metrics.
+     */
+    public HttpResponseMessage http(HttpRequestMessage<?> request, ExecutionContext context, Supplier<HttpResponseMessage> body) {
+        try {
+            return getAdmission().admit(request, () -> metrics.record(context, body));
+        } finally {
+            log.flush();
+        }
+    }
+
+    /**
+     * For HTTP-triggered bodies that throw checked exceptions.
+     */
+    public HttpResponseMessage callHttp(HttpRequestMessage<?> request, ExecutionContext context, Callable<HttpResponseMessage> body) throws Exception {
+        try {
+            return getAdmission().call(request, () -> metrics.call(context, body));
+        } finally {
+            log.flush();
+        }
+    }
+
+    /**
+     * @param context null for functions without one, such as orchestrators
+     */
+    public <T> T record(ExecutionContext context, Supplier<T> body) {
+        try {
+            return metrics.record(context, body);
+        } finally {
+            log.flush();
+        }
+    }
+
+    /**
+     * For bodies that throw checked exceptions.
+     */
+    public <T> T call(ExecutionContext context, Callable<T> body) throws Exception {
+        try {
+            return metrics.call(context, body);
+        } finally {
+            log.flush();
+        }
+    }
+
+    public void run(ExecutionContext context, Runnable body) {
+        try {
+            metrics.run(context, body);
+        } finally {
+            log.flush();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public FunctionLog getLog() {
+        return log;
+    }
+
+    public FunctionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public AdmissionController getAdmission() {
+        AdmissionController controller = admission;
+        if (controller == null) {
+            // AdmissionController.of returns the same controller to every racing caller
+            admission = controller = AdmissionController.of(name);
+        }
+        return controller;
+    }
+
+    /**
+     * The executor for the independent blocking calls of a body; see {@link FunctionExecutor}.
+     */
+    public FunctionExecutor getExecutor() {
+        return FunctionExecutor.shared();
+    }
+
+    @Override
+    public String toString() {
+        return "FunctionWrapper{" + name + "}";
+    }
+}
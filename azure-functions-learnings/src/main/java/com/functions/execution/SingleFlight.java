@@ -0,0 +1,125 @@
+package com.functions.execution;
+
+import com.functions.metrics.Counter;
+import com.functions.metrics.MetricsRegistry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Collapses concurrent identical backend calls into one: the first caller for a key runs the
+ * call, and callers arriving with the same key while it is in flight wait for it and share its
+ * result or its failure.
+ * <p>
+ * Nothing is kept once the call completes; the next caller for the key starts a new call, so
+ * results are never older than the call itself and no invalidation is needed. Shared results
+ * must be treated as read-only by the callers. Keys usually come from {@link #key(String, String...)}:
+ * the function name plus the bound query parameters.
+ * <p>
+ * A caller waits at most {@code maxWaitMillis} for someone else's call, so a call that hangs
+ * holds its followers no longer than that; they fail with a {@link TimeoutException} rather
+ * than each starting the call again, which would bring back the load the group exists to
+ * shed. The leader's own call is bounded only by the backend client's timeouts.
+ * <p>
+ * Exports singleflight_calls_total with outcome="executed", "coalesced" or "timed_out", and
+ * singleflight_in_flight.
+ */
+public final class SingleFlight<K, V> {
+    private final String name;
+    private final long maxWaitMillis;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter coalesced;
+    private final Counter timedOut;
+
+    /**
+     * @param maxWaitMillis how long a caller waits for a call already in flight
+     */
+    public SingleFlight(String name, long maxWaitMillis, MetricsRegistry registry) {
+        this.name = name;
+        this.maxWaitMillis = maxWaitMillis;
+        String help = "Backend calls by whether the caller ran them or shared one in flight.";
+        this.executed = registry.counter("singleflight_calls_total", help, "group", name, "outcome", "executed");
+        this.coalesced = registry.counter("singleflight_calls_total", help, "group", name, "outcome", "coalesced");
+        this.timedOut = registry.counter("singleflight_calls_total", help, "group", name, "outcome", "timed_out");
+        registry.gauge("singleflight_in_flight", "Distinct backend calls in flight.", inFlight::size, "group", name);
+    }
+
+    /**
+     * A key for the function's call with these query parameters; equal for equal arguments.
+     */
+    public static List<String> key(String functionName, String... parameters) {
+        String[] key = new String[parameters.length + 1];
+        key[0] = functionName;
+        System.arraycopy(parameters, 0, key, 1, parameters.length);
+        return Arrays.asList(key);
+    }
+
+    /**
+     * Runs {@code call}, or waits for the identical call already in flight. Runtime exceptions
+     * and errors are rethrown as they are; checked exceptions, including the
+     * {@link TimeoutException} of a wait that ran out, are wrapped in a
+     * {@link CompletionException}.
+     */
+    public V call(K key, Callable<V> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            coalesced.increment();
+            try {
+                return leader.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw rethrow(e.getCause());
+            } catch (TimeoutException e) {
+                timedOut.increment();
+                throw new CompletionException(new TimeoutException(name + " call for " + key + " still running after " + maxWaitMillis + " ms"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }
+        executed.increment();
+        try {
+            V result = call.call();
+            inFlight.remove(key, flight);
+            flight.complete(result);
+            return result;
+        } catch (Throwable e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw rethrow(e);
+        }
+    }
+
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlight{" + name + ", inFlight=" + inFlight.size() + "}";
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    }
+}
@@ -0,0 +1,113 @@
+package com.functions.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * One fixed-size, memory-mapped journal file. A record is its length, a CRC32 of its bytes and
+ * the bytes; the length is written last, so a record torn by a crash reads as the end of the
+ * segment. A zero length marks the end of what has been written.
+ */
+final class JournalSegment {
+    static final int HEADER_BYTES = 8;
+
+    final long id;
+    final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+
+    private JournalSegment(long id, Path file, FileChannel channel, MappedByteBuffer buffer) {
+        this.id = id;
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Maps the file, creating it at {@code size} bytes if needed, and finds the end of the valid
+     * records.
+     */
+    static JournalSegment open(long id, Path file, int size) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = Math.max(size, channel.size());
+        JournalSegment segment = new JournalSegment(id, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+        int position = 0;
+        while (segment.recordLength(position) > 0) {
+            position = segment.next(position);
+        }
+        segment.writePosition = position;
+        return segment;
+    }
+
+    boolean fits(int recordBytes) {
+        return writePosition + HEADER_BYTES + recordBytes <= buffer.capacity();
+    }
+
+    /**
+     * @return the position after the record
+     */
+    int append(byte[] record, boolean force) {
+        int position = writePosition;
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(position + HEADER_BYTES);
+        payload.put(record);
+        buffer.putInt(position, record.length);
+        if (force) {
+            buffer.force();
+        }
+        writePosition = position + HEADER_BYTES + record.length;
+        return writePosition;
+    }
+
+    /**
+     * The length of the valid record at {@code position}, or 0 if there is none.
+     */
+    int recordLength(int position) {
+        if (position + HEADER_BYTES > buffer.capacity()) {
+            return 0;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || (long) position + HEADER_BYTES + length > buffer.capacity()) {
+            return 0;
+        }
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(position + HEADER_BYTES).limit(position + HEADER_BYTES + length);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == buffer.getInt(position + 4) ? length : 0;
+    }
+
+    byte[] read(int position) {
+        byte[] record = new byte[buffer.getInt(position)];
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(position + HEADER_BYTES);
+        payload.get(record);
+        return record;
+    }
+
+    int next(int position) {
+        return position + HEADER_BYTES + buffer.getInt(position);
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "JournalSegment{" + file.getFileName() + ", written=" + writePosition + "}";
+    }
+}
@@ -0,0 +1,12 @@
+package com.functions.journal;
+
+import java.util.List;
+
+/**
+ * The downstream a {@link SpilloverSender} writes to: a storage queue, Service Bus, Event Hubs or
+ * Kafka client. Throwing means none of the records may be considered delivered.
+ */
+@FunctionalInterface
+public interface OutputSink {
+    void send(List<byte[]> records) throws Exception;
+}
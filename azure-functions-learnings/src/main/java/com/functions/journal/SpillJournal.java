@@ -0,0 +1,263 @@
+package com.functions.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A local append-only journal of records, in memory-mapped segment files of a fixed size.
+ * <p>
+ * Appends go to the newest segment; when a record does not fit, a new segment is started, and
+ * when {@code maxSegments} exist the append is refused, which bounds the disk used. Records are
+ * read back in order with {@link #peek(int)} and consumed with {@link #commit(int)}; the read
+ * position lives in a small mapped cursor file and segments before it are deleted. Reopening
+ * the directory resumes at the cursor, so records survive a restart of the process.
+ * <p>
+ * Mapped writes reach the page cache immediately and survive the process dying; with
+ * {@code force} every append is also flushed to the device, which survives the machine going
+ * down but costs a sync per record. Not thread-safe beyond its own monitor: one journal per
+ * directory and process.
+ */
+public final class SpillJournal implements AutoCloseable {
+    public static final int DEFAULT_SEGMENT_BYTES = 4 << 20;
+    public static final int DEFAULT_MAX_SEGMENTS = 64;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CURSOR_FILE = "cursor";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final boolean force;
+    private final ArrayDeque<JournalSegment> segments = new ArrayDeque<>();
+    private final List<Path> undeleted = new ArrayList<>();
+    private final FileChannel cursorChannel;
+    private final MappedByteBuffer cursor;
+
+    private long readSegmentId;
+    private int readPosition;
+    private long depthRecords;
+    private long depthBytes;
+
+    private SpillJournal(Path directory, int segmentBytes, int maxSegments, boolean force) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.force = force;
+        Files.createDirectories(directory);
+        this.cursorChannel = FileChannel.open(directory.resolve(CURSOR_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.cursor = cursorChannel.map(FileChannel.MapMode.READ_WRITE, 0, 12);
+        this.readSegmentId = cursor.getLong(0);
+        this.readPosition = cursor.getInt(8);
+    }
+
+    public static SpillJournal open(Path directory, int segmentBytes, int maxSegments, boolean force) {
+        try {
+            SpillJournal journal = new SpillJournal(directory, segmentBytes, maxSegments, force);
+            journal.recover();
+            return journal;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open spill journal " + directory, e);
+        }
+    }
+
+    /**
+     * @return false if the journal is full
+     */
+    public synchronized boolean append(byte[] record) {
+        if (record.length == 0 || record.length + JournalSegment.HEADER_BYTES > segmentBytes) {
+            throw new IllegalArgumentException("Record of " + record.length + " bytes does not fit a journal segment of " + segmentBytes);
+        }
+        JournalSegment last = segments.peekLast();
+        if (last == null || !last.fits(record.length)) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            last = newSegment(last == null ? readSegmentId : last.id + 1);
+        }
+        last.append(record, force);
+        depthRecords++;
+        depthBytes += record.length;
+        return true;
+    }
+
+    /**
+     * Up to {@code max} records from the read position, oldest first, without consuming them.
+     */
+    public synchronized List<byte[]> peek(int max) {
+        List<byte[]> records = new ArrayList<>(Math.min(max, (int) Math.min(depthRecords, 1024)));
+        for (JournalSegment segment : segments) {
+            if (segment.id < readSegmentId) {
+                continue;
+            }
+            int position = segment.id == readSegmentId ? readPosition : 0;
+            while (records.size() < max && segment.recordLength(position) > 0) {
+                records.add(segment.read(position));
+                position = segment.next(position);
+            }
+            if (records.size() == max) {
+                break;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Consumes the first {@code count} records that {@link #peek(int)} returned.
+     */
+    public synchronized void commit(int count) {
+        for (int i = 0; i < count; i++) {
+            advanceToReadableSegment();
+            JournalSegment segment = segment(readSegmentId);
+            int length = segment != null ? segment.recordLength(readPosition) : 0;
+            if (length == 0) {
+                throw new IllegalStateException("Committed " + count + " records but only " + i + " were in the journal");
+            }
+            readPosition = segment.next(readPosition);
+            depthRecords--;
+            depthBytes -= length;
+        }
+        advanceToReadableSegment();
+        cursor.putLong(0, readSegmentId);
+        cursor.putInt(8, readPosition);
+        if (force) {
+            cursor.force();
+        }
+        deleteConsumedSegments();
+    }
+
+    public synchronized long getDepthRecords() {
+        return depthRecords;
+    }
+
+    public synchronized long getDepthBytes() {
+        return depthBytes;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * The most disk the journal will use: every segment file is allocated at full size.
+     */
+    public long getMaxDiskBytes() {
+        return (long) segmentBytes * maxSegments;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            for (JournalSegment segment : segments) {
+                segment.close();
+            }
+            cursorChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close spill journal " + directory, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SpillJournal{" + directory + ", segments=" + segments.size() + ", records=" + depthRecords + "}";
+    }
+
+    private void recover() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(ids);
+        for (long id : ids) {
+            if (id < readSegmentId) {
+                Files.deleteIfExists(segmentFile(id));
+            } else {
+                segments.add(JournalSegment.open(id, segmentFile(id), segmentBytes));
+            }
+        }
+        if (segments.isEmpty() || segments.peekFirst().id > readSegmentId) {
+            readSegmentId = segments.isEmpty() ? readSegmentId : segments.peekFirst().id;
+            readPosition = 0;
+        }
+        for (JournalSegment segment : segments) {
+            int position = segment.id == readSegmentId ? readPosition : 0;
+            while (segment.recordLength(position) > 0) {
+                depthRecords++;
+                depthBytes += segment.recordLength(position);
+                position = segment.next(position);
+            }
+        }
+    }
+
+    /**
+     * Moves the read position off the end of a segment that later segments have sealed.
+     */
+    private void advanceToReadableSegment() {
+        JournalSegment current = segment(readSegmentId);
+        while (current != null && current != segments.peekLast() && current.recordLength(readPosition) == 0) {
+            current = segment(readSegmentId + 1);
+            readSegmentId++;
+            readPosition = 0;
+        }
+    }
+
+    private void deleteConsumedSegments() {
+        while (!segments.isEmpty() && segments.peekFirst().id < readSegmentId) {
+            JournalSegment consumed = segments.pollFirst();
+            try {
+                consumed.close();
+            } catch (IOException e) {
+                // The file is deleted below either way
+            }
+            undeleted.add(consumed.file);
+        }
+        // Windows refuses to delete a file while it is still mapped; try again on later commits
+        for (Iterator<Path> files = undeleted.iterator(); files.hasNext(); ) {
+            try {
+                Files.deleteIfExists(files.next());
+                files.remove();
+            } catch (IOException e) {
+                break;
+            }
+        }
+    }
+
+    private JournalSegment newSegment(long id) {
+        try {
+            JournalSegment segment = JournalSegment.open(id, segmentFile(id), segmentBytes);
+            segments.addLast(segment);
+            if (id == readSegmentId) {
+                readPosition = 0;
+            }
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create journal segment " + id + " in " + directory, e);
+        }
+    }
+
+    private JournalSegment segment(long id) {
+        for (JournalSegment segment : segments) {
+            if (segment.id == id) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private Path segmentFile(long id) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,232 @@
+package com.functions.journal;
+
+import com.functions.metrics.Counter;
+import com.functions.metrics.MetricsRegistry;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a function's output records to an {@link OutputSink}, spilling them to a
+ * {@link SpillJournal} while the sink is throttling or failing, so the invocation completes
+ * instead of failing and being retried from scratch.
+ * <p>
+ * A record goes straight to the sink while the journal is empty; once anything is journaled,
+ * new records queue behind it to keep the order. The check and the direct send or append happen
+ * under one lock, so a record of one invocation cannot overtake a record another invocation is
+ * journaling; concurrent invocations send one at a time. A daemon thread drains the journal in
+ * order, in batches, backing off exponentially while the sink keeps failing. Only a full journal
+ * makes {@link #send(byte[])} fail, and then the invocation fails as it did before. Delivery is
+ * at least once: a batch the sink accepted just before the process died is sent again.
+ * <p>
+ * After a failed batch the drainer retries the oldest record on its own. Once that record has
+ * failed {@code maxAttempts} times it is moved to a parked journal, where it stays for an
+ * operator to inspect or replay, and draining goes on behind it. A sink that stays down through
+ * that many attempts parks records as well, one per round of attempts, so the setting should
+ * cover the outages the sink is expected to ride out. If the parked journal is full the record
+ * stays where it is and is retried.
+ * <p>
+ * Exports journal_depth_records, journal_depth_bytes, journal_parked_records and
+ * journal_records_total with outcome="direct", "spilled", "drained", "parked" or "rejected"; the
+ * drain rate is the rate of the "drained" series.
+ */
+public final class SpilloverSender implements AutoCloseable {
+    public static final String DIRECTORY_SETTING = "LEARNING_journal_directory";
+    public static final String SEGMENT_BYTES_SETTING = "LEARNING_journal_segment_bytes";
+    public static final String MAX_SEGMENTS_SETTING = "LEARNING_journal_max_segments";
+    public static final String FORCE_SETTING = "LEARNING_journal_force";
+    public static final String MAX_ATTEMPTS_SETTING = "LEARNING_journal_max_attempts";
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+    private static final int DRAIN_BATCH = 100;
+    private static final long MIN_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final String name;
+    private final SpillJournal journal;
+    private final SpillJournal parkedJournal;
+    private final OutputSink sink;
+    private final int maxAttempts;
+    private final Object sendLock = new Object();
+    private final Thread drainer;
+    private volatile boolean closed;
+
+    private final Counter direct;
+    private final Counter spilled;
+    private final Counter drained;
+    private final Counter parked;
+    private final Counter rejected;
+
+    /**
+     * @param parkedJournal where records that failed {@code maxAttempts} sends are moved
+     */
+    public SpilloverSender(String name, SpillJournal journal, SpillJournal parkedJournal, OutputSink sink, int maxAttempts, MetricsRegistry registry) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+        }
+        this.name = name;
+        this.journal = journal;
+        this.parkedJournal = parkedJournal;
+        this.sink = sink;
+        this.maxAttempts = maxAttempts;
+        String help = "Output records by how they reached the sink.";
+        this.direct = registry.counter("journal_records_total", help, "output", name, "outcome", "direct");
+        this.spilled = registry.counter("journal_records_total", help, "output", name, "outcome", "spilled");
+        this.drained = registry.counter("journal_records_total", help, "output", name, "outcome", "drained");
+        this.parked = registry.counter("journal_records_total", help, "output", name, "outcome", "parked");
+        this.rejected = registry.counter("journal_records_total", help, "output", name, "outcome", "rejected");
+        registry.gauge("journal_depth_records", "Records waiting in the spill journal.", journal::getDepthRecords, "output", name);
+        registry.gauge("journal_depth_bytes", "Bytes waiting in the spill journal.", journal::getDepthBytes, "output", name);
+        registry.gauge("journal_parked_records", "Records parked after failing every attempt.", parkedJournal::getDepthRecords, "output", name);
+        this.drainer = new Thread(this::drain, "journal-drain-" + name);
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * A sender journaling under {@code LEARNING_journal_directory}/name and parking under
+     * name.parked, with segment size, segment count, per-append flushing and attempts per
+     * record from the LEARNING_journal_* settings. The parked journal gets a quarter of the
+     * segments.
+     *
+     * @throws IllegalStateException if LEARNING_journal_directory is not set or is in the temp
+     *                               directory, which the platform clears when the instance recycles
+     */
+    public static SpilloverSender fromSettings(String name, OutputSink sink) {
+        Path root = journalDirectory();
+        String segmentBytesSetting = setting(SEGMENT_BYTES_SETTING);
+        String maxSegmentsSetting = setting(MAX_SEGMENTS_SETTING);
+        String maxAttemptsSetting = setting(MAX_ATTEMPTS_SETTING);
+        int segmentBytes = segmentBytesSetting != null ? Integer.parseInt(segmentBytesSetting.trim()) : SpillJournal.DEFAULT_SEGMENT_BYTES;
+        int maxSegments = maxSegmentsSetting != null ? Integer.parseInt(maxSegmentsSetting.trim()) : SpillJournal.DEFAULT_MAX_SEGMENTS;
+        boolean force = "true".equalsIgnoreCase(setting(FORCE_SETTING));
+        SpillJournal journal = SpillJournal.open(root.resolve(name), segmentBytes, maxSegments, force);
+        SpillJournal parkedJournal = SpillJournal.open(root.resolve(name + ".parked"), segmentBytes, Math.max(1, maxSegments / 4), force);
+        return new SpilloverSender(name, journal, parkedJournal, sink,
+            maxAttemptsSetting != null ? Integer.parseInt(maxAttemptsSetting.trim()) : DEFAULT_MAX_ATTEMPTS, MetricsRegistry.global());
+    }
+
+    private static Path journalDirectory() {
+        String configured = setting(DIRECTORY_SETTING);
+        if (configured == null || configured.trim().isEmpty()) {
+            throw new IllegalStateException("The spill journal needs " + DIRECTORY_SETTING + " set to a directory that survives the instance recycling");
+        }
+        Path directory = Paths.get(configured.trim()).toAbsolutePath().normalize();
+        if (directory.startsWith(Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize())) {
+            throw new IllegalStateException(DIRECTORY_SETTING + " " + directory + " is in the temp directory, which is cleared when the instance recycles");
+        }
+        return directory;
+    }
+
+    /**
+     * Sends the record, or journals it for the drainer.
+     *
+     * @throws RejectedExecutionException if the sink failed and the journal is full
+     */
+    public void send(byte[] record) {
+        synchronized (sendLock) {
+            if (journal.getDepthRecords() == 0) {
+                try {
+                    sink.send(Collections.singletonList(record));
+                    direct.increment();
+                    return;
+                } catch (Exception e) {
+                    // Journaled below, and retried by the drainer
+                }
+            }
+            if (!journal.append(record)) {
+                rejected.increment();
+                throw new RejectedExecutionException(name + " spill journal is full (" + journal.getDepthBytes() + " bytes waiting)");
+            }
+        }
+        spilled.increment();
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    public long getDepthRecords() {
+        return journal.getDepthRecords();
+    }
+
+    public long getParkedRecords() {
+        return parkedJournal.getDepthRecords();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        drainer.interrupt();
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+        parkedJournal.close();
+    }
+
+    @Override
+    public String toString() {
+        return "SpilloverSender{" + name + ", " + journal + "}";
+    }
+
+    private void drain() {
+        long backoffMillis = MIN_BACKOFF_MILLIS;
+        int headAttempts = 0;
+        while (!closed) {
+            try {
+                // After a failure the oldest record goes alone, so its attempts are its own
+                List<byte[]> records = journal.peek(headAttempts > 0 ? 1 : DRAIN_BATCH);
+                if (records.isEmpty()) {
+                    synchronized (this) {
+                        if (journal.getDepthRecords() == 0) {
+                            wait(TimeUnit.SECONDS.toMillis(1));
+                        }
+                    }
+                    continue;
+                }
+                try {
+                    sink.send(records);
+                } catch (Exception e) {
+                    headAttempts++;
+                    if (headAttempts >= maxAttempts && records.size() == 1 && park(records.get(0))) {
+                        headAttempts = 0;
+                        continue;
+                    }
+                    TimeUnit.MILLISECONDS.sleep(backoffMillis);
+                    backoffMillis = Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+                    continue;
+                }
+                journal.commit(records.size());
+                drained.add(records.size());
+                headAttempts = 0;
+                backoffMillis = MIN_BACKOFF_MILLIS;
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves the oldest record to the parked journal.
+     *
+     * @return false if the parked journal is full and the record stays where it is
+     */
+    private boolean park(byte[] record) {
+        if (!parkedJournal.append(record)) {
+            return false;
+        }
+        journal.commit(1);
+        parked.increment();
+        return true;
+    }
+
+    private static String setting(String name) {
+        String value = System.getProperty(name);
+        return value != null ? value : System.getenv(name);
+    }
+}
@@ -0,0 +1,486 @@
+package com.functions.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal pull parser for JSON, just enough to stream Event Grid deliveries and the other
+ * payloads the functions read without a JSON library.
+ * <p>
+ * The caller walks the document with {@link #beginArray()}, {@link #beginObject()},
+ * {@link #nextName()}, {@link #nextString()} and friends; values that are not needed can be
+ * skipped or captured verbatim with {@link #nextRawValue()}. Nothing beyond the current token
+ * is buffered, so an array of thousands of events is read one event at a time.
+ */
+public class JsonStreamReader {
+    public enum Token { BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT }
+
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+    private static final int BUFFER_SIZE = 4096;
+    private static final int SYMBOL_TABLE_SIZE = 64;
+
+    private final char[] buffer;
+    private int pos;
+    private int limit;
+    private final StringBuilder scratch = new StringBuilder(64);
+    /** Recently decoded names and symbols, so repeated members of a batch reuse one String. */
+    private final String[] symbols = new String[SYMBOL_TABLE_SIZE];
+    private int[] stack = new int[32];
+    private int depth;
+    private Token peeked;
+
+    public JsonStreamReader(Reader in) {
+        this(in, BUFFER_SIZE);
+    }
+
+    public JsonStreamReader(String json) {
+        // Short documents (a single event, a raw data value) do not need a full buffer
+        this(new StringReader(json), Math.max(16, Math.min(BUFFER_SIZE, json.length())));
+    }
+
+    private JsonStreamReader(Reader in, int bufferSize) {
+        this.in = in;
+        this.buffer = new char[bufferSize];
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int scope = stack[depth];
+        int c;
+        switch (scope) {
+            case EMPTY_ARRAY:
+                stack[depth] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                if (c == -1) {
+                    throw syntax("Unterminated array");
+                }
+                pos--;
+                break;
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw syntax("Expected ',' or ']'");
+                }
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return peeked = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntax("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntax("Expected a name");
+                }
+                return peeked = Token.NAME;
+            case DANGLING_NAME:
+                stack[depth] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntax("Expected ':'");
+                }
+                break;
+            case EMPTY_DOCUMENT:
+                stack[depth] = NONEMPTY_DOCUMENT;
+                break;
+            default:
+                if (nextNonWhitespace() == -1) {
+                    return peeked = Token.END_DOCUMENT;
+                }
+                throw syntax("Multiple top-level values");
+        }
+
+        c = nextNonWhitespace();
+        switch (c) {
+            case -1:
+                return peeked = Token.END_DOCUMENT;
+            case '[':
+                return peeked = Token.BEGIN_ARRAY;
+            case '{':
+                return peeked = Token.BEGIN_OBJECT;
+            case '"':
+                return peeked = Token.STRING;
+            case 't':
+            case 'f':
+                pos--;
+                return peeked = Token.BOOLEAN;
+            case 'n':
+                pos--;
+                return peeked = Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    pos--;
+                    return peeked = Token.NUMBER;
+                }
+                throw syntax("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    public void beginArray() throws IOException {
+        consume(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        consume(Token.END_ARRAY);
+        depth--;
+    }
+
+    public void beginObject() throws IOException {
+        consume(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        consume(Token.END_OBJECT);
+        depth--;
+    }
+
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        consume(Token.NAME);
+        stack[depth] = DANGLING_NAME;
+        decodeString();
+        return symbol();
+    }
+
+    /**
+     * Like {@link #nextString()}, for values drawn from a small set (event types, versions):
+     * repeated values return the same String instance instead of a new copy.
+     */
+    public String nextSymbol() throws IOException {
+        if (peek() != Token.STRING) {
+            return nextString();
+        }
+        peeked = null;
+        decodeString();
+        return symbol();
+    }
+
+    /**
+     * Reads a scalar value; numbers and booleans are returned as their literal text and null as null.
+     */
+    public String nextString() throws IOException {
+        Token token = peek();
+        switch (token) {
+            case STRING:
+                peeked = null;
+                return readString();
+            case NULL:
+            case NUMBER:
+            case BOOLEAN:
+                peeked = null;
+                return readLiteral(token);
+            default:
+                throw syntax("Expected a scalar but was " + token);
+        }
+    }
+
+    public long nextLong() throws IOException {
+        return Long.parseLong(nextString());
+    }
+
+    public void skipValue() throws IOException {
+        readValue(null);
+    }
+
+    /**
+     * Returns the next value (scalar, object or array) as compact JSON text.
+     */
+    public String nextRawValue() throws IOException {
+        StringBuilder raw = new StringBuilder(64);
+        readValue(raw);
+        return raw.toString();
+    }
+
+    private void readValue(StringBuilder raw) throws IOException {
+        Token token = peek();
+        switch (token) {
+            case BEGIN_ARRAY:
+                beginArray();
+                append(raw, '[');
+                for (boolean firstElement = true; hasNext(); firstElement = false) {
+                    if (!firstElement) {
+                        append(raw, ',');
+                    }
+                    readValue(raw);
+                }
+                endArray();
+                append(raw, ']');
+                break;
+            case BEGIN_OBJECT:
+                beginObject();
+                append(raw, '{');
+                for (boolean firstMember = true; hasNext(); firstMember = false) {
+                    if (!firstMember) {
+                        append(raw, ',');
+                    }
+                    consume(Token.NAME);
+                    stack[depth] = DANGLING_NAME;
+                    copyString(raw);
+                    append(raw, ':');
+                    readValue(raw);
+                }
+                endObject();
+                append(raw, '}');
+                break;
+            case STRING:
+                peeked = null;
+                copyString(raw);
+                break;
+            case NUMBER:
+            case BOOLEAN:
+            case NULL:
+                peeked = null;
+                String literal = readLiteral(token);
+                if (raw != null) {
+                    raw.append(literal == null ? "null" : literal);
+                }
+                break;
+            default:
+                throw syntax("Unexpected " + token);
+        }
+    }
+
+    /**
+     * Appends {@code value} as a JSON string literal.
+     */
+    public static void writeQuoted(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    private static void append(StringBuilder raw, char c) {
+        if (raw != null) {
+            raw.append(c);
+        }
+    }
+
+    private void consume(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntax("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (++depth == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[depth] = scope;
+    }
+
+    private String symbol() {
+        int length = scratch.length();
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + scratch.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (SYMBOL_TABLE_SIZE - 1);
+        String cached = symbols[slot];
+        if (cached != null && cached.contentEquals(scratch)) {
+            return cached;
+        }
+        return symbols[slot] = scratch.toString();
+    }
+
+    private String readString() throws IOException {
+        decodeString();
+        return scratch.toString();
+    }
+
+    /**
+     * Decodes the rest of a string literal into {@link #scratch}.
+     */
+    private void decodeString() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw syntax("Unterminated string");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c != '\\') {
+                scratch.append((char) c);
+                continue;
+            }
+            c = read();
+            switch (c) {
+                case 'n':
+                    scratch.append('\n');
+                    break;
+                case 't':
+                    scratch.append('\t');
+                    break;
+                case 'r':
+                    scratch.append('\r');
+                    break;
+                case 'b':
+                    scratch.append('\b');
+                    break;
+                case 'f':
+                    scratch.append('\f');
+                    break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            throw syntax("Invalid \\u escape");
+                        }
+                        code = (code << 4) | digit;
+                    }
+                    scratch.append((char) code);
+                    break;
+                case -1:
+                    throw syntax("Unterminated escape");
+                default:
+                    scratch.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Copies a string literal verbatim, escapes included, without decoding it; skips it if
+     * {@code raw} is null.
+     */
+    private void copyString(StringBuilder raw) throws IOException {
+        append(raw, '"');
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw syntax("Unterminated string");
+            }
+            append(raw, (char) c);
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                c = read();
+                if (c == -1) {
+                    throw syntax("Unterminated escape");
+                }
+                append(raw, (char) c);
+            }
+        }
+    }
+
+    /**
+     * Reads a number, boolean or null and checks it is exactly that: {@code trux} or {@code 1x}
+     * are rejected rather than passed on as values.
+     */
+    private String readLiteral(Token token) throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                break;
+            }
+            if (c == ',' || c == ']' || c == '}' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                pos--;
+                break;
+            }
+            scratch.append((char) c);
+        }
+        String literal = scratch.toString();
+        boolean valid;
+        switch (token) {
+            case NULL:
+                valid = "null".equals(literal);
+                break;
+            case BOOLEAN:
+                valid = "true".equals(literal) || "false".equals(literal);
+                break;
+            default:
+                valid = NUMBER.matcher(literal).matches();
+        }
+        if (!valid) {
+            throw syntax("Invalid " + token.name().toLowerCase(Locale.ROOT) + " literal " + literal);
+        }
+        return token == Token.NULL ? null : literal;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[pos++];
+    }
+
+    private IOException syntax(String message) {
+        return new IOException("Malformed JSON at buffer offset " + pos + ": " + message);
+    }
+}
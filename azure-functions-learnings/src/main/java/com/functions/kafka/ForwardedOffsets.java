@@ -0,0 +1,158 @@
+package com.functions.kafka;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The highest offset forwarded from each topic/partition, in a directory every instance mounts,
+ * one small file per partition. The Kafka trigger delivers a partition's records in offset
+ * order, so one offset per partition says which of its records were forwarded, and unlike
+ * {@link KafkaDedupIndex} it survives the partition moving to another instance in a rebalance.
+ * <p>
+ * Each instance caches the offsets of the partitions it consumes. A cached offset is trusted
+ * only while the next records follow it in sequence and without a pause: after a gap, or once
+ * the partition has been quiet for refreshAfterIdleMillis, which a rebalance is, the file is
+ * read again before a record is judged. Files are read and written under an exclusive file
+ * lock, and a write never lowers the offset, so a previous owner that is still finishing a
+ * record cannot move it back.
+ */
+public class ForwardedOffsets {
+    public static final String DIRECTORY_SETTING = "LEARNING_kafka_offset_directory";
+    public static final long DEFAULT_REFRESH_AFTER_IDLE_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    private static final String SUFFIX = ".offset";
+
+    private final Path directory;
+    private final long refreshAfterIdleMillis;
+    private final ConcurrentHashMap<String, Position> positions = new ConcurrentHashMap<>();
+    private final AtomicLong fileReads = new AtomicLong();
+    private final AtomicLong fileWrites = new AtomicLong();
+
+    public ForwardedOffsets(Path directory, long refreshAfterIdleMillis) {
+        this.directory = directory;
+        this.refreshAfterIdleMillis = refreshAfterIdleMillis;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create offset directory " + directory, e);
+        }
+    }
+
+    /**
+     * Offsets in LEARNING_kafka_offset_directory, which must be storage every instance mounts:
+     * there is no default, because a local directory would let every instance forward what
+     * another one already did.
+     */
+    public static ForwardedOffsets fromSettings() {
+        String configured = System.getProperty(DIRECTORY_SETTING, System.getenv(DIRECTORY_SETTING));
+        if (configured == null || configured.trim().isEmpty()) {
+            throw new IllegalStateException(DIRECTORY_SETTING + " must be set to a directory every instance mounts");
+        }
+        Path directory = Paths.get(configured.trim()).toAbsolutePath().normalize();
+        if (directory.startsWith(Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize())) {
+            throw new IllegalStateException(DIRECTORY_SETTING + " " + directory + " is in the instance-local temp directory");
+        }
+        return new ForwardedOffsets(directory, DEFAULT_REFRESH_AFTER_IDLE_MILLIS);
+    }
+
+    /**
+     * @return true if an instance already forwarded this record or a later one of its partition
+     */
+    public boolean isForwarded(String topic, int partition, long offset) {
+        String name = fileName(topic, partition);
+        Position position = positions.computeIfAbsent(name, n -> new Position());
+        synchronized (position) {
+            long now = System.currentTimeMillis();
+            if (offset > position.offset
+                && (!position.loaded || offset != position.offset + 1 || now - position.seenMillis > refreshAfterIdleMillis)) {
+                position.offset = Math.max(position.offset, read(name));
+                position.loaded = true;
+            }
+            position.seenMillis = now;
+            return offset <= position.offset;
+        }
+    }
+
+    /**
+     * Records that the record was forwarded; call it once the output is set.
+     */
+    public void markForwarded(String topic, int partition, long offset) {
+        String name = fileName(topic, partition);
+        Position position = positions.computeIfAbsent(name, n -> new Position());
+        synchronized (position) {
+            position.offset = write(name, offset);
+            position.loaded = true;
+            position.seenMillis = System.currentTimeMillis();
+        }
+    }
+
+    public long getFileReads() {
+        return fileReads.get();
+    }
+
+    public long getFileWrites() {
+        return fileWrites.get();
+    }
+
+    @Override
+    public String toString() {
+        return "partitions=" + positions.size() + " fileReads=" + getFileReads() + " fileWrites=" + getFileWrites();
+    }
+
+    private long read(String name) {
+        fileReads.incrementAndGet();
+        try (FileChannel channel = open(name)) {
+            channel.lock();
+            return read(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read forwarded offset " + name, e);
+        }
+    }
+
+    private long write(String name, long offset) {
+        fileWrites.incrementAndGet();
+        try (FileChannel channel = open(name)) {
+            channel.lock();
+            long forwarded = Math.max(read(channel), offset);
+            byte[] content = Long.toString(forwarded).getBytes(StandardCharsets.US_ASCII);
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(content), 0);
+            return forwarded;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write forwarded offset " + name, e);
+        }
+    }
+
+    private static long read(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), 32));
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // keep reading
+        }
+        String content = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII).trim();
+        return content.isEmpty() ? -1L : Long.parseLong(content);
+    }
+
+    private FileChannel open(String name) throws IOException {
+        return FileChannel.open(directory.resolve(name), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // Topic names are limited to letters, digits, '.', '_' and '-', so they are safe in a file name
+    private static String fileName(String topic, int partition) {
+        return topic + "~" + partition + SUFFIX;
+    }
+
+    private static final class Position {
+        long offset = -1L;
+        boolean loaded;
+        long seenMillis;
+    }
+}
@@ -0,0 +1,105 @@
+package com.functions.kafka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for a Kafka topic, used to tune {@link KafkaBatchingProducer} without a cluster.
+ * <p>
+ * It appends batches per partition, drops idempotent retries it has already seen, and records
+ * the end-to-end latency of every record (producer send to broker append).
+ */
+public class InMemoryKafkaBroker implements KafkaSink {
+    private final ConcurrentHashMap<Integer, List<KafkaBatch>> partitions = new ConcurrentHashMap<>();
+    private final Set<String> appendedSequences = new HashSet<>();
+    private final AtomicLong recordsAppended = new AtomicLong();
+    private final AtomicLong bytesAppended = new AtomicLong();
+    private final AtomicLong duplicateBatches = new AtomicLong();
+    private final long appendLatencyNanos;
+    private long[] latencies = new long[1024];
+    private int latencyCount;
+
+    public InMemoryKafkaBroker() {
+        this(0L);
+    }
+
+    /**
+     * @param appendLatencyNanos simulated broker round-trip per batch
+     */
+    public InMemoryKafkaBroker(long appendLatencyNanos) {
+        this.appendLatencyNanos = appendLatencyNanos;
+    }
+
+    @Override
+    public void send(KafkaBatch batch) {
+        String sequenceKey = batch.getProducerId() + "/" + batch.getPartition() + "/" + batch.getBaseSequence();
+        synchronized (appendedSequences) {
+            if (!appendedSequences.add(sequenceKey)) {
+                duplicateBatches.incrementAndGet();
+                return;
+            }
+        }
+        if (appendLatencyNanos > 0) {
+            long until = System.nanoTime() + appendLatencyNanos;
+            while (System.nanoTime() < until) {
+                Thread.yield();
+            }
+        }
+        List<KafkaBatch> log = partitions.computeIfAbsent(batch.getPartition(), p -> new ArrayList<>());
+        synchronized (log) {
+            log.add(batch);
+        }
+        recordsAppended.addAndGet(batch.getRecordCount());
+        bytesAppended.addAndGet(batch.getPayload().length);
+
+        long now = System.nanoTime();
+        synchronized (this) {
+            for (KafkaRecord record : batch.getRecords()) {
+                if (latencyCount == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                }
+                latencies[latencyCount++] = now - record.getEnqueuedNanos();
+            }
+        }
+    }
+
+    public long getRecordsAppended() {
+        return recordsAppended.get();
+    }
+
+    public long getBytesAppended() {
+        return bytesAppended.get();
+    }
+
+    public long getDuplicateBatches() {
+        return duplicateBatches.get();
+    }
+
+    public List<KafkaBatch> partition(int partition) {
+        List<KafkaBatch> log = partitions.get(partition);
+        if (log == null) {
+            return new ArrayList<>();
+        }
+        synchronized (log) {
+            return new ArrayList<>(log);
+        }
+    }
+
+    /**
+     * Latency percentile in nanoseconds over all appended records, e.g. {@code percentile(0.99)}.
+     */
+    public synchronized long latencyPercentile(double percentile) {
+        if (latencyCount == 0) {
+            return 0L;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)];
+    }
+}
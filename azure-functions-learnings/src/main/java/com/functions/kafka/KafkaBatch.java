@@ -0,0 +1,149 @@
+package com.functions.kafka;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sealed, optionally compressed set of records bound for a single partition.
+ * <p>
+ * The (producerId, partition, baseSequence) triple is what an idempotent broker uses to
+ * drop a batch it has already appended, e.g. when the producer retries after a timeout.
+ */
+public class KafkaBatch {
+    private final String topic;
+    private final int partition;
+    private final long producerId;
+    private final int baseSequence;
+    private final List<KafkaRecord> records;
+    private final KafkaCompression compression;
+    private byte[] payload;
+
+    KafkaBatch(String topic, int partition, long producerId, int baseSequence, List<KafkaRecord> records,
+               KafkaCompression compression) {
+        this.topic = topic;
+        this.partition = partition;
+        this.producerId = producerId;
+        this.baseSequence = baseSequence;
+        this.records = Collections.unmodifiableList(records);
+        this.compression = compression;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public long getProducerId() {
+        return producerId;
+    }
+
+    public int getBaseSequence() {
+        return baseSequence;
+    }
+
+    public int getRecordCount() {
+        return records.size();
+    }
+
+    public List<KafkaRecord> getRecords() {
+        return records;
+    }
+
+    public KafkaCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * The wire payload, compressed with {@link #getCompression()}. Encoded on first use, so
+     * batches that only go out through {@link #values()} never pay for it.
+     */
+    public synchronized byte[] getPayload() {
+        if (payload == null) {
+            payload = compression.compress(encode(records));
+        }
+        return payload;
+    }
+
+    public int getUncompressedBytes() {
+        int bytes = 4;
+        for (KafkaRecord record : records) {
+            bytes += record.getSizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * The record values in send order, ready for an {@code OutputBinding<String[]>}.
+     */
+    public String[] values() {
+        String[] values = new String[records.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = records.get(i).getValue();
+        }
+        return values;
+    }
+
+    /**
+     * Decodes a payload produced by a batch back into key/value records.
+     */
+    public static List<KafkaRecord> decode(byte[] payload, KafkaCompression compression) {
+        byte[] raw = compression.decompress(payload);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            int count = in.readInt();
+            List<KafkaRecord> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                String value = readString(in);
+                records.add(new KafkaRecord(key, value, 0L));
+            }
+            return records;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encode(List<KafkaRecord> records) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * records.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(records.size());
+            for (KafkaRecord record : records) {
+                writeString(out, record.getKey());
+                writeString(out, record.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,441 @@
+package com.functions.kafka;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Linger-and-batch producer that sits in front of the Kafka output binding.
+ * <p>
+ * Records are appended to one accumulator per partition. A batch is sealed when it reaches
+ * batch.size bytes, before a record that would take it past batch.size, or when its oldest
+ * record has waited linger.ms, then compressed and handed to the {@link KafkaSink}; a batch the
+ * sink rejects is retried with exponential backoff. Without a sink, sealed batches are queued and picked up by
+ * {@link #drainReady()}.
+ * <p>
+ * A function invocation must not leave records it acknowledged in memory for a later
+ * invocation to emit: the instance can be recycled or scaled in before that. It batches its
+ * own records with {@link #sendNow(String, String, List)} and puts them into its own
+ * {@code OutputBinding<String[]>}; that path never compresses, since the binding takes the
+ * uncompressed values and the extension compresses on the wire.
+ * <p>
+ * With idempotence enabled every batch carries a producer id and a per-partition base
+ * sequence so a broker can drop retried batches, and records whose idempotency key is in the
+ * recent key window are dropped before they reach an accumulator. The idempotency key is
+ * separate from the partition key, which many distinct records share. A key enters the window
+ * only once its batch is acknowledged: by the sink in sink mode, by the caller through
+ * {@link #acknowledge(List)} otherwise, so a record whose send failed can be sent again. Two
+ * records with the same idempotency key that are both in flight are both sent.
+ */
+public class KafkaBatchingProducer implements AutoCloseable {
+    private static final int MAX_SEND_ATTEMPTS = 3;
+
+    private final String topic;
+    private final KafkaProducerConfig config;
+    private final KafkaSink sink;
+    private final long producerId = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+    private final long lingerNanos;
+    private final Accumulator[] accumulators;
+    private final ConcurrentLinkedQueue<KafkaBatch> ready = new ConcurrentLinkedQueue<>();
+    private final Map<String, Boolean> recentKeys;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private ScheduledExecutorService lingerTimer;
+
+    private final AtomicLong recordsAccepted = new AtomicLong();
+    private final AtomicLong duplicateKeysDropped = new AtomicLong();
+    private final AtomicLong batchesSealed = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    public KafkaBatchingProducer(String topic, KafkaProducerConfig config) {
+        this(topic, config, null);
+    }
+
+    public KafkaBatchingProducer(String topic, KafkaProducerConfig config, KafkaSink sink) {
+        this.topic = topic;
+        this.config = config;
+        this.sink = sink;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(config.getLingerMs());
+        this.accumulators = new Accumulator[config.getPartitions()];
+        for (int i = 0; i < accumulators.length; i++) {
+            accumulators[i] = new Accumulator(i);
+        }
+        final int window = config.getIdempotentKeyWindow();
+        this.recentKeys = new LinkedHashMap<String, Boolean>(Math.min(window, 1024), 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > window;
+            }
+        };
+    }
+
+    /**
+     * Starts a daemon timer that seals lingering batches and pushes them to the sink.
+     * Only useful when a sink was supplied; pull-mode callers use {@link #drainReady()}.
+     */
+    public synchronized KafkaBatchingProducer start() {
+        if (sink == null) {
+            throw new IllegalStateException("A sink is required for timer-driven linger");
+        }
+        if (lingerTimer == null) {
+            lingerTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "kafka-linger-" + topic);
+                t.setDaemon(true);
+                return t;
+            });
+            long tick = Math.max(1, config.getLingerMs() / 2);
+            lingerTimer.scheduleAtFixedRate(this::drainReady, tick, tick, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a record to its partition's accumulator; it is never dropped as a duplicate.
+     */
+    public boolean send(String key, String value) {
+        return send(key, null, value);
+    }
+
+    /**
+     * Appends a record to its partition's accumulator.
+     *
+     * @param key the partition key, null to spread records round-robin
+     * @param idempotencyKey identifies the record for duplicate suppression, null for none
+     * @return false if idempotence is enabled and the idempotency key was acknowledged recently
+     */
+    public boolean send(String key, String idempotencyKey, String value) {
+        if (wasAcknowledged(idempotencyKey)) {
+            return false;
+        }
+        KafkaRecord record = new KafkaRecord(key, idempotencyKey, value, System.nanoTime());
+        List<KafkaBatch> sealed = accumulators[partitionFor(key)].append(record);
+        recordsAccepted.incrementAndGet();
+        for (KafkaBatch batch : sealed) {
+            dispatch(batch);
+        }
+        return true;
+    }
+
+    /**
+     * Batches one caller's records right away, without an accumulator, so none of them waits
+     * for another caller: the values are split into batch.size batches for the key's partition,
+     * in order, and returned sealed but not compressed. Once the caller has handed them on it
+     * passes them to {@link #acknowledge(List)}.
+     *
+     * @param idempotencyKey identifies the whole call for duplicate suppression, null for none
+     * @return an empty list if idempotence is enabled and the idempotency key was acknowledged recently
+     */
+    public List<KafkaBatch> sendNow(String key, String idempotencyKey, List<String> values) {
+        if (values.isEmpty() || wasAcknowledged(idempotencyKey)) {
+            return Collections.emptyList();
+        }
+        long now = System.nanoTime();
+        List<KafkaRecord> records = new ArrayList<>(values.size());
+        for (String value : values) {
+            records.add(new KafkaRecord(key, idempotencyKey, value, now));
+        }
+        recordsAccepted.addAndGet(records.size());
+        List<KafkaBatch> batches = accumulators[partitionFor(key)].sealNow(records);
+        batchesSealed.addAndGet(batches.size());
+        return batches;
+    }
+
+    /**
+     * Puts the idempotency keys of batches that reached Kafka, or the output binding, into the
+     * recent key window. Sink mode does this itself for every batch the sink accepted.
+     */
+    public void acknowledge(List<KafkaBatch> batches) {
+        if (!config.isIdempotence()) {
+            return;
+        }
+        synchronized (recentKeys) {
+            for (KafkaBatch batch : batches) {
+                for (KafkaRecord record : batch.getRecords()) {
+                    if (record.getIdempotencyKey() != null) {
+                        recentKeys.put(record.getIdempotencyKey(), Boolean.TRUE);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Seals every batch whose linger has expired and returns all batches waiting for a caller.
+     * In sink mode the batches have already been sent and the returned list is empty.
+     */
+    public List<KafkaBatch> drainReady() {
+        sealLingered();
+        return pollReady();
+    }
+
+    /**
+     * Seals every batch whose linger has expired without handing anything out: in sink mode the
+     * batches are sent, in pull mode they wait for the next {@link #drainReady()}.
+     *
+     * @return the number of batches sealed
+     */
+    public int sealLingered() {
+        long now = System.nanoTime();
+        int count = 0;
+        for (Accumulator accumulator : accumulators) {
+            KafkaBatch sealed = accumulator.sealIfLingered(now);
+            if (sealed != null) {
+                dispatch(sealed);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Seals every non-empty accumulator regardless of linger.
+     */
+    public List<KafkaBatch> flush() {
+        for (Accumulator accumulator : accumulators) {
+            KafkaBatch sealed = accumulator.seal();
+            if (sealed != null) {
+                dispatch(sealed);
+            }
+        }
+        return pollReady();
+    }
+
+    public int partitionFor(String key) {
+        int hash = key == null ? roundRobin.getAndIncrement() : murmurMix(key.hashCode());
+        return (hash & Integer.MAX_VALUE) % accumulators.length;
+    }
+
+    public long getRecordsAccepted() {
+        return recordsAccepted.get();
+    }
+
+    public long getDuplicateKeysDropped() {
+        return duplicateKeysDropped.get();
+    }
+
+    public long getBatchesSealed() {
+        return batchesSealed.get();
+    }
+
+    /**
+     * Compressed / uncompressed payload size over the batches sent to the sink; 1.0 when none was.
+     */
+    public double getCompressionRatio() {
+        long raw = uncompressedBytes.get();
+        return raw == 0 ? 1.0 : (double) compressedBytes.get() / raw;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (lingerTimer != null) {
+                lingerTimer.shutdown();
+                lingerTimer = null;
+            }
+        }
+        flush();
+    }
+
+    private boolean wasAcknowledged(String idempotencyKey) {
+        if (!config.isIdempotence() || idempotencyKey == null) {
+            return false;
+        }
+        synchronized (recentKeys) {
+            if (!recentKeys.containsKey(idempotencyKey)) {
+                return false;
+            }
+        }
+        duplicateKeysDropped.incrementAndGet();
+        return true;
+    }
+
+    private List<KafkaBatch> pollReady() {
+        List<KafkaBatch> batches = new ArrayList<>();
+        KafkaBatch batch;
+        while ((batch = ready.poll()) != null) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private void dispatch(KafkaBatch batch) {
+        batchesSealed.incrementAndGet();
+        if (sink == null) {
+            ready.add(batch);
+            return;
+        }
+        uncompressedBytes.addAndGet(batch.getUncompressedBytes());
+        compressedBytes.addAndGet(batch.getPayload().length);
+        RuntimeException last = null;
+        for (int attempt = 0; attempt < MAX_SEND_ATTEMPTS; attempt++) {
+            if (attempt > 0 && !backOff(attempt)) {
+                break;
+            }
+            try {
+                // Retrying the same sealed batch keeps its base sequence, so an idempotent broker drops repeats
+                sink.send(batch);
+                acknowledge(Collections.singletonList(batch));
+                return;
+            } catch (RuntimeException e) {
+                last = e;
+            }
+        }
+        throw last;
+    }
+
+    /**
+     * Waits retry.backoff.ms before the first retry and twice as long before each one after,
+     * with up to 20% jitter so senders that failed together do not retry together.
+     *
+     * @return false if the thread was interrupted, and the batch should not be retried
+     */
+    private boolean backOff(int attempt) {
+        long backoff = config.getRetryBackoffMs() << (attempt - 1);
+        if (backoff == 0) {
+            return true;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 5 + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static int murmurMix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private final class Accumulator {
+        private final int partition;
+        private List<KafkaRecord> records = new ArrayList<>();
+        private int bytes;
+        private long firstEnqueuedNanos;
+        private int nextSequence;
+
+        Accumulator(int partition) {
+            this.partition = partition;
+        }
+
+        /**
+         * @return the batches the record sealed, in order: the waiting records if the record
+         *         would have taken them past batch.size, then the record's own batch if it filled it
+         */
+        List<KafkaBatch> append(KafkaRecord record) {
+            List<KafkaRecord> full = null;
+            int fullSequence = 0;
+            List<KafkaRecord> sealed = null;
+            int baseSequence = 0;
+            synchronized (this) {
+                if (!records.isEmpty() && bytes + record.getSizeInBytes() > config.getBatchSizeBytes()) {
+                    fullSequence = nextSequence;
+                    full = take();
+                }
+                if (records.isEmpty()) {
+                    firstEnqueuedNanos = record.getEnqueuedNanos();
+                }
+                records.add(record);
+                bytes += record.getSizeInBytes();
+                if (bytes >= config.getBatchSizeBytes() || lingerNanos == 0) {
+                    baseSequence = nextSequence;
+                    sealed = take();
+                }
+            }
+            if (full == null && sealed == null) {
+                return Collections.emptyList();
+            }
+            List<KafkaBatch> batches = new ArrayList<>(2);
+            if (full != null) {
+                batches.add(toBatch(full, fullSequence));
+            }
+            if (sealed != null) {
+                batches.add(toBatch(sealed, baseSequence));
+            }
+            return batches;
+        }
+
+        KafkaBatch sealIfLingered(long now) {
+            List<KafkaRecord> sealed;
+            int baseSequence;
+            synchronized (this) {
+                if (records.isEmpty() || now - firstEnqueuedNanos < lingerNanos) {
+                    return null;
+                }
+                baseSequence = nextSequence;
+                sealed = take();
+            }
+            return toBatch(sealed, baseSequence);
+        }
+
+        KafkaBatch seal() {
+            List<KafkaRecord> sealed;
+            int baseSequence;
+            synchronized (this) {
+                if (records.isEmpty()) {
+                    return null;
+                }
+                baseSequence = nextSequence;
+                sealed = take();
+            }
+            return toBatch(sealed, baseSequence);
+        }
+
+        /**
+         * Splits records that never entered the accumulator into batches, reserving their
+         * sequence numbers so they do not collide with the accumulator's batches.
+         */
+        List<KafkaBatch> sealNow(List<KafkaRecord> own) {
+            int baseSequence;
+            synchronized (this) {
+                baseSequence = nextSequence;
+                nextSequence += own.size();
+            }
+            List<KafkaBatch> batches = new ArrayList<>();
+            int from = 0;
+            int size = 0;
+            for (int i = 0; i < own.size(); i++) {
+                int recordBytes = own.get(i).getSizeInBytes();
+                // Sealed before the record that would take it past batch.size; a record larger
+                // than batch.size goes in a batch of its own
+                if (i > from && size + recordBytes > config.getBatchSizeBytes()) {
+                    batches.add(new KafkaBatch(topic, partition, producerId, baseSequence + from,
+                        new ArrayList<>(own.subList(from, i)), KafkaCompression.NONE));
+                    from = i;
+                    size = 0;
+                }
+                size += recordBytes;
+            }
+            batches.add(new KafkaBatch(topic, partition, producerId, baseSequence + from,
+                new ArrayList<>(own.subList(from, own.size())), KafkaCompression.NONE));
+            return batches;
+        }
+
+        private List<KafkaRecord> take() {
+            List<KafkaRecord> sealed = records;
+            records = new ArrayList<>(sealed.size());
+            bytes = 0;
+            nextSequence += sealed.size();
+            return sealed;
+        }
+
+        // Batches are built outside the lock so senders are never blocked on them
+        private KafkaBatch toBatch(List<KafkaRecord> sealed, int baseSequence) {
+            return new KafkaBatch(topic, partition, producerId, baseSequence, sealed, config.getCompression());
+        }
+    }
+}
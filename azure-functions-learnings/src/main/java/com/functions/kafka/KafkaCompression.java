@@ -0,0 +1,65 @@
+package com.functions.kafka;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Batch compression codecs available without extra dependencies.
+ * <p>
+ * Kafka also supports lz4 and zstd, but the JDK ships neither codec. When the batches are
+ * handed to the Kafka extension the broker-side compression.type takes over; this enum only
+ * covers what the in-process accumulator can do on its own.
+ */
+public enum KafkaCompression {
+    NONE {
+        @Override
+        public byte[] compress(byte[] payload) {
+            return payload;
+        }
+
+        @Override
+        public byte[] decompress(byte[] payload) {
+            return payload;
+        }
+    },
+    GZIP {
+        @Override
+        public byte[] compress(byte[] payload) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 32);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            }) {
+                gzip.write(payload);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        public byte[] decompress(byte[] payload) {
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 4);
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = gzip.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                return out.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    public abstract byte[] compress(byte[] payload);
+
+    public abstract byte[] decompress(byte[] payload);
+}
@@ -0,0 +1,173 @@
+package com.functions.kafka;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded-memory index of Kafka records that were already forwarded, keyed by topic/partition/offset.
+ * <p>
+ * A bloom filter answers "definitely new" for the common case, and bloom hits are confirmed
+ * against a bounded LRU set of recent coordinates, so by default a false positive never
+ * suppresses a record. The bloom filter has two generations: when the active
+ * one reaches its expected insertions it becomes the previous one and a fresh filter is
+ * started, which keeps memory flat on an unbounded stream.
+ * <p>
+ * A bloom hit that is no longer in the exact set is a "probable" duplicate: either a false
+ * positive or a redelivery older than the exact window. By default it is forwarded; with
+ * {@code suppressProbable} it is dropped, extending the dedup horizon to both bloom
+ * generations at the cost of losing roughly falsePositiveRate of genuinely new records.
+ */
+public class KafkaDedupIndex {
+    private final int expectedInsertions;
+    private final double falsePositiveRate;
+    private final int exactCapacity;
+    private final boolean suppressProbable;
+    private final LinkedHashMap<String, Boolean> exact;
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private final AtomicLong currentInsertions = new AtomicLong();
+    private volatile long generationStartedMillis = System.currentTimeMillis();
+
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong duplicatesSuppressed = new AtomicLong();
+    private final AtomicLong probableDuplicates = new AtomicLong();
+    private final AtomicLong rotations = new AtomicLong();
+
+    public KafkaDedupIndex(int expectedInsertions, double falsePositiveRate, int exactCapacity) {
+        this(expectedInsertions, falsePositiveRate, exactCapacity, false);
+    }
+
+    public KafkaDedupIndex(int expectedInsertions, double falsePositiveRate, int exactCapacity, boolean suppressProbable) {
+        this.suppressProbable = suppressProbable;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.exactCapacity = exactCapacity;
+        this.current = new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.previous = new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.exact = new LinkedHashMap<String, Boolean>(Math.min(exactCapacity, 1 << 16), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > KafkaDedupIndex.this.exactCapacity;
+            }
+        };
+    }
+
+    public static String key(String topic, Object partition, Object offset) {
+        return topic + '/' + partition + '/' + offset;
+    }
+
+    /**
+     * Reports whether the record was already forwarded, without recording it: a delivery whose
+     * forwarding fails must not make its own redelivery look like a duplicate. Call
+     * {@link #markCommitted(String)} once the record has been forwarded.
+     * <p>
+     * A bloom miss, the common case for new records, returns without taking a lock; only bloom
+     * hits are confirmed against the exact set. Two concurrent first deliveries of one record
+     * can both pass; the index narrows redelivery, it does not make forwarding exactly-once.
+     *
+     * @return true if the record is a redelivery and should be suppressed
+     */
+    public boolean check(String topic, Object partition, Object offset) {
+        return check(key(topic, partition, offset));
+    }
+
+    public boolean check(String key) {
+        checked.incrementAndGet();
+        if (!current.mightContain(key) && !previous.mightContain(key)) {
+            return false;
+        }
+        synchronized (exact) {
+            if (exact.get(key) != null) {
+                duplicatesSuppressed.incrementAndGet();
+                return true;
+            }
+        }
+        probableDuplicates.incrementAndGet();
+        if (suppressProbable) {
+            duplicatesSuppressed.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public void markCommitted(String topic, Object partition, Object offset) {
+        markCommitted(key(topic, partition, offset));
+    }
+
+    /**
+     * Records that the record was forwarded, so later deliveries of it are suppressed.
+     */
+    public void markCommitted(String key) {
+        synchronized (exact) {
+            exact.put(key, Boolean.TRUE);
+        }
+        BloomFilter active = current;
+        active.put(key);
+        if (currentInsertions.incrementAndGet() >= expectedInsertions) {
+            rotate(active);
+        }
+    }
+
+    /**
+     * Rotates the bloom generations if the active one is older than {@code maxAgeMillis}, so a
+     * quiet stream does not keep stale keys (and their false positives) in the filter forever.
+     *
+     * @return true if a rotation happened
+     */
+    public boolean expireGeneration(long maxAgeMillis) {
+        BloomFilter active = current;
+        if (currentInsertions.get() == 0 || System.currentTimeMillis() - generationStartedMillis < maxAgeMillis) {
+            return false;
+        }
+        return rotate(active);
+    }
+
+    private synchronized boolean rotate(BloomFilter full) {
+        if (current != full) {
+            return false;
+        }
+        previous = full;
+        current = new BloomFilter(expectedInsertions, falsePositiveRate);
+        currentInsertions.set(0);
+        generationStartedMillis = System.currentTimeMillis();
+        rotations.incrementAndGet();
+        return true;
+    }
+
+    public long getChecked() {
+        return checked.get();
+    }
+
+    public long getDuplicatesSuppressed() {
+        return duplicatesSuppressed.get();
+    }
+
+    public long getProbableDuplicates() {
+        return probableDuplicates.get();
+    }
+
+    public long getRotations() {
+        return rotations.get();
+    }
+
+    public int getExactSize() {
+        synchronized (exact) {
+            return exact.size();
+        }
+    }
+
+    /**
+     * Approximate footprint of both bloom generations; the exact set is bounded by its capacity.
+     */
+    public long getBloomBytes() {
+        return current.sizeInBytes() + previous.sizeInBytes();
+    }
+
+    @Override
+    public String toString() {
+        return "checked=" + getChecked() + " duplicatesSuppressed=" + getDuplicatesSuppressed()
+            + " probableDuplicates=" + getProbableDuplicates() + " exactSize=" + getExactSize()
+            + " bloomBytes=" + getBloomBytes() + " rotations=" + getRotations();
+    }
+}
@@ -0,0 +1,111 @@
+package com.functions.kafka;
+
+/**
+ * Producer settings for {@link KafkaBatchingProducer}.
+ * <p>
+ * The names follow the Kafka producer properties they mirror:
+ * linger.ms, batch.size, compression.type, enable.idempotence and retry.backoff.ms.
+ */
+public class KafkaProducerConfig {
+    private int partitions = 1;
+    private long lingerMs = 5;
+    private int batchSizeBytes = 16 * 1024;
+    private KafkaCompression compression = KafkaCompression.NONE;
+    private boolean idempotence = true;
+    private int idempotentKeyWindow = 10_000;
+    private long retryBackoffMs = 100;
+
+    public static KafkaProducerConfig defaults() {
+        return new KafkaProducerConfig();
+    }
+
+    public KafkaProducerConfig partitions(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be at least 1");
+        }
+        this.partitions = partitions;
+        return this;
+    }
+
+    public KafkaProducerConfig lingerMs(long lingerMs) {
+        if (lingerMs < 0) {
+            throw new IllegalArgumentException("lingerMs must not be negative");
+        }
+        this.lingerMs = lingerMs;
+        return this;
+    }
+
+    public KafkaProducerConfig batchSizeBytes(int batchSizeBytes) {
+        if (batchSizeBytes < 1) {
+            throw new IllegalArgumentException("batchSizeBytes must be positive");
+        }
+        this.batchSizeBytes = batchSizeBytes;
+        return this;
+    }
+
+    public KafkaProducerConfig compression(KafkaCompression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public KafkaProducerConfig idempotence(boolean idempotence) {
+        this.idempotence = idempotence;
+        return this;
+    }
+
+    /**
+     * How many recently sent keys are remembered for duplicate-key suppression.
+     */
+    public KafkaProducerConfig idempotentKeyWindow(int idempotentKeyWindow) {
+        if (idempotentKeyWindow < 1) {
+            throw new IllegalArgumentException("idempotentKeyWindow must be positive");
+        }
+        this.idempotentKeyWindow = idempotentKeyWindow;
+        return this;
+    }
+
+    /**
+     * The wait before the first retry of a batch the sink rejected; it doubles for each retry after.
+     */
+    public KafkaProducerConfig retryBackoffMs(long retryBackoffMs) {
+        if (retryBackoffMs < 0) {
+            throw new IllegalArgumentException("retryBackoffMs must not be negative");
+        }
+        this.retryBackoffMs = retryBackoffMs;
+        return this;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public long getLingerMs() {
+        return lingerMs;
+    }
+
+    public int getBatchSizeBytes() {
+        return batchSizeBytes;
+    }
+
+    public KafkaCompression getCompression() {
+        return compression;
+    }
+
+    public boolean isIdempotence() {
+        return idempotence;
+    }
+
+    public int getIdempotentKeyWindow() {
+        return idempotentKeyWindow;
+    }
+
+    public long getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+
+    @Override
+    public String toString() {
+        return "linger.ms=" + lingerMs + " batch.size=" + batchSizeBytes + " compression.type=" + compression
+            + " enable.idempotence=" + idempotence + " retry.backoff.ms=" + retryBackoffMs + " partitions=" + partitions;
+    }
+}
@@ -0,0 +1,66 @@
+package com.functions.kafka;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A single key/value record waiting in a {@link KafkaBatchingProducer} accumulator. The
+ * idempotency key only lives in the producer, for duplicate suppression; it is not sent.
+ */
+public class KafkaRecord {
+    private final String key;
+    private final String idempotencyKey;
+    private final String value;
+    private final long enqueuedNanos;
+    private final int sizeInBytes;
+
+    public KafkaRecord(String key, String value, long enqueuedNanos) {
+        this(key, null, value, enqueuedNanos);
+    }
+
+    public KafkaRecord(String key, String idempotencyKey, String value, long enqueuedNanos) {
+        this.key = key;
+        this.idempotencyKey = idempotencyKey;
+        this.value = value;
+        this.enqueuedNanos = enqueuedNanos;
+        this.sizeInBytes = 8 + utf8Length(key) + utf8Length(value);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return null if the record is never dropped as a duplicate
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * {@link System#nanoTime()} at the moment the record was handed to the producer.
+     */
+    public long getEnqueuedNanos() {
+        return enqueuedNanos;
+    }
+
+    public int getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    private static int utf8Length(String s) {
+        if (s == null) {
+            return 0;
+        }
+        // ASCII payloads are the common case; only pay for encoding when needed
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0x7F) {
+                return s.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        return s.length();
+    }
+}
@@ -0,0 +1,8 @@
+package com.functions.kafka;
+
+/**
+ * Destination for sealed batches, e.g. the Kafka output binding or {@link InMemoryKafkaBroker}.
+ */
+public interface KafkaSink {
+    void send(KafkaBatch batch);
+}
@@ -0,0 +1,189 @@
+package com.functions.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Hands log records from invocation threads to one writer thread through a bounded ring buffer.
+ * <p>
+ * Appending claims a slot with one CAS and never blocks: when the buffer is full the record is
+ * dropped and the caller is told so. The writer parks while the buffer is empty and an append
+ * unparks it only if it is parked. It formats the pending records (message suppliers are called
+ * there, off the invocation thread) and publishes them in one batch to the logger each was
+ * meant for, with the original time and thread. Records keep the invocation's own logger, so
+ * the worker still attributes them to the invocation as long as they are published before it
+ * returns; {@link #flush(long, TimeUnit)} waits for that.
+ */
+public final class AsyncLogAppender {
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final long FLUSH_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(250);
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final Logger[] loggers;
+    private final Level[] levels;
+    private final Object[] messages;
+    private final Throwable[] thrown;
+    private final long[] millis;
+    private final long[] threadIds;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private volatile long head;
+    private volatile boolean writerParked;
+    private final Thread writer;
+
+    public AsyncLogAppender(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        loggers = new Logger[size];
+        levels = new Level[size];
+        messages = new Object[size];
+        thrown = new Throwable[size];
+        millis = new long[size];
+        threadIds = new long[size];
+        writer = new Thread(this::drainLoop, "async-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static AsyncLogAppender global() {
+        return GlobalHolder.INSTANCE;
+    }
+
+    /**
+     * @param message a String, or a Supplier of one that is called on the writer thread
+     * @return false if the buffer was full and the record was dropped
+     */
+    public boolean append(Logger logger, Level level, Object message, Throwable error) {
+        while (true) {
+            long sequence = tail.get();
+            int slot = (int) sequence & mask;
+            long available = sequences.get(slot);
+            if (available < sequence) {
+                return false;
+            }
+            if (available == sequence && tail.compareAndSet(sequence, sequence + 1)) {
+                loggers[slot] = logger;
+                levels[slot] = level;
+                messages[slot] = message;
+                thrown[slot] = error;
+                millis[slot] = System.currentTimeMillis();
+                threadIds[slot] = Thread.currentThread().getId();
+                // Publishes the fields above to the writer. A volatile write, so it cannot be
+                // reordered after the read of writerParked
+                sequences.set(slot, sequence + 1);
+                if (writerParked) {
+                    LockSupport.unpark(writer);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Waits until every record appended so far has been published, or the timeout passed.
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long target = tail.get();
+        if (head >= target) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (head < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FLUSH_POLL_NANOS);
+        }
+        return true;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    private void drainLoop() {
+        while (true) {
+            if (drain() > 0) {
+                continue;
+            }
+            writerParked = true;
+            // Checked again after announcing the park, so an append that missed the flag has
+            // published its record by now
+            if (sequences.get((int) head & mask) != head + 1) {
+                LockSupport.park(this);
+            }
+            writerParked = false;
+        }
+    }
+
+    private int drain() {
+        int drained = 0;
+        long sequence = head;
+        while (true) {
+            int slot = (int) sequence & mask;
+            if (sequences.get(slot) != sequence + 1) {
+                break;
+            }
+            Logger logger = loggers[slot];
+            LogRecord record = toRecord(slot, logger);
+            loggers[slot] = null;
+            messages[slot] = null;
+            thrown[slot] = null;
+            sequences.lazySet(slot, sequence + mask + 1);
+            try {
+                logger.log(record);
+            } catch (RuntimeException e) {
+                // A failing handler must not stop the writer
+            }
+            // Only now, so flush does not return before the record reached the logger
+            sequence++;
+            head = sequence;
+            drained++;
+        }
+        published.addAndGet(drained);
+        return drained;
+    }
+
+    // setInstant and setLongThreadID replace these from Java 9 and 16; the app still targets Java 8
+    @SuppressWarnings("deprecation")
+    private LogRecord toRecord(int slot, Logger logger) {
+        LogRecord record = new LogRecord(levels[slot], format(messages[slot]));
+        record.setMillis(millis[slot]);
+        record.setThreadID((int) threadIds[slot]);
+        record.setThrown(thrown[slot]);
+        record.setLoggerName(logger.getName());
+        return record;
+    }
+
+    @SuppressWarnings("unchecked")
+    static String format(Object message) {
+        if (!(message instanceof Supplier)) {
+            return String.valueOf(message);
+        }
+        try {
+            return ((Supplier<String>) message).get();
+        } catch (RuntimeException e) {
+            return "log message failed to format: " + e;
+        }
+    }
+
+    private static final class GlobalHolder {
+        static final AsyncLogAppender INSTANCE = new AsyncLogAppender(DEFAULT_CAPACITY);
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> INSTANCE.flush(1, TimeUnit.SECONDS)));
+        }
+    }
+}
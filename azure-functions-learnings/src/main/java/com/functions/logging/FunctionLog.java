@@ -0,0 +1,167 @@
+package com.functions.logging;
+
+import com.functions.metrics.Counter;
+import com.functions.metrics.MetricsRegistry;
+import com.microsoft.azure.functions.ExecutionContext;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logging for one function. A record goes through, in order:
+ * <ol>
+ * <li>the level check of the invocation's logger,</li>
+ * <li>sampling: only one in {@code LEARNING_log_sample_every} INFO and finer records is kept
+ * (warnings always are),</li>
+ * <li>a rate limit of {@code LEARNING_log_rate_per_second} records per second for the function,
+ * with bursts of up to one second's worth,</li>
+ * <li>the {@link AsyncLogAppender}, unless {@code LEARNING_log_async} is "false". A warning
+ * or worse is flushed before the call returns, together with everything appended before it,
+ * so it is published while the invocation still runs; one that finds the buffer full is
+ * logged directly. The rest is flushed by {@link #flush()} when the body returns.</li>
+ * </ol>
+ * Messages built from values should be passed as a Supplier, so the string is only built for
+ * records that survive, and then on the writer thread: the supplier must not capture anything
+ * the invocation changes afterwards. Dropped records are counted in the
+ * log_records_suppressed_total metric.
+ */
+public final class FunctionLog {
+    public static final String SAMPLE_EVERY_SETTING = "LEARNING_log_sample_every";
+    public static final String RATE_SETTING = "LEARNING_log_rate_per_second";
+    public static final String ASYNC_SETTING = "LEARNING_log_async";
+    private static final int DEFAULT_RATE_PER_SECOND = 200;
+    private static final long WARNING_FLUSH_MILLIS = 100;
+    private static final long RETURN_FLUSH_MILLIS = 100;
+    private static final Map<String, FunctionLog> FUNCTIONS = new ConcurrentHashMap<>();
+
+    private final int sampleEvery;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+    private final AsyncLogAppender appender;
+    private final Counter sampledOut;
+    private final Counter rateLimited;
+    private final Counter bufferFull;
+
+    FunctionLog(String functionName, int sampleEvery, int ratePerSecond, AsyncLogAppender appender, MetricsRegistry registry) {
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.intervalNanos = ratePerSecond > 0 ? 1_000_000_000L / ratePerSecond : 0;
+        this.burstNanos = 1_000_000_000L;
+        this.appender = appender;
+        String help = "Log records dropped before reaching the logger.";
+        this.sampledOut = registry.counter("log_records_suppressed_total", help, "function", functionName, "reason", "sampled");
+        this.rateLimited = registry.counter("log_records_suppressed_total", help, "function", functionName, "reason", "rate_limited");
+        this.bufferFull = registry.counter("log_records_suppressed_total", help, "function", functionName, "reason", "buffer_full");
+    }
+
+    public static FunctionLog of(String functionName) {
+        return FUNCTIONS.computeIfAbsent(functionName, name -> new FunctionLog(name,
+            intSetting(SAMPLE_EVERY_SETTING, 1), intSetting(RATE_SETTING, DEFAULT_RATE_PER_SECOND),
+            "false".equalsIgnoreCase(setting(ASYNC_SETTING)) ? null : AsyncLogAppender.global(), MetricsRegistry.global()));
+    }
+
+    public void info(ExecutionContext context, String message) {
+        log(context.getLogger(), Level.INFO, message, null);
+    }
+
+    public void info(ExecutionContext context, Supplier<String> message) {
+        log(context.getLogger(), Level.INFO, message, null);
+    }
+
+    public void warning(ExecutionContext context, String message) {
+        log(context.getLogger(), Level.WARNING, message, null);
+    }
+
+    public void warning(ExecutionContext context, Supplier<String> message, Throwable thrown) {
+        log(context.getLogger(), Level.WARNING, message, thrown);
+    }
+
+    /**
+     * @param message a String or a Supplier of one
+     */
+    public void log(Logger logger, Level level, Object message, Throwable thrown) {
+        if (!logger.isLoggable(level)) {
+            return;
+        }
+        if (level.intValue() < Level.WARNING.intValue() && sampleEvery > 1
+            && ThreadLocalRandom.current().nextInt(sampleEvery) != 0) {
+            sampledOut.increment();
+            return;
+        }
+        if (!acquire()) {
+            rateLimited.increment();
+            return;
+        }
+        boolean warning = level.intValue() >= Level.WARNING.intValue();
+        if (appender == null) {
+            logger.log(level, AsyncLogAppender.format(message), thrown);
+        } else if (appender.append(logger, level, message, thrown)) {
+            if (warning) {
+                appender.flush(WARNING_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } else if (warning) {
+            logger.log(level, AsyncLogAppender.format(message), thrown);
+        } else {
+            bufferFull.increment();
+        }
+    }
+
+    /**
+     * Waits, briefly, until the records appended so far are published, so the worker still
+     * attributes them to the invocation; {@link com.functions.execution.FunctionWrapper} calls
+     * it when a body returns. Returns at once when nothing is pending.
+     */
+    public void flush() {
+        if (appender != null) {
+            appender.flush(RETURN_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public long getSuppressed() {
+        return sampledOut.get() + rateLimited.get() + bufferFull.get();
+    }
+
+    /**
+     * Records dropped because the appender's buffer was full, as opposed to sampled or rate limited.
+     */
+    public long getBufferFull() {
+        return bufferFull.get();
+    }
+
+    /**
+     * Generic cell rate algorithm: each record moves the theoretical arrival time one interval
+     * ahead; a record is refused if that time is more than the burst ahead of now.
+     */
+    private boolean acquire() {
+        if (intervalNanos == 0) {
+            return true;
+        }
+        while (true) {
+            long now = System.nanoTime();
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    private static int intSetting(String name, int defaultValue) {
+        String value = setting(name);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    private static String setting(String name) {
+        String value = System.getProperty(name);
+        return value != null ? value : System.getenv(name);
+    }
+}
@@ -0,0 +1,110 @@
+package com.functions.maintenance;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link LeaseStore} backed by a directory that every instance can reach (a mounted share
+ * standing in for blob leases). Each lease is a small file holding "owner\nexpiresAtMillis";
+ * reads and writes happen under an exclusive file lock, held until the channel is closed, so
+ * instances in different processes never both win the same lease. Operations are also serialized within the JVM because file
+ * locks are held per process, not per thread.
+ */
+public class FileLeaseStore implements LeaseStore {
+    private static final String SUFFIX = ".lease";
+
+    private final Path directory;
+
+    public FileLeaseStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create lease directory " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized boolean tryAcquire(String name, String owner, long ttlMillis) {
+        try (FileChannel channel = open(name)) {
+            channel.lock();
+            long now = System.currentTimeMillis();
+            Lease current = read(name, channel);
+            if (current.isLive(now) && !owner.equals(current.getOwner())) {
+                return false;
+            }
+            write(channel, owner + "\n" + (now + ttlMillis));
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot acquire lease " + name, e);
+        }
+    }
+
+    @Override
+    public synchronized void release(String name, String owner) {
+        try (FileChannel channel = open(name)) {
+            channel.lock();
+            if (owner.equals(read(name, channel).getOwner())) {
+                write(channel, "");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot release lease " + name, e);
+        }
+    }
+
+    @Override
+    public synchronized List<Lease> list(String prefix) {
+        List<Lease> leases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, fileName(prefix) + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - SUFFIX.length()).replace('~', '/');
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    channel.lock();
+                    leases.add(read(name, channel));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list leases in " + directory, e);
+        }
+        return leases;
+    }
+
+    private FileChannel open(String name) throws IOException {
+        return FileChannel.open(directory.resolve(fileName(name) + SUFFIX),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Lease names use '/' between workload and shard; it cannot appear in a file name.
+     */
+    private static String fileName(String name) {
+        return name.replace('/', '~');
+    }
+
+    private static Lease read(String name, FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), 4096));
+        channel.read(buffer, 0);
+        String content = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        int newline = content.indexOf('\n');
+        if (newline < 0) {
+            return new Lease(name, null, 0);
+        }
+        return new Lease(name, content.substring(0, newline), Long.parseLong(content.substring(newline + 1).trim()));
+    }
+
+    private static void write(FileChannel channel, String content) throws IOException {
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)), 0);
+        channel.force(false);
+    }
+}
@@ -0,0 +1,38 @@
+package com.functions.maintenance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link LeaseStore} for a single process, e.g. several simulated instances in one JVM.
+ */
+public class InMemoryLeaseStore implements LeaseStore {
+    private final ConcurrentHashMap<String, Lease> leases = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryAcquire(String name, String owner, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        Lease result = leases.compute(name, (key, current) ->
+            current == null || !current.isLive(now) || owner.equals(current.getOwner())
+                ? new Lease(key, owner, now + ttlMillis)
+                : current);
+        return owner.equals(result.getOwner());
+    }
+
+    @Override
+    public void release(String name, String owner) {
+        leases.computeIfPresent(name, (key, current) -> owner.equals(current.getOwner()) ? null : current);
+    }
+
+    @Override
+    public List<Lease> list(String prefix) {
+        List<Lease> matching = new ArrayList<>();
+        for (Lease lease : leases.values()) {
+            if (lease.getName().startsWith(prefix)) {
+                matching.add(lease);
+            }
+        }
+        return matching;
+    }
+}
@@ -0,0 +1,38 @@
+package com.functions.maintenance;
+
+/**
+ * A named lease held by {@code owner} until {@code expiresAtMillis} (wall clock, so lease TTLs
+ * must be much longer than the clock skew between instances).
+ */
+public class Lease {
+    private final String name;
+    private final String owner;
+    private final long expiresAtMillis;
+
+    public Lease(String name, String owner, long expiresAtMillis) {
+        this.name = name;
+        this.owner = owner;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public boolean isLive(long nowMillis) {
+        return owner != null && expiresAtMillis > nowMillis;
+    }
+
+    @Override
+    public String toString() {
+        return name + "@" + owner;
+    }
+}
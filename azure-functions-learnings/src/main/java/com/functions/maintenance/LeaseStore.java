@@ -0,0 +1,26 @@
+package com.functions.maintenance;
+
+import java.util.List;
+
+/**
+ * Shared store of expiring leases; the local stand-in for blob leases when the timer job runs
+ * on several instances.
+ */
+public interface LeaseStore {
+    /**
+     * Takes the lease if it is free or expired, or extends it if {@code owner} already holds it.
+     *
+     * @return true if {@code owner} holds the lease for the next {@code ttlMillis}
+     */
+    boolean tryAcquire(String name, String owner, long ttlMillis);
+
+    /**
+     * Gives the lease up if {@code owner} holds it.
+     */
+    void release(String name, String owner);
+
+    /**
+     * Every lease whose name starts with {@code prefix}, live or expired.
+     */
+    List<Lease> list(String prefix);
+}
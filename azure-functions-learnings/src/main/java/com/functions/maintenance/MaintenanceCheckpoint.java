@@ -0,0 +1,97 @@
+package com.functions.maintenance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Where the maintenance engine stopped: the task to resume at and when a full round last
+ * completed. Stored as a properties file that is replaced atomically, so a crash mid-write
+ * leaves the previous checkpoint intact. A null file keeps the checkpoint in memory only.
+ */
+public class MaintenanceCheckpoint {
+    private static final String NEXT_TASK = "nextTask";
+    private static final String LAST_ROUND_COMPLETED = "lastRoundCompletedMillis";
+    private static final String ROUNDS_COMPLETED = "roundsCompleted";
+
+    private final Path file;
+    private String nextTask;
+    private long lastRoundCompletedMillis;
+    private long roundsCompleted;
+
+    private MaintenanceCheckpoint(Path file) {
+        this.file = file;
+    }
+
+    public static MaintenanceCheckpoint load(Path file) {
+        MaintenanceCheckpoint checkpoint = new MaintenanceCheckpoint(file);
+        if (file == null || !Files.exists(file)) {
+            return checkpoint;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read maintenance checkpoint " + file, e);
+        }
+        checkpoint.nextTask = properties.getProperty(NEXT_TASK);
+        checkpoint.lastRoundCompletedMillis = Long.parseLong(properties.getProperty(LAST_ROUND_COMPLETED, "0"));
+        checkpoint.roundsCompleted = Long.parseLong(properties.getProperty(ROUNDS_COMPLETED, "0"));
+        return checkpoint;
+    }
+
+    public void save() {
+        if (file == null) {
+            return;
+        }
+        Properties properties = new Properties();
+        if (nextTask != null) {
+            properties.setProperty(NEXT_TASK, nextTask);
+        }
+        properties.setProperty(LAST_ROUND_COMPLETED, Long.toString(lastRoundCompletedMillis));
+        properties.setProperty(ROUNDS_COMPLETED, Long.toString(roundsCompleted));
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "maintenance checkpoint");
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write maintenance checkpoint " + file, e);
+        }
+    }
+
+    public String getNextTask() {
+        return nextTask;
+    }
+
+    void setNextTask(String nextTask) {
+        this.nextTask = nextTask;
+    }
+
+    public long getLastRoundCompletedMillis() {
+        return lastRoundCompletedMillis;
+    }
+
+    public long getRoundsCompleted() {
+        return roundsCompleted;
+    }
+
+    void roundCompleted(long nowMillis) {
+        lastRoundCompletedMillis = nowMillis;
+        roundsCompleted++;
+        nextTask = null;
+    }
+}
@@ -0,0 +1,196 @@
+package com.functions.maintenance;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs registered {@link MaintenanceTask}s round-robin in bounded slices inside a time box.
+ * <p>
+ * Every slice does at most {@code sliceBudget} units of work and the deadline is checked
+ * between slices, so a run overshoots its time box by at most one slice. When the time box
+ * runs out mid-round, the task to resume at is checkpointed and the next run continues
+ * there instead of starting over. A task gets at most {@link #MAX_SLICES_PER_TASK} slices per
+ * round so one busy task cannot starve the others. After missed schedules the caller passes
+ * catch-up rounds (see {@link #catchUpRounds(boolean, long)}), which are run back to back while
+ * time remains. A catch-up round only runs the tasks that were cut off with work left in the
+ * round before it; once every task has finished its round, the catch-up ends.
+ */
+public class MaintenanceEngine {
+    public static final int DEFAULT_SLICE_BUDGET = 1000;
+    static final int MAX_SLICES_PER_TASK = 64;
+    static final int MAX_CATCH_UP_ROUNDS = 10;
+
+    private final Path checkpointFile;
+    private final int sliceBudget;
+    private final LinkedHashMap<String, MaintenanceTask> tasks = new LinkedHashMap<>();
+    private MaintenanceCheckpoint checkpoint;
+
+    private final AtomicLong slicesRun = new AtomicLong();
+    private final AtomicLong taskFailures = new AtomicLong();
+    private final AtomicLong timeBoxesExhausted = new AtomicLong();
+
+    public MaintenanceEngine(Path checkpointFile, int sliceBudget) {
+        this.checkpointFile = checkpointFile;
+        this.sliceBudget = sliceBudget;
+    }
+
+    public synchronized MaintenanceEngine register(String name, MaintenanceTask task) {
+        tasks.put(name, task);
+        return this;
+    }
+
+    /**
+     * Rounds to run on top of the scheduled one: none when on time, otherwise one per missed
+     * interval since the last completed round, capped at {@link #MAX_CATCH_UP_ROUNDS}.
+     */
+    public synchronized int catchUpRounds(boolean pastDue, long intervalMillis) {
+        if (!pastDue) {
+            return 0;
+        }
+        long last = checkpoint().getLastRoundCompletedMillis();
+        if (last == 0 || intervalMillis <= 0) {
+            return 1;
+        }
+        long missed = (System.currentTimeMillis() - last) / intervalMillis - 1;
+        return (int) Math.max(1, Math.min(MAX_CATCH_UP_ROUNDS, missed));
+    }
+
+    /**
+     * Resumes at the checkpointed task and runs until {@code 1 + catchUpRounds} rounds are
+     * complete or the time box is used up.
+     */
+    public synchronized RunReport run(long timeBoxMillis, int catchUpRounds, Logger logger) {
+        MaintenanceCheckpoint state = checkpoint();
+        List<String> names = new ArrayList<>(tasks.keySet());
+        long startNanos = System.nanoTime();
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(timeBoxMillis);
+        int roundsAllowed = 1 + catchUpRounds;
+        RunReport report = new RunReport(state.getNextTask());
+
+        int index = state.getNextTask() == null ? 0 : Math.max(0, names.indexOf(state.getNextTask()));
+        int slicesForTask = 0;
+        // Tasks this round runs, null for all of them; and those it cuts off with work left
+        Set<String> roundTasks = null;
+        Set<String> unfinished = new HashSet<>();
+        while (report.rounds < roundsAllowed) {
+            if (index == names.size()) {
+                state.roundCompleted(System.currentTimeMillis());
+                state.save();
+                report.rounds++;
+                index = 0;
+                roundTasks = unfinished;
+                unfinished = new HashSet<>();
+                if (roundTasks.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+            if (roundTasks != null && !roundTasks.contains(names.get(index))) {
+                index++;
+                continue;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                report.timedOut = true;
+                timeBoxesExhausted.incrementAndGet();
+                break;
+            }
+            String name = names.get(index);
+            boolean done;
+            try {
+                done = tasks.get(name).runSlice(sliceBudget);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Maintenance task " + name + " failed", e);
+                taskFailures.incrementAndGet();
+                report.failures++;
+                done = true;
+            }
+            slicesRun.incrementAndGet();
+            report.slices++;
+            if (!done && ++slicesForTask >= MAX_SLICES_PER_TASK) {
+                unfinished.add(name);
+                done = true;
+            }
+            if (done) {
+                index++;
+                slicesForTask = 0;
+                state.setNextTask(index < names.size() ? names.get(index) : null);
+                state.save();
+            }
+        }
+        state.save();
+        report.resumeAt = index < names.size() && report.timedOut ? names.get(index) : null;
+        report.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return report;
+    }
+
+    public synchronized MaintenanceCheckpoint checkpoint() {
+        if (checkpoint == null) {
+            checkpoint = MaintenanceCheckpoint.load(checkpointFile);
+        }
+        return checkpoint;
+    }
+
+    public long getSlicesRun() {
+        return slicesRun.get();
+    }
+
+    public long getTaskFailures() {
+        return taskFailures.get();
+    }
+
+    public long getTimeBoxesExhausted() {
+        return timeBoxesExhausted.get();
+    }
+
+    public static class RunReport {
+        private final String resumedFrom;
+        private int rounds;
+        private int slices;
+        private int failures;
+        private boolean timedOut;
+        private String resumeAt;
+        private long elapsedMillis;
+
+        RunReport(String resumedFrom) {
+            this.resumedFrom = resumedFrom;
+        }
+
+        public int getRounds() {
+            return rounds;
+        }
+
+        public int getSlices() {
+            return slices;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * The task the next run starts with, or null if the last round completed.
+         */
+        public String getResumeAt() {
+            return resumeAt;
+        }
+
+        @Override
+        public String toString() {
+            return "rounds=" + rounds + " slices=" + slices + " failures=" + failures + " elapsedMs=" + elapsedMillis
+                + (resumedFrom != null ? " resumedFrom=" + resumedFrom : "")
+                + (timedOut ? " timedOut resumeAt=" + resumeAt : "");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.functions.maintenance;
+
+/**
+ * One kind of periodic housekeeping, run by {@link MaintenanceEngine} in bounded slices.
+ */
+@FunctionalInterface
+public interface MaintenanceTask {
+    /**
+     * Does at most {@code budget} units of work.
+     *
+     * @return true when the task has nothing left to do this round
+     */
+    boolean runSlice(int budget) throws Exception;
+}
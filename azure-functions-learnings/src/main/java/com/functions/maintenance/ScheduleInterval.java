@@ -0,0 +1,111 @@
+package com.functions.maintenance;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The shortest gap between two runs of a timer trigger schedule, from either of the forms the
+ * host accepts: a six-field NCRONTAB expression ({@code second minute hour day month
+ * day-of-week}, e.g. {@code 0 30 9 * * 1-5}) or a TimeSpan ({@code hh:mm:ss}).
+ * <p>
+ * Only the second, minute and hour fields are considered, so a schedule restricted to some days
+ * still reports its gap within a day; the result errs towards shorter, which is the safe side
+ * for sizing work that must finish before the next run.
+ */
+public final class ScheduleInterval {
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private ScheduleInterval() {
+    }
+
+    /**
+     * @return the shortest interval in milliseconds, or {@code fallbackMillis} when the schedule
+     * is missing or not understood
+     */
+    public static long shortestMillis(String schedule, long fallbackMillis) {
+        if (schedule == null || schedule.trim().isEmpty()) {
+            return fallbackMillis;
+        }
+        try {
+            String trimmed = schedule.trim();
+            return trimmed.indexOf(':') >= 0 ? timeSpanMillis(trimmed) : cronMillis(trimmed.split("\\s+"));
+        } catch (IllegalArgumentException e) {
+            return fallbackMillis;
+        }
+    }
+
+    private static long timeSpanMillis(String timeSpan) {
+        String[] parts = timeSpan.split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Not a TimeSpan: " + timeSpan);
+        }
+        long seconds = Long.parseLong(parts[0]) * 3600 + Long.parseLong(parts[1]) * 60 + Long.parseLong(parts[2]);
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("Empty TimeSpan: " + timeSpan);
+        }
+        return TimeUnit.SECONDS.toMillis(seconds);
+    }
+
+    private static long cronMillis(String[] fields) {
+        if (fields.length != 6) {
+            throw new IllegalArgumentException("Expected six NCRONTAB fields, got " + fields.length);
+        }
+        BitSet seconds = field(fields[0], 60);
+        BitSet minutes = field(fields[1], 60);
+        BitSet hours = field(fields[2], 24);
+        int first = -1;
+        int previous = -1;
+        int shortest = SECONDS_PER_DAY;
+        for (int h = hours.nextSetBit(0); h >= 0; h = hours.nextSetBit(h + 1)) {
+            for (int m = minutes.nextSetBit(0); m >= 0; m = minutes.nextSetBit(m + 1)) {
+                for (int s = seconds.nextSetBit(0); s >= 0; s = seconds.nextSetBit(s + 1)) {
+                    int secondOfDay = h * 3600 + m * 60 + s;
+                    if (previous >= 0) {
+                        shortest = Math.min(shortest, secondOfDay - previous);
+                    } else {
+                        first = secondOfDay;
+                    }
+                    previous = secondOfDay;
+                }
+            }
+        }
+        if (first < 0) {
+            throw new IllegalArgumentException("Schedule never fires");
+        }
+        // The last run of a day is followed by the first run of the next one
+        shortest = Math.min(shortest, first + SECONDS_PER_DAY - previous);
+        return TimeUnit.SECONDS.toMillis(shortest);
+    }
+
+    /**
+     * Expands one field of {@code *}, {@code a}, {@code a-b} and {@code /step} terms separated by commas.
+     */
+    private static BitSet field(String field, int size) {
+        BitSet values = new BitSet(size);
+        for (String term : field.split(",")) {
+            int step = 1;
+            int slash = term.indexOf('/');
+            if (slash >= 0) {
+                step = Integer.parseInt(term.substring(slash + 1));
+                term = term.substring(0, slash);
+            }
+            int from;
+            int to;
+            if (term.equals("*")) {
+                from = 0;
+                to = size - 1;
+            } else {
+                int dash = term.indexOf('-');
+                from = Integer.parseInt(dash >= 0 ? term.substring(0, dash) : term);
+                to = dash >= 0 ? Integer.parseInt(term.substring(dash + 1)) : slash >= 0 ? size - 1 : from;
+            }
+            if (step <= 0 || from < 0 || to >= size || from > to) {
+                throw new IllegalArgumentException("Bad schedule field " + field);
+            }
+            for (int value = from; value <= to; value += step) {
+                values.set(value);
+            }
+        }
+        return values;
+    }
+}
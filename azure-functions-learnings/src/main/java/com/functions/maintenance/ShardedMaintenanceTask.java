@@ -0,0 +1,137 @@
+package com.functions.maintenance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs this instance's share of a {@link ShardedWorkload} as a {@link MaintenanceTask}.
+ * <p>
+ * At the start of each round the instance renews a membership lease, counts the live members
+ * of the workload and aims for a fair share of {@code ceil(shards / members)}: it takes free
+ * or expired shards up to that share and releases shards above it, so a newly started instance
+ * picks them up on its next run. Leases
+ * are sticky between rounds and renewed before every slice; a shard whose lease was lost to
+ * another instance is skipped for the rest of the round.
+ */
+public class ShardedMaintenanceTask implements MaintenanceTask {
+    private static final String MEMBER = "/member/";
+
+    private final String name;
+    private final ShardedWorkload workload;
+    private final LeaseStore leases;
+    private final String owner;
+    private final long leaseTtlMillis;
+
+    private List<Integer> owned;
+    private int cursor;
+
+    private final AtomicLong shardsAcquired = new AtomicLong();
+    private final AtomicLong shardsReleased = new AtomicLong();
+    private final AtomicLong leasesLost = new AtomicLong();
+
+    public ShardedMaintenanceTask(String name, ShardedWorkload workload, LeaseStore leases, String owner, long leaseTtlMillis) {
+        this.name = name;
+        this.workload = workload;
+        this.leases = leases;
+        this.owner = owner;
+        this.leaseTtlMillis = leaseTtlMillis;
+    }
+
+    @Override
+    public synchronized boolean runSlice(int budget) throws Exception {
+        if (owned == null) {
+            owned = balance();
+            cursor = 0;
+        }
+        while (cursor < owned.size()) {
+            int shard = owned.get(cursor);
+            if (!leases.tryAcquire(leaseName(shard), owner, leaseTtlMillis)) {
+                leasesLost.incrementAndGet();
+                cursor++;
+                continue;
+            }
+            if (workload.runSlice(shard, budget)) {
+                cursor++;
+            }
+            return false;
+        }
+        owned = null;
+        return true;
+    }
+
+    /**
+     * The shards this instance currently holds, after rebalancing towards its fair share.
+     */
+    synchronized List<Integer> balance() {
+        // Instances that hold no shard yet must still count, or holders would never make room
+        leases.tryAcquire(name + MEMBER + owner, owner, leaseTtlMillis);
+        long now = System.currentTimeMillis();
+        int shardCount = workload.shardCount();
+        boolean[] taken = new boolean[shardCount];
+        Set<String> members = new HashSet<>();
+        members.add(owner);
+        List<Integer> mine = new ArrayList<>();
+        for (Lease lease : leases.list(name + "/")) {
+            if (!lease.isLive(now)) {
+                continue;
+            }
+            if (lease.getName().startsWith(name + MEMBER)) {
+                members.add(lease.getOwner());
+                continue;
+            }
+            int shard = shardOf(lease.getName());
+            if (shard < 0 || shard >= shardCount) {
+                continue;
+            }
+            taken[shard] = true;
+            if (owner.equals(lease.getOwner())) {
+                mine.add(shard);
+            }
+        }
+        int fairShare = (shardCount + members.size() - 1) / members.size();
+        Collections.sort(mine);
+        while (mine.size() > fairShare) {
+            leases.release(leaseName(mine.remove(mine.size() - 1)), owner);
+            shardsReleased.incrementAndGet();
+        }
+        // Start the search at an owner-specific offset so instances do not all race for shard 0
+        int start = (owner.hashCode() & Integer.MAX_VALUE) % Math.max(1, shardCount);
+        for (int i = 0; i < shardCount && mine.size() < fairShare; i++) {
+            int shard = (start + i) % shardCount;
+            if (!taken[shard] && leases.tryAcquire(leaseName(shard), owner, leaseTtlMillis)) {
+                mine.add(shard);
+                shardsAcquired.incrementAndGet();
+            }
+        }
+        Collections.sort(mine);
+        return mine;
+    }
+
+    public long getShardsAcquired() {
+        return shardsAcquired.get();
+    }
+
+    public long getShardsReleased() {
+        return shardsReleased.get();
+    }
+
+    public long getLeasesLost() {
+        return leasesLost.get();
+    }
+
+    private String leaseName(int shard) {
+        return name + "/" + shard;
+    }
+
+    private int shardOf(String leaseName) {
+        try {
+            return Integer.parseInt(leaseName.substring(name.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
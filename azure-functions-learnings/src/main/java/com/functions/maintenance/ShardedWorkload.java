@@ -0,0 +1,16 @@
+package com.functions.maintenance;
+
+/**
+ * Periodic work on shared state that can be split into independent shards, so instances that
+ * hold different shard leases can run it side by side.
+ */
+public interface ShardedWorkload {
+    int shardCount();
+
+    /**
+     * Does at most {@code budget} units of work on {@code shard}.
+     *
+     * @return true when the shard has nothing left to do this round
+     */
+    boolean runSlice(int shard, int budget) throws Exception;
+}
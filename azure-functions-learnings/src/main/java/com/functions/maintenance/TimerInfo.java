@@ -0,0 +1,88 @@
+package com.functions.maintenance;
+
+import com.functions.json.JsonStreamReader;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * The timerInfo payload the Java worker hands to a timer trigger, e.g.
+ * {@code {"Schedule":{"AdjustForDST":true},"ScheduleStatus":{"Last":"...","Next":"...","LastUpdated":"..."},"IsPastDue":false}}.
+ * ScheduleStatus is absent when the host has no storage-backed status yet.
+ */
+public class TimerInfo {
+    private final boolean pastDue;
+    private final long lastMillis;
+    private final long nextMillis;
+
+    private TimerInfo(boolean pastDue, long lastMillis, long nextMillis) {
+        this.pastDue = pastDue;
+        this.lastMillis = lastMillis;
+        this.nextMillis = nextMillis;
+    }
+
+    /**
+     * Parses the payload; anything unreadable is treated as an on-time invocation.
+     */
+    public static TimerInfo parse(String json) {
+        boolean pastDue = false;
+        long last = 0;
+        long next = 0;
+        if (json == null || json.isEmpty()) {
+            return new TimerInfo(false, 0, 0);
+        }
+        try {
+            JsonStreamReader reader = new JsonStreamReader(json);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("IsPastDue".equals(name)) {
+                    pastDue = Boolean.parseBoolean(reader.nextString());
+                } else if ("ScheduleStatus".equals(name) && reader.peek() == JsonStreamReader.Token.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String member = reader.nextName();
+                        if ("Last".equals(member)) {
+                            last = millis(reader.nextString());
+                        } else if ("Next".equals(member)) {
+                            next = millis(reader.nextString());
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException e) {
+            return new TimerInfo(false, 0, 0);
+        }
+        return new TimerInfo(pastDue, last, next);
+    }
+
+    public boolean isPastDue() {
+        return pastDue;
+    }
+
+    /**
+     * The schedule interval derived from ScheduleStatus, or {@code fallbackMillis} if unknown.
+     */
+    public long getIntervalMillis(long fallbackMillis) {
+        return lastMillis > 0 && nextMillis > lastMillis ? nextMillis - lastMillis : fallbackMillis;
+    }
+
+    private static long millis(String timestamp) {
+        if (timestamp == null) {
+            return 0;
+        }
+        try {
+            return OffsetDateTime.parse(timestamp).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // The host writes local times without an offset in some versions
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.functions.metrics;
+
+import com.functions.startup.StartupProfiler;
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.durabletask.interruption.OrchestratorBlockedException;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Invocation count, errors, duration and in-flight invocations of one function, recorded by
+ * wrapping the function body. Functions get it through
+ * {@link com.functions.execution.FunctionWrapper}.
+ * The first invocation also goes to the {@link StartupProfiler}. An orchestrator that suspends
+ * on an incomplete task is not an error; each replay counts as an invocation.
+ */
+public final class FunctionMetrics {
+    private static final Map<String, FunctionMetrics> FUNCTIONS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final Counter invocations;
+    private final Counter errors;
+    private final Histogram duration;
+    private final AtomicLong inFlight = new AtomicLong();
+    private volatile boolean invoked;
+
+    private FunctionMetrics(String name, MetricsRegistry registry) {
+        this.name = name;
+        this.invocations = registry.counter("function_invocations_total", "Invocations started.", "function", name);
+        this.errors = registry.counter("function_errors_total", "Invocations that threw.", "function", name);
+        this.duration = registry.histogram("function_duration_seconds", "Time spent in the function body.", "function", name);
+        registry.gauge("function_in_flight", "Invocations currently running.", inFlight::get, "function", name);
+    }
+
+    public static FunctionMetrics of(String functionName) {
+        return FUNCTIONS.computeIfAbsent(functionName, name -> new FunctionMetrics(name, MetricsRegistry.global()));
+    }
+
+    public <T> T record(ExecutionContext context, Supplier<T> body) {
+        long start = begin(context);
+        boolean failed = true;
+        try {
+            T result = body.get();
+            failed = false;
+            return result;
+        } catch (OrchestratorBlockedException e) {
+            failed = false;
+            throw e;
+        } finally {
+            end(start, failed);
+        }
+    }
+
+    /**
+     * For bodies that throw checked exceptions.
+     */
+    public <T> T call(ExecutionContext context, Callable<T> body) throws Exception {
+        long start = begin(context);
+        boolean failed = true;
+        try {
+            T result = body.call();
+            failed = false;
+            return result;
+        } catch (OrchestratorBlockedException e) {
+            failed = false;
+            throw e;
+        } finally {
+            end(start, failed);
+        }
+    }
+
+    public void run(ExecutionContext context, Runnable body) {
+        record(context, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    public long getInvocations() {
+        return invocations.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @param context null for functions without one, such as orchestrators
+     */
+    private long begin(ExecutionContext context) {
+        if (!invoked) {
+            invoked = true;
+            if (context != null) {
+                StartupProfiler.firstInvocation(context);
+            } else {
+                StartupProfiler.firstInvocation(name);
+            }
+        }
+        invocations.increment();
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    private void end(long start, boolean failed) {
+        duration.recordNanos(System.nanoTime() - start);
+        inFlight.decrementAndGet();
+        if (failed) {
+            errors.increment();
+        }
+    }
+}
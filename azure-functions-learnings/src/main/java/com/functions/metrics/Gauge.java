@@ -0,0 +1,9 @@
+package com.functions.metrics;
+
+/**
+ * A value read when the metrics are exported, such as the invocations in flight.
+ */
+@FunctionalInterface
+public interface Gauge {
+    double value();
+}
@@ -0,0 +1,69 @@
+package com.functions.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Duration histogram with power-of-two buckets from 1 microsecond to about 67 seconds.
+ * <p>
+ * Recording picks a stripe by thread id and does two atomic adds on it, without locks or
+ * allocation; the stripes are only summed when the histogram is exported.
+ */
+public final class Histogram {
+    /**
+     * Bucket i counts durations up to 2^i microseconds; the last one is +Inf.
+     */
+    static final int BUCKETS = 28;
+    private static final int SUM = BUCKETS;
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+
+    public Histogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS + 1);
+        }
+    }
+
+    public void recordNanos(long nanos) {
+        // Rounded up, so a value lands in the first bucket whose "le" bound is not below it
+        long micros = Math.max(0, (nanos + 999) / 1000);
+        int bucket = micros <= 1 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+        AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+        stripe.incrementAndGet(bucket);
+        stripe.addAndGet(SUM, nanos);
+    }
+
+    /**
+     * Upper bound of bucket {@code i} in seconds, or +Inf for the last one.
+     */
+    static double upperBoundSeconds(int bucket) {
+        return bucket == BUCKETS - 1 ? Double.POSITIVE_INFINITY : (1L << bucket) / 1e6;
+    }
+
+    /**
+     * Per-bucket counts (not cumulative) followed by the sum in nanoseconds.
+     */
+    long[] snapshot() {
+        long[] totals = new long[BUCKETS + 1];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i <= BUCKETS; i++) {
+                totals[i] += stripe.get(i);
+            }
+        }
+        return totals;
+    }
+
+    public long count() {
+        long count = 0;
+        long[] totals = snapshot();
+        for (int i = 0; i < BUCKETS; i++) {
+            count += totals[i];
+        }
+        return count;
+    }
+
+    private static int stripes() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) << 1;
+        return Math.min(stripes, 64);
+    }
+}
@@ -0,0 +1,11 @@
+package com.functions.pipeline;
+
+import java.util.function.Consumer;
+
+/**
+ * One step of a {@link StagePipeline}: takes an item and passes zero or more items downstream.
+ */
+@FunctionalInterface
+public interface Stage<I, O> {
+    void apply(I input, Consumer<? super O> downstream) throws Exception;
+}
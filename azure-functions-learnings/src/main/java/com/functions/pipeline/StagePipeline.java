@@ -0,0 +1,424 @@
+package com.functions.pipeline;
+
+import com.functions.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A chain of functions that today talk through Event Hubs or queues, declared once as stages
+ * and run either in-process or over the original hops.
+ * <p>
+ * Stages are grouped into segments by {@link Builder#hop(String)}, which marks where the
+ * multi-hop topology writes to a hub and another function picks the message up again.
+ * <ul>
+ * <li>{@link Topology#FUSED}: the trigger function runs the whole graph and writes only the
+ * final output. Stages inside a segment are plain calls, and by default every segment runs on
+ * the invocation thread. With {@link Builder#queueCapacity(int)} above 0, segments after the
+ * first each run on one worker thread fed through a bounded queue that blocks upstream when
+ * full. That thread is shared by every concurrent invocation of the function, so it caps the
+ * segment at one core and makes invocations wait on each other; it only pays when a single
+ * invocation at a time feeds a slow later segment.</li>
+ * <li>{@link Topology#MULTI_HOP}: each function runs its own segment through
+ * {@link #runSegment(int, Collection)} and writes the result to the hop's output binding, as
+ * before. It is the fallback when the intermediate hub has other consumers or the stages
+ * must scale out independently.</li>
+ * </ul>
+ * The topology comes from the {@code LEARNING_pipeline_topology} setting ("fused", the default,
+ * or "multi-hop"). An unrecognized value does not fail the build, which usually runs in a
+ * static initializer where the error would surface as an opaque ExceptionInInitializerError;
+ * instead every call on the pipeline throws an {@link IllegalStateException} naming the setting.
+ */
+public final class StagePipeline<I, O> implements AutoCloseable {
+    public enum Topology { FUSED, MULTI_HOP }
+
+    public static final String TOPOLOGY_SETTING = "LEARNING_pipeline_topology";
+    public static final int DEFAULT_QUEUE_CAPACITY = 0;
+
+    private final String name;
+    private final List<Segment> segments;
+    private final List<String> hops;
+    /** Null when the setting was unrecognized; {@link #settingError} then says why. */
+    private final Topology topology;
+    private final String settingError;
+    /** One per segment, null for the first and for segments that run inline. */
+    private final List<Worker> workers;
+
+    private final AtomicLong itemsIn = new AtomicLong();
+    private final AtomicLong itemsOut = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private StagePipeline(String name, List<Segment> segments, List<String> hops, Topology topology, String settingError, int queueCapacity) {
+        this.name = name;
+        this.segments = segments;
+        this.hops = hops;
+        this.topology = topology;
+        this.settingError = settingError;
+        this.workers = new ArrayList<>(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            workers.add(i > 0 && topology == Topology.FUSED && queueCapacity > 0 ? new Worker(i, queueCapacity) : null);
+        }
+    }
+
+    public static <T> Builder<T, T> builder(String name) {
+        return new Builder<>(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @throws IllegalStateException if {@code LEARNING_pipeline_topology} was not recognized
+     */
+    public Topology getTopology() {
+        if (topology == null) {
+            throw new IllegalStateException(name + " has no topology: " + settingError);
+        }
+        return topology;
+    }
+
+    public boolean isFused() {
+        return getTopology() == Topology.FUSED;
+    }
+
+    /**
+     * The destinations the multi-hop topology writes to between segments, in order.
+     */
+    public List<String> getHops() {
+        return hops;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Runs one input through every stage and waits for what reaches the end.
+     */
+    public List<O> process(I input) {
+        return processAll(Collections.singletonList(input));
+    }
+
+    /**
+     * Runs the inputs through every stage and waits for what reaches the end, in input order.
+     * A stage that throws fails the whole call with a {@link CompletionException} naming it.
+     */
+    @SuppressWarnings("unchecked")
+    public List<O> processAll(Collection<? extends I> inputs) {
+        getTopology();
+        Batch batch = new Batch();
+        try {
+            for (I input : inputs) {
+                itemsIn.incrementAndGet();
+                segments.get(0).emit(0, input, item -> forward(1, item, batch));
+            }
+        } catch (RuntimeException e) {
+            batch.fail(e);
+        }
+        batch.done();
+        try {
+            List<Object> outputs = batch.join();
+            itemsOut.addAndGet(outputs.size());
+            return (List<O>) outputs;
+        } catch (CompletionException e) {
+            failures.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a single segment on the calling thread, for the function that owns that hop in the
+     * multi-hop topology: segment 0 in the trigger function, segment {@code i} in the function
+     * triggered by {@code getHops().get(i - 1)}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> runSegment(int segment, Collection<?> inputs) {
+        getTopology();
+        List<Object> outputs = new ArrayList<>();
+        try {
+            for (Object input : inputs) {
+                itemsIn.incrementAndGet();
+                segments.get(segment).emit(0, input, outputs::add);
+            }
+        } catch (CompletionException e) {
+            failures.incrementAndGet();
+            throw e;
+        }
+        itemsOut.addAndGet(outputs.size());
+        return (List<T>) outputs;
+    }
+
+    /**
+     * Publishes the depth of every inter-segment queue as pipeline_queue_depth.
+     */
+    public StagePipeline<I, O> registerMetrics(MetricsRegistry registry) {
+        for (int i = 1; i < workers.size(); i++) {
+            Worker worker = workers.get(i);
+            if (worker != null) {
+                registry.gauge("pipeline_queue_depth", "Items waiting between two fused pipeline segments.",
+                    worker.queue::size, "pipeline", name, "hop", hops.get(i - 1));
+            }
+        }
+        return this;
+    }
+
+    public long getItemsIn() {
+        return itemsIn.get();
+    }
+
+    public long getItemsOut() {
+        return itemsOut.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public void close() {
+        for (Worker worker : workers) {
+            if (worker != null) {
+                worker.thread.interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StagePipeline{" + name + ", " + topology + ", segments=" + segments + ", hops=" + hops + "}";
+    }
+
+    private void forward(int segment, Object item, Batch batch) {
+        if (segment == segments.size()) {
+            // Only the last segment's thread gets here, so the list needs no lock
+            batch.outputs.add(item);
+        } else if (workers.get(segment) == null) {
+            segments.get(segment).emit(0, item, next -> forward(segment + 1, next, batch));
+        } else {
+            batch.pending.incrementAndGet();
+            try {
+                workers.get(segment).queue.put(new Envelope(item, batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.pending.decrementAndGet();
+                throw new CompletionException(name + " was interrupted waiting for queue space", e);
+            }
+        }
+    }
+
+    public static final class Builder<I, O> {
+        private final String name;
+        private final List<Segment> segments = new ArrayList<>();
+        private final List<String> hops = new ArrayList<>();
+        private Topology topology;
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+        private Builder(String name) {
+            this.name = name;
+            this.segments.add(new Segment(name));
+        }
+
+        @SuppressWarnings("unchecked")
+        public <R> Builder<I, R> stage(String stageName, Stage<? super O, ? extends R> stage) {
+            segments.get(segments.size() - 1).stages.add(new NamedStage(stageName, (Stage<Object, Object>) stage));
+            return (Builder<I, R>) this;
+        }
+
+        public <R> Builder<I, R> map(String stageName, Function<? super O, ? extends R> function) {
+            Stage<O, R> stage = (input, downstream) -> downstream.accept(function.apply(input));
+            return stage(stageName, stage);
+        }
+
+        public Builder<I, O> filter(String stageName, Predicate<? super O> predicate) {
+            Stage<O, O> stage = (input, downstream) -> {
+                if (predicate.test(input)) {
+                    downstream.accept(input);
+                }
+            };
+            return stage(stageName, stage);
+        }
+
+        public <R> Builder<I, R> flatMap(String stageName, Function<? super O, ? extends Iterable<? extends R>> function) {
+            Stage<O, R> stage = (input, downstream) -> {
+                for (R output : function.apply(input)) {
+                    downstream.accept(output);
+                }
+            };
+            return stage(stageName, stage);
+        }
+
+        /**
+         * Ends the current segment where the multi-hop topology writes to {@code destination}.
+         */
+        public Builder<I, O> hop(String destination) {
+            hops.add(destination);
+            segments.add(new Segment(name + "@" + destination));
+            return this;
+        }
+
+        /**
+         * Items each fused queue holds before upstream blocks. The default, 0, runs all segments
+         * inline on the invocation thread; above 0 each later segment gets one worker thread that
+         * all invocations share.
+         */
+        public Builder<I, O> queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Overrides the {@code LEARNING_pipeline_topology} setting.
+         */
+        public Builder<I, O> topology(Topology topology) {
+            this.topology = topology;
+            return this;
+        }
+
+        public StagePipeline<I, O> build() {
+            Topology resolved = topology;
+            String settingError = null;
+            if (resolved == null) {
+                try {
+                    resolved = topologyFromSettings();
+                } catch (IllegalArgumentException e) {
+                    settingError = e.getMessage();
+                }
+            }
+            return new StagePipeline<>(name, new ArrayList<>(segments), Collections.unmodifiableList(new ArrayList<>(hops)),
+                resolved, settingError, queueCapacity);
+        }
+    }
+
+    static Topology topologyFromSettings() {
+        String value = System.getProperty(TOPOLOGY_SETTING);
+        value = value != null ? value : System.getenv(TOPOLOGY_SETTING);
+        if (value == null) {
+            return Topology.FUSED;
+        }
+        try {
+            return Topology.valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(TOPOLOGY_SETTING + " is \"" + value + "\", expected \"fused\" or \"multi-hop\"");
+        }
+    }
+
+    private static final class NamedStage {
+        final String name;
+        final Stage<Object, Object> stage;
+
+        NamedStage(String name, Stage<Object, Object> stage) {
+            this.name = name;
+            this.stage = stage;
+        }
+    }
+
+    private static final class Segment {
+        final String name;
+        final List<NamedStage> stages = new ArrayList<>();
+
+        Segment(String name) {
+            this.name = name;
+        }
+
+        void emit(int index, Object item, Consumer<Object> sink) {
+            if (index == stages.size()) {
+                sink.accept(item);
+                return;
+            }
+            NamedStage stage = stages.get(index);
+            try {
+                stage.stage.apply(item, next -> emit(index + 1, next, sink));
+            } catch (CompletionException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(name + "/" + stage.name + " failed", e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            List<String> names = new ArrayList<>();
+            for (NamedStage stage : stages) {
+                names.add(stage.name);
+            }
+            return names.toString();
+        }
+    }
+
+    private static final class Envelope {
+        final Object item;
+        final Batch batch;
+
+        Envelope(Object item, Batch batch) {
+            this.item = item;
+            this.batch = batch;
+        }
+    }
+
+    /**
+     * The items one call put into the graph. Completes when every item that entered a queue on
+     * its behalf has been processed.
+     */
+    private static final class Batch extends CompletableFuture<List<Object>> {
+        final List<Object> outputs = new ArrayList<>();
+        final AtomicInteger pending = new AtomicInteger(1);
+
+        void done() {
+            if (pending.decrementAndGet() == 0) {
+                complete(outputs);
+            }
+        }
+
+        void fail(Throwable failure) {
+            completeExceptionally(failure);
+        }
+    }
+
+    private final class Worker implements Runnable {
+        final int segment;
+        final BlockingQueue<Envelope> queue;
+        final Thread thread;
+
+        Worker(int segment, int capacity) {
+            this.segment = segment;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this, "pipeline-" + name + "-" + segment);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                Envelope envelope;
+                try {
+                    envelope = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                Batch batch = envelope.batch;
+                if (!batch.isDone()) {
+                    try {
+                        segments.get(segment).emit(0, envelope.item, item -> forward(segment + 1, item, batch));
+                    } catch (RuntimeException e) {
+                        batch.fail(e);
+                    }
+                }
+                batch.done();
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.functions.startup;
+
+import com.microsoft.azure.functions.annotation.FunctionName;
+
+import java.lang.reflect.Method;
+
+/**
+ * Training run for the AppCDS archive built by the "appcds" Maven profile and the appCdsArchive
+ * Gradle task. It loads every class of the app the way the worker does when it indexes the
+ * functions: the class, its declared methods and their parameter annotations, which pulls in
+ * the binding and durable task types as well. Run under {@code -XX:ArchiveClassesAtExit}, the
+ * JVM writes all of them into the archive when this returns.
+ * <p>
+ * The archive only helps the exact JDK build that wrote it, so build it with the worker's Java
+ * version and pass it with {@code -XX:SharedArchiveFile} in the JAVA_OPTS app setting.
+ */
+public final class ClassDataSharingTraining {
+    private ClassDataSharingTraining() {
+    }
+
+    public static void main(String[] args) {
+        int loaded = 0;
+        int functions = 0;
+        for (String className : FunctionClassIndex.classNames(ClassDataSharingTraining.class)) {
+            try {
+                // Not initialized: static state such as lease directories must not be created at build time
+                Class<?> type = Class.forName(className, false, ClassDataSharingTraining.class.getClassLoader());
+                for (Method method : type.getDeclaredMethods()) {
+                    if (method.isAnnotationPresent(FunctionName.class)) {
+                        method.getParameterAnnotations();
+                        functions++;
+                    }
+                }
+                loaded++;
+            } catch (ClassNotFoundException | LinkageError e) {
+                // A class whose optional dependency is missing cannot be archived; skip it
+            }
+        }
+        System.out.println("Loaded " + loaded + " classes with " + functions + " functions for the class data sharing archive");
+    }
+}
@@ -0,0 +1,64 @@
+package com.functions.startup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Lists the classes of this app, from the jar or classes directory it was loaded from, the way
+ * the worker finds the functions to index.
+ */
+public final class FunctionClassIndex {
+    private static final String PACKAGE = "com/functions/";
+
+    private FunctionClassIndex() {
+    }
+
+    /**
+     * Names of all classes under com.functions next to {@code anchor}.
+     */
+    public static List<String> classNames(Class<?> anchor) {
+        try {
+            Path codeSource = Paths.get(anchor.getProtectionDomain().getCodeSource().getLocation().toURI());
+            return Files.isDirectory(codeSource) ? classesInDirectory(codeSource) : classesInJar(codeSource);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list the classes next to " + anchor.getName(), e);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Cannot locate the classes next to " + anchor.getName(), e);
+        }
+    }
+
+    private static List<String> classesInJar(Path jar) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                addClass(entries.nextElement().getName(), classNames);
+            }
+        }
+        return classNames;
+    }
+
+    private static List<String> classesInDirectory(Path directory) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.forEach(file -> addClass(directory.relativize(file).toString().replace('\\', '/'), classNames));
+        }
+        return classNames;
+    }
+
+    private static void addClass(String entryName, List<String> classNames) {
+        if (entryName.startsWith(PACKAGE) && entryName.endsWith(".class")) {
+            classNames.add(entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.'));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.functions.startup;
+
+import com.microsoft.azure.functions.ExecutionContext;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Measures cold starts: for every function, the time from JVM start to its first invocation in
+ * this worker. The first call per function logs one line; later calls are a map lookup.
+ * Whether a class data sharing archive was in use is reported alongside.
+ * <p>
+ * The split between the worker's own startup and loading the app is not reported: the worker
+ * does not initialize any app class at a known point before the first invocation, so there is
+ * no moment in app code that marks it.
+ */
+public final class StartupProfiler {
+    private static final long JVM_START_MILLIS = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private static final boolean SHARED_ARCHIVE = sharedArchiveInUse();
+    private static final Map<String, Long> FIRST_INVOCATION_MILLIS = new ConcurrentHashMap<>();
+
+    private StartupProfiler() {
+    }
+
+    public static void firstInvocation(ExecutionContext context) {
+        firstInvocation(context.getFunctionName(), context.getLogger());
+    }
+
+    /**
+     * For functions without an ExecutionContext, such as durable orchestrators.
+     */
+    public static void firstInvocation(String functionName) {
+        firstInvocation(functionName, Logger.getLogger(StartupProfiler.class.getName()));
+    }
+
+    private static void firstInvocation(String functionName, Logger logger) {
+        if (FIRST_INVOCATION_MILLIS.containsKey(functionName)) {
+            return;
+        }
+        long sinceJvmStart = System.currentTimeMillis() - JVM_START_MILLIS;
+        if (FIRST_INVOCATION_MILLIS.putIfAbsent(functionName, sinceJvmStart) == null) {
+            logger.info("Cold start: " + functionName + " first invoked " + sinceJvmStart + " ms after JVM start"
+                + " (cds=" + SHARED_ARCHIVE + ")");
+        }
+    }
+
+    /**
+     * Milliseconds from JVM start to the first invocation, by function name.
+     */
+    public static Map<String, Long> timeToFirstInvocation() {
+        return new TreeMap<>(FIRST_INVOCATION_MILLIS);
+    }
+
+    public static String report() {
+        StringBuilder report = new StringBuilder()
+            .append("jvmUptimeMillis=").append(ManagementFactory.getRuntimeMXBean().getUptime())
+            .append(" cds=").append(SHARED_ARCHIVE);
+        for (Map.Entry<String, Long> entry : timeToFirstInvocation().entrySet()) {
+            report.append('\n').append(entry.getKey()).append(' ').append(entry.getValue()).append(" ms");
+        }
+        return report.toString();
+    }
+
+    private static boolean sharedArchiveInUse() {
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-XX:SharedArchiveFile=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,248 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+import com.functions.execution.FunctionExecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects Person entities and writes them as entity-group transactions.
+ * <p>
+ * Pending entities are grouped by PartitionKey (a later write to the same RowKey replaces the
+ * earlier one, matching insert-or-replace). A partition is flushed as soon as it holds a full
+ * batch; {@link #flush()} drains the rest. Each transaction holds at most
+ * {@link TableBatchSink#MAX_BATCH_OPERATIONS} entities and {@link TableBatchSink#MAX_BATCH_BYTES}.
+ * <p>
+ * Transient failures are retried with exponential backoff. When the service rejects a batch
+ * because of one entity, that entity is set aside as failed and the remainder of the batch is
+ * resubmitted, so one bad row does not sink its 99 neighbours. Any other rejection fails the
+ * batch at once, since resubmitting it unchanged would be rejected again.
+ */
+public class BatchedTableWriter {
+    private final TableBatchSink sink;
+    private final int maxBatchSize;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final Map<String, LinkedHashMap<String, Person>> pending = new LinkedHashMap<>();
+
+    private final AtomicLong entitiesWritten = new AtomicLong();
+    private final AtomicLong transactionsCommitted = new AtomicLong();
+    private final AtomicLong transientRetries = new AtomicLong();
+    private final AtomicLong entitiesFailed = new AtomicLong();
+
+    public BatchedTableWriter(TableBatchSink sink) {
+        this(sink, TableBatchSink.MAX_BATCH_OPERATIONS, 5, 50);
+    }
+
+    public BatchedTableWriter(TableBatchSink sink, int maxBatchSize, int maxAttempts, long initialBackoffMs) {
+        if (maxBatchSize < 1 || maxBatchSize > TableBatchSink.MAX_BATCH_OPERATIONS) {
+            throw new IllegalArgumentException("maxBatchSize must be between 1 and " + TableBatchSink.MAX_BATCH_OPERATIONS);
+        }
+        this.sink = sink;
+        this.maxBatchSize = maxBatchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+    }
+
+    /**
+     * Buffers an entity and flushes its partition if that completes a batch.
+     *
+     * @return the result of that flush, or an empty result if nothing was written
+     */
+    public FlushResult add(Person person) {
+        List<Person> full = null;
+        synchronized (pending) {
+            LinkedHashMap<String, Person> partition = pending.computeIfAbsent(person.PartitionKey, k -> new LinkedHashMap<>());
+            partition.put(person.RowKey, person);
+            if (partition.size() >= maxBatchSize) {
+                full = new ArrayList<>(partition.values());
+                pending.remove(person.PartitionKey);
+            }
+        }
+        FlushResult result = new FlushResult();
+        if (full != null) {
+            writePartition(person.PartitionKey, full, result);
+        }
+        return result;
+    }
+
+    public FlushResult addAll(Collection<Person> people) {
+        FlushResult result = new FlushResult();
+        for (Person person : people) {
+            result.merge(add(person));
+        }
+        return result;
+    }
+
+    /**
+     * Writes every pending entity.
+     */
+    public FlushResult flush() {
+        return flush(FunctionExecutor.inline());
+    }
+
+    /**
+     * Writes every pending entity, one partition per task on the executor. Transactions on
+     * different partitions are independent, so they can be in flight together; each partition's
+     * own transactions still go one after another.
+     */
+    public FlushResult flush(FunctionExecutor executor) {
+        List<Callable<FlushResult>> partitions = new ArrayList<>();
+        synchronized (pending) {
+            for (Map.Entry<String, LinkedHashMap<String, Person>> entry : pending.entrySet()) {
+                String partitionKey = entry.getKey();
+                List<Person> entities = new ArrayList<>(entry.getValue().values());
+                partitions.add(() -> {
+                    FlushResult partitionResult = new FlushResult();
+                    writePartition(partitionKey, entities, partitionResult);
+                    return partitionResult;
+                });
+            }
+            pending.clear();
+        }
+        FlushResult result = new FlushResult();
+        for (FlushResult partitionResult : executor.invokeAll(partitions)) {
+            result.merge(partitionResult);
+        }
+        return result;
+    }
+
+    public int pendingCount() {
+        synchronized (pending) {
+            int count = 0;
+            for (LinkedHashMap<String, Person> partition : pending.values()) {
+                count += partition.size();
+            }
+            return count;
+        }
+    }
+
+    public long getEntitiesWritten() {
+        return entitiesWritten.get();
+    }
+
+    public long getTransactionsCommitted() {
+        return transactionsCommitted.get();
+    }
+
+    public long getTransientRetries() {
+        return transientRetries.get();
+    }
+
+    public long getEntitiesFailed() {
+        return entitiesFailed.get();
+    }
+
+    private void writePartition(String partitionKey, List<Person> entities, FlushResult result) {
+        List<Person> batch = new ArrayList<>(maxBatchSize);
+        int batchBytes = 0;
+        for (Person person : entities) {
+            int size = TableEntities.estimateSize(person);
+            if (batch.size() == maxBatchSize || (!batch.isEmpty() && batchBytes + size > TableBatchSink.MAX_BATCH_BYTES)) {
+                submit(partitionKey, batch, result);
+                batch = new ArrayList<>(maxBatchSize);
+                batchBytes = 0;
+            }
+            batch.add(person);
+            batchBytes += size;
+        }
+        if (!batch.isEmpty()) {
+            submit(partitionKey, batch, result);
+        }
+    }
+
+    private void submit(String partitionKey, List<Person> batch, FlushResult result) {
+        int attempt = 0;
+        while (!batch.isEmpty()) {
+            try {
+                sink.submitTransaction(partitionKey, batch);
+                transactionsCommitted.incrementAndGet();
+                entitiesWritten.addAndGet(batch.size());
+                result.written += batch.size();
+                result.transactions++;
+                return;
+            } catch (TableTransactionException e) {
+                if (!e.isTransient() && e.getFailedIndex() >= 0 && e.getFailedIndex() < batch.size()) {
+                    Person rejected = batch.remove(e.getFailedIndex());
+                    entitiesFailed.incrementAndGet();
+                    result.failed.add(new FailedEntity(rejected, e.getMessage()));
+                    continue;
+                }
+                if (!e.isTransient() || ++attempt >= maxAttempts) {
+                    entitiesFailed.addAndGet(batch.size());
+                    for (Person person : batch) {
+                        result.failed.add(new FailedEntity(person, e.getMessage()));
+                    }
+                    return;
+                }
+                transientRetries.incrementAndGet();
+                result.retries++;
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long delay = initialBackoffMs << Math.min(attempt - 1, 10);
+        try {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Outcome of one or more flushed transactions.
+     */
+    public static class FlushResult {
+        private int written;
+        private int transactions;
+        private int retries;
+        private final List<FailedEntity> failed = new ArrayList<>();
+
+        public void merge(FlushResult other) {
+            written += other.written;
+            transactions += other.transactions;
+            retries += other.retries;
+            failed.addAll(other.failed);
+        }
+
+        public int getWritten() {
+            return written;
+        }
+
+        public int getTransactions() {
+            return transactions;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public List<FailedEntity> getFailed() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return "written=" + written + " transactions=" + transactions + " retries=" + retries + " failed=" + failed.size();
+        }
+    }
+
+    public static class FailedEntity {
+        public final Person person;
+        public final String reason;
+
+        FailedEntity(Person person, String reason) {
+            this.person = person;
+            this.reason = reason;
+        }
+    }
+}
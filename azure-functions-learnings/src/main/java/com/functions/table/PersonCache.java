@@ -0,0 +1,202 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Read-through cache of Person rows keyed by (PartitionKey, RowKey).
+ * <p>
+ * Missing rows are cached too (negative caching) with their own, usually shorter, TTL so that a
+ * flood of messages for an unknown RowKey costs one point read. Entries expire after their TTL
+ * and the least recently used entry is evicted once {@code maxEntries} is reached.
+ * <p>
+ * Rows enter the cache only when read, never when written: a function's output binding is
+ * written by the host after the function returns, and may fail, so a row put at that point
+ * could be served without ever having been stored. Writers {@link #invalidate} the row instead.
+ * A read that races the host's write can still cache the old row, and each instance has its own
+ * cache, so a write made elsewhere is seen here only once the entry expires; the TTL is the
+ * staleness bound.
+ */
+public class PersonCache {
+    private static final Person MISSING = new Person(null, null, null);
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LinkedHashMap<Key, CachedRow> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PersonCache(int maxEntries, long ttl, long negativeTtl, TimeUnit unit) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.negativeTtlNanos = unit.toNanos(negativeTtl);
+        this.entries = new LinkedHashMap<Key, CachedRow>(Math.min(maxEntries, 1 << 12), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedRow> eldest) {
+                if (size() > PersonCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached row, loading it with {@code loader} on a miss. The loader returns null
+     * for a missing row, which is remembered for the negative TTL.
+     */
+    public Person get(String partitionKey, String rowKey, BiFunction<String, String, Person> loader) {
+        Key key = new Key(partitionKey, rowKey);
+        long now = System.nanoTime();
+        synchronized (entries) {
+            CachedRow entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.expiresAtNanos < 0) {
+                    if (entry.person == MISSING) {
+                        negativeHits.incrementAndGet();
+                        return null;
+                    }
+                    hits.incrementAndGet();
+                    return entry.person;
+                }
+                entries.remove(key);
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        long invalidationsBefore = invalidations.get();
+        Person loaded = loader.apply(partitionKey, rowKey);
+        synchronized (entries) {
+            // A row invalidated while we were loading may have been read before its write landed
+            if (invalidations.get() == invalidationsBefore && !entries.containsKey(key)) {
+                entries.put(key, loaded == null
+                    ? new CachedRow(MISSING, now + negativeTtlNanos)
+                    : new CachedRow(loaded, now + ttlNanos));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops the row, cached or being loaded, after it was written.
+     */
+    public void invalidate(String partitionKey, String rowKey) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.remove(new Key(partitionKey, rowKey));
+        }
+    }
+
+    /**
+     * Drops expired entries among the {@code budget} least recently used ones. The TTL runs
+     * from the time a row was loaded, so expired entries are not confined to the LRU end; the
+     * ones this does not reach are dropped when read or evicted.
+     *
+     * @return the number of entries removed
+     */
+    public int expire(int budget) {
+        long now = System.nanoTime();
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<CachedRow> it = entries.values().iterator();
+            for (int visited = 0; it.hasNext() && visited < budget; visited++) {
+                if (now - it.next().expiresAtNanos >= 0) {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        expirations.addAndGet(removed);
+        return removed;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Fraction of lookups (positive and negative) answered from the cache.
+     */
+    public double hitRate() {
+        long served = hits.get() + negativeHits.get();
+        long total = served + misses.get();
+        return total == 0 ? 0.0 : (double) served / total;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getNegativeHits() {
+        return negativeHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hitRate=%.3f hits=%d negativeHits=%d misses=%d evictions=%d expirations=%d size=%d",
+            hitRate(), getHits(), getNegativeHits(), getMisses(), getEvictions(), getExpirations(), size());
+    }
+
+    private static final class Key {
+        private final String partitionKey;
+        private final String rowKey;
+        private final int hash;
+
+        Key(String partitionKey, String rowKey) {
+            this.partitionKey = partitionKey;
+            this.rowKey = rowKey;
+            this.hash = 31 * partitionKey.hashCode() + rowKey.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return partitionKey.equals(other.partitionKey) && rowKey.equals(other.rowKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class CachedRow {
+        private final Person person;
+        private final long expiresAtNanos;
+
+        CachedRow(Person person, long expiresAtNanos) {
+            this.person = person;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
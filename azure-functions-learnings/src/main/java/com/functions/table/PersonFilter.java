@@ -0,0 +1,160 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A filter on Person columns that the table service can evaluate: it renders as an OData
+ * {@code $filter} expression for TableClient.listEntities, and {@link #test} evaluates the
+ * same expression locally. Only what OData can express is offered: comparisons of a string
+ * column with a constant, and conjunctions of them. A prefix match becomes a range.
+ */
+public abstract class PersonFilter {
+    public enum Operator {
+        EQ("eq"), NE("ne"), LT("lt"), LE("le"), GT("gt"), GE("ge");
+
+        private final String odata;
+
+        Operator(String odata) {
+            this.odata = odata;
+        }
+
+        boolean test(int comparison) {
+            switch (this) {
+                case EQ:
+                    return comparison == 0;
+                case NE:
+                    return comparison != 0;
+                case LT:
+                    return comparison < 0;
+                case LE:
+                    return comparison <= 0;
+                case GT:
+                    return comparison > 0;
+                default:
+                    return comparison >= 0;
+            }
+        }
+    }
+
+    PersonFilter() {
+    }
+
+    public static PersonFilter compare(String column, Operator operator, String value) {
+        return new Comparison(column, operator, value);
+    }
+
+    /**
+     * {@code column ge 'prefix' and column lt 'prefiy'}: the range of strings starting with the prefix.
+     */
+    public static PersonFilter startsWith(String column, String prefix) {
+        if (prefix.isEmpty()) {
+            return compare(column, Operator.NE, null);
+        }
+        char last = prefix.charAt(prefix.length() - 1);
+        if (last == Character.MAX_VALUE) {
+            throw new IllegalArgumentException("Prefix cannot end with U+FFFF");
+        }
+        String upper = prefix.substring(0, prefix.length() - 1) + (char) (last + 1);
+        return and(compare(column, Operator.GE, prefix), compare(column, Operator.LT, upper));
+    }
+
+    public static PersonFilter and(PersonFilter... filters) {
+        return new Conjunction(Arrays.asList(filters));
+    }
+
+    public abstract boolean test(Person person);
+
+    /**
+     * The expression as an OData {@code $filter}, e.g. {@code Name ge 'J' and Name lt 'K'}.
+     */
+    public abstract String toODataFilter();
+
+    @Override
+    public String toString() {
+        return toODataFilter();
+    }
+
+    static String column(Person person, String column) {
+        switch (column) {
+            case "PartitionKey":
+                return person.PartitionKey;
+            case "RowKey":
+                return person.RowKey;
+            case PersonQuery.NAME:
+                return person.Name;
+            default:
+                throw new IllegalArgumentException("Unknown Person column " + column);
+        }
+    }
+
+    static String literal(String value) {
+        return value == null ? "null" : "'" + value.replace("'", "''") + "'";
+    }
+
+    private static final class Comparison extends PersonFilter {
+        private final String column;
+        private final Operator operator;
+        private final String value;
+
+        Comparison(String column, Operator operator, String value) {
+            // Fails fast on a column the table does not have
+            column(new Person(null, null, null), column);
+            if (value == null && operator != Operator.EQ && operator != Operator.NE) {
+                throw new IllegalArgumentException("Only eq and ne compare with null");
+            }
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(Person person) {
+            String actual = column(person, column);
+            if (value == null || actual == null) {
+                // OData: null equals only null, and ordering comparisons with null are false
+                boolean equal = actual == value;
+                return operator == Operator.EQ ? equal : operator == Operator.NE && !equal;
+            }
+            return operator.test(actual.compareTo(value));
+        }
+
+        @Override
+        public String toODataFilter() {
+            return column + ' ' + operator.odata + ' ' + literal(value);
+        }
+    }
+
+    private static final class Conjunction extends PersonFilter {
+        private final List<PersonFilter> filters;
+
+        Conjunction(List<PersonFilter> filters) {
+            this.filters = new ArrayList<>(filters);
+        }
+
+        @Override
+        public boolean test(Person person) {
+            for (PersonFilter filter : filters) {
+                if (!filter.test(person)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toODataFilter() {
+            StringBuilder odata = new StringBuilder();
+            for (PersonFilter filter : filters) {
+                if (odata.length() > 0) {
+                    odata.append(" and ");
+                }
+                odata.append(filter instanceof Conjunction ? filter.toODataFilter() : "(" + filter.toODataFilter() + ")");
+            }
+            return odata.toString();
+        }
+    }
+}
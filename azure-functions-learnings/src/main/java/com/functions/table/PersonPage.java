@@ -0,0 +1,73 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of a {@link PersonQuery}, plus the continuation token for the next page.
+ * <p>
+ * Tokens are opaque to callers; they encode the next PartitionKey/RowKey the way the service's
+ * x-ms-continuation-NextPartitionKey / NextRowKey headers do.
+ */
+public class PersonPage {
+    private final List<Person> entities;
+    private final String continuationToken;
+    private final int scanned;
+
+    PersonPage(List<Person> entities, String continuationToken, int scanned) {
+        this.entities = entities;
+        this.continuationToken = continuationToken;
+        this.scanned = scanned;
+    }
+
+    public List<Person> getEntities() {
+        return entities;
+    }
+
+    /**
+     * Null when this is the last page.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * Rows the table examined for this page, including the ones the filter rejected.
+     */
+    public int getScanned() {
+        return scanned;
+    }
+
+    /**
+     * A page whose successor starts at nextRowKey, or the last page when nextRowKey is null.
+     */
+    public static PersonPage of(String partitionKey, List<Person> entities, String nextRowKey, int scanned) {
+        return new PersonPage(entities, nextRowKey == null ? null : encodeToken(partitionKey, nextRowKey), scanned);
+    }
+
+    static String encodeToken(String partitionKey, String nextRowKey) {
+        String raw = partitionKey + '\n' + nextRowKey;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the next RowKey encoded in the token
+     * @throws IllegalArgumentException if the token is malformed or belongs to a different partition
+     */
+    public static String decodeToken(String token, String partitionKey) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed continuation token", e);
+        }
+        int separator = raw.indexOf('\n');
+        if (separator < 0 || !raw.substring(0, separator).equals(partitionKey)) {
+            throw new IllegalArgumentException("Continuation token does not match partition " + partitionKey);
+        }
+        return raw.substring(separator + 1);
+    }
+}
@@ -0,0 +1,120 @@
+package com.functions.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Partition range-scan over the Person table: the equivalent of
+ * {@code $filter=PartitionKey eq 'p' and RowKey ge 'a' and RowKey lt 'b' and ...&$select=Name&$top=n}.
+ * <p>
+ * The whole query renders as that OData request ({@link #toODataFilter()}), so the filter is
+ * evaluated by the table service and rows it rejects never leave the store; only the selected
+ * columns are materialized in the returned entities.
+ */
+public class PersonQuery {
+    /** The service returns at most 1000 entities per page. */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    public static final String NAME = "Name";
+
+    private final String partitionKey;
+    private String fromRowKey;
+    private String toRowKey;
+    private Set<String> select = Collections.singleton(NAME);
+    private PersonFilter filter;
+    private int pageSize = MAX_PAGE_SIZE;
+
+    public PersonQuery(String partitionKey) {
+        this.partitionKey = partitionKey;
+    }
+
+    public static PersonQuery partition(String partitionKey) {
+        return new PersonQuery(partitionKey);
+    }
+
+    /**
+     * Restricts the scan to RowKeys in {@code [fromInclusive, toExclusive)}; either bound may be null.
+     */
+    public PersonQuery rowKeyRange(String fromInclusive, String toExclusive) {
+        if (fromInclusive != null && toExclusive != null && fromInclusive.compareTo(toExclusive) > 0) {
+            throw new IllegalArgumentException("RowKey range starts after it ends: " + fromInclusive + " > " + toExclusive);
+        }
+        this.fromRowKey = fromInclusive;
+        this.toRowKey = toExclusive;
+        return this;
+    }
+
+    /**
+     * Columns to return besides PartitionKey and RowKey; an empty selection returns keys only.
+     */
+    public PersonQuery select(String... columns) {
+        this.select = new HashSet<>(Arrays.asList(columns));
+        return this;
+    }
+
+    public PersonQuery filter(PersonFilter filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    public PersonQuery pageSize(int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public String getPartitionKey() {
+        return partitionKey;
+    }
+
+    public String getFromRowKey() {
+        return fromRowKey;
+    }
+
+    public String getToRowKey() {
+        return toRowKey;
+    }
+
+    public boolean selects(String column) {
+        return select.contains(column);
+    }
+
+    public PersonFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * The {@code $filter} for TableClient.listEntities: partition, RowKey range and filter.
+     */
+    public String toODataFilter() {
+        return toODataFilter(fromRowKey);
+    }
+
+    /**
+     * The {@code $filter} of a later page, which starts at fromRowKey instead of the range's start.
+     */
+    public String toODataFilter(String fromRowKey) {
+        List<PersonFilter> conditions = new ArrayList<>();
+        conditions.add(PersonFilter.compare("PartitionKey", PersonFilter.Operator.EQ, partitionKey));
+        if (fromRowKey != null) {
+            conditions.add(PersonFilter.compare("RowKey", PersonFilter.Operator.GE, fromRowKey));
+        }
+        if (toRowKey != null) {
+            conditions.add(PersonFilter.compare("RowKey", PersonFilter.Operator.LT, toRowKey));
+        }
+        if (filter != null) {
+            conditions.add(filter);
+        }
+        return PersonFilter.and(conditions.toArray(new PersonFilter[0])).toODataFilter();
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+}
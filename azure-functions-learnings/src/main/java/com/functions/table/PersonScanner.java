@@ -0,0 +1,70 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Streams every Person matched by a {@link PersonQuery}, following continuation tokens.
+ * <p>
+ * Only the current page is held in memory, so a reporting job over a large partition uses
+ * at most {@link PersonQuery#getPageSize()} entities at a time regardless of partition size.
+ */
+public class PersonScanner implements Iterator<Person> {
+    private final BiFunction<PersonQuery, String, PersonPage> executor;
+    private final PersonQuery query;
+    private Iterator<Person> page;
+    private String continuationToken;
+    private boolean lastPage;
+    private int pages;
+
+    /**
+     * @param executor runs one page of the query, e.g. {@code PersonTable::query}
+     */
+    public PersonScanner(BiFunction<PersonQuery, String, PersonPage> executor, PersonQuery query) {
+        this.executor = executor;
+        this.query = query;
+    }
+
+    public static void forEach(BiFunction<PersonQuery, String, PersonPage> executor, PersonQuery query, Consumer<Person> action) {
+        new PersonScanner(executor, query).forEachRemaining(action);
+    }
+
+    @Override
+    public boolean hasNext() {
+        // Pages may come back empty when the filter rejected everything the table scanned
+        while (page == null || !page.hasNext()) {
+            if (lastPage) {
+                return false;
+            }
+            PersonPage next = executor.apply(query, continuationToken);
+            pages++;
+            page = next.getEntities().iterator();
+            continuationToken = next.getContinuationToken();
+            lastPage = continuationToken == null;
+        }
+        return true;
+    }
+
+    @Override
+    public Person next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+
+    /**
+     * Token to resume the scan after the current page, e.g. to hand back to an HTTP caller.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public int getPagesFetched() {
+        return pages;
+    }
+}
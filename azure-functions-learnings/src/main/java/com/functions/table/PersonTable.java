@@ -0,0 +1,22 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+
+/**
+ * The Person table as the table functions use it: entity-group transactions, point reads and
+ * partition range-scans. The functions get one built on TableClient from azure-data-tables.
+ */
+public interface PersonTable extends TableBatchSink {
+    /**
+     * Point read; returns null when the row does not exist.
+     */
+    Person get(String partitionKey, String rowKey);
+
+    /**
+     * Executes one page of a partition range-scan as {@link PersonQuery#toODataFilter()}.
+     *
+     * @param continuationToken null for the first page, otherwise the token of the previous page
+     * @throws IllegalArgumentException if the token is malformed or from another partition
+     */
+    PersonPage query(PersonQuery query, String continuationToken);
+}
@@ -0,0 +1,17 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+
+import java.util.List;
+
+/**
+ * Target of an entity-group transaction: every entity shares one PartitionKey and the batch is
+ * applied all-or-nothing.
+ */
+public interface TableBatchSink {
+    /** The service's limits on one transaction. */
+    int MAX_BATCH_OPERATIONS = 100;
+    int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+
+    void submitTransaction(String partitionKey, List<Person> batch) throws TableTransactionException;
+}
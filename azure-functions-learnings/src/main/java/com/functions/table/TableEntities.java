@@ -0,0 +1,26 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+
+/**
+ * Small helpers shared by the table writer and the local table stand-in.
+ */
+final class TableEntities {
+    private TableEntities() {
+    }
+
+    static Person copy(Person person) {
+        return new Person(person.PartitionKey, person.RowKey, person.Name);
+    }
+
+    /**
+     * Rough wire size of an entity: UTF-16 property values plus per-property overhead.
+     */
+    static int estimateSize(Person person) {
+        return 64 + 2 * (length(person.PartitionKey) + length(person.RowKey) + length(person.Name));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
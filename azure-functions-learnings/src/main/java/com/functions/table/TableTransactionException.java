@@ -0,0 +1,36 @@
+package com.functions.table;
+
+/**
+ * A rejected entity-group transaction.
+ * <p>
+ * Table storage reports the index of the operation that failed the batch; {@code failedIndex}
+ * is -1 when the whole batch failed for a transient reason such as throttling or a timeout.
+ */
+public class TableTransactionException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final int failedIndex;
+    private final boolean transientFailure;
+
+    public TableTransactionException(String message, int failedIndex, boolean transientFailure) {
+        super(message);
+        this.failedIndex = failedIndex;
+        this.transientFailure = transientFailure;
+    }
+
+    public static TableTransactionException entityFailure(int failedIndex, String message) {
+        return new TableTransactionException(message, failedIndex, false);
+    }
+
+    public static TableTransactionException transientFailure(String message) {
+        return new TableTransactionException(message, -1, true);
+    }
+
+    public int getFailedIndex() {
+        return failedIndex;
+    }
+
+    public boolean isTransient() {
+        return transientFailure;
+    }
+}
@@ -0,0 +1,62 @@
+package com.functions.windowing;
+
+import com.functions.json.JsonStreamReader;
+
+import java.time.Instant;
+
+/**
+ * The count and sum of one partition key's events in a closed window.
+ */
+public final class WindowResult {
+    private final String partitionKey;
+    private final long windowStartMillis;
+    private final long windowEndMillis;
+    private final long count;
+    private final double sum;
+
+    public WindowResult(String partitionKey, long windowStartMillis, long windowEndMillis, long count, double sum) {
+        this.partitionKey = partitionKey;
+        this.windowStartMillis = windowStartMillis;
+        this.windowEndMillis = windowEndMillis;
+        this.count = count;
+        this.sum = sum;
+    }
+
+    public String getPartitionKey() {
+        return partitionKey;
+    }
+
+    public long getWindowStartMillis() {
+        return windowStartMillis;
+    }
+
+    public long getWindowEndMillis() {
+        return windowEndMillis;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * One JSON object per window, the message written to the output binding.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(128).append("{\"partitionKey\":");
+        JsonStreamReader.writeQuoted(json, partitionKey);
+        return json.append(",\"windowStart\":\"").append(Instant.ofEpochMilli(windowStartMillis))
+            .append("\",\"windowEnd\":\"").append(Instant.ofEpochMilli(windowEndMillis))
+            .append("\",\"count\":").append(count)
+            .append(",\"sum\":").append(sum)
+            .append('}').toString();
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
@@ -0,0 +1,142 @@
+package com.functions.windowing;
+
+/**
+ * Count and sum per (window start, key id), in parallel primitive arrays with linear probing,
+ * so an event added to an existing window allocates nothing. A slot is empty when its count
+ * is 0; removal shifts the following entries back instead of leaving tombstones.
+ */
+final class WindowTable {
+    private static final int MIN_CAPACITY = 64;
+
+    private long[] starts;
+    private int[] keys;
+    private long[] counts;
+    private double[] sums;
+    private int mask;
+    private int size;
+
+    WindowTable() {
+        allocate(MIN_CAPACITY);
+    }
+
+    void add(long start, int key, double value) {
+        put(start, key, 1, value);
+    }
+
+    void put(long start, int key, long count, double sum) {
+        if ((size + 1) * 2 > starts.length) {
+            resize(starts.length * 2);
+        }
+        int i = slot(start, key);
+        while (counts[i] != 0) {
+            if (starts[i] == start && keys[i] == key) {
+                counts[i] += count;
+                sums[i] += sum;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        starts[i] = start;
+        keys[i] = key;
+        counts[i] = count;
+        sums[i] = sum;
+        size++;
+    }
+
+    void remove(long start, int key) {
+        int i = slot(start, key);
+        while (counts[i] != 0) {
+            if (starts[i] == start && keys[i] == key) {
+                removeAt(i);
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Raw slot access for iteration; slots with a count of 0 are empty.
+     */
+    int capacity() {
+        return starts.length;
+    }
+
+    long startAt(int slot) {
+        return starts[slot];
+    }
+
+    int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    long countAt(int slot) {
+        return counts[slot];
+    }
+
+    double sumAt(int slot) {
+        return sums[slot];
+    }
+
+    private void removeAt(int gap) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            if (counts[i] == 0) {
+                break;
+            }
+            int home = slot(starts[i], keys[i]);
+            // Move the entry back unless its home slot lies after the gap on the probe path
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                starts[gap] = starts[i];
+                keys[gap] = keys[i];
+                counts[gap] = counts[i];
+                sums[gap] = sums[i];
+                gap = i;
+            }
+        }
+        counts[gap] = 0;
+        size--;
+        if (size == 0 && starts.length > MIN_CAPACITY) {
+            allocate(MIN_CAPACITY);
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldStarts = starts;
+        int[] oldKeys = keys;
+        long[] oldCounts = counts;
+        double[] oldSums = sums;
+        allocate(capacity);
+        for (int i = 0; i < oldStarts.length; i++) {
+            if (oldCounts[i] != 0) {
+                put(oldStarts[i], oldKeys[i], oldCounts[i], oldSums[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        starts = new long[capacity];
+        keys = new int[capacity];
+        counts = new long[capacity];
+        sums = new double[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private int slot(long start, int key) {
+        long h = start * 0x9E3779B97F4A7C15L + key;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    @Override
+    public String toString() {
+        return "WindowTable{size=" + size + ", capacity=" + starts.length + "}";
+    }
+}
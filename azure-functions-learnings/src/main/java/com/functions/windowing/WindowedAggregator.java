@@ -0,0 +1,327 @@
+package com.functions.windowing;
+
+import com.functions.json.JsonStreamReader;
+import com.functions.metrics.Counter;
+import com.functions.metrics.MetricsRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-partition-key counts and sums over tumbling or sliding event-time windows, for the
+ * metadata an Event Hub batch trigger binds (PartitionKeyArray, EnqueuedTimeUtcArray,
+ * SequenceNumberArray and the PartitionContext).
+ * <p>
+ * Windows are {@code size} long and start every {@code slide}; a slide equal to the size gives
+ * tumbling windows. The watermark trails the latest enqueued time seen by the allowed
+ * lateness: enqueued times only increase within a partition, so the lateness covers the skew
+ * between partitions. {@link #closeWindows(String)} removes and returns every window that ends
+ * at or before the watermark; an event whose windows have all been emitted is late and dropped.
+ * <p>
+ * Open windows are kept in a primitive table keyed by window start and an interned key id.
+ * {@link #snapshot()} writes them to a local file together with the last sequence number per
+ * partition, and a restarted instance loads that file: events the hub redelivers from its
+ * older checkpoint are recognised by sequence number and not counted twice.
+ * <p>
+ * Closed windows stay in the snapshot as pending until the next invocation on the partition
+ * that closed them, which only starts once the host has taken the previous invocation's
+ * output. If the instance dies between the snapshot and the output write, the restarted
+ * instance emits them again with its first closed windows, so each window reaches the output
+ * at least once.
+ */
+public final class WindowedAggregator {
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private final long sizeMillis;
+    private final long slideMillis;
+    private final long allowedLatenessMillis;
+    private final Path snapshotFile;
+
+    private final WindowTable windows = new WindowTable();
+    private final Map<String, Integer> keyIds = new HashMap<>();
+    private final List<String> keys = new ArrayList<>();
+    private final Map<String, Long> lastSequenceNumbers = new HashMap<>();
+    /** Windows each partition's last invocation returned, by partition id ("" for none). */
+    private final Map<String, List<WindowResult>> pendingEmits = new HashMap<>();
+    /** Windows a restored snapshot held as pending; the first invocation emits them again. */
+    private final List<WindowResult> restoredEmits = new ArrayList<>();
+    private long maxEventTimeMillis = Long.MIN_VALUE;
+    private long closedUpToMillis = Long.MIN_VALUE;
+
+    private final Counter lateEvents;
+    private final Counter duplicateEvents;
+    private final Counter windowsEmitted;
+
+    /**
+     * @param snapshotFile where {@link #snapshot()} writes and the constructor reads state, or null to keep it in memory only
+     */
+    public WindowedAggregator(String name, long sizeMillis, long slideMillis, long allowedLatenessMillis, Path snapshotFile) {
+        if (sizeMillis <= 0 || slideMillis <= 0 || slideMillis > sizeMillis) {
+            throw new IllegalArgumentException("Window slide must be positive and not larger than the size: size=" + sizeMillis + " slide=" + slideMillis);
+        }
+        this.sizeMillis = sizeMillis;
+        this.slideMillis = slideMillis;
+        this.allowedLatenessMillis = allowedLatenessMillis;
+        this.snapshotFile = snapshotFile;
+        MetricsRegistry registry = MetricsRegistry.global();
+        String help = "Events not added to any window.";
+        this.lateEvents = registry.counter("window_events_dropped_total", help, "aggregator", name, "reason", "late");
+        this.duplicateEvents = registry.counter("window_events_dropped_total", help, "aggregator", name, "reason", "duplicate");
+        this.windowsEmitted = registry.counter("windows_emitted_total", "Closed windows written to the output binding.", "aggregator", name);
+        registry.gauge("windows_open", "Windows holding events that have not been emitted.", this::openWindows, "aggregator", name);
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            restore();
+        }
+    }
+
+    /**
+     * Adds an event to every window that contains its enqueued time and is still open.
+     *
+     * @param partitionId the Event Hub partition, for recognising redelivered events; null skips the check
+     * @return false if the event was a redelivery or too late for any window
+     */
+    public synchronized boolean add(String partitionId, long sequenceNumber, String partitionKey, long eventTimeMillis, double value) {
+        if (partitionId != null) {
+            Long last = lastSequenceNumbers.get(partitionId);
+            if (last != null && sequenceNumber <= last) {
+                duplicateEvents.increment();
+                return false;
+            }
+            lastSequenceNumbers.put(partitionId, sequenceNumber);
+        }
+        maxEventTimeMillis = Math.max(maxEventTimeMillis, eventTimeMillis);
+        int key = -1;
+        long lastStart = Math.floorDiv(eventTimeMillis, slideMillis) * slideMillis;
+        for (long start = lastStart; start > eventTimeMillis - sizeMillis; start -= slideMillis) {
+            if (start + sizeMillis <= closedUpToMillis) {
+                break;
+            }
+            if (key < 0) {
+                key = keyId(partitionKey == null ? "" : partitionKey);
+            }
+            windows.add(start, key, value);
+        }
+        if (key < 0) {
+            lateEvents.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * {@link #closeWindows(String)} for a caller that does not track partitions.
+     */
+    public List<WindowResult> closeWindows() {
+        return closeWindows(null);
+    }
+
+    /**
+     * Removes and returns the windows that end at or before the watermark, ordered by window
+     * start and then partition key, after any pending windows a restored snapshot still held.
+     * The windows stay pending in the snapshot until the next call for the same partition.
+     */
+    public synchronized List<WindowResult> closeWindows(String partitionId) {
+        String owner = partitionId == null ? "" : partitionId;
+        // The partition's previous invocation has returned and the host has its output
+        pendingEmits.remove(owner);
+        List<WindowResult> emitting = new ArrayList<>(restoredEmits);
+        restoredEmits.clear();
+        emitting.addAll(closeExpired());
+        if (!emitting.isEmpty()) {
+            pendingEmits.put(owner, emitting);
+        }
+        return new ArrayList<>(emitting);
+    }
+
+    private List<WindowResult> closeExpired() {
+        if (maxEventTimeMillis == Long.MIN_VALUE) {
+            return new ArrayList<>();
+        }
+        long watermark = getWatermarkMillis();
+        List<WindowResult> closed = new ArrayList<>();
+        for (int slot = 0; slot < windows.capacity(); slot++) {
+            long start = windows.startAt(slot);
+            if (windows.countAt(slot) != 0 && start + sizeMillis <= watermark) {
+                closed.add(new WindowResult(keys.get(windows.keyAt(slot)), start, start + sizeMillis, windows.countAt(slot), windows.sumAt(slot)));
+            }
+        }
+        for (WindowResult result : closed) {
+            windows.remove(result.getWindowStartMillis(), keyIds.get(result.getPartitionKey()));
+        }
+        closedUpToMillis = Math.max(closedUpToMillis, watermark);
+        if (windows.size() == 0) {
+            // Forget the keys so an unbounded key space does not grow the dictionary forever
+            keyIds.clear();
+            keys.clear();
+        }
+        closed.sort(Comparator.comparingLong(WindowResult::getWindowStartMillis).thenComparing(WindowResult::getPartitionKey));
+        windowsEmitted.add(closed.size());
+        return closed;
+    }
+
+    /**
+     * Writes the open and pending windows, watermark and sequence numbers to the snapshot file,
+     * replacing it atomically where the file system allows.
+     */
+    public synchronized void snapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            Path parent = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, snapshotFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(sizeMillis);
+                out.writeLong(slideMillis);
+                out.writeLong(maxEventTimeMillis);
+                out.writeLong(closedUpToMillis);
+                out.writeInt(lastSequenceNumbers.size());
+                for (Map.Entry<String, Long> partition : lastSequenceNumbers.entrySet()) {
+                    out.writeUTF(partition.getKey());
+                    out.writeLong(partition.getValue());
+                }
+                out.writeInt(windows.size());
+                for (int slot = 0; slot < windows.capacity(); slot++) {
+                    if (windows.countAt(slot) != 0) {
+                        out.writeUTF(keys.get(windows.keyAt(slot)));
+                        out.writeLong(windows.startAt(slot));
+                        out.writeLong(windows.countAt(slot));
+                        out.writeDouble(windows.sumAt(slot));
+                    }
+                }
+                List<WindowResult> pending = new ArrayList<>(restoredEmits);
+                for (List<WindowResult> emitted : pendingEmits.values()) {
+                    pending.addAll(emitted);
+                }
+                out.writeInt(pending.size());
+                for (WindowResult window : pending) {
+                    out.writeUTF(window.getPartitionKey());
+                    out.writeLong(window.getWindowStartMillis());
+                    out.writeLong(window.getCount());
+                    out.writeDouble(window.getSum());
+                }
+            }
+            try {
+                Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write window snapshot " + snapshotFile, e);
+        }
+    }
+
+    private void restore() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            int version = in.readInt();
+            long snapshotSize = in.readLong();
+            long snapshotSlide = in.readLong();
+            if (version > SNAPSHOT_VERSION || snapshotSize != sizeMillis || snapshotSlide != slideMillis) {
+                // Windows of another shape cannot be merged into these; start over
+                return;
+            }
+            maxEventTimeMillis = in.readLong();
+            closedUpToMillis = in.readLong();
+            for (int i = in.readInt(); i > 0; i--) {
+                lastSequenceNumbers.put(in.readUTF(), in.readLong());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                int key = keyId(in.readUTF());
+                windows.put(in.readLong(), key, in.readLong(), in.readDouble());
+            }
+            // Version 1 snapshots had no pending windows
+            for (int i = version > 1 ? in.readInt() : 0; i > 0; i--) {
+                String key = in.readUTF();
+                long start = in.readLong();
+                restoredEmits.add(new WindowResult(key, start, start + sizeMillis, in.readLong(), in.readDouble()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read window snapshot " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * The latest enqueued time seen minus the allowed lateness.
+     */
+    public synchronized long getWatermarkMillis() {
+        return maxEventTimeMillis == Long.MIN_VALUE ? Long.MIN_VALUE : maxEventTimeMillis - allowedLatenessMillis;
+    }
+
+    public synchronized int openWindows() {
+        return windows.size();
+    }
+
+    public long getLateEvents() {
+        return lateEvents.get();
+    }
+
+    public long getDuplicateEvents() {
+        return duplicateEvents.get();
+    }
+
+    private int keyId(String partitionKey) {
+        Integer id = keyIds.get(partitionKey);
+        if (id == null) {
+            id = keys.size();
+            keys.add(partitionKey);
+            keyIds.put(partitionKey, id);
+        }
+        return id;
+    }
+
+    /**
+     * Parses an EnqueuedTimeUtc binding value: an ISO-8601 instant, or a local date-time that is
+     * taken as UTC.
+     */
+    public static long eventTimeMillis(Object enqueuedTimeUtc) {
+        String value = String.valueOf(enqueuedTimeUtc).trim();
+        try {
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(value).toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+    }
+
+    /**
+     * Reads a top-level number field from a JSON object message, or returns {@code missing} if
+     * the field is absent, not a number, or the message is not a JSON object. Nested objects
+     * are skipped, so a "value" inside them is not mistaken for the top-level one.
+     */
+    public static double numberField(String json, String field, double missing) {
+        try {
+            JsonStreamReader reader = new JsonStreamReader(json);
+            if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+                return missing;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(field) && reader.peek() == JsonStreamReader.Token.NUMBER) {
+                    return Double.parseDouble(reader.nextString());
+                }
+                reader.skipValue();
+            }
+            return missing;
+        } catch (IOException | NumberFormatException e) {
+            return missing;
+        }
+    }
+}
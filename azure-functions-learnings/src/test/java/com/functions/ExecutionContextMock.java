@@ -0,0 +1,43 @@
+package com.functions;
+
+import com.microsoft.azure.functions.ExecutionContext;
+
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The mock for ExecutionContext. Its logger drops everything below WARNING, so benchmarks do
+ * not measure the console.
+ */
+public class ExecutionContextMock implements ExecutionContext {
+    private static final Logger LOGGER = quietLogger();
+
+    private final String functionName;
+    private final String invocationId = UUID.randomUUID().toString();
+
+    public ExecutionContextMock(String functionName) {
+        this.functionName = functionName;
+    }
+
+    private static Logger quietLogger() {
+        Logger logger = Logger.getLogger("com.functions.test");
+        logger.setLevel(Level.WARNING);
+        return logger;
+    }
+
+    @Override
+    public Logger getLogger() {
+        return LOGGER;
+    }
+
+    @Override
+    public String getInvocationId() {
+        return invocationId;
+    }
+
+    @Override
+    public String getFunctionName() {
+        return functionName;
+    }
+}
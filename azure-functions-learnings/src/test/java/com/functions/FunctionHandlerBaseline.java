@@ -0,0 +1,89 @@
+package com.functions;
+
+import com.microsoft.azure.functions.HttpResponseMessage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plain-loop measurement of every handler in {@link FunctionHandlers}: throughput, sampled
+ * latency percentiles and bytes allocated per call. A quick check that needs no JMH; it is not
+ * dead-code or fork safe, so its numbers in src/jmh/baseline.txt only stand in until the JMH
+ * result of FunctionHandlersBenchmark (the "jmh" profile) is recorded as src/jmh/baseline.json.
+ * The run fails if a handler returns nothing or an HTTP handler answers with an error status.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.FunctionHandlerBaseline [seconds]
+ */
+public class FunctionHandlerBaseline {
+    private static final int SAMPLES = 100_000;
+    // Held so the level sticks; the cold start lines of the orchestrators would interleave the table
+    private static final Logger STARTUP_LOGGER = Logger.getLogger("com.functions.startup");
+
+    public static void main(String[] args) {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 2;
+        STARTUP_LOGGER.setLevel(Level.WARNING);
+        FunctionHandlers handlers = new FunctionHandlers();
+        System.out.printf("%s %s, %d cpus%n", System.getProperty("java.vm.name"), System.getProperty("java.version"),
+            Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-26s %14s %10s %10s %12s%n", "handler", "ops/s", "p50 ns", "p99 ns", "bytes/op");
+        for (Map.Entry<String, Supplier<Object>> handler : handlers.all().entrySet()) {
+            measure(handler.getKey(), handler.getValue(), TimeUnit.SECONDS.toNanos(seconds));
+        }
+    }
+
+    private static void measure(String name, Supplier<Object> handler, long durationNanos) {
+        Object sink = null;
+        // Warm-up
+        long end = System.nanoTime() + durationNanos;
+        while (System.nanoTime() < end) {
+            sink = handler.get();
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long operations = 0;
+        long start = System.nanoTime();
+        end = start + durationNanos;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 1000; i++) {
+                sink = handler.get();
+            }
+            operations += 1000;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        long[] latencies = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long callStart = System.nanoTime();
+            sink = handler.get();
+            latencies[i] = System.nanoTime() - callStart;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-26s %14.0f %10d %10d %12s%n", name, operations * 1e9 / elapsed,
+            latencies[SAMPLES / 2], latencies[SAMPLES * 99 / 100],
+            allocated < 0 ? "n/a" : String.valueOf(allocated / operations));
+        if (sink == null) {
+            throw new AssertionError("no result from " + name);
+        }
+        if (sink instanceof HttpResponseMessage && ((HttpResponseMessage) sink).getStatusCode() >= 400) {
+            throw new AssertionError(name + " answered " + ((HttpResponseMessage) sink).getStatusCode());
+        }
+    }
+
+    /**
+     * Bytes allocated by this thread so far, or -1 if the JVM does not count them.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
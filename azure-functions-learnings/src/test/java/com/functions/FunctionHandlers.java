@@ -0,0 +1,96 @@
+package com.functions;
+
+import com.functions.durableLearnings.DurableFunction;
+import com.functions.durableLearnings.DurableFunctionChaining;
+import com.functions.durableLearnings.DurableFunctionFanOutFanIn;
+import com.functions.durableLearnings.FakeOrchestrationContext;
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpResponseMessage;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Calls each live function handler directly with mocked bindings, for the JMH benchmarks under
+ * src/jmh/java and for {@link FunctionHandlerBaseline}. Every call builds its own orchestration
+ * context like a real invocation would; requests and contexts of the HTTP functions are reused.
+ * <p>
+ * The Queue and Event Hub trigger handlers are commented out in this project, so they have no
+ * entry here.
+ */
+public class FunctionHandlers {
+    private static final List<Integer> FAN_OUT_ITEMS = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16);
+
+    private final HttpTriggerFunction httpTrigger = new HttpTriggerFunction();
+    private final DurableFunction durable = new DurableFunction();
+    private final DurableFunctionChaining chaining = new DurableFunctionChaining();
+    private final DurableFunctionFanOutFanIn fanOutFanIn = new DurableFunctionFanOutFanIn();
+
+    private final HttpRequestMessageMock queryRequest = HttpRequestMessageMock.get("name", "Azure");
+    private final HttpRequestMessageMock bodyRequest = HttpRequestMessageMock.post("Azure Functions");
+    private final ExecutionContext httpContext = new ExecutionContextMock("HttpTrigger");
+    private final ExecutionContext capitalizeContext = new ExecutionContextMock("Capitalize");
+
+    public HttpResponseMessage httpTriggerQuery() {
+        return httpTrigger.run(queryRequest, httpContext);
+    }
+
+    public HttpResponseMessage httpTriggerBody() {
+        return httpTrigger.run(bodyRequest, httpContext);
+    }
+
+    public HttpResponseMessage httpTriggerJavaVersion() {
+        return HttpTriggerFunction.HttpTriggerJavaVersion(queryRequest, httpContext);
+    }
+
+    public String capitalize() {
+        return durable.capitalize("Seattle", capitalizeContext);
+    }
+
+    public String citiesOrchestrator() {
+        FakeOrchestrationContext ctx = new FakeOrchestrationContext(null)
+            .activity("Capitalize", name -> durable.capitalize((String) name, capitalizeContext));
+        return durable.citiesOrchestrator(ctx);
+    }
+
+    public String citiesBatchedOrchestrator() {
+        FakeOrchestrationContext ctx = new FakeOrchestrationContext(null)
+            .activity("CapitalizeBatch", names -> durable.capitalizeBatch((String[]) names, capitalizeContext));
+        return durable.citiesBatchedOrchestrator(ctx);
+    }
+
+    public double chainingOrchestrator() {
+        FakeOrchestrationContext ctx = new FakeOrchestrationContext("chain")
+            .activity("F1", input -> ((String) input).length())
+            .activity("F2", x -> (Integer) x * 2)
+            .activity("F3", y -> (Integer) y + 1)
+            .activity("F4", z -> (Integer) z / 2.0);
+        return chaining.functionChaining(ctx);
+    }
+
+    public Integer fanOutFanInOrchestrator() {
+        FakeOrchestrationContext ctx = new FakeOrchestrationContext(null)
+            .activity("F1", ignored -> FAN_OUT_ITEMS)
+            .activity("F2", item -> (Integer) item * (Integer) item);
+        return fanOutFanIn.fanOutFanInOrchestrator(ctx);
+    }
+
+    /**
+     * All handlers by benchmark name, in a stable order.
+     */
+    public Map<String, Supplier<Object>> all() {
+        Map<String, Supplier<Object>> handlers = new LinkedHashMap<>();
+        handlers.put("httpTriggerQuery", this::httpTriggerQuery);
+        handlers.put("httpTriggerBody", this::httpTriggerBody);
+        handlers.put("httpTriggerJavaVersion", this::httpTriggerJavaVersion);
+        handlers.put("capitalize", this::capitalize);
+        handlers.put("citiesOrchestrator", this::citiesOrchestrator);
+        handlers.put("citiesBatchedOrchestrator", this::citiesBatchedOrchestrator);
+        handlers.put("chainingOrchestrator", this::chainingOrchestrator);
+        handlers.put("fanOutFanInOrchestrator", this::fanOutFanInOrchestrator);
+        return handlers;
+    }
+}
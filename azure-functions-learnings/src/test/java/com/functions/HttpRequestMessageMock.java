@@ -0,0 +1,70 @@
+package com.functions;
+
+import com.microsoft.azure.functions.*;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * The mock for HttpRequestMessage, so HTTP trigger functions can be called directly from tests
+ * and benchmarks. The body is read through a supplier, which can stand in for a slow client.
+ */
+public class HttpRequestMessageMock implements HttpRequestMessage<Optional<String>> {
+    private final HttpMethod httpMethod;
+    private final Map<String, String> queryParameters;
+    private final Map<String, String> headers = new HashMap<>();
+    private final Supplier<Optional<String>> body;
+
+    public HttpRequestMessageMock(HttpMethod httpMethod, Map<String, String> queryParameters, Supplier<Optional<String>> body) {
+        this.httpMethod = httpMethod;
+        this.queryParameters = queryParameters;
+        this.body = body;
+    }
+
+    public static HttpRequestMessageMock get(String name, String value) {
+        return new HttpRequestMessageMock(HttpMethod.GET, Collections.singletonMap(name, value), Optional::empty);
+    }
+
+    public static HttpRequestMessageMock post(String body) {
+        return new HttpRequestMessageMock(HttpMethod.POST, Collections.<String, String>emptyMap(), () -> Optional.ofNullable(body));
+    }
+
+    @Override
+    public URI getUri() {
+        return URI.create("http://localhost:7071/api");
+    }
+
+    @Override
+    public HttpMethod getHttpMethod() {
+        return httpMethod;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public Map<String, String> getQueryParameters() {
+        return queryParameters;
+    }
+
+    @Override
+    public Optional<String> getBody() {
+        return body.get();
+    }
+
+    @Override
+    public HttpResponseMessage.Builder createResponseBuilder(HttpStatus status) {
+        return new HttpResponseMessageMock.HttpResponseMessageBuilderMock().status(status);
+    }
+
+    @Override
+    public HttpResponseMessage.Builder createResponseBuilder(HttpStatusType status) {
+        return new HttpResponseMessageMock.HttpResponseMessageBuilderMock().status(status);
+    }
+}
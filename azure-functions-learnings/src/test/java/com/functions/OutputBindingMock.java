@@ -0,0 +1,20 @@
+package com.functions;
+
+import com.microsoft.azure.functions.OutputBinding;
+
+/**
+ * The mock for OutputBinding, keeps the last value a function set.
+ */
+public class OutputBindingMock<T> implements OutputBinding<T> {
+    private T value;
+
+    @Override
+    public T getValue() {
+        return value;
+    }
+
+    @Override
+    public void setValue(T value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,151 @@
+package com.functions.admission;
+
+import com.functions.HttpRequestMessageMock;
+import com.functions.local.LatencyHistogram;
+import com.functions.local.LoadGenerator;
+import com.functions.metrics.MetricsRegistry;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offers an HTTP function twice the load it can serve, with the open-loop {@link LoadGenerator}:
+ * each invocation needs one of 8 slots of a backend for 10 ms, so the function completes at
+ * most 800 requests per second and the rest queue. Prints, without admission control and with
+ * the AIMD and gradient limits: the requests served within the 2 s a client would wait and
+ * the requests rejected, per second; the latency of every response and of those served in
+ * time, all from the scheduled arrival; and how many responses came too late. Then
+ * rate-limits a function to 200 requests per second, and measures what a rejection costs. The
+ * run fails if either limit serves in time less than half of what the backend can do, or lets
+ * as many responses come too late as no admission control does; if the rate limit admits more than its rate and burst allow or
+ * sends a 429 without Retry-After; or if a request is admitted past a full limit.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.admission.AdmissionControlSimulation [seconds]
+ */
+public class AdmissionControlSimulation {
+    private static final int BACKEND_SLOTS = 8;
+    private static final long SERVICE_MILLIS = 10;
+    private static final double OFFERED_PER_SECOND = 1600;
+    private static final long CLIENT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        long[] none = overload("none", null, seconds);
+        for (long[] limited : new long[][]{
+            overload("aimd", new AimdLimit(20, 1, 1000, 100, 0.9), seconds),
+            overload("gradient", new GradientLimit(20, 1, 1000), seconds)}) {
+            long capacity = BACKEND_SLOTS * TimeUnit.SECONDS.toMillis(seconds) / SERVICE_MILLIS;
+            check(limited[0] >= capacity / 2, limited[0] + " requests served in time with a limit, the backend can serve " + capacity);
+            check(limited[1] < none[1], limited[1] + " responses too late with a limit, " + none[1] + " without");
+        }
+        rateLimited(seconds);
+        rejectionCost();
+    }
+
+    /**
+     * @return the requests served in time and the responses slower than the client's timeout
+     */
+    private static long[] overload(String label, ConcurrencyLimit limit, int seconds) throws Exception {
+        Semaphore backend = new Semaphore(BACKEND_SLOTS, true);
+        AdmissionController admission = new AdmissionController("simulation", limit, null, new MetricsRegistry());
+        HttpRequestMessageMock request = HttpRequestMessageMock.get("name", "Azure");
+        LatencyHistogram served = new LatencyHistogram();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong timedOut = new AtomicLong();
+        // The generator schedules arrival n at its start plus n intervals, and starts 10 ms after run()
+        long firstArrival = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        double intervalNanos = 1e9 / OFFERED_PER_SECOND;
+        LoadGenerator.Result result = LoadGenerator.openLoop(OFFERED_PER_SECOND, 1024).run(sequence -> {
+            long arrival = firstArrival + (long) (sequence * intervalNanos);
+            HttpResponseMessage response = admission.call(request, () -> {
+                backend.acquire();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(SERVICE_MILLIS);
+                } finally {
+                    backend.release();
+                }
+                return request.createResponseBuilder(HttpStatus.OK).body("Hello").build();
+            });
+            long elapsed = System.nanoTime() - arrival;
+            if (elapsed > CLIENT_TIMEOUT_NANOS) {
+                timedOut.incrementAndGet();
+            } else if (response.getStatusCode() == HttpStatus.OK.value()) {
+                synchronized (served) {
+                    served.record(elapsed);
+                }
+            } else {
+                rejected.incrementAndGet();
+            }
+        }, TimeUnit.SECONDS.toNanos(seconds));
+        LatencyHistogram all = result.getLatencies();
+        System.out.printf("%-9s served in time %4.0f/s, rejected %4.0f/s, all responses p50 %7.1f ms p99 %7.1f ms, served p99 %7.1f ms, slower than 2 s: %5d, final limit %s%n",
+            label, served.count() / (double) seconds, rejected.get() / (double) seconds, all.percentile(50) / 1e6, all.percentile(99) / 1e6,
+            served.percentile(99) / 1e6, timedOut.get(), limit != null ? limit.getLimit() : "-");
+        return new long[]{served.count(), timedOut.get()};
+    }
+
+    private static void rateLimited(int seconds) throws Exception {
+        AdmissionController admission = new AdmissionController("rate", null, new TokenBucket(200, 20), new MetricsRegistry());
+        HttpRequestMessageMock request = HttpRequestMessageMock.get("name", "Azure");
+        AtomicLong tooMany = new AtomicLong();
+        AtomicLong retryAfterMissing = new AtomicLong();
+        LoadGenerator.Result result = LoadGenerator.openLoop(1000, 16).run(sequence -> {
+            HttpResponseMessage response = admission.admit(request, () -> request.createResponseBuilder(HttpStatus.OK).build());
+            if (response.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                tooMany.incrementAndGet();
+                if (response.getHeader("Retry-After") == null) {
+                    retryAfterMissing.incrementAndGet();
+                }
+            }
+        }, TimeUnit.SECONDS.toNanos(seconds));
+        System.out.printf("rate limit 200/s at 1000/s offered: admitted %.0f/s, 429 %.0f/s, without Retry-After %d%n",
+            admission.getAdmitted() / (double) seconds, tooMany.get() / (double) seconds, retryAfterMissing.get());
+        // The generator's run may overshoot its duration by a few milliseconds
+        check(admission.getAdmitted() <= 200L * (seconds + 1) + 20, admission.getAdmitted() + " requests admitted in " + seconds + " s at 200/s");
+        check(tooMany.get() > 0, "nothing was rate-limited");
+        check(retryAfterMissing.get() == 0, retryAfterMissing.get() + " 429 responses without Retry-After");
+        check(result.getErrors() == 0, result.getErrors() + " requests failed");
+    }
+
+    private static void rejectionCost() throws Exception {
+        ConcurrencyLimit full = new AimdLimit(1, 1, 1, 1000, 0.9);
+        AdmissionController admission = new AdmissionController("cost", full, null, new MetricsRegistry());
+        HttpRequestMessageMock request = HttpRequestMessageMock.get("name", "Azure");
+        Thread holder = new Thread(() -> admission.admit(request, () -> {
+            try {
+                TimeUnit.SECONDS.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return request.createResponseBuilder(HttpStatus.OK).build();
+        }));
+        holder.start();
+        while (admission.getInFlight() == 0) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        int rejections = 1_000_000;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < rejections; i++) {
+                admission.admit(request, () -> {
+                    throw new IllegalStateException("admitted past a full limit");
+                });
+            }
+            if (round == 1) {
+                System.out.printf("rejection cost: %.2f us per 503 response%n", (System.nanoTime() - start) / 1e3 / rejections);
+            }
+        }
+        holder.interrupt();
+        holder.join();
+        check(admission.getRejected() == 2L * rejections, admission.getRejected() + " of " + 2 * rejections + " requests rejected past a full limit");
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition) {
+            throw new AssertionError(failure);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.functions.admission;
+
+import com.functions.HttpRequestMessageMock;
+import com.functions.metrics.MetricsRegistry;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdmissionControllerTest {
+    private final HttpRequestMessageMock request = HttpRequestMessageMock.get("name", "Azure");
+
+    @AfterEach
+    public void clearSettings() {
+        System.clearProperty(AdmissionController.LIMIT_SETTING);
+        System.clearProperty(AdmissionController.RATE_SETTING + "_limited");
+    }
+
+    @Test
+    public void admitsEverythingUnlessConfigured() {
+        AdmissionController admission = AdmissionController.fromSettings("unconfigured");
+        assertEquals(Integer.MAX_VALUE, admission.getLimit());
+        assertEquals(HttpStatus.OK.value(), admission.admit(request, this::ok).getStatusCode());
+        assertEquals(1, admission.getAdmitted());
+    }
+
+    @Test
+    public void readsTheLimitAndRateSettings() {
+        System.setProperty(AdmissionController.LIMIT_SETTING, "gradient");
+        System.setProperty(AdmissionController.RATE_SETTING + "_limited", "1");
+        AdmissionController admission = AdmissionController.fromSettings("limited");
+        assertEquals(20, admission.getLimit());
+        assertEquals(HttpStatus.OK.value(), admission.admit(request, this::ok).getStatusCode());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), admission.admit(request, this::ok).getStatusCode());
+
+        System.setProperty(AdmissionController.LIMIT_SETTING, "fifo");
+        assertThrows(IllegalArgumentException.class, () -> AdmissionController.fromSettings("misconfigured"));
+    }
+
+    @Test
+    public void answersOverTheLimitWithoutRunningTheBody() {
+        AdmissionController admission = new AdmissionController("ci", new AimdLimit(1, 1, 1, 1000, 0.9), null, new MetricsRegistry());
+        HttpResponseMessage rejected = admission.admit(request, () -> {
+            HttpResponseMessage nested = admission.admit(request, () -> {
+                throw new IllegalStateException("admitted past a full limit");
+            });
+            assertEquals(1, admission.getInFlight());
+            return nested;
+        });
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), rejected.getStatusCode());
+        assertTrue(rejected.getHeader("Retry-After") != null);
+        assertEquals(1, admission.getAdmitted());
+        assertEquals(1, admission.getRejected());
+        assertEquals(0, admission.getInFlight());
+    }
+
+    private HttpResponseMessage ok() {
+        return request.createResponseBuilder(HttpStatus.OK).build();
+    }
+}
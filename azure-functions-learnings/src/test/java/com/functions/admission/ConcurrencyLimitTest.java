@@ -0,0 +1,68 @@
+package com.functions.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrencyLimitTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    public void aimdGrowsByOneAndBacksOffByTheRatio() {
+        AimdLimit limit = new AimdLimit(10, 2, 12, 100, 0.5);
+        limit.onSample(FAST, 10);
+        assertEquals(11, limit.getLimit());
+        // Half the limit or less in use says nothing about a larger one
+        limit.onSample(FAST, 5);
+        assertEquals(11, limit.getLimit());
+        limit.onSample(FAST, 11);
+        limit.onSample(FAST, 12);
+        assertEquals(12, limit.getLimit());
+
+        limit.onSample(SLOW, 12);
+        assertEquals(6, limit.getLimit());
+        for (int i = 0; i < 5; i++) {
+            limit.onSample(SLOW, 1);
+        }
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    public void gradientShrinksWhenLatencyRisesAndStaysInBounds() {
+        GradientLimit limit = new GradientLimit(50, 5, 100);
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(FAST, limit.getLimit());
+        }
+        assertEquals(100, limit.getLimit());
+
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(SLOW, limit.getLimit());
+        }
+        int queued = limit.getLimit();
+        assertTrue(queued < 50, "limit " + queued);
+        assertTrue(queued >= 5, "limit " + queued);
+    }
+
+    @Test
+    public void gradientDoesNotGrowWhileMostlyIdle() {
+        GradientLimit limit = new GradientLimit(20, 1, 1000);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(FAST, 2);
+        }
+        assertEquals(20, limit.getLimit());
+    }
+
+    @Test
+    public void rejectsInvalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimit(10, 0, 10, 100, 0.9));
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimit(10, 5, 4, 100, 0.9));
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimit(10, 1, 10, 100, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new GradientLimit(10, 5, 4));
+        assertEquals(4, new GradientLimit(10, 1, 4).getLimit());
+    }
+}
@@ -0,0 +1,47 @@
+package com.functions.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenBucketTest {
+    @Test
+    public void allowsABurstAndThenTheRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(10, 5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(), "request " + i + " of the burst");
+        }
+        long wait = bucket.tryAcquire();
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(100), "wait " + wait);
+
+        TimeUnit.NANOSECONDS.sleep(wait);
+        assertEquals(0, bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire() > 0);
+    }
+
+    @Test
+    public void refillsTheBurstWhileIdle() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100, 3);
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire();
+        }
+        assertTrue(bucket.tryAcquire() > 0);
+        Thread.sleep(50);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire());
+        }
+        // Idle time beyond the burst is not saved up
+        assertTrue(bucket.tryAcquire() > 0);
+    }
+
+    @Test
+    public void rejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+        assertEquals(20.0, new TokenBucket(20, 1).getRatePerSecond(), 1e-9);
+    }
+}
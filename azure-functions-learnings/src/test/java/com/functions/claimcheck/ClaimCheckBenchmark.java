@@ -0,0 +1,101 @@
+package com.functions.claimcheck;
+
+import com.functions.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Sends JSON payloads of growing size through a {@link ClaimCheck} over a local blob directory
+ * and prints, per size: the bytes that reach the broker, the compressed blob size, the
+ * producer's cost per message, and the consumer's cost when it only forwards the message versus
+ * when it reads the body. The run fails if a payload does not round-trip, a payload over the
+ * threshold reaches the broker inline, or expiry misses a blob.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.claimcheck.ClaimCheckBenchmark [messages]
+ */
+public class ClaimCheckBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Path directory = Files.createTempDirectory("claim-check");
+        ClaimCheck claimCheck = new ClaimCheck(new LocalDirectoryBlobStore(directory), ClaimCheck.DEFAULT_THRESHOLD_BYTES,
+            ClaimCheck.DEFAULT_MESSAGE_TTL_MILLIS, new MetricsRegistry());
+        System.out.printf("%-10s %12s %12s %14s %16s %16s%n", "payload", "on broker", "blob", "offload", "forward only", "read body");
+        for (int round = 0; round < 2; round++) {
+            for (int size : new int[]{1 << 10, 32 << 10, 256 << 10, 1 << 20}) {
+                run(claimCheck, directory, payload(size, round), messages, round == 1);
+            }
+        }
+        int expired = claimCheck.expire(-1, Integer.MAX_VALUE);
+        System.out.printf("blobs expired: %d%n", expired);
+        // The 256 KiB and 1 MiB payloads of both rounds
+        if (expired != 4) {
+            throw new AssertionError("expired " + expired + " blobs, expected 4");
+        }
+    }
+
+    private static void run(ClaimCheck claimCheck, Path directory, String payload, int messages, boolean print) {
+        String message = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            message = claimCheck.offload(payload);
+        }
+        long offloadNanos = (System.nanoTime() - start) / messages;
+
+        long forwarded = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            forwarded += claimCheck.resolve(message).getMessage().length();
+        }
+        long forwardNanos = (System.nanoTime() - start) / messages;
+
+        long read = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            read += claimCheck.resolve(message).get().length();
+        }
+        long readNanos = (System.nanoTime() - start) / messages;
+
+        if (read != (long) payload.length() * messages || forwarded == 0) {
+            throw new AssertionError("Payload did not round-trip");
+        }
+        ClaimCheckedPayload resolved = claimCheck.resolve(message);
+        if (resolved.isClaimChecked() != payload.length() > claimCheck.getThresholdBytes()
+            || message.getBytes(StandardCharsets.UTF_8).length > claimCheck.getThresholdBytes()) {
+            throw new AssertionError("A " + payload.length() + " byte payload reached the broker as " + message.length() + " bytes");
+        }
+        if (print) {
+            String blob = resolved.isClaimChecked() ? String.valueOf(blobSize(directory, message)) : "-";
+            System.out.printf("%-10s %12d %12s %11.1f us %13.1f us %13.1f us%n", payload.length() / 1024 + " KiB",
+                message.getBytes(StandardCharsets.UTF_8).length, blob, offloadNanos / 1e3, forwardNanos / 1e3, readNanos / 1e3);
+        }
+    }
+
+    private static long blobSize(Path directory, String reference) {
+        String name = reference.substring(ClaimCheck.REFERENCE_PREFIX.length(), reference.indexOf('"', ClaimCheck.REFERENCE_PREFIX.length()));
+        try {
+            return Files.size(directory.resolve(name));
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Orders with random quantities and prices, about as compressible as real API payloads.
+     */
+    private static String payload(int size, int seed) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder(size + 128).append("{\"orders\":[");
+        while (json.length() < size - 2) {
+            json.append(json.charAt(json.length() - 1) == '[' ? "" : ",")
+                .append("{\"sku\":\"SKU-").append(random.nextInt(5000))
+                .append("\",\"quantity\":").append(random.nextInt(20))
+                .append(",\"price\":").append(random.nextInt(100_000) / 100.0).append('}');
+        }
+        return json.append("]}").toString();
+    }
+}
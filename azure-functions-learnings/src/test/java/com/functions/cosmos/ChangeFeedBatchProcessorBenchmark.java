@@ -0,0 +1,145 @@
+package com.functions.cosmos;
+
+import com.functions.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs change-feed batches of 500 documents, several versions each of 100 ids, through a
+ * {@link ChangeFeedBatchProcessor} with 1 to 32 workers, for a handler that waits 1 ms on I/O
+ * and for one that spends 50 us of CPU. The whole feed is written just before each run, so
+ * the checkpoint lag of the last batch is how long the backlog took (to _ts's one-second
+ * resolution). Prints items per second and checks that each id's versions were handled in
+ * feed order and never two at a time. Then fails one document and shows that the batch fails,
+ * the other lanes finish, and the failed id's later versions wait, and that the batch counts as
+ * skipped once the retries run out. The run fails if an id is handled out of order or twice at
+ * once, if a document is left unhandled, or if the failing batch does not fail on every
+ * attempt, finish its other lanes, and count as skipped exactly once.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.cosmos.ChangeFeedBatchProcessorBenchmark [batches]
+ */
+public class ChangeFeedBatchProcessorBenchmark {
+    private static final int BATCH = 500;
+    private static final int IDS = 100;
+
+    public static void main(String[] args) {
+        int batches = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        System.out.printf("%d cores%n", Runtime.getRuntime().availableProcessors());
+        for (int workers : new int[]{1, 4, 16, 32}) {
+            run("1 ms I/O", workers, feed(batches), () -> sleep(TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+        for (int workers : new int[]{1, 4}) {
+            run("50 us CPU", workers, feed(batches), () -> spin(TimeUnit.MICROSECONDS.toNanos(50)));
+        }
+        failure(feed(1).get(0));
+    }
+
+    private static void run(String work, int workers, List<List<String>> feed, Runnable perItem) {
+        Map<String, Long> lastVersion = new ConcurrentHashMap<>();
+        Map<String, Boolean> inFlight = new ConcurrentHashMap<>();
+        AtomicInteger violations = new AtomicInteger();
+        ChangeFeedBatchProcessor.ItemHandler handler = document -> {
+            if (inFlight.putIfAbsent(document.getId(), Boolean.TRUE) != null) {
+                violations.incrementAndGet();
+            }
+            Long previous = lastVersion.put(document.getId(), document.getVersion());
+            if (previous != null && previous >= document.getVersion()) {
+                violations.incrementAndGet();
+            }
+            perItem.run();
+            inFlight.remove(document.getId());
+        };
+        try (ChangeFeedBatchProcessor processor = new ChangeFeedBatchProcessor("benchmark", workers, ViewDocument::getId, 0, new MetricsRegistry())) {
+            long lagMillis = 0;
+            long start = System.nanoTime();
+            for (List<String> batch : feed) {
+                lagMillis = Math.max(lagMillis, processor.process(batch, handler).getCheckpointLagMillis());
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-10s %2d workers: %8.0f items/s, %6.1f ms per batch, backlog checkpointed %5d ms after it was written, order violations %d%n",
+                work, workers, processor.getItemsProcessed() * 1e9 / elapsed, elapsed / 1e6 / feed.size(), lagMillis, violations.get());
+            check(violations.get() == 0, violations.get() + " order violations with " + workers + " workers");
+            check(processor.getItemsProcessed() == (long) BATCH * feed.size(),
+                processor.getItemsProcessed() + " of " + BATCH * feed.size() + " documents handled with " + workers + " workers");
+        }
+    }
+
+    private static void failure(List<String> batch) {
+        String failing = ViewDocument.parse(batch.get(0)).getId();
+        int workers = 8;
+        // The failing document is the first of its lane, so only the other lanes get handled
+        int failingLane = (failing.hashCode() & Integer.MAX_VALUE) % workers;
+        int others = 0;
+        for (String json : batch) {
+            others += (ViewDocument.parse(json).getId().hashCode() & Integer.MAX_VALUE) % workers == failingLane ? 0 : 1;
+        }
+        AtomicInteger handled = new AtomicInteger();
+        AtomicInteger failingIdHandled = new AtomicInteger();
+        int retries = 2;
+        try (ChangeFeedBatchProcessor processor = new ChangeFeedBatchProcessor("failure", workers, ViewDocument::getId, retries, new MetricsRegistry())) {
+            // The host delivers the batch once and then once per retry
+            for (int attempt = 1; attempt <= retries + 1; attempt++) {
+                try {
+                    processor.process(batch, document -> {
+                        if (document.getId().equals(failing)) {
+                            failingIdHandled.incrementAndGet();
+                            throw new IllegalStateException("downstream rejected " + failing);
+                        }
+                        handled.incrementAndGet();
+                    });
+                    throw new AssertionError("failure: batch unexpectedly succeeded on attempt " + attempt);
+                } catch (CompletionException e) {
+                    System.out.printf("failure: %s (%s), %d other documents handled so far, id %s handled %d time(s), skipped batches %d%n",
+                        e.getMessage(), e.getCause().getMessage(), handled.get(), failing, failingIdHandled.get(), processor.getSkippedBatches());
+                    check(handled.get() == others * attempt, handled.get() + " other documents handled after " + attempt + " attempts, expected " + others * attempt);
+                    check(failingIdHandled.get() == attempt, "id " + failing + " handled " + failingIdHandled.get() + " times in " + attempt + " attempts");
+                    check(processor.getSkippedBatches() == (attempt > retries ? 1 : 0), processor.getSkippedBatches() + " skipped batches after attempt " + attempt);
+                }
+            }
+        }
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition) {
+            throw new AssertionError(failure);
+        }
+    }
+
+    private static List<List<String>> feed(int batches) {
+        Random random = new Random(3);
+        long lsn = 0;
+        long ts = System.currentTimeMillis() / 1000;
+        List<List<String>> feed = new ArrayList<>(batches);
+        for (int b = 0; b < batches; b++) {
+            List<String> batch = new ArrayList<>(BATCH);
+            for (int i = 0; i < BATCH; i++) {
+                int id = random.nextInt(IDS);
+                batch.add("{\"id\":\"" + id + "\",\"name\":\"name-" + id % 10 + "\",\"_ts\":" + ts + ",\"_lsn\":" + ++lsn + "}");
+            }
+            feed.add(batch);
+        }
+        return feed;
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            // Busy, like parsing or hashing a document
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.functions.cosmos;
+
+import com.functions.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeFeedBatchProcessorTest {
+    private static final int IDS = 20;
+    private static final int VERSIONS = 10;
+
+    @Test
+    public void handlesEachIdsChangesInFeedOrder() {
+        Map<String, List<Long>> handled = new ConcurrentHashMap<>();
+        try (ChangeFeedBatchProcessor processor = processor(4, 0)) {
+            ChangeFeedBatchProcessor.BatchReport report = processor.process(batch(), document -> {
+                List<Long> versions = handled.computeIfAbsent(document.getId(), id -> Collections.synchronizedList(new ArrayList<>()));
+                versions.add(document.getVersion());
+            });
+            assertEquals(IDS * VERSIONS, report.getItems());
+            assertEquals(4, report.getLanes());
+            assertEquals(IDS * VERSIONS, processor.getItemsProcessed());
+        }
+        assertEquals(IDS, handled.size());
+        for (Map.Entry<String, List<Long>> id : handled.entrySet()) {
+            assertEquals(expectedVersions(Integer.parseInt(id.getKey())), id.getValue(), "versions of id " + id.getKey());
+        }
+    }
+
+    @Test
+    public void aFailureStopsOnlyItsLaneAndFailsTheBatch() {
+        IllegalStateException rejected = new IllegalStateException("downstream rejected 3");
+        Map<String, List<Long>> handled = new ConcurrentHashMap<>();
+        try (ChangeFeedBatchProcessor processor = processor(4, 0)) {
+            CompletionException failure = assertThrows(CompletionException.class, () -> processor.process(batch(), document -> {
+                if (document.getId().equals("3") && document.getVersion() == expectedVersions(3).get(1)) {
+                    throw rejected;
+                }
+                handled.computeIfAbsent(document.getId(), id -> Collections.synchronizedList(new ArrayList<>())).add(document.getVersion());
+            }));
+            assertSame(rejected, failure.getCause());
+            assertEquals(1, processor.getSkippedBatches());
+        }
+        // Id 3's later versions wait for the retry
+        assertEquals(expectedVersions(3).subList(0, 1), handled.get("3"));
+        int lane = ("3".hashCode() & Integer.MAX_VALUE) % 4;
+        for (int id = 0; id < IDS; id++) {
+            if ((("" + id).hashCode() & Integer.MAX_VALUE) % 4 != lane) {
+                assertEquals(expectedVersions(id), handled.get("" + id), "versions of id " + id);
+            }
+        }
+    }
+
+    @Test
+    public void countsTheBatchAsSkippedOnceTheRetriesRunOut() {
+        List<String> batch = batch();
+        try (ChangeFeedBatchProcessor processor = processor(2, 1)) {
+            CompletionException first = assertThrows(CompletionException.class, () -> processor.process(batch, failing()));
+            assertTrue(first.getMessage().contains("attempt 1 of 2"), first.getMessage());
+            assertEquals(0, processor.getSkippedBatches());
+
+            CompletionException last = assertThrows(CompletionException.class, () -> processor.process(batch, failing()));
+            assertTrue(last.getMessage().contains("checkpoints past the batch"), last.getMessage());
+            assertEquals(1, processor.getSkippedBatches());
+
+            // The host has moved on; the same documents again are a new batch
+            CompletionException again = assertThrows(CompletionException.class, () -> processor.process(batch, failing()));
+            assertTrue(again.getMessage().contains("attempt 1 of 2"), again.getMessage());
+        }
+    }
+
+    @Test
+    public void aSucceedingRetryIsNotSkipped() {
+        List<String> batch = batch();
+        try (ChangeFeedBatchProcessor processor = processor(2, 1)) {
+            assertThrows(CompletionException.class, () -> processor.process(batch, failing()));
+            processor.process(batch, document -> {
+            });
+            assertEquals(0, processor.getSkippedBatches());
+        }
+    }
+
+    @Test
+    public void needsAWorker() {
+        assertThrows(IllegalArgumentException.class, () -> processor(0, 0));
+    }
+
+    private static ChangeFeedBatchProcessor processor(int workers, int maxRetryCount) {
+        return new ChangeFeedBatchProcessor("ci", workers, ViewDocument::getId, maxRetryCount, new MetricsRegistry());
+    }
+
+    private static ChangeFeedBatchProcessor.ItemHandler failing() {
+        return document -> {
+            throw new IllegalStateException("downstream unavailable");
+        };
+    }
+
+    /**
+     * VERSIONS changes of each of IDS ids, interleaved: change v of id i has _lsn v * IDS + i + 1.
+     */
+    private static List<String> batch() {
+        List<String> batch = new ArrayList<>();
+        for (int version = 0; version < VERSIONS; version++) {
+            for (int id = 0; id < IDS; id++) {
+                batch.add("{\"id\":\"" + id + "\",\"name\":\"n\",\"_ts\":1700000000,\"_lsn\":" + (version * IDS + id + 1) + "}");
+            }
+        }
+        return batch;
+    }
+
+    private static List<Long> expectedVersions(int id) {
+        List<Long> versions = new ArrayList<>();
+        for (int version = 0; version < VERSIONS; version++) {
+            versions.add((long) (version * IDS + id + 1));
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,154 @@
+package com.functions.cosmos;
+
+import com.functions.metrics.MetricsRegistry;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Feeds a {@link MaterializedView} change-feed batches of 100 documents spread over a few
+ * thousand names, then a round of renames, and prints: the apply rate, the cost of a by-name
+ * query from the view against a scan of every document (the work {@code WHERE f.name = {name}}
+ * does without an index, before any network round trip), and whether the view agrees with the
+ * scan. Finally snapshots a view on disk, applies more batches, and reopens it to check that
+ * the snapshot plus the journal restore the same state. The run fails if a stale version changes
+ * the view, the view disagrees with the scan, or the reopened view differs.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.cosmos.MaterializedViewBenchmark [documents] [names]
+ */
+public class MaterializedViewBenchmark {
+    private static final int BATCH = 100;
+
+    public static void main(String[] args) throws Exception {
+        int documents = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int names = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        Random random = new Random(7);
+        long lsn = 0;
+
+        List<String> feed = new ArrayList<>(documents);
+        for (int i = 0; i < documents; i++) {
+            feed.add(document(i, random.nextInt(names), ++lsn));
+        }
+        MaterializedView view = new MaterializedView("benchmark", null, new MetricsRegistry());
+        long start = System.nanoTime();
+        applyInBatches(view, feed);
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("initial load: %d documents, %d names, %.0f documents/s%n", view.size(), view.names(), documents * 1e9 / elapsed);
+
+        // Rename a tenth of the documents, and deliver an older version of some of them after the rename
+        List<String> renames = new ArrayList<>();
+        List<String> redelivered = new ArrayList<>();
+        for (int i = 0; i < documents / 10; i++) {
+            int id = random.nextInt(documents);
+            renames.add(document(id, random.nextInt(names), ++lsn));
+            redelivered.add(feed.get(id));
+        }
+        start = System.nanoTime();
+        applyInBatches(view, renames);
+        int changedByRedelivery = applyInBatches(view, redelivered);
+        elapsed = System.nanoTime() - start;
+        System.out.printf("renames: %d documents in %.1f ms, redelivered stale versions that changed the view: %d%n",
+            renames.size() + redelivered.size(), elapsed / 1e6, changedByRedelivery);
+        check(changedByRedelivery == 0, changedByRedelivery + " stale versions changed the view");
+
+        List<ViewDocument> all = new ArrayList<>(view.size());
+        for (int i = 0; i < documents; i++) {
+            all.add(view.get(String.valueOf(i)));
+        }
+        int queries = 20_000;
+        long viewCount = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            viewCount += view.query(name(random.nextInt(names))).getCount();
+        }
+        long viewNanos = (System.nanoTime() - start) / queries;
+        int scans = 200;
+        long scanCount = 0;
+        long agreeing = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < scans; i++) {
+            String name = name(random.nextInt(names));
+            long matches = 0;
+            for (ViewDocument document : all) {
+                if (name.equals(document.getName())) {
+                    matches++;
+                }
+            }
+            scanCount += matches;
+            agreeing += matches == view.query(name).getCount() ? 1 : 0;
+        }
+        long scanNanos = (System.nanoTime() - start) / scans;
+        System.out.printf("query by name: view %.2f us, scan %.0f us (%.0fx), avg %d and %d matches, view agrees with the scan for %d of %d names%n",
+            viewNanos / 1e3, scanNanos / 1e3, (double) scanNanos / viewNanos, viewCount / queries, scanCount / scans, agreeing, scans);
+        check(agreeing == scans, "the view disagrees with the scan for " + (scans - agreeing) + " names");
+
+        restart(documents / 4, names);
+    }
+
+    private static void restart(int documents, int names) throws Exception {
+        Path directory = Files.createTempDirectory("materialized-view");
+        Random random = new Random(11);
+        long lsn = 0;
+        MaterializedView view = new MaterializedView("restart", directory, new MetricsRegistry());
+        List<String> feed = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            feed.add(document(i, random.nextInt(names), ++lsn));
+        }
+        applyInBatches(view, feed);
+        long start = System.nanoTime();
+        view.snapshot();
+        long snapshotNanos = System.nanoTime() - start;
+        List<String> afterSnapshot = new ArrayList<>();
+        for (int i = 0; i < documents / 5; i++) {
+            afterSnapshot.add(document(random.nextInt(documents * 2), random.nextInt(names), ++lsn));
+        }
+        applyInBatches(view, afterSnapshot);
+        long journaled = view.getJournaledDocuments();
+        String before = fingerprint(view, names);
+        view.close();
+
+        start = System.nanoTime();
+        MaterializedView reopened = new MaterializedView("restart", directory, new MetricsRegistry());
+        long restoreNanos = System.nanoTime() - start;
+        System.out.printf("restart: snapshot of %d documents took %.1f ms, reopened with %d journaled documents in %.1f ms, same state: %b%n",
+            documents, snapshotNanos / 1e6, journaled, restoreNanos / 1e6, before.equals(fingerprint(reopened, names)));
+        check(before.equals(fingerprint(reopened, names)), "the reopened view differs from the one that was closed");
+        reopened.close();
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition) {
+            throw new AssertionError(failure);
+        }
+    }
+
+    private static int applyInBatches(MaterializedView view, List<String> feed) {
+        int changed = 0;
+        for (int from = 0; from < feed.size(); from += BATCH) {
+            changed += view.apply(feed.subList(from, Math.min(feed.size(), from + BATCH)));
+        }
+        return changed;
+    }
+
+    private static String fingerprint(MaterializedView view, int names) {
+        StringBuilder fingerprint = new StringBuilder().append(view.size()).append('/').append(view.names());
+        for (int i = 0; i < names; i++) {
+            NameView name = view.query(name(i));
+            fingerprint.append(',').append(name.getCount()).append(':').append(name.getLastModifiedSeconds());
+        }
+        return fingerprint.toString();
+    }
+
+    private static String name(int i) {
+        return "name-" + i;
+    }
+
+    private static String document(int id, int name, long lsn) {
+        return "{\"id\":\"" + id + "\",\"name\":\"" + name(name) + "\",\"Description\":\"item " + id
+            + " of the benchmark feed\",\"_rid\":\"r" + id + "\",\"_etag\":\"\\\"" + Long.toHexString(lsn)
+            + "\\\"\",\"_ts\":" + (System.currentTimeMillis() / 1000) + ",\"_lsn\":" + lsn + "}";
+    }
+}
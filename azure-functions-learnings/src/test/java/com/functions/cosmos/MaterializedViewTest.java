@@ -0,0 +1,110 @@
+package com.functions.cosmos;
+
+import com.functions.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MaterializedViewTest {
+    private static final long NOW_SECONDS = System.currentTimeMillis() / 1000;
+
+    private Path directory;
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void movesARenamedDocumentAndIgnoresAnOlderVersion() {
+        MaterializedView view = new MaterializedView("ci", null, new MetricsRegistry());
+        assertEquals(2, view.apply(Arrays.asList(document("1", "joe", 1, NOW_SECONDS), document("2", "joe", 2, NOW_SECONDS))));
+        assertEquals(1, view.apply(Collections.singletonList(document("1", "ann", 3, NOW_SECONDS))));
+        // Redelivered after the rename
+        assertEquals(0, view.apply(Collections.singletonList(document("1", "joe", 1, NOW_SECONDS))));
+
+        assertEquals("ann", view.get("1").getName());
+        assertEquals(Collections.singletonList("2"), ids(view.query("joe")));
+        assertEquals(Collections.singletonList("1"), ids(view.query("ann")));
+        assertEquals(0, view.query("bob").getCount());
+        assertEquals(2, view.names());
+    }
+
+    @Test
+    public void removesASoftDeletedDocument() {
+        MaterializedView view = new MaterializedView("ci", null, new MetricsRegistry());
+        view.apply(Collections.singletonList(document("1", "joe", 1, NOW_SECONDS)));
+        view.apply(Collections.singletonList("{\"id\":\"1\",\"name\":\"joe\",\"deleted\":true,\"_ts\":" + NOW_SECONDS + ",\"_lsn\":2}"));
+        assertNull(view.get("1"));
+        assertEquals(0, view.query("joe").getCount());
+        assertEquals(0, view.names());
+    }
+
+    @Test
+    public void servesOnlyOnceTheLastBatchIsRecent() {
+        MaterializedView view = new MaterializedView("ci", null, new MetricsRegistry());
+        long maxLagMillis = TimeUnit.MINUTES.toMillis(1);
+        assertFalse(view.isCaughtUp(maxLagMillis));
+        view.apply(Collections.singletonList(document("1", "joe", 1, NOW_SECONDS - TimeUnit.HOURS.toSeconds(1))));
+        assertFalse(view.isCaughtUp(maxLagMillis));
+        view.apply(Collections.singletonList(document("2", "joe", 2, NOW_SECONDS)));
+        assertTrue(view.isCaughtUp(maxLagMillis));
+    }
+
+    @Test
+    public void restoresTheSnapshotAndReplaysTheJournal() throws IOException {
+        directory = Files.createTempDirectory("materialized-view");
+        MaterializedView view = new MaterializedView("ci", directory, new MetricsRegistry());
+        assertFalse(view.snapshotIfDue(0));
+        view.apply(Arrays.asList(document("1", "joe", 1, NOW_SECONDS), document("2", "joe", 2, NOW_SECONDS)));
+        assertTrue(view.snapshotIfDue(0));
+        assertEquals(0, view.getJournaledDocuments());
+        view.apply(Arrays.asList(document("2", "ann", 3, NOW_SECONDS), document("3", "bob", 4, NOW_SECONDS)));
+        assertEquals(2, view.getJournaledDocuments());
+        view.close();
+
+        MaterializedView reopened = new MaterializedView("ci", directory, new MetricsRegistry());
+        try {
+            assertEquals(3, reopened.size());
+            assertEquals(Collections.singletonList("1"), ids(reopened.query("joe")));
+            assertEquals(Collections.singletonList("2"), ids(reopened.query("ann")));
+            assertEquals("bob", reopened.get("3").getName());
+            // A restored view has not seen the feed yet
+            assertFalse(reopened.isCaughtUp(TimeUnit.DAYS.toMillis(1)));
+            assertEquals(0, reopened.apply(Collections.singletonList(document("2", "joe", 2, NOW_SECONDS))));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static List<String> ids(NameView view) {
+        List<String> ids = new ArrayList<>();
+        for (ViewDocument document : view.getDocuments()) {
+            ids.add(document.getId());
+        }
+        return ids;
+    }
+
+    private static String document(String id, String name, long lsn, long timestampSeconds) {
+        return "{\"id\":\"" + id + "\",\"name\":\"" + name + "\",\"_ts\":" + timestampSeconds + ",\"_lsn\":" + lsn + "}";
+    }
+}
@@ -0,0 +1,220 @@
+package com.functions.durableLearnings;
+
+import com.functions.ExecutionContextMock;
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.durabletask.Task;
+import com.microsoft.durabletask.TaskOptions;
+import com.microsoft.durabletask.TaskOrchestrationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capitalizes 4, 100 and 1000 cities with one Capitalize call per city, all in flight at once,
+ * and with CitiesBatched, which sends chunks to CapitalizeBatch.
+ * <p>
+ * The history is counted by running each orchestrator on a {@link FakeOrchestrationContext}
+ * that records the events the durable extension would store: ExecutionStarted and
+ * ExecutionCompleted, and a TaskScheduled and a TaskCompleted per activity call, each
+ * {@link #EVENT_OVERHEAD_BYTES} plus its JSON input or output.
+ * <p>
+ * The end-to-end latency is simulated, because the fake context has no queues: each activity
+ * message takes {@link #QUEUE_HOP_MILLIS} to reach a worker and its result as long to come
+ * back, {@link #ACTIVITY_WORKERS} activities run at once, each invocation costs
+ * {@link #INVOCATION_MILLIS} of host overhead plus the real activity, and every orchestrator
+ * episode replays the whole history at {@link #REPLAY_MICROS_PER_EVENT} per event, taking all
+ * results that have arrived since the last one.
+ * <p>
+ * The run fails if the batched result differs from the per-item one, if CitiesBatched makes
+ * other than one activity call per chunk, or if batching does not shrink the history and the
+ * events replayed.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.durableLearnings.ActivityBatchingBenchmark
+ */
+public class ActivityBatchingBenchmark {
+    private static final int EVENT_OVERHEAD_BYTES = 200;
+    private static final long QUEUE_HOP_MILLIS = 5;
+    private static final int ACTIVITY_WORKERS = 8;
+    private static final long INVOCATION_MILLIS = 1;
+    private static final long REPLAY_MICROS_PER_EVENT = 10;
+    private static final String[] CITIES = { "Tokyo", "London", "Seattle", "Austin", "Nairobi", "Lima", "Oslo", "Chennai" };
+
+    private final DurableFunction durable = new DurableFunction();
+    private final ExecutionContext capitalizeContext = new ExecutionContextMock("Capitalize");
+    private final ExecutionContext capitalizeBatchContext = new ExecutionContextMock("CapitalizeBatch");
+
+    public static void main(String[] args) throws Exception {
+        ActivityBatchingBenchmark benchmark = new ActivityBatchingBenchmark();
+        // Warm up the activities and the simulation's threads
+        benchmark.simulate(cities(100), false);
+        benchmark.simulate(cities(100), true);
+        for (int size : new int[]{4, 100, 1000}) {
+            benchmark.compare(cities(size));
+        }
+    }
+
+    private void compare(String[] cities) throws Exception {
+        HistoryRecordingContext perItem = new HistoryRecordingContext(cities);
+        perItem.activity("Capitalize", name -> durable.capitalize((String) name, capitalizeContext));
+        String perItemResult = perItemOrchestrator(perItem);
+        perItem.completed(perItemResult);
+
+        HistoryRecordingContext batched = new HistoryRecordingContext(cities);
+        batched.activity("CapitalizeBatch", names -> durable.capitalizeBatch((String[]) names, capitalizeBatchContext));
+        String batchedResult = durable.citiesBatchedOrchestrator(batched);
+        batched.completed(batchedResult);
+        check(perItemResult.equals(batchedResult), "Batched result differs from the per-item result");
+
+        Simulation perItemRun = simulate(cities, false);
+        Simulation batchedRun = simulate(cities, true);
+        int chunks = DurableFunction.chunks(Arrays.asList(cities)).size();
+        System.out.printf("%4d cities, %3d chunks%n", cities.length, chunks);
+        print("per item", perItem, perItemRun);
+        print("batched", batched, batchedRun);
+        check(batched.getActivityCalls() == chunks, batched.getActivityCalls() + " CapitalizeBatch calls for " + chunks + " chunks");
+        check(batched.events < perItem.events && batched.bytes < perItem.bytes,
+            "batched history of " + batched.events + " events, " + batched.bytes + " bytes against " + perItem.events + " events, " + perItem.bytes + " bytes");
+        check(batchedRun.replayedEvents < perItemRun.replayedEvents,
+            "batched replayed " + batchedRun.replayedEvents + " events against " + perItemRun.replayedEvents);
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition) {
+            throw new AssertionError(failure);
+        }
+    }
+
+    private static void print(String label, HistoryRecordingContext history, Simulation run) {
+        System.out.printf("  %-8s %4d activity calls, %5d history events, %8d history bytes, %3d episodes replaying %7d events, end to end %7.1f ms%n",
+            label, history.getActivityCalls(), history.events, history.bytes, run.episodes, run.replayedEvents, run.elapsedNanos / 1e6);
+    }
+
+    /**
+     * The per-item design at the same scale: one Capitalize call per city, all in flight at once.
+     */
+    private static String perItemOrchestrator(TaskOrchestrationContext ctx) {
+        List<Task<String>> tasks = new ArrayList<>();
+        for (String city : ctx.getInput(String[].class)) {
+            tasks.add(ctx.callActivity("Capitalize", city, String.class));
+        }
+        return String.join(", ", ctx.allOf(tasks).await());
+    }
+
+    private Simulation simulate(String[] cities, boolean batch) throws Exception {
+        List<Callable<Object>> messages = new ArrayList<>();
+        if (batch) {
+            for (List<String> chunk : DurableFunction.chunks(Arrays.asList(cities))) {
+                String[] input = chunk.toArray(new String[0]);
+                messages.add(() -> durable.capitalizeBatch(input, capitalizeBatchContext));
+            }
+        } else {
+            for (String city : cities) {
+                messages.add(() -> durable.capitalize(city, capitalizeContext));
+            }
+        }
+        ScheduledExecutorService queues = Executors.newScheduledThreadPool(2);
+        ExecutorService workers = Executors.newFixedThreadPool(ACTIVITY_WORKERS);
+        BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+        Simulation run = new Simulation();
+        try {
+            long start = System.nanoTime();
+            // First episode: ExecutionStarted, then a TaskScheduled per message
+            int history = 2;
+            run.replay(history);
+            history += messages.size();
+            for (Callable<Object> message : messages) {
+                queues.schedule(() -> workers.submit(() -> {
+                    TimeUnit.MILLISECONDS.sleep(INVOCATION_MILLIS);
+                    Object result = message.call();
+                    queues.schedule(() -> results.add(result), QUEUE_HOP_MILLIS, TimeUnit.MILLISECONDS);
+                    return result;
+                }), QUEUE_HOP_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            int completed = 0;
+            List<Object> arrived = new ArrayList<>();
+            while (completed < messages.size()) {
+                arrived.add(results.take());
+                results.drainTo(arrived);
+                completed += arrived.size();
+                // OrchestratorStarted plus a TaskCompleted per result, then the whole history replays
+                history += 1 + arrived.size();
+                arrived.clear();
+                run.replay(history);
+            }
+            run.elapsedNanos = System.nanoTime() - start;
+            return run;
+        } finally {
+            queues.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    private static String[] cities(int count) {
+        String[] cities = new String[count];
+        for (int i = 0; i < count; i++) {
+            cities[i] = CITIES[i % CITIES.length] + (i < CITIES.length ? "" : "-" + i);
+        }
+        return cities;
+    }
+
+    private static int jsonBytes(Object value) {
+        if (value instanceof String[]) {
+            int bytes = 2;
+            for (String element : (String[]) value) {
+                bytes += (int) DurableFunction.jsonBytes(element);
+            }
+            return bytes;
+        }
+        return value == null ? 4 : String.valueOf(value).length() + 2;
+    }
+
+    private static final class Simulation {
+        int episodes;
+        long replayedEvents;
+        long elapsedNanos;
+
+        void replay(int events) throws InterruptedException {
+            episodes++;
+            replayedEvents += events;
+            TimeUnit.MICROSECONDS.sleep(REPLAY_MICROS_PER_EVENT * events);
+        }
+    }
+
+    /**
+     * Counts the events and bytes the history of the orchestration would hold.
+     */
+    private static final class HistoryRecordingContext extends FakeOrchestrationContext {
+        int events;
+        long bytes;
+
+        HistoryRecordingContext(String[] input) {
+            super(input);
+            record(input);
+        }
+
+        void completed(Object output) {
+            record(output);
+        }
+
+        @Override
+        public <V> Task<V> callActivity(String name, Object input, TaskOptions options, Class<V> returnType) {
+            Task<V> task = super.callActivity(name, input, options, returnType);
+            record(input);
+            record(task.await());
+            return task;
+        }
+
+        private void record(Object payload) {
+            events++;
+            bytes += EVENT_OVERHEAD_BYTES + jsonBytes(payload);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.functions.durableLearnings;
+
+import com.functions.ExecutionContextMock;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DurableFunctionTest {
+    private final DurableFunction durable = new DurableFunction();
+
+    @Test
+    public void keepsASmallInputInOneChunk() {
+        List<String> cities = Arrays.asList("Tokyo", "London", "Seattle", "Austin");
+        assertEquals(Collections.singletonList(cities), DurableFunction.chunks(cities));
+        assertEquals(Collections.emptyList(), DurableFunction.chunks(Collections.emptyList()));
+    }
+
+    @Test
+    public void spreadsALargeInputOverAtMostTheParallelChunksInOrder() {
+        List<String> names = names(1000, "city-");
+        List<List<String>> chunks = DurableFunction.chunks(names);
+        assertEquals(DurableFunction.MAX_PARALLEL_CHUNKS, chunks.size());
+        assertEquals(names, concat(chunks));
+
+        // 100 names would make chunks of 7, below the minimum worth a round trip
+        List<List<String>> small = DurableFunction.chunks(names(100, "city-"));
+        assertEquals(13, small.size());
+        assertEquals(DurableFunction.MIN_CHUNK_ITEMS, small.get(0).size());
+    }
+
+    @Test
+    public void closesAChunkBeforeItsJsonGetsTooLarge() {
+        String large = repeat('x', 10 * 1024);
+        String huge = repeat('y', DurableFunction.MAX_CHUNK_BYTES + 1);
+        List<String> names = Arrays.asList(large, large, large, large, huge, "Tokyo");
+        List<List<String>> chunks = DurableFunction.chunks(names);
+        assertEquals(names, concat(chunks));
+        assertEquals(Arrays.asList(3, 1, 1, 1), sizes(chunks));
+        for (List<String> chunk : chunks.subList(0, 2)) {
+            long bytes = 2;
+            for (String name : chunk) {
+                bytes += DurableFunction.jsonBytes(name);
+            }
+            assertTrue(bytes <= DurableFunction.MAX_CHUNK_BYTES, bytes + " bytes");
+        }
+    }
+
+    @Test
+    public void countsJsonBytesOfEscapedAndNonAsciiNames() {
+        assertEquals(3 + 5, DurableFunction.jsonBytes("Tokyo"));
+        assertEquals(3 + 4, DurableFunction.jsonBytes("a\"b"));
+        assertEquals(3 + 6, DurableFunction.jsonBytes("\n"));
+        assertEquals(3 + 7, DurableFunction.jsonBytes("S\u00e3o Pa"));
+        assertEquals(3 + 3, DurableFunction.jsonBytes("\u6771"));
+        assertEquals(3 + 4, DurableFunction.jsonBytes(new String(Character.toChars(0x1F600))));
+    }
+
+    @Test
+    public void citiesBatchedCapitalizesItsInputInOrder() {
+        ExecutionContextMock context = new ExecutionContextMock("CapitalizeBatch");
+        String[] cities = names(20, "city-").toArray(new String[0]);
+        FakeOrchestrationContext orchestration = new FakeOrchestrationContext(cities)
+            .activity("CapitalizeBatch", names -> durable.capitalizeBatch((String[]) names, context));
+        List<String> expected = new ArrayList<>();
+        for (String city : cities) {
+            expected.add(city.toUpperCase());
+        }
+        assertEquals(String.join(", ", expected), durable.citiesBatchedOrchestrator(orchestration));
+        assertEquals(DurableFunction.chunks(Arrays.asList(cities)).size(), orchestration.getActivityCalls());
+    }
+
+    @Test
+    public void citiesBatchedWithoutInputCapitalizesTheFourCities() {
+        ExecutionContextMock context = new ExecutionContextMock("CapitalizeBatch");
+        FakeOrchestrationContext orchestration = new FakeOrchestrationContext(null)
+            .activity("CapitalizeBatch", names -> durable.capitalizeBatch((String[]) names, context));
+        assertEquals("TOKYO, LONDON, SEATTLE, AUSTIN", durable.citiesBatchedOrchestrator(orchestration));
+        assertEquals(1, orchestration.getActivityCalls());
+    }
+
+    private static List<String> names(int count, String prefix) {
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(prefix + i);
+        }
+        return names;
+    }
+
+    private static List<String> concat(List<List<String>> chunks) {
+        List<String> all = new ArrayList<>();
+        chunks.forEach(all::addAll);
+        return all;
+    }
+
+    private static List<Integer> sizes(List<List<String>> chunks) {
+        List<Integer> sizes = new ArrayList<>();
+        for (List<String> chunk : chunks) {
+            sizes.add(chunk.size());
+        }
+        return sizes;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
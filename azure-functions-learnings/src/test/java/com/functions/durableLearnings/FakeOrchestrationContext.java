@@ -0,0 +1,142 @@
+package com.functions.durableLearnings;
+
+import com.microsoft.durabletask.CompletedTask;
+import com.microsoft.durabletask.Task;
+import com.microsoft.durabletask.TaskOptions;
+import com.microsoft.durabletask.TaskOrchestrationContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Runs an orchestrator in-process, without the durable task sidecar or replays: every activity
+ * is called synchronously through the function registered for its name and returned as an
+ * already completed task.
+ */
+public class FakeOrchestrationContext implements TaskOrchestrationContext {
+    private final Map<String, Function<Object, Object>> activities = new HashMap<>();
+    private final Object input;
+    private Object output;
+    private Object customStatus;
+    private int activityCalls;
+
+    public FakeOrchestrationContext(Object input) {
+        this.input = input;
+    }
+
+    public FakeOrchestrationContext activity(String name, Function<Object, Object> activity) {
+        activities.put(name, activity);
+        return this;
+    }
+
+    public int getActivityCalls() {
+        return activityCalls;
+    }
+
+    public Object getOutput() {
+        return output;
+    }
+
+    public Object getCustomStatus() {
+        return customStatus;
+    }
+
+    @Override
+    public String getName() {
+        return "fake";
+    }
+
+    @Override
+    public <V> V getInput(Class<V> targetType) {
+        return targetType.cast(input);
+    }
+
+    @Override
+    public String getInstanceId() {
+        return "fake-instance";
+    }
+
+    @Override
+    public Instant getCurrentInstant() {
+        return Instant.now();
+    }
+
+    @Override
+    public boolean getIsReplaying() {
+        return false;
+    }
+
+    @Override
+    public <V> Task<List<V>> allOf(List<Task<V>> tasks) {
+        List<V> results = new ArrayList<>(tasks.size());
+        for (Task<V> task : tasks) {
+            results.add(task.await());
+        }
+        return new CompletedTask<>(results);
+    }
+
+    @Override
+    public Task<Task<?>> anyOf(List<Task<?>> tasks) {
+        return new CompletedTask<Task<?>>(tasks.get(0));
+    }
+
+    @Override
+    public Task<Void> createTimer(Duration delay) {
+        return new CompletedTask<>(null);
+    }
+
+    @Override
+    public void complete(Object output) {
+        this.output = output;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V> Task<V> callActivity(String name, Object input, TaskOptions options, Class<V> returnType) {
+        Function<Object, Object> activity = activities.get(name);
+        if (activity == null) {
+            throw new IllegalArgumentException("No activity registered for " + name);
+        }
+        activityCalls++;
+        try {
+            // Primitive return types such as int.class cannot cast, the boxed value is what await() returns
+            return new CompletedTask<>((V) activity.apply(input));
+        } catch (RuntimeException e) {
+            return CompletedTask.failed(e);
+        }
+    }
+
+    @Override
+    public void continueAsNew(Object input, boolean preserveUnprocessedEvents) {
+        throw new UnsupportedOperationException("continueAsNew");
+    }
+
+    @Override
+    public void sendEvent(String instanceId, String eventName, Object eventData) {
+    }
+
+    @Override
+    public <V> Task<V> callSubOrchestrator(String name, Object input, String instanceId, TaskOptions options, Class<V> returnType) {
+        throw new UnsupportedOperationException("callSubOrchestrator " + name);
+    }
+
+    @Override
+    public <V> Task<V> waitForExternalEvent(String name, Duration timeout, Class<V> dataType) {
+        throw new UnsupportedOperationException("waitForExternalEvent " + name);
+    }
+
+    @Override
+    public void setCustomStatus(Object customStatus) {
+        this.customStatus = customStatus;
+    }
+
+    @Override
+    public void clearCustomStatus() {
+        this.customStatus = null;
+    }
+}
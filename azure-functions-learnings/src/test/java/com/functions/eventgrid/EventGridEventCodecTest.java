@@ -0,0 +1,50 @@
+package com.functions.eventgrid;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventGridEventCodecTest {
+    private static final String EVENT = "{\"id\":\"1\",\"eventType\":\"test-event-1\",\"subject\":\"s\","
+        + "\"eventTime\":\"2020-01-31T10:10:10+00:00\",\"dataVersion\":\"1.0\",\"data\":{\"a\":[1,2]}}";
+
+    @Test
+    public void roundTripsAnEvent() throws IOException {
+        EventGridEvent event = EventGridEventCodec.read(EVENT);
+        assertEquals("1", event.getId());
+        assertEquals("test-event-1", event.getEventType());
+        assertEquals(EventTimeClock.parseMillis("2020-01-31T10:10:10+00:00"), event.getEventTimeMillis());
+        assertEquals("{\"a\":[1,2]}", event.getRawData());
+
+        EventGridEvent again = EventGridEventCodec.read(EventGridEventCodec.toJson(event));
+        assertEquals(event.getEventTimeMillis(), again.getEventTimeMillis());
+        assertEquals(event.getRawData(), again.getRawData());
+    }
+
+    @Test
+    public void rejectsAnEventWithoutEventTime() {
+        String json = "{\"id\":\"2\",\"eventType\":\"test-event-1\",\"subject\":\"s\",\"dataVersion\":\"1.0\"}";
+        IOException e = assertThrows(IOException.class, () -> EventGridEventCodec.read(json));
+        assertTrue(e.getMessage().contains("eventTime"), e.getMessage());
+    }
+
+    @Test
+    public void stopsABatchAtTheEventWithoutEventTime() {
+        EventGridBatchParser parser = EventGridBatchParser.parse("[" + EVENT + ",{\"id\":\"2\",\"eventType\":\"x\"}]");
+        assertEquals("1", parser.next().getId());
+        assertThrows(UncheckedIOException.class, parser::next);
+    }
+
+    @Test
+    public void parsesASingleEventDelivery() {
+        EventGridBatchParser parser = EventGridBatchParser.parse(EVENT);
+        assertEquals("1", parser.next().getId());
+        assertFalse(parser.hasNext());
+    }
+}
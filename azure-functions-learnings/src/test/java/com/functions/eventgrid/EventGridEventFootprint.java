@@ -0,0 +1,144 @@
+package com.functions.eventgrid;
+
+import com.functions.json.JsonStreamReader;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retained bytes/event of the compact {@link EventGridEvent} against the previous mutable
+ * all-String model, {@link LegacyEvent}. Throughput and allocation per event are measured by the
+ * JMH EventGridEventCodecBenchmark under src/jmh/java, which uses the same events. The run fails
+ * if the two models decode the event differently or the compact one retains more per event.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.eventgrid.EventGridEventFootprint
+ */
+public class EventGridEventFootprint {
+    static final String EVENT = "{\"id\":\"b3e1c7a2-5d1f-4c8e-9a6b-0f2d4e6a8c10\",\"topic\":\"/subscriptions/x/resourceGroups/rg/providers/Microsoft.EventGrid/topics/t\","
+        + "\"subject\":\"/blobServices/default/containers/ingest/blobs/file-0001.json\",\"eventType\":\"Microsoft.Storage.BlobCreated\","
+        + "\"eventTime\":\"2020-01-31T10:10:10.1234567Z\",\"data\":{\"api\":\"PutBlob\",\"contentType\":\"application/json\",\"contentLength\":524288,"
+        + "\"url\":\"https://account.blob.core.windows.net/ingest/file-0001.json\"},\"dataVersion\":\"1.0\",\"metadataVersion\":\"1\"}";
+
+    static final int EVENTS_PER_DELIVERY = 100;
+
+    public static void main(String[] args) throws Exception {
+        LegacyEvent legacy = LegacyEvent.read(new JsonStreamReader(EVENT));
+        EventGridEvent compact = EventGridEventCodec.read(EVENT);
+        check(legacy.id.equals(compact.getId()) && legacy.eventType.equals(compact.getEventType()) && legacy.subject.equals(compact.getSubject())
+            && legacy.dataVersion.equals(compact.getDataVersion()) && legacy.data.equals(compact.getRawData()),
+            "the compact event " + compact + " differs from the legacy one " + LegacyEvent.writeReflectively(legacy));
+        double legacyBytes = retained("retained legacy", 200_000, () -> LegacyEvent.read(new JsonStreamReader(EVENT)));
+        double compactBytes = retained("retained compact", 200_000, () -> EventGridEventCodec.read(EVENT));
+        check(compactBytes < legacyBytes, String.format("the compact event retains %.0f bytes, the legacy one %.0f", compactBytes, legacyBytes));
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition) {
+            throw new AssertionError(failure);
+        }
+    }
+
+    static String delivery() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < EVENTS_PER_DELIVERY; i++) {
+            json.append(i == 0 ? "" : ",").append(EVENT);
+        }
+        return json.append(']').toString();
+    }
+
+    @FunctionalInterface
+    private interface Op {
+        Object run() throws Exception;
+    }
+
+    /**
+     * @return retained bytes per event
+     */
+    private static double retained(String name, int events, Op op) throws Exception {
+        List<Object> keep = new ArrayList<>(events);
+        long before = usedHeap();
+        for (int i = 0; i < events; i++) {
+            keep.add(op.run());
+        }
+        long after = usedHeap();
+        double bytes = (double) (after - before) / keep.size();
+        System.out.printf("%-30s %8.0f bytes/event%n", name, bytes);
+        return bytes;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The model before the compact event: every member a separate String, data decoded eagerly.
+     */
+    static final class LegacyEvent {
+        private String id;
+        private String eventType;
+        private String subject;
+        private String eventTime;
+        private String dataVersion;
+        private String data;
+
+        static LegacyEvent read(JsonStreamReader reader) throws Exception {
+            LegacyEvent event = new LegacyEvent();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        event.id = reader.nextString();
+                        break;
+                    case "eventType":
+                        event.eventType = reader.nextString();
+                        break;
+                    case "subject":
+                        event.subject = reader.nextString();
+                        break;
+                    case "eventTime":
+                        event.eventTime = reader.nextString();
+                        break;
+                    case "dataVersion":
+                        event.dataVersion = reader.nextString();
+                        break;
+                    case "data":
+                        event.data = reader.peek() == JsonStreamReader.Token.STRING ? reader.nextString() : reader.nextRawValue();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return event;
+        }
+
+        /**
+         * Field-by-field reflective serialization, as a generic JSON library would do it.
+         */
+        static String writeReflectively(Object event) throws IllegalAccessException {
+            StringBuilder out = new StringBuilder("{");
+            for (Field field : event.getClass().getDeclaredFields()) {
+                field.setAccessible(true);
+                if (out.length() > 1) {
+                    out.append(',');
+                }
+                JsonStreamReader.writeQuoted(out, field.getName());
+                out.append(':');
+                Object value = field.get(event);
+                if (value == null) {
+                    out.append("null");
+                } else {
+                    JsonStreamReader.writeQuoted(out, value.toString());
+                }
+            }
+            return out.append('}').toString();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.functions.eventgrid;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Events per second published through {@link EventGridPublisher} to a local HTTP stand-in for a
+ * topic, one event per request versus shared batches.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.eventgrid.EventGridPublisherBenchmark [threads] [eventsPerThread]
+ */
+public class EventGridPublisherBenchmark {
+    private static final long TOPIC_ROUND_TRIP_MILLIS = 2;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int eventsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        LongAdder requests = new LongAdder();
+        HttpServer topic = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        topic.createContext("/api/events", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] discard = new byte[8192];
+                while (in.read(discard) != -1) {
+                    // discard
+                }
+            }
+            requests.increment();
+            try {
+                Thread.sleep(TOPIC_ROUND_TRIP_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        topic.setExecutor(Executors.newFixedThreadPool(16));
+        topic.start();
+        String endpoint = "http://127.0.0.1:" + topic.getAddress().getPort() + "/api/events";
+
+        try {
+            // maxBatchBytes below the smallest event pair forces one event per request
+            run("one event per request", new EventGridPublisher(new HttpEventGridTransport(endpoint, "key"), 300, 1, 16),
+                threads, eventsPerThread, requests);
+            run("batched, linger 5 ms", new EventGridPublisher(new HttpEventGridTransport(endpoint, "key"), EventGridPublisher.MAX_BATCH_BYTES, 5, 4),
+                threads, eventsPerThread, requests);
+        } finally {
+            topic.stop(0);
+            ((java.util.concurrent.ExecutorService) topic.getExecutor()).shutdownNow();
+        }
+    }
+
+    private static void run(String name, EventGridPublisher publisher, int threads, int eventsPerThread, LongAdder requests)
+        throws InterruptedException {
+        EventGridEventTemplate template = new EventGridEventTemplate("bench-event", "/bench/subject", "1.0");
+        requests.reset();
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(() -> {
+                List<CompletableFuture<Void>> sent = new ArrayList<>(eventsPerThread);
+                for (int i = 0; i < eventsPerThread; i++) {
+                    sent.add(publisher.publish(template, "payload " + thread + "-" + i));
+                }
+                CompletableFuture.allOf(sent.toArray(new CompletableFuture<?>[0])).join();
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        publisher.close();
+        if (publisher.getEventsPublished() != (long) threads * eventsPerThread || publisher.getRequestsSent() != requests.sum()) {
+            throw new AssertionError(name + ": published " + publisher.getEventsPublished() + " of " + (long) threads * eventsPerThread
+                + " events in " + publisher.getRequestsSent() + " requests, the topic received " + requests.sum());
+        }
+
+        System.out.printf("%-24s %10.0f events/s  requests=%d  failed=%d  elapsed=%d ms%n",
+            name, publisher.getEventsPublished() / (elapsed / 1e9), requests.sum(),
+            publisher.getRequestsFailed(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+}
@@ -0,0 +1,112 @@
+package com.functions.eventgrid;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventGridPublisherTest {
+    private static final EventGridEventTemplate TEMPLATE = new EventGridEventTemplate("test-event", "/test", "1.0");
+
+    @Test
+    public void sharesOneRequestBetweenEventsOfTheSameBatch() throws Exception {
+        List<byte[]> posts = Collections.synchronizedList(new ArrayList<>());
+        try (EventGridPublisher publisher = new EventGridPublisher((json, count) -> posts.add(json), 60_000)) {
+            List<CompletableFuture<Void>> sent = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                sent.add(publisher.publish(TEMPLATE, "event \"" + i + "\""));
+            }
+            publisher.flush().get(5, TimeUnit.SECONDS);
+            CompletableFuture.allOf(sent.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+            assertEquals(1, posts.size());
+            assertEquals(10, publisher.getEventsPublished());
+            List<EventGridEvent> events = parse(posts.get(0));
+            assertEquals(10, events.size());
+            assertEquals("event \"3\"", events.get(3).getData());
+        }
+    }
+
+    @Test
+    public void sealsABatchBeforeItWouldExceedTheSizeLimit() throws Exception {
+        List<byte[]> posts = Collections.synchronizedList(new ArrayList<>());
+        try (EventGridPublisher publisher = new EventGridPublisher((json, count) -> posts.add(json), 1024, 60_000, 1)) {
+            List<CompletableFuture<Void>> sent = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                sent.add(publisher.publish(TEMPLATE, "payload-" + i));
+            }
+            publisher.flush();
+            CompletableFuture.allOf(sent.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        }
+        assertTrue(posts.size() > 1);
+        int events = 0;
+        for (byte[] post : posts) {
+            assertTrue(post.length <= 1024, post.length + " bytes");
+            events += parse(post).size();
+        }
+        assertEquals(20, events);
+    }
+
+    @Test
+    public void retriesAThrottledPost() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        EventGridTransport throttled = (json, count) -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new EventGridTopicException(429, "Too many requests");
+            }
+        };
+        try (EventGridPublisher publisher = new EventGridPublisher(throttled, 60_000)) {
+            CompletableFuture<Void> sent = publisher.publish(TEMPLATE, "a");
+            publisher.flush();
+            sent.get(5, TimeUnit.SECONDS);
+            assertEquals(2, attempts.get());
+            assertEquals(1, publisher.getRetries());
+        }
+    }
+
+    @Test
+    public void failsARejectedPostWithoutRetrying() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        EventGridTransport unauthorized = (json, count) -> {
+            attempts.incrementAndGet();
+            throw new EventGridTopicException(401, "Unauthorized");
+        };
+        try (EventGridPublisher publisher = new EventGridPublisher(unauthorized, 60_000)) {
+            CompletableFuture<Void> sent = publisher.publish(TEMPLATE, "a");
+            publisher.flush();
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> sent.get(5, TimeUnit.SECONDS));
+            assertTrue(failure.getCause() instanceof EventGridTopicException);
+            assertEquals(1, attempts.get());
+            assertEquals(1, publisher.getRequestsFailed());
+        }
+    }
+
+    @Test
+    public void rejectsAnEventLargerThanABatch() {
+        try (EventGridPublisher publisher = new EventGridPublisher((json, count) -> {
+            throw new IOException("not expected");
+        }, 256, 60_000, 1)) {
+            char[] data = new char[300];
+            Arrays.fill(data, 'x');
+            CompletableFuture<Void> sent = publisher.publish(TEMPLATE, new String(data));
+            assertTrue(sent.isCompletedExceptionally());
+        }
+    }
+
+    private static List<EventGridEvent> parse(byte[] post) {
+        List<EventGridEvent> events = new ArrayList<>();
+        EventGridBatchParser.parse(new String(post, StandardCharsets.UTF_8)).forEachRemaining(events::add);
+        return events;
+    }
+}
@@ -0,0 +1,106 @@
+package com.functions.execution;
+
+import com.functions.local.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * What {@link FunctionExecutor} buys a function body that makes several independent blocking
+ * calls. The harness plays the Java worker: {@link #INVOCATION_THREADS} invocation threads run
+ * the body back to back, so the concurrency between invocations is the host's and the same in
+ * every row. Each invocation makes {@code fanOut} lookups that block for {@code ioMillis};
+ * inline they run one after another on the invocation thread, through
+ * {@link FunctionExecutor#invokeAll(List)} they overlap on the executor's threads.
+ * <p>
+ * With a fan-out of 1 the executor can only add its thread hop to the handler's own latency,
+ * which is why handlers with a single blocking call, or none, run inline. On a JDK without
+ * virtual threads the "virtual" row runs on the platform fallback, which the printed mode shows.
+ * <p>
+ * The run fails if an invocation gets its lookups' results out of order or is not recorded, or
+ * if, from a fan-out of 8, the platform(256) and virtual rows do not at least halve the inline
+ * median latency.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.execution.FunctionExecutorBenchmark [ioMillis] [invocations]
+ */
+public class FunctionExecutorBenchmark {
+    private static final int INVOCATION_THREADS = 16;
+
+    public static void main(String[] args) throws Exception {
+        long ioMillis = args.length > 0 ? Long.parseLong(args[0]) : 10;
+        int invocations = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        System.out.println("virtual threads supported: " + FunctionExecutor.virtualThreadsSupported());
+
+        for (int fanOut : new int[]{1, 8, 32}) {
+            long inline = run("inline", FunctionExecutor.inline(), fanOut, ioMillis, invocations);
+            run("platform(16)", FunctionExecutor.platform(16), fanOut, ioMillis, invocations);
+            long platform = run("platform(256)", FunctionExecutor.platform(256), fanOut, ioMillis, invocations);
+            long virtual = run("virtual", FunctionExecutor.virtual(256), fanOut, ioMillis, invocations);
+            if (fanOut >= 8) {
+                check(platform < inline / 2 && virtual < inline / 2, String.format("fan-out %d: p50 %.1f ms inline, %.1f ms platform(256), %.1f ms virtual",
+                    fanOut, inline / 1e6, platform / 1e6, virtual / 1e6));
+            }
+        }
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition) {
+            throw new AssertionError(failure);
+        }
+    }
+
+    /**
+     * @return the median invocation latency in nanoseconds
+     */
+    private static long run(String label, FunctionExecutor executor, int fanOut, long ioMillis, int invocations) throws Exception {
+        // Fewer invocations for the slow inline rows, so each row takes about the same time
+        int total = executor.getMode() == FunctionExecutor.Mode.INLINE ? Math.max(INVOCATION_THREADS, invocations / fanOut) : invocations;
+        List<Callable<String>> lookups = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < fanOut; i++) {
+            String key = "key-" + i;
+            keys.add(key);
+            lookups.add(() -> {
+                TimeUnit.MILLISECONDS.sleep(ioMillis);
+                return key;
+            });
+        }
+        AtomicInteger remaining = new AtomicInteger(total);
+        AtomicInteger outOfOrder = new AtomicInteger();
+        LatencyHistogram[] latencies = new LatencyHistogram[INVOCATION_THREADS];
+        CountDownLatch done = new CountDownLatch(INVOCATION_THREADS);
+        long start = System.nanoTime();
+        for (int t = 0; t < INVOCATION_THREADS; t++) {
+            LatencyHistogram histogram = latencies[t] = new LatencyHistogram();
+            Thread invocationThread = new Thread(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    long invoked = System.nanoTime();
+                    if (!executor.invokeAll(lookups).equals(keys)) {
+                        outOfOrder.incrementAndGet();
+                    }
+                    histogram.record(System.nanoTime() - invoked);
+                }
+                done.countDown();
+            }, "invocation-" + t);
+            invocationThread.setDaemon(true);
+            invocationThread.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        executor.close();
+        LatencyHistogram merged = new LatencyHistogram();
+        for (LatencyHistogram histogram : latencies) {
+            merged.merge(histogram);
+        }
+        System.out.printf("fan-out %3d  %-14s %-9s %8.0f invocations/s  p50 %7.1f ms  p99 %7.1f ms  (lookups block %d ms)%n",
+            fanOut, label, executor.getMode(), merged.count() * 1e9 / elapsed,
+            merged.percentile(50) / 1e6, merged.percentile(99) / 1e6, ioMillis);
+        check(outOfOrder.get() == 0, label + ": " + outOfOrder.get() + " invocations got their results out of order");
+        check(merged.count() == total, label + ": " + merged.count() + " of " + total + " invocations recorded");
+        return merged.percentile(50);
+    }
+}
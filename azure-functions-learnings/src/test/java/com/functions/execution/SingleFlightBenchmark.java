@@ -0,0 +1,87 @@
+package com.functions.execution;
+
+import com.functions.local.LatencyHistogram;
+import com.functions.local.LoadGenerator;
+import com.functions.metrics.MetricsRegistry;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thundering herd on a name query: 200 closed-loop clients, 80% of them asking for one
+ * trending name and the rest spread over 1000 names, against a backend whose query takes
+ * 20 ms and which serves at most 16 queries at once (the share of the container's throughput
+ * the endpoint gets). Prints the backend calls, throughput and latency when every request
+ * runs its own query and when identical requests share one through {@link SingleFlight}. The
+ * run fails if a request fails, if nothing is coalesced, or if sharing does not cut the
+ * backend queries per request at least in half.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.execution.SingleFlightBenchmark [seconds]
+ */
+public class SingleFlightBenchmark {
+    private static final int CLIENTS = 200;
+    private static final int BACKEND_CONCURRENCY = 16;
+    private static final long QUERY_MILLIS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        double direct = run(false, seconds);
+        double coalesced = run(true, seconds);
+        check(coalesced <= direct / 2, String.format("singleflight made %.3f backend queries per request against %.3f direct", coalesced, direct));
+    }
+
+    /**
+     * @return backend queries per request
+     */
+    private static double run(boolean coalesce, int seconds) throws Exception {
+        Backend backend = new Backend();
+        SingleFlight<List<String>, List<String>> flights = new SingleFlight<>("benchmark", TimeUnit.SECONDS.toMillis(5), new MetricsRegistry());
+        LoadGenerator.Result result = LoadGenerator.closedLoop(CLIENTS).run(sequence -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String name = random.nextInt(100) < 80 ? "trending" : "name-" + random.nextInt(1000);
+            List<String> items = coalesce
+                ? flights.call(SingleFlight.key("CosmosDBInputQueryPOJOList", name), () -> backend.query(name))
+                : backend.query(name);
+            if (items.isEmpty()) {
+                throw new IllegalStateException("No items for " + name);
+            }
+        }, TimeUnit.SECONDS.toNanos(seconds));
+        LatencyHistogram latencies = result.getLatencies();
+        System.out.printf("%-12s %7.0f requests/s, %6d backend queries (%5.1f%% of requests), %6d coalesced, p50 %6.1f ms, p99 %6.1f ms, errors %d%n",
+            coalesce ? "singleflight" : "direct", result.getThroughput(), backend.calls.get(), 100.0 * backend.calls.get() / latencies.count(),
+            flights.getCoalesced(), latencies.percentile(50) / 1e6, latencies.percentile(99) / 1e6, result.getErrors());
+        check(result.getErrors() == 0, result.getErrors() + " requests failed");
+        check(!coalesce || flights.getCoalesced() > 0, "no request shared a query in flight");
+        return (double) backend.calls.get() / latencies.count();
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition) {
+            throw new AssertionError(failure);
+        }
+    }
+
+    /**
+     * A container that answers a name query in {@link #QUERY_MILLIS} and runs at most
+     * {@link #BACKEND_CONCURRENCY} queries at once; the rest queue.
+     */
+    private static final class Backend {
+        final AtomicLong calls = new AtomicLong();
+        final Semaphore capacity = new Semaphore(BACKEND_CONCURRENCY, true);
+
+        List<String> query(String name) throws InterruptedException {
+            calls.incrementAndGet();
+            capacity.acquire();
+            try {
+                TimeUnit.MILLISECONDS.sleep(QUERY_MILLIS);
+                return Collections.singletonList("{\"id\":\"1\",\"name\":\"" + name + "\"}");
+            } finally {
+                capacity.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.functions.execution;
+
+import com.functions.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SingleFlightTest {
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void stopCallers() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void sharesTheCallInFlight() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>("ci", TimeUnit.SECONDS.toMillis(10), new MetricsRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Future<String> leader = callers.submit(() -> flights.call("joe", () -> {
+            calls.incrementAndGet();
+            release.await();
+            return "result";
+        }));
+        awaitExecuted(flights, 1);
+        Future<String> follower = callers.submit(() -> flights.call("joe", () -> "second call"));
+        awaitCoalesced(flights, 1);
+        release.countDown();
+
+        assertSame(leader.get(10, TimeUnit.SECONDS), follower.get(10, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, flights.getExecuted());
+    }
+
+    @Test
+    public void startsANewCallOnceTheLastCompleted() {
+        SingleFlight<String, String> flights = new SingleFlight<>("ci", TimeUnit.SECONDS.toMillis(10), new MetricsRegistry());
+        assertEquals("first", flights.call("joe", () -> "first"));
+        assertEquals("second", flights.call("joe", () -> "second"));
+        assertEquals(2, flights.getExecuted());
+        assertEquals(0, flights.getCoalesced());
+    }
+
+    @Test
+    public void sharesTheFailure() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>("ci", TimeUnit.SECONDS.toMillis(10), new MetricsRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException unavailable = new IllegalStateException("backend unavailable");
+        Future<String> leader = callers.submit(() -> flights.call("joe", () -> {
+            release.await();
+            throw unavailable;
+        }));
+        awaitExecuted(flights, 1);
+        Future<String> follower = callers.submit(() -> flights.call("joe", () -> "second call"));
+        awaitCoalesced(flights, 1);
+        release.countDown();
+
+        assertSame(unavailable, assertThrows(ExecutionException.class, () -> leader.get(10, TimeUnit.SECONDS)).getCause());
+        assertSame(unavailable, assertThrows(ExecutionException.class, () -> follower.get(10, TimeUnit.SECONDS)).getCause());
+        // Nothing is kept after a failure either
+        assertEquals("recovered", flights.call("joe", () -> "recovered"));
+    }
+
+    @Test
+    public void aFollowerStopsWaitingForAHungCall() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>("ci", 50, new MetricsRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = callers.submit(() -> flights.call("joe", () -> {
+            release.await();
+            return "late";
+        }));
+        awaitExecuted(flights, 1);
+        CompletionException timedOut = assertThrows(CompletionException.class, () -> flights.call("joe", () -> "second call"));
+        assertTrue(timedOut.getCause() instanceof TimeoutException, String.valueOf(timedOut.getCause()));
+        assertEquals(1, flights.getTimedOut());
+        release.countDown();
+        assertEquals("late", leader.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void doesNotShareAcrossKeys() {
+        SingleFlight<List<String>, String> flights = new SingleFlight<>("ci", TimeUnit.SECONDS.toMillis(10), new MetricsRegistry());
+        assertEquals(SingleFlight.key("CosmosDBInputQueryPOJOList", "joe"), SingleFlight.key("CosmosDBInputQueryPOJOList", "joe"));
+        assertNotEquals(SingleFlight.key("CosmosDBInputQueryPOJOList", "joe"), SingleFlight.key("CosmosDBInputQueryPOJOList", "ann"));
+        assertNotEquals(SingleFlight.key("CosmosDBInputQueryPOJOList", "joe"), SingleFlight.key("CosmosDBInputQueryPOJOArray", "joe"));
+        assertEquals("joe", flights.call(SingleFlight.key("CosmosDBInputQueryPOJOList", "joe"), () -> "joe"));
+        assertEquals("ann", flights.call(SingleFlight.key("CosmosDBInputQueryPOJOList", "ann"), () -> "ann"));
+    }
+
+    private static void awaitExecuted(SingleFlight<?, ?> flights, long executed) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (flights.getExecuted() < executed && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(executed, flights.getExecuted());
+    }
+
+    private static void awaitCoalesced(SingleFlight<?, ?> flights, long coalesced) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (flights.getCoalesced() < coalesced && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(coalesced, flights.getCoalesced());
+    }
+}
@@ -0,0 +1,108 @@
+package com.functions.journal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpillJournalTest {
+    private static final int SEGMENT_BYTES = 1024;
+
+    private Path directory;
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void resumesAtTheCursorAfterReopening() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        SpillJournal journal = SpillJournal.open(directory, SEGMENT_BYTES, 4, false);
+        for (String record : new String[]{"a", "b", "c"}) {
+            journal.append(bytes(record));
+        }
+        assertEquals(2, journal.peek(2).size());
+        journal.commit(1);
+        journal.close();
+
+        SpillJournal reopened = SpillJournal.open(directory, SEGMENT_BYTES, 4, false);
+        assertEquals(2, reopened.getDepthRecords());
+        assertEquals(Arrays.asList("b", "c"), strings(reopened.peek(10)));
+        reopened.close();
+    }
+
+    @Test
+    public void dropsATornRecordAndAppendsOverIt() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        SpillJournal journal = SpillJournal.open(directory, SEGMENT_BYTES, 4, false);
+        for (String record : new String[]{"a", "b", "c"}) {
+            journal.append(bytes(record));
+        }
+        journal.close();
+        // The process died while "c" was being written: its length is in place, its bytes are not
+        int torn = 2 * (JournalSegment.HEADER_BYTES + 1) + JournalSegment.HEADER_BYTES;
+        try (RandomAccessFile segment = new RandomAccessFile(onlySegment().toFile(), "rw")) {
+            segment.seek(torn);
+            segment.write('x');
+        }
+
+        SpillJournal reopened = SpillJournal.open(directory, SEGMENT_BYTES, 4, false);
+        assertEquals(2, reopened.getDepthRecords());
+        assertEquals(Arrays.asList("a", "b"), strings(reopened.peek(10)));
+        reopened.append(bytes("d"));
+        assertEquals(Arrays.asList("a", "b", "d"), strings(reopened.peek(10)));
+        reopened.close();
+    }
+
+    @Test
+    public void refusesAppendsOnceEverySegmentIsFull() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        SpillJournal journal = SpillJournal.open(directory, 64, 2, false);
+        byte[] record = new byte[64 - JournalSegment.HEADER_BYTES];
+        assertTrue(journal.append(record));
+        assertTrue(journal.append(record));
+        assertFalse(journal.append(record));
+        // Consuming the first segment deletes it and makes room for another
+        journal.commit(1);
+        assertTrue(journal.append(record));
+        journal.close();
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            Object[] segments = files.filter(file -> file.getFileName().toString().endsWith(".seg")).toArray();
+            assertEquals(1, segments.length);
+            return (Path) segments[0];
+        }
+    }
+
+    private static byte[] bytes(String record) {
+        return record.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> records) {
+        List<String> strings = new ArrayList<>();
+        for (byte[] record : records) {
+            strings.add(new String(record, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+}
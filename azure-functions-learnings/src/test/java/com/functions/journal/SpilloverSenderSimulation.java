@@ -0,0 +1,192 @@
+package com.functions.journal;
+
+import com.functions.metrics.MetricsRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A handler sends 200-byte records at a steady rate to a sink that throttles for two seconds in
+ * the middle of the run. Prints how many invocations would fail when writing the sink directly
+ * and with the {@link SpilloverSender}, the deepest the journal got, how long it took to drain,
+ * and whether the sink saw every record in order. Then sends through a sink that always rejects
+ * one record and checks that record is parked while the rest arrive in order, measures raw
+ * appends with and without a flush per record, and reopens a journal to check records survive a
+ * restart. The run fails if the journaled sender fails an invocation or any check does not hold.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.journal.SpilloverSenderSimulation [records/s]
+ */
+public class SpilloverSenderSimulation {
+    private static final int SECONDS = 5;
+    private static final long THROTTLE_FROM_MILLIS = 1000;
+    private static final long THROTTLE_TO_MILLIS = 3000;
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        throttledRun(rate, false);
+        throttledRun(rate, true);
+        poisonRun();
+        appendThroughput(false, 200_000);
+        appendThroughput(true, 2_000);
+        restart();
+    }
+
+    private static void throttledRun(int rate, boolean journaled) throws Exception {
+        ThrottlingSink sink = new ThrottlingSink();
+        Path directory = Files.createTempDirectory("journal");
+        SpilloverSender sender = journaled
+            ? new SpilloverSender("simulation", SpillJournal.open(directory.resolve("journal"), 64 << 10, 1024, false),
+                SpillJournal.open(directory.resolve("parked"), 64 << 10, 16, false), sink, SpilloverSender.DEFAULT_MAX_ATTEMPTS, new MetricsRegistry())
+            : null;
+        int total = rate * SECONDS;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        int failed = 0;
+        long maxDepth = 0;
+        sink.start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long wait = sink.start + i * intervalNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            byte[] record = record(i);
+            try {
+                if (sender != null) {
+                    sender.send(record);
+                    maxDepth = Math.max(maxDepth, sender.getDepthRecords());
+                } else {
+                    sink.send(Collections.singletonList(record));
+                }
+            } catch (Exception e) {
+                failed++;
+            }
+        }
+        long drainStart = System.nanoTime();
+        while (sender != null && sender.getDepthRecords() > 0) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        long drainMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - drainStart);
+        System.out.printf("%-10s %d records at %d/s, throttled for %d ms: %d invocations failed, max journal depth %d, drained %d ms after the last send, sink got %d records in order: %b%n",
+            journaled ? "journaled" : "direct", total, rate, THROTTLE_TO_MILLIS - THROTTLE_FROM_MILLIS, failed, maxDepth, drainMillis,
+            sink.received.size(), inOrder(sink.received, total - failed));
+        if (sender != null) {
+            sender.close();
+            check(failed == 0 && inOrder(sink.received, total), "the journaled sender failed " + failed + " invocations or reordered records");
+        }
+    }
+
+    private static void poisonRun() throws Exception {
+        int total = 2000;
+        int poison = 500;
+        List<byte[]> received = new ArrayList<>();
+        OutputSink sink = records -> {
+            for (byte[] record : records) {
+                if (new String(record, StandardCharsets.UTF_8).startsWith(poison + ":")) {
+                    throw new IllegalArgumentException("400 Bad Request");
+                }
+            }
+            synchronized (received) {
+                received.addAll(records);
+            }
+        };
+        Path directory = Files.createTempDirectory("journal");
+        SpilloverSender sender = new SpilloverSender("poison", SpillJournal.open(directory.resolve("journal"), 64 << 10, 1024, false),
+            SpillJournal.open(directory.resolve("parked"), 64 << 10, 16, false), sink, 3, new MetricsRegistry());
+        for (int i = 0; i < total; i++) {
+            sender.send(record(i));
+        }
+        while (sender.getDepthRecords() > 0) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        synchronized (received) {
+            System.out.printf("poison     record %d rejected every time: %d parked, sink got the other %d in order: %b%n",
+                poison, sender.getParkedRecords(), received.size(), inOrder(received, total - 1));
+            check(sender.getParkedRecords() == 1 && inOrder(received, total - 1), "the poison record was not parked alone");
+        }
+        sender.close();
+    }
+
+    private static void appendThroughput(boolean force, int records) throws Exception {
+        SpillJournal journal = SpillJournal.open(Files.createTempDirectory("journal"), SpillJournal.DEFAULT_SEGMENT_BYTES, 64, force);
+        byte[] record = record(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            journal.append(record);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("append, force=%-5b %10.0f records/s  %6.2f us/record  %d segments%n", force,
+            records * 1e9 / elapsed, elapsed / 1e3 / records, journal.getSegmentCount());
+        journal.close();
+    }
+
+    private static void restart() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        SpillJournal journal = SpillJournal.open(directory, 16 << 10, 1024, false);
+        for (int i = 0; i < 1000; i++) {
+            journal.append(record(i));
+        }
+        journal.commit(journal.peek(300).size());
+        journal.close();
+        SpillJournal reopened = SpillJournal.open(directory, 16 << 10, 1024, false);
+        List<byte[]> left = reopened.peek(1000);
+        boolean resumed = left.size() == 700 && new String(left.get(0), StandardCharsets.UTF_8).startsWith("300:");
+        System.out.printf("restart: %d records left after consuming 300 of 1000, resumes at record 300: %b, %d segment files%n",
+            reopened.getDepthRecords(), resumed, reopened.getSegmentCount());
+        reopened.close();
+        check(resumed, "the reopened journal did not resume at record 300");
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition) {
+            throw new AssertionError(failure);
+        }
+    }
+
+    private static byte[] record(int i) {
+        StringBuilder record = new StringBuilder(200).append(i).append(':');
+        while (record.length() < 200) {
+            record.append('x');
+        }
+        return record.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean inOrder(List<byte[]> received, int expected) {
+        if (received.size() != expected) {
+            return false;
+        }
+        long previous = -1;
+        for (byte[] record : received) {
+            String text = new String(record, StandardCharsets.UTF_8);
+            long index = Long.parseLong(text.substring(0, text.indexOf(':')));
+            if (index <= previous) {
+                return false;
+            }
+            previous = index;
+        }
+        return true;
+    }
+
+    /**
+     * Accepts everything except between {@link #THROTTLE_FROM_MILLIS} and
+     * {@link #THROTTLE_TO_MILLIS} after the start, when it answers like a throttled service.
+     */
+    private static final class ThrottlingSink implements OutputSink {
+        final List<byte[]> received = new ArrayList<>();
+        volatile long start;
+
+        @Override
+        public synchronized void send(List<byte[]> records) {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (elapsedMillis >= THROTTLE_FROM_MILLIS && elapsedMillis < THROTTLE_TO_MILLIS) {
+                throw new RejectedExecutionException("429 Too Many Requests");
+            }
+            received.addAll(records);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.functions.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JsonStreamReaderTest {
+    @Test
+    public void readsLiteralsAsTheirText() throws IOException {
+        JsonStreamReader reader = new JsonStreamReader("[true, false, null, -1.5e3, 0]");
+        reader.beginArray();
+        assertEquals("true", reader.nextString());
+        assertEquals("false", reader.nextString());
+        assertNull(reader.nextString());
+        assertEquals("-1.5e3", reader.nextString());
+        assertEquals(0, reader.nextLong());
+        reader.endArray();
+    }
+
+    @Test
+    public void rejectsMalformedLiterals() {
+        assertThrows(IOException.class, () -> firstValue("[trux]"));
+        assertThrows(IOException.class, () -> firstValue("[nul]"));
+        assertThrows(IOException.class, () -> firstValue("[1x]"));
+        assertThrows(IOException.class, () -> firstValue("[01]"));
+        assertThrows(IOException.class, () -> firstValue("{\"a\":truex}"));
+    }
+
+    @Test
+    public void rejectsMalformedLiteralsWhenSkipping() {
+        assertThrows(IOException.class, () -> {
+            JsonStreamReader reader = new JsonStreamReader("{\"a\":trux,\"b\":1}");
+            reader.beginObject();
+            reader.nextName();
+            reader.skipValue();
+        });
+    }
+
+    private static String firstValue(String json) throws IOException {
+        JsonStreamReader reader = new JsonStreamReader(json);
+        if (reader.peek() == JsonStreamReader.Token.BEGIN_ARRAY) {
+            reader.beginArray();
+        } else {
+            reader.beginObject();
+            reader.nextName();
+        }
+        return reader.nextString();
+    }
+}
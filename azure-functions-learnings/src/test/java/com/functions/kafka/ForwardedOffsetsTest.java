@@ -0,0 +1,80 @@
+package com.functions.kafka;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ForwardedOffsetsTest {
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("forwarded-offsets");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void suppressesWhatThePreviousOwnerForwardedAfterARebalance() {
+        ForwardedOffsets previousOwner = new ForwardedOffsets(directory, 60_000);
+        for (long offset = 0; offset < 5; offset++) {
+            assertFalse(previousOwner.isForwarded("ci", 0, offset));
+            previousOwner.markForwarded("ci", 0, offset);
+        }
+        // The group committed offset 2, so the new owner gets 3 and 4 again
+        ForwardedOffsets newOwner = new ForwardedOffsets(directory, 60_000);
+        assertTrue(newOwner.isForwarded("ci", 0, 3L));
+        assertTrue(newOwner.isForwarded("ci", 0, 4L));
+        assertFalse(newOwner.isForwarded("ci", 0, 5L));
+        assertFalse(newOwner.isForwarded("ci", 1, 3L));
+    }
+
+    @Test
+    public void readsTheFileOnlyAfterAGapOrAPause() throws InterruptedException {
+        ForwardedOffsets first = new ForwardedOffsets(directory, 50);
+        ForwardedOffsets second = new ForwardedOffsets(directory, 50);
+        assertFalse(first.isForwarded("ci", 0, 0L));
+        first.markForwarded("ci", 0, 0L);
+        long reads = first.getFileReads();
+        for (long offset = 1; offset < 10; offset++) {
+            assertFalse(first.isForwarded("ci", 0, offset));
+            first.markForwarded("ci", 0, offset);
+        }
+        assertEquals(reads, first.getFileReads());
+
+        // The partition moves to the second instance and back
+        second.markForwarded("ci", 0, 14L);
+        Thread.sleep(60);
+        assertTrue(first.isForwarded("ci", 0, 10L));
+        assertEquals(reads + 1, first.getFileReads());
+        // A gap is read again too
+        second.markForwarded("ci", 0, 20L);
+        assertTrue(first.isForwarded("ci", 0, 17L));
+        assertEquals(reads + 2, first.getFileReads());
+    }
+
+    @Test
+    public void neverMovesTheOffsetBack() {
+        ForwardedOffsets current = new ForwardedOffsets(directory, 60_000);
+        ForwardedOffsets stale = new ForwardedOffsets(directory, 60_000);
+        current.markForwarded("ci", 0, 10L);
+        stale.markForwarded("ci", 0, 7L);
+        assertTrue(new ForwardedOffsets(directory, 60_000).isForwarded("ci", 0, 10L));
+        assertTrue(stale.isForwarded("ci", 0, 9L));
+    }
+}
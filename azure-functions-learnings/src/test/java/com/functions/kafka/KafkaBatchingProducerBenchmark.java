@@ -0,0 +1,65 @@
+package com.functions.kafka;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and p99 latency of {@link KafkaBatchingProducer} against {@link InMemoryKafkaBroker}.
+ * Fails if the broker did not append every record exactly once.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.kafka.KafkaBatchingProducerBenchmark [threads] [recordsPerThread]
+ */
+public class KafkaBatchingProducerBenchmark {
+    private static final long BROKER_ROUND_TRIP_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int recordsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        List<KafkaProducerConfig> configs = new ArrayList<>();
+        configs.add(KafkaProducerConfig.defaults().partitions(6).lingerMs(0).batchSizeBytes(1).idempotence(false));
+        configs.add(KafkaProducerConfig.defaults().partitions(6).lingerMs(1).batchSizeBytes(16 * 1024));
+        configs.add(KafkaProducerConfig.defaults().partitions(6).lingerMs(5).batchSizeBytes(64 * 1024));
+        configs.add(KafkaProducerConfig.defaults().partitions(6).lingerMs(5).batchSizeBytes(64 * 1024)
+            .compression(KafkaCompression.GZIP));
+
+        for (KafkaProducerConfig config : configs) {
+            run(config, threads, recordsPerThread);
+        }
+    }
+
+    private static void run(KafkaProducerConfig config, int threads, int recordsPerThread) throws InterruptedException {
+        InMemoryKafkaBroker broker = new InMemoryKafkaBroker(BROKER_ROUND_TRIP_NANOS);
+        KafkaBatchingProducer producer = new KafkaBatchingProducer("ci", config, broker);
+        if (config.getLingerMs() > 0) {
+            producer.start();
+        }
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(() -> {
+                for (int i = 0; i < recordsPerThread; i++) {
+                    producer.send("t" + thread + "-" + i, "{\"message\":\"ingest payload " + i + "\",\"source\":\"bench\"}");
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        producer.close();
+        long elapsed = System.nanoTime() - start;
+
+        long records = broker.getRecordsAppended();
+        if (records != (long) threads * recordsPerThread || broker.getDuplicateBatches() != 0) {
+            throw new AssertionError(config + ": the broker appended " + records + " of " + (long) threads * recordsPerThread
+                + " records and dropped " + broker.getDuplicateBatches() + " duplicate batches");
+        }
+        System.out.printf("%-90s %10.0f rec/s  p50=%6d us  p99=%6d us  batches=%d  ratio=%.2f%n",
+            config, records / (elapsed / 1e9),
+            TimeUnit.NANOSECONDS.toMicros(broker.latencyPercentile(0.50)),
+            TimeUnit.NANOSECONDS.toMicros(broker.latencyPercentile(0.99)),
+            producer.getBatchesSealed(), producer.getCompressionRatio());
+    }
+}
@@ -0,0 +1,126 @@
+package com.functions.kafka;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KafkaBatchingProducerTest {
+    // 8 bytes of overhead, a 1 byte key and a 31 byte value: two of them fit in 100 bytes, three do not
+    private static final String VALUE = "0123456789012345678901234567890";
+
+    @Test
+    public void sealsBeforeTheRecordThatWouldOverflowTheBatch() {
+        KafkaBatchingProducer producer = new KafkaBatchingProducer("ci",
+            KafkaProducerConfig.defaults().lingerMs(60_000).batchSizeBytes(100));
+        for (int i = 0; i < 7; i++) {
+            assertTrue(producer.send("k", VALUE));
+        }
+        List<KafkaBatch> batches = producer.flush();
+        assertEquals(Arrays.asList(2, 2, 2, 1), recordCounts(batches));
+        for (KafkaBatch batch : batches) {
+            assertTrue(recordBytes(batch) <= 100, "batch of " + recordBytes(batch) + " bytes");
+        }
+    }
+
+    @Test
+    public void sealNowSplitsBeforeTheOverflowAndKeepsOrder() {
+        KafkaBatchingProducer producer = new KafkaBatchingProducer("ci", KafkaProducerConfig.defaults().batchSizeBytes(100));
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            values.add(VALUE.substring(1) + i);
+        }
+        List<KafkaBatch> batches = producer.sendNow("k", null, values);
+        assertEquals(Arrays.asList(2, 2, 2, 1), recordCounts(batches));
+        List<String> sent = new ArrayList<>();
+        for (KafkaBatch batch : batches) {
+            assertTrue(recordBytes(batch) <= 100);
+            sent.addAll(Arrays.asList(batch.values()));
+        }
+        assertEquals(values, sent);
+        assertEquals(batches.get(0).getBaseSequence() + 2, batches.get(1).getBaseSequence());
+    }
+
+    @Test
+    public void dropsAnIdempotencyKeyOnlyOnceItWasAcknowledged() {
+        KafkaBatchingProducer producer = new KafkaBatchingProducer("ci", KafkaProducerConfig.defaults());
+        List<KafkaBatch> first = producer.sendNow("k", "request-1", Arrays.asList("a", "b"));
+        // Not acknowledged, so a retry of the request is sent again
+        List<KafkaBatch> retry = producer.sendNow("k", "request-1", Arrays.asList("a", "b"));
+        assertEquals(1, retry.size());
+        producer.acknowledge(retry);
+        assertTrue(producer.sendNow("k", "request-1", Arrays.asList("a", "b")).isEmpty());
+        assertEquals(1, producer.getDuplicateKeysDropped());
+        assertEquals(1, first.size());
+    }
+
+    @Test
+    public void keepsDistinctRecordsThatSharePartitionKey() {
+        InMemoryKafkaBroker broker = new InMemoryKafkaBroker();
+        KafkaBatchingProducer producer = new KafkaBatchingProducer("ci",
+            KafkaProducerConfig.defaults().lingerMs(0), broker);
+        assertTrue(producer.send("tenant-1", "event-1", "a"));
+        assertTrue(producer.send("tenant-1", "event-2", "b"));
+        assertTrue(producer.send("tenant-1", "b"));
+        assertFalse(producer.send("tenant-1", "event-1", "a"));
+        assertEquals(3, broker.getRecordsAppended());
+        assertEquals(1, producer.getDuplicateKeysDropped());
+    }
+
+    @Test
+    public void retriesARejectedBatchWithBackoff() {
+        AtomicInteger attempts = new AtomicInteger();
+        List<KafkaBatch> accepted = new ArrayList<>();
+        KafkaSink flaky = batch -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("broker unavailable");
+            }
+            accepted.add(batch);
+        };
+        KafkaBatchingProducer producer = new KafkaBatchingProducer("ci",
+            KafkaProducerConfig.defaults().lingerMs(0).retryBackoffMs(20), flaky);
+        long start = System.nanoTime();
+        assertTrue(producer.send("k", "event-1", "a"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(3, attempts.get());
+        assertEquals(1, accepted.size());
+        // 20 ms before the first retry and 40 ms before the second
+        assertTrue(elapsedMillis >= 60, "retried after " + elapsedMillis + " ms");
+        assertFalse(producer.send("k", "event-1", "a"));
+    }
+
+    @Test
+    public void forgetsTheKeyOfABatchTheSinkNeverAccepted() {
+        KafkaSink down = batch -> {
+            throw new IllegalStateException("broker unavailable");
+        };
+        KafkaBatchingProducer producer = new KafkaBatchingProducer("ci",
+            KafkaProducerConfig.defaults().lingerMs(0).retryBackoffMs(0), down);
+        assertThrows(IllegalStateException.class, () -> producer.send("k", "event-1", "a"));
+        assertThrows(IllegalStateException.class, () -> producer.send("k", "event-1", "a"));
+        assertEquals(0, producer.getDuplicateKeysDropped());
+    }
+
+    private static List<Integer> recordCounts(List<KafkaBatch> batches) {
+        List<Integer> counts = new ArrayList<>();
+        for (KafkaBatch batch : batches) {
+            counts.add(batch.getRecordCount());
+        }
+        return counts;
+    }
+
+    private static int recordBytes(KafkaBatch batch) {
+        int bytes = 0;
+        for (KafkaRecord record : batch.getRecords()) {
+            bytes += record.getSizeInBytes();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,65 @@
+package com.functions.kafka;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KafkaDedupIndexTest {
+    @Test
+    public void suppressesOnlyRecordsThatWereCommitted() {
+        KafkaDedupIndex index = new KafkaDedupIndex(1_000, 0.01, 1_000);
+        assertFalse(index.check("ci", 0, 1L));
+        // Not forwarded yet, so its redelivery is still new
+        assertFalse(index.check("ci", 0, 1L));
+        index.markCommitted("ci", 0, 1L);
+        assertTrue(index.check("ci", 0, 1L));
+        assertFalse(index.check("ci", 1, 1L));
+        assertFalse(index.check("ci", 0, 2L));
+        assertEquals(1, index.getDuplicatesSuppressed());
+    }
+
+    @Test
+    public void forwardsProbableDuplicatesOlderThanTheExactWindow() {
+        KafkaDedupIndex index = new KafkaDedupIndex(1_000, 0.01, 2);
+        for (long offset = 0; offset < 3; offset++) {
+            index.markCommitted("ci", 0, offset);
+        }
+        // Offset 0 left the exact set, but the bloom filter still has it
+        assertFalse(index.check("ci", 0, 0L));
+        assertEquals(1, index.getProbableDuplicates());
+        assertTrue(index.check("ci", 0, 2L));
+
+        KafkaDedupIndex suppressing = new KafkaDedupIndex(1_000, 0.01, 2, true);
+        for (long offset = 0; offset < 3; offset++) {
+            suppressing.markCommitted("ci", 0, offset);
+        }
+        assertTrue(suppressing.check("ci", 0, 0L));
+    }
+
+    @Test
+    public void keepsTheBloomFilterFlatByRotatingGenerations() {
+        KafkaDedupIndex index = new KafkaDedupIndex(100, 0.01, 10_000);
+        long bytes = index.getBloomBytes();
+        for (long offset = 0; offset < 250; offset++) {
+            index.markCommitted("ci", 0, offset);
+        }
+        assertEquals(2, index.getRotations());
+        assertEquals(bytes, index.getBloomBytes());
+        // The previous generation and the exact set still cover recent offsets
+        assertTrue(index.check("ci", 0, 150L));
+        assertTrue(index.check("ci", 0, 249L));
+    }
+
+    @Test
+    public void rotatesAQuietGenerationOnlyOnceItIsOldEnough() throws InterruptedException {
+        KafkaDedupIndex index = new KafkaDedupIndex(1_000, 0.01, 1_000);
+        assertFalse(index.expireGeneration(0));
+        index.markCommitted("ci", 0, 1L);
+        assertFalse(index.expireGeneration(60_000));
+        Thread.sleep(20);
+        assertTrue(index.expireGeneration(10));
+        assertEquals(1, index.getRotations());
+    }
+}
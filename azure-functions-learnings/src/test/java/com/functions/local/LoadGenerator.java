@@ -0,0 +1,130 @@
+package com.functions.local;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives one function with a closed or an open loop.
+ * <p>
+ * Closed loop: {@code workers} threads call the function back to back, so the offered load
+ * follows the function's speed. Open loop: invocations arrive at a fixed rate whether or not
+ * earlier ones finished, and each is taken by the next free worker; {@code workers} bounds how
+ * many run at once. Latency in the open loop
+ * is measured from the scheduled arrival, so time spent waiting behind a slow invocation
+ * counts, which a closed loop would hide.
+ */
+public class LoadGenerator {
+
+    /**
+     * One call of the function under load; {@code sequence} numbers the invocations.
+     */
+    public interface Invocation {
+        void invoke(long sequence) throws Exception;
+    }
+
+    private final int workers;
+    private final double ratePerSecond;
+
+    private LoadGenerator(int workers, double ratePerSecond) {
+        this.workers = workers;
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public static LoadGenerator closedLoop(int workers) {
+        return new LoadGenerator(workers, 0);
+    }
+
+    public static LoadGenerator openLoop(double ratePerSecond, int workers) {
+        return new LoadGenerator(workers, ratePerSecond);
+    }
+
+    public boolean isOpenLoop() {
+        return ratePerSecond > 0;
+    }
+
+    public Result run(Invocation invocation, long durationNanos) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>(workers);
+        List<LatencyHistogram> histograms = new ArrayList<>(workers);
+        AtomicLong errors = new AtomicLong();
+        AtomicLong sequence = new AtomicLong();
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        long end = start + durationNanos;
+        double intervalNanos = isOpenLoop() ? 1e9 / ratePerSecond : 0;
+        for (int w = 0; w < workers; w++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histograms.add(histogram);
+            Thread thread = new Thread(() -> {
+                if (isOpenLoop()) {
+                    // Whichever worker is free takes the next arrival, so one slow invocation
+                    // delays only the arrivals that found every worker busy
+                    for (long arrival = sequence.getAndIncrement(); ; arrival = sequence.getAndIncrement()) {
+                        long scheduled = start + (long) (arrival * intervalNanos);
+                        if (scheduled >= end) {
+                            break;
+                        }
+                        long wait = scheduled - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                        call(invocation, arrival, errors);
+                        histogram.record(System.nanoTime() - scheduled);
+                    }
+                } else {
+                    long wait = start - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    long callStart;
+                    while ((callStart = System.nanoTime()) < end) {
+                        call(invocation, sequence.getAndIncrement(), errors);
+                        histogram.record(System.nanoTime() - callStart);
+                    }
+                }
+            }, "load-" + w);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = Math.max(System.nanoTime(), end) - start;
+        LatencyHistogram merged = new LatencyHistogram();
+        histograms.forEach(merged::merge);
+        return new Result(merged, errors.get(), elapsed);
+    }
+
+    private static void call(Invocation invocation, long sequence, AtomicLong errors) {
+        try {
+            invocation.invoke(sequence);
+        } catch (Exception e) {
+            errors.incrementAndGet();
+        }
+    }
+
+    public static class Result {
+        private final LatencyHistogram latencies;
+        private final long errors;
+        private final long elapsedNanos;
+
+        Result(LatencyHistogram latencies, long errors, long elapsedNanos) {
+            this.latencies = latencies;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getThroughput() {
+            return latencies.count() * 1e9 / elapsedNanos;
+        }
+    }
+}
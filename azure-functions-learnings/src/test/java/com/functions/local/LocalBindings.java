@@ -0,0 +1,107 @@
+package com.functions.local;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stand-ins for the services the functions bind to: queues for Storage queues,
+ * Service Bus, Event Hubs, Event Grid and Kafka topics, a directory for blobs and a map per
+ * table. Output bindings deliver here and input bindings read from here.
+ */
+public class LocalBindings {
+    private final Map<String, Queue<Object>> queues = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Object>> tables = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> delivered = new ConcurrentHashMap<>();
+    private final Path blobDirectory;
+
+    public LocalBindings(Path blobDirectory) {
+        this.blobDirectory = blobDirectory;
+        try {
+            Files.createDirectories(blobDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create blob directory " + blobDirectory, e);
+        }
+    }
+
+    public static LocalBindings inTempDirectory() {
+        try {
+            return new LocalBindings(Files.createTempDirectory("local-blobs"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create a blob directory", e);
+        }
+    }
+
+    public Queue<Object> queue(String name) {
+        return queues.computeIfAbsent(name, n -> new ConcurrentLinkedQueue<>());
+    }
+
+    public Map<String, Object> table(String name) {
+        return tables.computeIfAbsent(name, n -> new ConcurrentHashMap<>());
+    }
+
+    public Object tableRow(String table, String partitionKey, String rowKey) {
+        return table(table).get(partitionKey + "/" + rowKey);
+    }
+
+    public void putTableRow(String table, String partitionKey, String rowKey, Object row) {
+        table(table).put(partitionKey + "/" + rowKey, row);
+    }
+
+    public Path blob(String path) {
+        return blobDirectory.resolve(path.replaceAll("[{}]", "_"));
+    }
+
+    public byte[] readBlob(String path) {
+        Path file = blob(path);
+        try {
+            return Files.exists(file) ? Files.readAllBytes(file) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read blob " + path, e);
+        }
+    }
+
+    public void writeBlob(String path, Object content) {
+        Path file = blob(path);
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(file, content instanceof byte[] ? (byte[]) content : String.valueOf(content).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write blob " + path, e);
+        }
+    }
+
+    /**
+     * Delivers an output binding value: blobs are written to the directory, everything else is
+     * queued under the destination name. Bounded queues would hide drops, so the outputs are
+     * kept only up to {@code maxQueued} per destination and counted beyond that.
+     */
+    public void deliver(String destination, boolean blob, Object value, int maxQueued) {
+        delivered.computeIfAbsent(destination, d -> new AtomicLong()).incrementAndGet();
+        if (blob) {
+            writeBlob(destination, value);
+            return;
+        }
+        Queue<Object> queue = queue(destination);
+        if (queue.size() < maxQueued) {
+            queue.add(value);
+        }
+    }
+
+    /**
+     * Values delivered per destination since the start.
+     */
+    public Map<String, Long> deliveredCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        delivered.forEach((destination, count) -> counts.put(destination, count.get()));
+        return counts;
+    }
+}
@@ -0,0 +1,204 @@
+package com.functions.local;
+
+import com.functions.ExecutionContextMock;
+import com.functions.OutputBindingMock;
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.OutputBinding;
+import com.microsoft.azure.functions.annotation.BindingName;
+import com.microsoft.azure.functions.annotation.FunctionName;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * One {@code @FunctionName} method with its parameters bound to {@link LocalBindings}: the
+ * trigger parameter takes the payload of the invocation, output bindings deliver to the
+ * in-memory destinations and table and blob inputs read from them.
+ */
+public class LocalFunction {
+    private static final String[] DESTINATION_ATTRIBUTES = {
+        "queueName", "topicName", "eventHubName", "topic", "path", "tableName", "containerName", "collectionName"};
+    private static final int MAX_QUEUED_OUTPUTS = 10_000;
+
+    enum Kind { TRIGGER, CONTEXT, OUTPUT, TABLE_INPUT, BLOB_INPUT, METADATA, UNBOUND }
+
+    private final String name;
+    private final Method method;
+    private final Object instance;
+    private final LocalBindings bindings;
+    private final Kind[] kinds;
+    private final Annotation[] bindingAnnotations;
+    private final Annotation trigger;
+    private final Class<?> triggerType;
+    private final Annotation returnOutput;
+    private final String unsupported;
+
+    LocalFunction(Method method, LocalBindings bindings) throws ReflectiveOperationException {
+        this.name = method.getAnnotation(FunctionName.class).value();
+        this.method = method;
+        this.instance = Modifier.isStatic(method.getModifiers()) ? null : method.getDeclaringClass().getDeclaredConstructor().newInstance();
+        this.bindings = bindings;
+        Class<?>[] types = method.getParameterTypes();
+        Annotation[][] annotations = method.getParameterAnnotations();
+        kinds = new Kind[types.length];
+        bindingAnnotations = new Annotation[types.length];
+        Annotation foundTrigger = null;
+        Class<?> foundTriggerType = null;
+        String problem = null;
+        for (int i = 0; i < types.length; i++) {
+            Annotation binding = annotations[i].length > 0 ? annotations[i][0] : null;
+            bindingAnnotations[i] = binding;
+            String bindingName = binding == null ? "" : binding.annotationType().getSimpleName();
+            if (ExecutionContext.class.equals(types[i])) {
+                kinds[i] = Kind.CONTEXT;
+            } else if (bindingName.endsWith("Trigger")) {
+                kinds[i] = Kind.TRIGGER;
+                foundTrigger = binding;
+                foundTriggerType = types[i];
+            } else if (OutputBinding.class.equals(types[i])) {
+                kinds[i] = Kind.OUTPUT;
+            } else if ("TableInput".equals(bindingName)) {
+                kinds[i] = Kind.TABLE_INPUT;
+            } else if ("BlobInput".equals(bindingName)) {
+                kinds[i] = Kind.BLOB_INPUT;
+            } else if (binding instanceof BindingName) {
+                kinds[i] = Kind.METADATA;
+            } else {
+                kinds[i] = Kind.UNBOUND;
+                problem = "no local stand-in for " + (binding == null ? types[i].getSimpleName() : "@" + bindingName);
+            }
+        }
+        this.trigger = foundTrigger;
+        this.triggerType = foundTriggerType;
+        this.returnOutput = returnOutput(method);
+        this.unsupported = foundTrigger == null ? "no trigger parameter" : problem;
+        method.setAccessible(true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The trigger annotation's simple name, such as "HttpTrigger" or "DurableActivityTrigger".
+     */
+    public String getTriggerKind() {
+        return trigger == null ? "" : trigger.annotationType().getSimpleName();
+    }
+
+    public Class<?> getTriggerType() {
+        return triggerType;
+    }
+
+    /**
+     * Why the function cannot run locally, or null if it can.
+     */
+    public String getUnsupportedReason() {
+        return unsupported;
+    }
+
+    /**
+     * Calls the function with {@code payload} as its trigger input. Exceptions thrown by the
+     * function are rethrown unwrapped.
+     */
+    public Object invoke(Object payload) throws Exception {
+        if (unsupported != null) {
+            throw new UnsupportedOperationException(name + ": " + unsupported);
+        }
+        Object[] arguments = new Object[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            arguments[i] = argument(i, payload);
+        }
+        Object result;
+        try {
+            result = method.invoke(instance, arguments);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == Kind.OUTPUT) {
+                Object value = ((OutputBinding<?>) arguments[i]).getValue();
+                if (value != null) {
+                    deliver(bindingAnnotations[i], value);
+                }
+            }
+        }
+        if (returnOutput != null && result != null) {
+            deliver(returnOutput, result);
+        }
+        if (result instanceof HttpResponseMessage && ((HttpResponseMessage) result).getStatusCode() >= 500) {
+            throw new IllegalStateException(name + " returned HTTP " + ((HttpResponseMessage) result).getStatusCode());
+        }
+        return result;
+    }
+
+    private Object argument(int index, Object payload) {
+        Annotation binding = bindingAnnotations[index];
+        switch (kinds[index]) {
+            case TRIGGER:
+                return payload;
+            case CONTEXT:
+                return new ExecutionContextMock(name);
+            case OUTPUT:
+                return new OutputBindingMock<>();
+            case TABLE_INPUT:
+                return bindings.tableRow(attribute(binding, "tableName"), attribute(binding, "partitionKey"), attribute(binding, "rowKey"));
+            case BLOB_INPUT:
+                byte[] blob = bindings.readBlob(attribute(binding, "path"));
+                return blob == null || byte[].class.equals(method.getParameterTypes()[index])
+                    ? blob : new String(blob, StandardCharsets.UTF_8);
+            case METADATA:
+                return Map.class.isAssignableFrom(method.getParameterTypes()[index]) ? Collections.emptyMap() : null;
+            default:
+                return null;
+        }
+    }
+
+    private void deliver(Annotation output, Object value) {
+        boolean blob = "BlobOutput".equals(output.annotationType().getSimpleName());
+        bindings.deliver(destination(output), blob, value, MAX_QUEUED_OUTPUTS);
+    }
+
+    private static Annotation returnOutput(Method method) {
+        for (Annotation annotation : method.getAnnotations()) {
+            if (annotation.annotationType().getSimpleName().endsWith("Output")) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    static String destination(Annotation binding) {
+        for (String attribute : DESTINATION_ATTRIBUTES) {
+            String value = attribute(binding, attribute);
+            if (value != null && !value.isEmpty()) {
+                return value;
+            }
+        }
+        return attribute(binding, "name");
+    }
+
+    private static String attribute(Annotation annotation, String attribute) {
+        try {
+            Object value = annotation.annotationType().getMethod(attribute).invoke(annotation);
+            return value instanceof String ? (String) value : null;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + getTriggerKind() + (unsupported != null ? ", not runnable: " + unsupported : "") + ")";
+    }
+}
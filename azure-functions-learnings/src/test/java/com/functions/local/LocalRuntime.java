@@ -0,0 +1,199 @@
+package com.functions.local;
+
+import com.functions.HttpRequestMessageMock;
+import com.functions.HttpTriggerFunction;
+import com.functions.durableLearnings.FakeOrchestrationContext;
+import com.functions.startup.FunctionClassIndex;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.durabletask.TaskOrchestrationContext;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the functions of this app in-process, without the Functions host or any Azure service.
+ * It finds the {@code @FunctionName} methods under com.functions by reflection, binds them to
+ * {@link LocalBindings} and load-tests each one with a {@link LoadGenerator}, reporting
+ * throughput and latency percentiles per function.
+ * <p>
+ * Orchestrators get a {@link FakeOrchestrationContext} whose activities are the activity
+ * functions found, so an orchestration runs its real activities; activities the project does
+ * not define can be stubbed with {@link #activity(String, Function)}. An orchestrator's input
+ * is the load message unless {@link #orchestrationInput(String, LongFunction)} gives it one of
+ * the type it reads.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.local.LocalRuntime [closed|open] [workers|rate] [seconds] [function regex]
+ */
+public class LocalRuntime {
+    private static final String TIMER_INFO = "{\"Schedule\":{\"AdjustForDST\":true},"
+        + "\"ScheduleStatus\":{\"Last\":\"2026-01-01T00:00:00+00:00\",\"Next\":\"2026-01-01T00:01:00+00:00\"},\"IsPastDue\":false}";
+    private static final int BATCH_SIZE = 10;
+
+    private final LocalBindings bindings;
+    private final Map<String, LocalFunction> functions = new TreeMap<>();
+    private final Map<String, Function<Object, Object>> activities = new LinkedHashMap<>();
+    private final Map<String, LongFunction<Object>> orchestrationInputs = new HashMap<>();
+
+    public LocalRuntime(LocalBindings bindings) {
+        this.bindings = bindings;
+    }
+
+    /**
+     * Finds every function next to this project's classes.
+     */
+    public static LocalRuntime discover(LocalBindings bindings) {
+        LocalRuntime runtime = new LocalRuntime(bindings);
+        for (String className : FunctionClassIndex.classNames(HttpTriggerFunction.class)) {
+            Class<?> type;
+            try {
+                type = Class.forName(className);
+            } catch (ClassNotFoundException | LinkageError e) {
+                continue;
+            }
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(FunctionName.class)) {
+                    runtime.add(method);
+                }
+            }
+        }
+        return runtime;
+    }
+
+    private void add(Method method) {
+        try {
+            LocalFunction function = new LocalFunction(method, bindings);
+            functions.put(function.getName(), function);
+            if ("DurableActivityTrigger".equals(function.getTriggerKind())) {
+                activities.put(function.getName(), input -> {
+                    try {
+                        return function.invoke(input);
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Activity " + function.getName() + " failed", e);
+                    }
+                });
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot bind " + method, e);
+        }
+    }
+
+    /**
+     * Stands in for an activity the orchestrators call but the project does not define.
+     */
+    public LocalRuntime activity(String name, Function<Object, Object> activity) {
+        activities.putIfAbsent(name, activity);
+        return this;
+    }
+
+    /**
+     * The input the orchestrator gets for each invocation, by sequence number.
+     */
+    public LocalRuntime orchestrationInput(String orchestrator, LongFunction<Object> input) {
+        orchestrationInputs.put(orchestrator, input);
+        return this;
+    }
+
+    public Map<String, LocalFunction> getFunctions() {
+        return functions;
+    }
+
+    public LocalBindings getBindings() {
+        return bindings;
+    }
+
+    public Object invoke(String functionName, long sequence) throws Exception {
+        LocalFunction function = functions.get(functionName);
+        if (function == null) {
+            throw new IllegalArgumentException("No function " + functionName);
+        }
+        return function.invoke(payload(function, sequence));
+    }
+
+    /**
+     * A trigger payload that fits the function's trigger parameter.
+     */
+    Object payload(LocalFunction function, long sequence) {
+        Class<?> type = function.getTriggerType();
+        String message = "load-" + sequence;
+        if (HttpRequestMessage.class.isAssignableFrom(type)) {
+            return HttpRequestMessageMock.get("name", message);
+        }
+        if (TaskOrchestrationContext.class.isAssignableFrom(type)) {
+            LongFunction<Object> input = orchestrationInputs.get(function.getName());
+            FakeOrchestrationContext context = new FakeOrchestrationContext(input != null ? input.apply(sequence) : message);
+            activities.forEach(context::activity);
+            return context;
+        }
+        if ("TimerTrigger".equals(function.getTriggerKind())) {
+            return TIMER_INFO;
+        }
+        if (List.class.isAssignableFrom(type) || type.isArray() && !byte[].class.equals(type)) {
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch.add(message + "-" + i);
+            }
+            return type.isArray() ? batch.toArray(new String[0]) : batch;
+        }
+        if (byte[].class.equals(type)) {
+            return message.getBytes(StandardCharsets.UTF_8);
+        }
+        return message;
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean open = args.length > 0 && "open".equals(args[0]);
+        double load = args.length > 1 ? Double.parseDouble(args[1]) : open ? 1000 : 4;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 3;
+        Pattern filter = Pattern.compile(args.length > 3 ? args[3] : ".*");
+        // The functions log every call at INFO
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.WARNING);
+        Arrays.stream(root.getHandlers()).forEach(handler -> handler.setLevel(Level.WARNING));
+
+        LocalRuntime runtime = discover(LocalBindings.inTempDirectory())
+            // Called by the Chaining and FanOutFanIn samples, which do not define them
+            .activity("F1", input -> input instanceof String ? ((String) input).length() : Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8))
+            .activity("F2", x -> (Integer) x * 2)
+            .activity("F3", y -> (Integer) y + 1)
+            .activity("F4", z -> (Integer) z / 2.0)
+            // CitiesBatched reads the array StartOrchestration splits ?cities= into
+            .orchestrationInput("CitiesBatched", sequence -> new String[]{"Tokyo-" + sequence, "London-" + sequence, "Seattle-" + sequence});
+        LoadGenerator generator = open ? LoadGenerator.openLoop(load, 64) : LoadGenerator.closedLoop((int) load);
+        System.out.printf("%s loop, %s, %d s per function%n", open ? "open" : "closed",
+            open ? load + " invocations/s" : (int) load + " workers", seconds);
+        System.out.printf("%-28s %10s %8s %10s %10s %10s %10s %10s%n",
+            "function", "calls/s", "errors", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        for (LocalFunction function : runtime.getFunctions().values()) {
+            if (!filter.matcher(function.getName()).matches()) {
+                continue;
+            }
+            if (function.getUnsupportedReason() != null) {
+                System.out.printf("%-28s skipped: %s%n", function.getName(), function.getUnsupportedReason());
+                continue;
+            }
+            LoadGenerator.Result result = generator.run(sequence -> function.invoke(runtime.payload(function, sequence)),
+                TimeUnit.SECONDS.toNanos(seconds));
+            LatencyHistogram latencies = result.getLatencies();
+            System.out.printf("%-28s %10.0f %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n", function.getName(), result.getThroughput(),
+                result.getErrors(), latencies.percentile(50) / 1e3, latencies.percentile(90) / 1e3,
+                latencies.percentile(99) / 1e3, latencies.percentile(99.9) / 1e3, latencies.max() / 1e3);
+        }
+        System.out.println("outputs delivered: " + runtime.getBindings().deliveredCounts());
+    }
+}
@@ -0,0 +1,112 @@
+package com.functions.logging;
+
+import com.functions.ExecutionContextMock;
+import com.functions.execution.FunctionWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncLogAppenderTest {
+
+    @Test
+    public void flushReturnsOnlyOnceEveryRecordReachedTheLogger() {
+        RecordingHandler handler = new RecordingHandler(0);
+        Logger logger = logger(handler);
+        AsyncLogAppender appender = new AsyncLogAppender(64);
+        for (int i = 0; i < 50; i++) {
+            int n = i;
+            assertTrue(appender.append(logger, Level.INFO, (Supplier<String>) () -> "record " + n, null));
+        }
+        assertTrue(appender.flush(5, TimeUnit.SECONDS));
+        assertEquals(50, handler.records.size());
+        assertEquals("record 0", handler.records.get(0).getMessage());
+        assertEquals("record 49", handler.records.get(49).getMessage());
+    }
+
+    @Test
+    public void dropsARecordWhenTheBufferIsFull() throws InterruptedException {
+        RecordingHandler handler = new RecordingHandler(1);
+        Logger logger = logger(handler);
+        AsyncLogAppender appender = new AsyncLogAppender(4);
+        assertTrue(appender.append(logger, Level.INFO, "blocks the writer", null));
+        assertTrue(handler.blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            assertTrue(appender.append(logger, Level.INFO, "queued " + i, null));
+        }
+        assertFalse(appender.append(logger, Level.INFO, "dropped", null));
+        assertFalse(appender.flush(20, TimeUnit.MILLISECONDS));
+
+        handler.release.countDown();
+        assertTrue(appender.flush(5, TimeUnit.SECONDS));
+        assertEquals(5, handler.records.size());
+        assertEquals(5, appender.getPublished());
+    }
+
+    @Test
+    public void functionWrapperPublishesTheBodysRecordsBeforeItReturns() {
+        RecordingHandler handler = new RecordingHandler(0);
+        Logger logger = logger(handler);
+        FunctionWrapper function = FunctionWrapper.of("test-" + UUID.randomUUID());
+        for (int i = 0; i < 20; i++) {
+            int n = i;
+            function.run(new ExecutionContextMock("test"), () -> function.getLog().log(logger, Level.INFO, "invocation " + n, null));
+            assertEquals(n + 1, handler.records.size());
+        }
+    }
+
+    private static Logger logger(Handler handler) {
+        Logger logger = Logger.getLogger("com.functions.logging.test." + UUID.randomUUID());
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.ALL);
+        logger.addHandler(handler);
+        return logger;
+    }
+
+    /**
+     * Keeps the records; the first {@code blockFirst} of them wait in the handler until released.
+     */
+    private static final class RecordingHandler extends Handler {
+        final List<LogRecord> records = new CopyOnWriteArrayList<>();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        private final int blockFirst;
+
+        RecordingHandler(int blockFirst) {
+            this.blockFirst = blockFirst;
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            if (records.size() < blockFirst) {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
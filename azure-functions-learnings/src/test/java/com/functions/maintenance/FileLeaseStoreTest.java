@@ -0,0 +1,66 @@
+package com.functions.maintenance;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileLeaseStoreTest {
+    private Path directory;
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void grantsALeaseToAnotherOwnerOnlyOnceItExpires() throws Exception {
+        directory = Files.createTempDirectory("leases");
+        FileLeaseStore store = new FileLeaseStore(directory);
+        assertTrue(store.tryAcquire("shard-0", "a", 200));
+        assertFalse(store.tryAcquire("shard-0", "b", 200));
+        // The owner renews its own lease
+        assertTrue(store.tryAcquire("shard-0", "a", 200));
+
+        Thread.sleep(300);
+        assertTrue(store.tryAcquire("shard-0", "b", 60_000));
+        assertFalse(store.tryAcquire("shard-0", "a", 60_000));
+    }
+
+    @Test
+    public void releasesOnlyItsOwnLease() throws IOException {
+        directory = Files.createTempDirectory("leases");
+        FileLeaseStore store = new FileLeaseStore(directory);
+        assertTrue(store.tryAcquire("shard-0", "a", 60_000));
+        store.release("shard-0", "b");
+        assertFalse(store.tryAcquire("shard-0", "b", 60_000));
+        store.release("shard-0", "a");
+        assertTrue(store.tryAcquire("shard-0", "b", 60_000));
+    }
+
+    @Test
+    public void sharesLeasesBetweenStoresOnTheSameDirectory() throws IOException {
+        directory = Files.createTempDirectory("leases");
+        assertTrue(new FileLeaseStore(directory).tryAcquire("shard-1", "a", 60_000));
+        FileLeaseStore other = new FileLeaseStore(directory);
+        assertFalse(other.tryAcquire("shard-1", "b", 60_000));
+
+        List<Lease> leases = other.list("shard-");
+        assertEquals(1, leases.size());
+        assertEquals("a", leases.get(0).getOwner());
+        assertTrue(leases.get(0).isLive(System.currentTimeMillis()));
+    }
+}
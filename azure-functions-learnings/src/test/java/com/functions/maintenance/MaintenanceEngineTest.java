@@ -0,0 +1,147 @@
+package com.functions.maintenance;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MaintenanceEngineTest {
+    private static final Logger LOGGER = Logger.getLogger(MaintenanceEngineTest.class.getName());
+
+    private Path directory;
+    private Path checkpointFile;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("maintenance");
+        checkpointFile = directory.resolve("checkpoint.properties");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void resumesAtTheTaskTheTimeBoxCutOff() {
+        AtomicInteger first = new AtomicInteger();
+        SlowTask slow = new SlowTask(5, 20);
+        AtomicInteger last = new AtomicInteger();
+
+        MaintenanceEngine.RunReport cutOff = engine(first, slow, last).run(30, 0, LOGGER);
+        assertTrue(cutOff.isTimedOut());
+        assertEquals("slow", cutOff.getResumeAt());
+        assertEquals(0, cutOff.getRounds());
+        assertEquals(0, last.get());
+
+        // The next invocation builds its engine from the checkpoint file, as after a restart
+        MaintenanceEngine next = engine(first, slow, last);
+        MaintenanceEngine.RunReport resumed = next.run(60_000, 0, LOGGER);
+        assertFalse(resumed.isTimedOut());
+        assertNull(resumed.getResumeAt());
+        assertEquals(1, resumed.getRounds());
+        assertEquals(1, first.get(), "the task before the checkpoint ran again");
+        assertEquals(5, slow.slices.get());
+        assertEquals(1, last.get());
+        assertNull(next.checkpoint().getNextTask());
+        assertEquals(1, next.checkpoint().getRoundsCompleted());
+    }
+
+    @Test
+    public void stopsWithinOneSliceOfTheTimeBox() {
+        SlowTask endless = new SlowTask(Integer.MAX_VALUE, 10);
+        MaintenanceEngine engine = new MaintenanceEngine(checkpointFile, 1).register("endless", endless);
+        long start = System.nanoTime();
+        MaintenanceEngine.RunReport report = engine.run(50, 0, LOGGER);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(report.isTimedOut());
+        assertEquals("endless", report.getResumeAt());
+        assertTrue(report.getSlices() < MaintenanceEngine.MAX_SLICES_PER_TASK, report.getSlices() + " slices");
+        // 50 ms plus at most one 10 ms slice, with room for a slow scheduler
+        assertTrue(elapsedMillis < 50 + 10 + 200, "ran for " + elapsedMillis + " ms");
+        assertEquals(1, engine.getTimeBoxesExhausted());
+    }
+
+    @Test
+    public void catchUpRoundsOnlyRunTheTasksCutOffWithWorkLeft() {
+        SlowTask big = new SlowTask(MaintenanceEngine.MAX_SLICES_PER_TASK + 36, 0);
+        AtomicInteger small = new AtomicInteger();
+        MaintenanceEngine engine = new MaintenanceEngine(checkpointFile, 1)
+            .register("big", big)
+            .register("small", budget -> small.incrementAndGet() > 0);
+
+        MaintenanceEngine.RunReport report = engine.run(60_000, 5, LOGGER);
+        assertEquals(2, report.getRounds());
+        assertEquals(MaintenanceEngine.MAX_SLICES_PER_TASK + 36 + 1, report.getSlices());
+        assertEquals(1, small.get());
+    }
+
+    @Test
+    public void aFailingTaskDoesNotStopTheRound() {
+        AtomicInteger after = new AtomicInteger();
+        MaintenanceEngine engine = new MaintenanceEngine(checkpointFile, 1)
+            .register("failing", budget -> {
+                throw new IOException("disk full");
+            })
+            .register("after", budget -> after.incrementAndGet() > 0);
+
+        MaintenanceEngine.RunReport report = engine.run(60_000, 0, LOGGER);
+        assertEquals(1, report.getFailures());
+        assertEquals(1, report.getRounds());
+        assertEquals(1, after.get());
+        assertEquals(1, engine.getTaskFailures());
+    }
+
+    @Test
+    public void catchesUpOnlyWhenPastDue() {
+        MaintenanceEngine engine = new MaintenanceEngine(checkpointFile, 1).register("noop", budget -> true);
+        assertEquals(0, engine.catchUpRounds(false, 1000));
+        assertEquals(1, engine.catchUpRounds(true, 1000));
+        engine.run(60_000, 0, LOGGER);
+        assertEquals(1, engine.catchUpRounds(true, 60_000));
+    }
+
+    private MaintenanceEngine engine(AtomicInteger first, SlowTask slow, AtomicInteger last) {
+        return new MaintenanceEngine(checkpointFile, 1)
+            .register("first", budget -> first.incrementAndGet() > 0)
+            .register("slow", slow)
+            .register("last", budget -> last.incrementAndGet() > 0);
+    }
+
+    /**
+     * Needs a fixed number of slices per round, each taking sliceMillis.
+     */
+    private static final class SlowTask implements MaintenanceTask {
+        private final int slicesNeeded;
+        private final long sliceMillis;
+        private final AtomicInteger slices = new AtomicInteger();
+
+        SlowTask(int slicesNeeded, long sliceMillis) {
+            this.slicesNeeded = slicesNeeded;
+            this.sliceMillis = sliceMillis;
+        }
+
+        @Override
+        public boolean runSlice(int budget) throws InterruptedException {
+            if (sliceMillis > 0) {
+                Thread.sleep(sliceMillis);
+            }
+            return slices.incrementAndGet() >= slicesNeeded;
+        }
+    }
+}
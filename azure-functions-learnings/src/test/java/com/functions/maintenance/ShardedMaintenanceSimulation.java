@@ -0,0 +1,119 @@
+package com.functions.maintenance;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Logger;
+
+/**
+ * Several simulated instances run the timer's maintenance against one lease store and split a
+ * sharded workload between them. Prints the wall time per tick and how many shards each
+ * instance held, for one instance and for a scaled-out set, and fails unless the instances
+ * end up holding every shard once, none more than its fair share.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.maintenance.ShardedMaintenanceSimulation [shards] [file]
+ */
+public class ShardedMaintenanceSimulation {
+    private static final int UNITS_PER_SHARD = 500;
+    private static final int SLICE_BUDGET = 100;
+    private static final long SLICE_MILLIS = 2;
+    private static final int TICKS = 4;
+
+    public static void main(String[] args) throws Exception {
+        int shards = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        boolean file = args.length > 1 && "file".equals(args[1]);
+        for (int instances : new int[]{1, 2, 4}) {
+            LeaseStore leases = file ? new FileLeaseStore(Files.createTempDirectory("leases")) : new InMemoryLeaseStore();
+            simulate(instances, shards, leases);
+        }
+    }
+
+    private static void simulate(int instanceCount, int shards, LeaseStore leases) throws InterruptedException {
+        AtomicIntegerArray remaining = new AtomicIntegerArray(shards);
+        ShardedWorkload workload = new ShardedWorkload() {
+            @Override
+            public int shardCount() {
+                return shards;
+            }
+
+            @Override
+            public boolean runSlice(int shard, int budget) throws InterruptedException {
+                // Stands in for a page of storage I/O on the shard
+                TimeUnit.MILLISECONDS.sleep(SLICE_MILLIS);
+                int left = remaining.addAndGet(shard, -budget);
+                if (left <= 0) {
+                    remaining.set(shard, 0);
+                    return true;
+                }
+                return false;
+            }
+        };
+        List<MaintenanceEngine> engines = new ArrayList<>();
+        List<ShardedMaintenanceTask> tasks = new ArrayList<>();
+        for (int i = 0; i < instanceCount; i++) {
+            ShardedMaintenanceTask task = new ShardedMaintenanceTask("sweep", workload, leases, "instance-" + i, TimeUnit.MINUTES.toMillis(3));
+            tasks.add(task);
+            engines.add(new MaintenanceEngine(null, SLICE_BUDGET).register("sweep", task));
+        }
+
+        Logger logger = Logger.getLogger(ShardedMaintenanceSimulation.class.getName());
+        for (int tick = 1; tick <= TICKS; tick++) {
+            for (int shard = 0; shard < shards; shard++) {
+                remaining.set(shard, UNITS_PER_SHARD);
+            }
+            long start = System.nanoTime();
+            CountDownLatch done = new CountDownLatch(instanceCount);
+            for (MaintenanceEngine engine : engines) {
+                new Thread(() -> {
+                    // Timer invocations keep coming until the tick's work is drained
+                    do {
+                        engine.run(TimeUnit.SECONDS.toMillis(40), 0, logger);
+                    } while (!drained(remaining) && sleep());
+                    done.countDown();
+                }).start();
+            }
+            done.await();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            StringBuilder held = new StringBuilder();
+            int total = 0;
+            int most = 0;
+            for (int i = 0; i < instanceCount; i++) {
+                int count = 0;
+                for (Lease lease : leases.list("sweep/")) {
+                    count += lease.isLive(System.currentTimeMillis()) && ("instance-" + i).equals(lease.getOwner())
+                        && !lease.getName().contains("/member/") ? 1 : 0;
+                }
+                held.append(i == 0 ? "" : "/").append(count);
+                total += count;
+                most = Math.max(most, count);
+            }
+            // Instances may join after the first rounds, but by the last tick the shards are split
+            if (tick == TICKS && (total != shards || most > (shards + instanceCount - 1) / instanceCount)) {
+                throw new AssertionError(instanceCount + " instances hold " + held + " of " + shards + " shards");
+            }
+            System.out.printf("instances=%d tick=%d  %5d ms  shards held %s%n", instanceCount, tick, elapsed, held);
+        }
+    }
+
+    private static boolean drained(AtomicIntegerArray remaining) {
+        for (int shard = 0; shard < remaining.length(); shard++) {
+            if (remaining.get(shard) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sleep() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(1);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
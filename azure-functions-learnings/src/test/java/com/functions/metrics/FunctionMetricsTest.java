@@ -0,0 +1,51 @@
+package com.functions.metrics;
+
+import com.microsoft.durabletask.interruption.OrchestratorBlockedException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FunctionMetricsTest {
+
+    @Test
+    public void countsInvocationsAndErrors() {
+        String name = "test-" + UUID.randomUUID();
+        FunctionMetrics metrics = FunctionMetrics.of(name);
+        assertEquals("ok", metrics.record(null, () -> "ok"));
+        assertThrows(IllegalStateException.class, () -> metrics.run(null, () -> {
+            throw new IllegalStateException("failed");
+        }));
+        assertEquals(2, metrics.getInvocations());
+        assertEquals(1, metrics.getErrors());
+        String text = MetricsRegistry.global().toPrometheusText();
+        assertTrue(text.contains("function_duration_seconds_count{function=\"" + name + "\"} 2\n"), text);
+        assertTrue(text.contains("function_in_flight{function=\"" + name + "\"} 0.0\n"), text);
+    }
+
+    @Test
+    public void countsEachReplayOfABlockedOrchestratorAsAnInvocationButNotAnError() {
+        FunctionMetrics metrics = FunctionMetrics.of("test-" + UUID.randomUUID());
+        for (int replay = 0; replay < 3; replay++) {
+            assertThrows(OrchestratorBlockedException.class, () -> metrics.record(null, () -> {
+                throw new OrchestratorBlockedException("waiting for an activity");
+            }));
+        }
+        assertEquals("done", metrics.record(null, () -> "done"));
+        assertEquals(4, metrics.getInvocations());
+        assertEquals(0, metrics.getErrors());
+    }
+
+    @Test
+    public void countsACheckedFailureOfACallAsAnError() {
+        FunctionMetrics metrics = FunctionMetrics.of("test-" + UUID.randomUUID());
+        assertThrows(IOException.class, () -> metrics.call(null, () -> {
+            throw new IOException("failed");
+        }));
+        assertEquals(1, metrics.getErrors());
+    }
+}
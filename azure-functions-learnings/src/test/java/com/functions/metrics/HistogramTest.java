@@ -0,0 +1,65 @@
+package com.functions.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HistogramTest {
+
+    @Test
+    public void roundsUpToWholeMicrosecondsSoAValueIsNeverAboveItsBound() {
+        assertEquals(0, bucketOf(0));
+        assertEquals(0, bucketOf(1_000));
+        // 1.001 us is above the 1 us bound, so it goes to the 2 us bucket
+        assertEquals(1, bucketOf(1_001));
+        assertEquals(1, bucketOf(2_000));
+        assertEquals(2, bucketOf(2_001));
+        assertEquals(10, bucketOf(1_024_000));
+        assertEquals(11, bucketOf(1_024_001));
+    }
+
+    @Test
+    public void putsDurationsAboveTheLastBoundInTheInfBucket() {
+        assertEquals(Histogram.BUCKETS - 2, bucketOf((1L << (Histogram.BUCKETS - 2)) * 1000));
+        assertEquals(Histogram.BUCKETS - 1, bucketOf((1L << (Histogram.BUCKETS - 2)) * 1000 + 1));
+        assertEquals(Histogram.BUCKETS - 1, bucketOf(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void boundsArePowersOfTwoMicroseconds() {
+        assertEquals(1e-6, Histogram.upperBoundSeconds(0));
+        assertEquals(1024e-6, Histogram.upperBoundSeconds(10));
+        assertEquals(Double.POSITIVE_INFINITY, Histogram.upperBoundSeconds(Histogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void sumsTheRecordedNanosecondsAcrossThreads() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    histogram.recordNanos(1_500);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, histogram.count());
+        assertEquals(4000L * 1_500, histogram.snapshot()[Histogram.BUCKETS]);
+    }
+
+    private static int bucketOf(long nanos) {
+        Histogram histogram = new Histogram();
+        histogram.recordNanos(nanos);
+        long[] snapshot = histogram.snapshot();
+        for (int i = 0; i < Histogram.BUCKETS; i++) {
+            if (snapshot[i] == 1) {
+                return i;
+            }
+        }
+        throw new AssertionError("no bucket counted " + nanos + " ns");
+    }
+}
@@ -0,0 +1,53 @@
+package com.functions.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void exportsCountersAndGaugesInThePrometheusTextFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("requests_total", "Requests.", "function", "Http\"Trigger").add(3);
+        registry.counter("requests_total", "Requests.", "function", "Timer").increment();
+        registry.gauge("in_flight", "Running.", () -> 2.5);
+        assertEquals("# HELP in_flight Running.\n"
+                + "# TYPE in_flight gauge\n"
+                + "in_flight 2.5\n"
+                + "# HELP requests_total Requests.\n"
+                + "# TYPE requests_total counter\n"
+                + "requests_total{function=\"Http\\\"Trigger\"} 3\n"
+                + "requests_total{function=\"Timer\"} 1\n",
+            registry.toPrometheusText());
+    }
+
+    @Test
+    public void exportsCumulativeHistogramBuckets() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Histogram histogram = registry.histogram("duration_seconds", "Duration.", "function", "f");
+        histogram.recordNanos(500);
+        histogram.recordNanos(1_500);
+        histogram.recordNanos(1_500_000);
+        String text = registry.toPrometheusText();
+        assertTrue(text.contains("# TYPE duration_seconds histogram\n"), text);
+        assertTrue(text.contains("duration_seconds_bucket{function=\"f\",le=\"1.0E-6\"} 1\n"), text);
+        assertTrue(text.contains("duration_seconds_bucket{function=\"f\",le=\"2.0E-6\"} 2\n"), text);
+        assertTrue(text.contains("duration_seconds_bucket{function=\"f\",le=\"0.001024\"} 2\n"), text);
+        assertTrue(text.contains("duration_seconds_bucket{function=\"f\",le=\"0.002048\"} 3\n"), text);
+        assertTrue(text.contains("duration_seconds_bucket{function=\"f\",le=\"+Inf\"} 3\n"), text);
+        assertTrue(text.contains("duration_seconds_sum{function=\"f\"} 0.001502\n"), text);
+        assertTrue(text.contains("duration_seconds_count{function=\"f\"} 3\n"), text);
+    }
+
+    @Test
+    public void returnsTheSameMetricForTheSameLabels() {
+        MetricsRegistry registry = new MetricsRegistry();
+        assertSame(registry.counter("c", "C.", "a", "1"), registry.counter("c", "C.", "a", "1"));
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("c", "C."));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("d", "D.", "odd"));
+    }
+}
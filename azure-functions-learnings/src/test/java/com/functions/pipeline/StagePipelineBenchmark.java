@@ -0,0 +1,149 @@
+package com.functions.pipeline;
+
+import com.functions.local.LatencyHistogram;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+/**
+ * Latency of an Event Hub batch going through a two-segment pipeline shaped like
+ * EventHubTriggerAndOutputJSON and EventHubOutputJson: fused inline, fused with a bounded queue
+ * between the segments, and over a simulated hop. The hop encodes every message to bytes, hands
+ * it to a consumer thread and waits {@code hopMicros} before the second function runs, standing
+ * in for the hub round trip and the trigger's receive cycle; 0 leaves only the in-process cost.
+ * Every batch must come out of each topology whole, or the run fails.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.pipeline.StagePipelineBenchmark [batches] [hopMicros]
+ */
+public class StagePipelineBenchmark {
+    private static final int BATCH_SIZE = 32;
+
+    public static void main(String[] args) throws Exception {
+        int batches = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        long hopNanos = TimeUnit.MICROSECONDS.toNanos(args.length > 1 ? Long.parseLong(args[1]) : 0);
+        List<String> batch = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add("  {\"id\":\"" + i + "\",\"city\":\"Tokyo\",\"temperature\":" + (20 + i % 7) + ",\"unit\":\"C\"}  ");
+        }
+
+        StagePipeline<List<String>, String> inline = pipeline(StagePipeline.Topology.FUSED, 0);
+        StagePipeline<List<String>, String> queued = pipeline(StagePipeline.Topology.FUSED, 256);
+        StagePipeline<List<String>, String> multiHop = pipeline(StagePipeline.Topology.MULTI_HOP, 0);
+        SimulatedHop hop = new SimulatedHop(multiHop, hopNanos);
+
+        // The first round warms up
+        for (int round = 0; round < 2; round++) {
+            System.out.println(round == 0 ? "warm-up" : BATCH_SIZE + " messages per batch, hop " + TimeUnit.NANOSECONDS.toMicros(hopNanos) + " us");
+            run("fused, inline", batches, () -> inline.process(batch).size());
+            run("fused, bounded queue", batches, () -> queued.process(batch).size());
+            run("multi-hop", batches, () -> hop.send(batch));
+        }
+        inline.close();
+        queued.close();
+    }
+
+    private static StagePipeline<List<String>, String> pipeline(StagePipeline.Topology topology, int queueCapacity) {
+        return StagePipeline.<List<String>>builder("benchmark")
+            .flatMap("messages", messages -> messages)
+            .map("trim", String::trim)
+            .hop("test-outputjson-java")
+            .filter("has-city", message -> message.contains("\"city\""))
+            .topology(topology)
+            .queueCapacity(queueCapacity)
+            .build();
+    }
+
+    private static void run(String label, int batches, IntSupplier sendBatch) {
+        LatencyHistogram latencies = new LatencyHistogram();
+        long start = System.nanoTime();
+        for (int i = 0; i < batches; i++) {
+            long batchStart = System.nanoTime();
+            int written = sendBatch.getAsInt();
+            latencies.record(System.nanoTime() - batchStart);
+            if (written != BATCH_SIZE) {
+                throw new AssertionError(label + " wrote " + written + " of " + BATCH_SIZE + " messages");
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-22s %10.0f msg/s  p50 %8.2f us  p99 %8.2f us%n", label, (double) batches * BATCH_SIZE * 1e9 / elapsed,
+            latencies.percentile(50) / 1e3, latencies.percentile(99) / 1e3);
+    }
+
+    /**
+     * The trigger function runs segment 0 and sends its output over the "hub"; a second thread
+     * plays the hop function and runs segment 1 on each message it receives.
+     */
+    private static final class SimulatedHop {
+        private final StagePipeline<List<String>, String> pipeline;
+        private final long hopNanos;
+        private final BlockingQueue<HubMessage> hub = new LinkedBlockingQueue<>();
+
+        SimulatedHop(StagePipeline<List<String>, String> pipeline, long hopNanos) {
+            this.pipeline = pipeline;
+            this.hopNanos = hopNanos;
+            Thread consumer = new Thread(this::receive, "hop-function");
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+
+        /**
+         * @return the number of messages the hop function wrote
+         */
+        int send(List<String> batch) {
+            List<String> sent = pipeline.runSegment(0, Collections.singletonList(batch));
+            CountDownLatch delivered = new CountDownLatch(sent.size());
+            AtomicInteger written = new AtomicInteger();
+            for (String message : sent) {
+                hub.add(new HubMessage(message.getBytes(StandardCharsets.UTF_8), delivered, written));
+            }
+            try {
+                delivered.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return written.get();
+        }
+
+        private void receive() {
+            List<HubMessage> received = new ArrayList<>();
+            try {
+                while (true) {
+                    received.add(hub.take());
+                    hub.drainTo(received);
+                    if (hopNanos > 0) {
+                        LockSupport.parkNanos(hopNanos);
+                    }
+                    for (HubMessage message : received) {
+                        String body = new String(message.body, StandardCharsets.UTF_8);
+                        message.written.addAndGet(pipeline.runSegment(1, Collections.singletonList(body)).size());
+                        message.delivered.countDown();
+                    }
+                    received.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class HubMessage {
+        final byte[] body;
+        final CountDownLatch delivered;
+        final AtomicInteger written;
+
+        HubMessage(byte[] body, CountDownLatch delivered, AtomicInteger written) {
+            this.body = body;
+            this.delivered = delivered;
+            this.written = written;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.functions.pipeline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StagePipelineTest {
+    private static final List<String> BATCH = Arrays.asList(" {\"city\":\"Tokyo\"} ", " {\"id\":1} ", " {\"city\":\"Oslo\"} ");
+
+    @AfterEach
+    public void clearSetting() {
+        System.clearProperty(StagePipeline.TOPOLOGY_SETTING);
+    }
+
+    @Test
+    public void fusedRunsEverySegmentInline() {
+        StagePipeline<List<String>, String> pipeline = pipeline(StagePipeline.Topology.FUSED, 0);
+        assertTrue(pipeline.isFused());
+        assertEquals(Arrays.asList("{\"city\":\"Tokyo\"}", "{\"city\":\"Oslo\"}"), pipeline.process(BATCH));
+        assertEquals(1, pipeline.getItemsIn());
+        assertEquals(2, pipeline.getItemsOut());
+    }
+
+    @Test
+    public void boundedQueueKeepsTheInputOrder() {
+        try (StagePipeline<List<String>, String> pipeline = pipeline(StagePipeline.Topology.FUSED, 1)) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals(Arrays.asList("{\"city\":\"Tokyo\"}", "{\"city\":\"Oslo\"}", "{\"city\":\"Tokyo\"}", "{\"city\":\"Oslo\"}"),
+                    pipeline.processAll(Arrays.asList(BATCH, BATCH)));
+            }
+        }
+    }
+
+    @Test
+    public void multiHopRunsOneSegmentPerFunction() {
+        StagePipeline<List<String>, String> pipeline = pipeline(StagePipeline.Topology.MULTI_HOP, 0);
+        assertFalse(pipeline.isFused());
+        assertEquals(2, pipeline.segmentCount());
+        assertEquals(Collections.singletonList("test-outputjson-java"), pipeline.getHops());
+
+        List<String> sent = pipeline.runSegment(0, Collections.singletonList(BATCH));
+        assertEquals(3, sent.size());
+        List<String> written = pipeline.runSegment(1, sent);
+        assertEquals(Arrays.asList("{\"city\":\"Tokyo\"}", "{\"city\":\"Oslo\"}"), written);
+    }
+
+    @Test
+    public void failingStageFailsTheCallNamingIt() {
+        StagePipeline<String, Integer> inline = failing(0);
+        CompletionException failure = assertThrows(CompletionException.class, () -> inline.processAll(Arrays.asList("1", "x")));
+        assertEquals("ci@hub/parse failed", failure.getMessage());
+        assertEquals(1, inline.getFailures());
+
+        try (StagePipeline<String, Integer> queued = failing(4)) {
+            failure = assertThrows(CompletionException.class, () -> queued.processAll(Arrays.asList("1", "x", "2")));
+            assertEquals("ci@hub/parse failed", failure.getMessage());
+            // The worker survives the failed batch
+            assertEquals(Arrays.asList(3, 4), queued.processAll(Arrays.asList("3", "4")));
+        }
+    }
+
+    @Test
+    public void topologyComesFromTheSetting() {
+        System.setProperty(StagePipeline.TOPOLOGY_SETTING, "multi-hop");
+        assertEquals(StagePipeline.Topology.MULTI_HOP, StagePipeline.<String>builder("ci").hop("hub").build().getTopology());
+
+        System.setProperty(StagePipeline.TOPOLOGY_SETTING, "star");
+        StagePipeline<String, String> unrecognized = StagePipeline.<String>builder("ci").hop("hub").build();
+        IllegalStateException failure = assertThrows(IllegalStateException.class, () -> unrecognized.process("a"));
+        assertTrue(failure.getMessage().contains(StagePipeline.TOPOLOGY_SETTING), failure.getMessage());
+    }
+
+    private static StagePipeline<List<String>, String> pipeline(StagePipeline.Topology topology, int queueCapacity) {
+        return StagePipeline.<List<String>>builder("ci")
+            .flatMap("messages", messages -> messages)
+            .map("trim", String::trim)
+            .hop("test-outputjson-java")
+            .filter("has-city", message -> message.contains("\"city\""))
+            .topology(topology)
+            .queueCapacity(queueCapacity)
+            .build();
+    }
+
+    private static StagePipeline<String, Integer> failing(int queueCapacity) {
+        return StagePipeline.<String>builder("ci")
+            .hop("hub")
+            .map("parse", Integer::parseInt)
+            .topology(StagePipeline.Topology.FUSED)
+            .queueCapacity(queueCapacity)
+            .build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+import com.functions.execution.FunctionExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BatchedTableWriterTest {
+
+    @Test
+    public void writesAFullPartitionAsSoonAsItFillsABatch() {
+        InMemoryTable table = new InMemoryTable();
+        BatchedTableWriter writer = new BatchedTableWriter(table, 10, 3, 1);
+        for (int i = 0; i < 25; i++) {
+            writer.add(new Person("p", "row-" + i, "name"));
+        }
+        assertEquals(2, table.getTransactions());
+        assertEquals(5, writer.pendingCount());
+        BatchedTableWriter.FlushResult result = writer.flush();
+        assertEquals(5, result.getWritten());
+        assertEquals(25, table.size("p"));
+    }
+
+    @Test
+    public void setsAsideTheRejectedEntityAndWritesTheRest() {
+        InMemoryTable table = new InMemoryTable();
+        BatchedTableWriter writer = new BatchedTableWriter(table);
+        writer.add(new Person("p", "row-1", "a"));
+        writer.add(new Person("p", "", "no row key"));
+        writer.add(new Person("p", "row-3", "c"));
+        BatchedTableWriter.FlushResult result = writer.flush();
+        assertEquals(2, result.getWritten());
+        assertEquals(1, result.getFailed().size());
+        assertEquals("", result.getFailed().get(0).person.RowKey);
+        assertEquals(2, table.size("p"));
+    }
+
+    @Test
+    public void retriesATransientFailure() {
+        InMemoryTable table = new InMemoryTable().failTransientlyEvery(2);
+        BatchedTableWriter writer = new BatchedTableWriter(table, 1, 3, 1);
+        writer.addAll(Arrays.asList(new Person("p", "row-1", "a"), new Person("p", "row-2", "b")));
+        assertEquals(2, table.size("p"));
+        assertEquals(1, writer.getTransientRetries());
+    }
+
+    @Test
+    public void flushesPartitionsConcurrentlyOnTheExecutor() {
+        InMemoryTable table = new InMemoryTable();
+        CountDownLatch bothInFlight = new CountDownLatch(2);
+        AtomicInteger overlapped = new AtomicInteger();
+        TableBatchSink slow = (partitionKey, batch) -> {
+            bothInFlight.countDown();
+            try {
+                if (bothInFlight.await(5, TimeUnit.SECONDS)) {
+                    overlapped.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            table.submitTransaction(partitionKey, batch);
+        };
+        BatchedTableWriter writer = new BatchedTableWriter(slow);
+        writer.add(new Person("p1", "row", "a"));
+        writer.add(new Person("p2", "row", "b"));
+        try (FunctionExecutor executor = FunctionExecutor.platform(2)) {
+            BatchedTableWriter.FlushResult result = writer.flush(executor);
+            assertEquals(2, result.getWritten());
+            assertEquals(2, result.getTransactions());
+        }
+        assertEquals(2, overlapped.get());
+        assertEquals(1, table.size("p1"));
+        assertEquals(1, table.size("p2"));
+    }
+}
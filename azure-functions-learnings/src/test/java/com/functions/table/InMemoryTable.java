@@ -0,0 +1,142 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Person table, for the tests and benchmarks.
+ * <p>
+ * Partitions are kept as sorted maps of RowKey to entity, mirroring how the service orders rows
+ * inside a partition. Transactions are validated the way the service does (one PartitionKey,
+ * at most {@link #MAX_BATCH_OPERATIONS} operations, no duplicate RowKeys, non-empty keys) and
+ * can be made to fail transiently every N calls to exercise retry paths.
+ */
+public class InMemoryTable implements PersonTable {
+    /** Rows examined per query page before the table hands back a continuation token. */
+    public static final int MAX_SCANNED_PER_PAGE = 5_000;
+
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<String, Person>> partitions = new ConcurrentHashMap<>();
+    private final AtomicLong transactions = new AtomicLong();
+    private final AtomicLong pointReads = new AtomicLong();
+    private final AtomicLong queryPages = new AtomicLong();
+    private volatile int transientFailureEvery;
+
+    /**
+     * Makes every Nth transaction fail with a transient error; 0 disables fault injection.
+     */
+    public InMemoryTable failTransientlyEvery(int transactions) {
+        this.transientFailureEvery = transactions;
+        return this;
+    }
+
+    @Override
+    public void submitTransaction(String partitionKey, List<Person> batch) throws TableTransactionException {
+        long call = transactions.incrementAndGet();
+        int every = transientFailureEvery;
+        if (every > 0 && call % every == 0) {
+            throw TableTransactionException.transientFailure("ServerBusy");
+        }
+        if (batch.size() > MAX_BATCH_OPERATIONS) {
+            throw TableTransactionException.entityFailure(MAX_BATCH_OPERATIONS, "InvalidInput: too many operations");
+        }
+        Set<String> rowKeys = new HashSet<>();
+        int bytes = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Person person = batch.get(i);
+            if (!partitionKey.equals(person.PartitionKey)) {
+                throw TableTransactionException.entityFailure(i, "CommandsInBatchActOnDifferentPartitions");
+            }
+            if (person.RowKey == null || person.RowKey.isEmpty()) {
+                throw TableTransactionException.entityFailure(i, "PropertiesNeedValue: RowKey");
+            }
+            if (!rowKeys.add(person.RowKey)) {
+                throw TableTransactionException.entityFailure(i, "InvalidDuplicateRow");
+            }
+            bytes += TableEntities.estimateSize(person);
+            if (bytes > MAX_BATCH_BYTES) {
+                throw TableTransactionException.entityFailure(i, "RequestBodyTooLarge");
+            }
+        }
+        // Validation passed, so the batch is applied as a unit
+        ConcurrentSkipListMap<String, Person> partition = partitions.computeIfAbsent(partitionKey, k -> new ConcurrentSkipListMap<>());
+        for (Person person : batch) {
+            partition.put(person.RowKey, TableEntities.copy(person));
+        }
+    }
+
+    @Override
+    public Person get(String partitionKey, String rowKey) {
+        pointReads.incrementAndGet();
+        ConcurrentSkipListMap<String, Person> partition = partitions.get(partitionKey);
+        Person person = partition == null ? null : partition.get(rowKey);
+        return person == null ? null : TableEntities.copy(person);
+    }
+
+    /**
+     * Executes one page of a partition range-scan, as the service executes
+     * {@link PersonQuery#toODataFilter()}: the filter and projection are applied next to the
+     * data, so rejected rows and unselected columns are never copied out.
+     */
+    @Override
+    public PersonPage query(PersonQuery query, String continuationToken) {
+        queryPages.incrementAndGet();
+        String from = continuationToken != null
+            ? PersonPage.decodeToken(continuationToken, query.getPartitionKey())
+            : query.getFromRowKey();
+        ConcurrentSkipListMap<String, Person> partition = partitions.get(query.getPartitionKey());
+        if (partition == null || (from != null && query.getToRowKey() != null && from.compareTo(query.getToRowKey()) >= 0)) {
+            return new PersonPage(new ArrayList<>(0), null, 0);
+        }
+        NavigableMap<String, Person> range = partition;
+        if (from != null && query.getToRowKey() != null) {
+            range = partition.subMap(from, true, query.getToRowKey(), false);
+        } else if (from != null) {
+            range = partition.tailMap(from, true);
+        } else if (query.getToRowKey() != null) {
+            range = partition.headMap(query.getToRowKey(), false);
+        }
+
+        List<Person> page = new ArrayList<>(Math.min(query.getPageSize(), 64));
+        PersonFilter filter = query.getFilter();
+        boolean selectName = query.selects(PersonQuery.NAME);
+        int scanned = 0;
+        for (Map.Entry<String, Person> row : range.entrySet()) {
+            if (page.size() == query.getPageSize() || scanned == MAX_SCANNED_PER_PAGE) {
+                return new PersonPage(page, PersonPage.encodeToken(query.getPartitionKey(), row.getKey()), scanned);
+            }
+            scanned++;
+            Person person = row.getValue();
+            if (filter != null && !filter.test(person)) {
+                continue;
+            }
+            page.add(new Person(person.PartitionKey, person.RowKey, selectName ? person.Name : null));
+        }
+        return new PersonPage(page, null, scanned);
+    }
+
+    public int size(String partitionKey) {
+        ConcurrentSkipListMap<String, Person> partition = partitions.get(partitionKey);
+        return partition == null ? 0 : partition.size();
+    }
+
+    public long getTransactions() {
+        return transactions.get();
+    }
+
+    public long getPointReads() {
+        return pointReads.get();
+    }
+
+    public long getQueryPages() {
+        return queryPages.get();
+    }
+}
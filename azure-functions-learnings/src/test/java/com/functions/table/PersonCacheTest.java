@@ -0,0 +1,85 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class PersonCacheTest {
+    private final AtomicInteger loads = new AtomicInteger();
+    private final BiFunction<String, String, Person> table = (partitionKey, rowKey) -> {
+        loads.incrementAndGet();
+        return rowKey.startsWith("missing") ? null : new Person(partitionKey, rowKey, "Name of " + rowKey);
+    };
+
+    @Test
+    public void readsARowOnceUntilItIsInvalidated() {
+        PersonCache cache = new PersonCache(10, 1, 1, TimeUnit.MINUTES);
+        Person first = cache.get("p", "r", table);
+        assertSame(first, cache.get("p", "r", table));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHits());
+
+        cache.invalidate("p", "r");
+        cache.get("p", "r", table);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void cachesMissingRowsForTheNegativeTtl() throws InterruptedException {
+        PersonCache cache = new PersonCache(10, 60_000, 50, TimeUnit.MILLISECONDS);
+        assertNull(cache.get("p", "missing", table));
+        assertNull(cache.get("p", "missing", table));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getNegativeHits());
+
+        Thread.sleep(100);
+        assertNull(cache.get("p", "missing", table));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getExpirations());
+    }
+
+    @Test
+    public void expiresRowsAfterTheirTtl() throws InterruptedException {
+        PersonCache cache = new PersonCache(10, 50, 50, TimeUnit.MILLISECONDS);
+        cache.get("p", "a", table);
+        cache.get("p", "b", table);
+        Thread.sleep(100);
+        assertEquals(2, cache.expire(10));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedRow() {
+        PersonCache cache = new PersonCache(2, 1, 1, TimeUnit.MINUTES);
+        cache.get("p", "a", table);
+        cache.get("p", "b", table);
+        // Reading "a" makes "b" the least recently used
+        cache.get("p", "a", table);
+        cache.get("p", "c", table);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        cache.get("p", "a", table);
+        assertEquals(3, loads.get());
+        cache.get("p", "b", table);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void doesNotCacheARowInvalidatedWhileItWasLoading() {
+        PersonCache cache = new PersonCache(10, 1, 1, TimeUnit.MINUTES);
+        cache.get("p", "r", (partitionKey, rowKey) -> {
+            // The row is written, and invalidated, between the read and the put
+            cache.invalidate(partitionKey, rowKey);
+            return table.apply(partitionKey, rowKey);
+        });
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,69 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PersonQueryTest {
+
+    @Test
+    public void rendersTheRangeAndFilterAsOneODataFilter() {
+        PersonQuery query = PersonQuery.partition("p'1").rowKeyRange("a", "m")
+            .filter(PersonFilter.startsWith(PersonQuery.NAME, "Jo"));
+        assertEquals("(PartitionKey eq 'p''1') and (RowKey ge 'a') and (RowKey lt 'm') and (Name ge 'Jo') and (Name lt 'Jp')",
+            query.toODataFilter());
+        assertEquals("(PartitionKey eq 'p''1') and (RowKey ge 'f') and (RowKey lt 'm') and (Name ge 'Jo') and (Name lt 'Jp')",
+            query.toODataFilter("f"));
+    }
+
+    @Test
+    public void evaluatesAFilterLikeTheService() {
+        PersonFilter prefix = PersonFilter.startsWith(PersonQuery.NAME, "J");
+        assertTrue(prefix.test(new Person("p", "r", "Jane")));
+        assertFalse(prefix.test(new Person("p", "r", "Kim")));
+        assertFalse(prefix.test(new Person("p", "r", null)));
+        assertTrue(PersonFilter.compare(PersonQuery.NAME, PersonFilter.Operator.EQ, null).test(new Person("p", "r", null)));
+        assertThrows(IllegalArgumentException.class, () -> PersonFilter.compare("Age", PersonFilter.Operator.EQ, "1"));
+    }
+
+    @Test
+    public void pagesThroughARangeWithFilterAndProjection() {
+        InMemoryTable table = new InMemoryTable();
+        BatchedTableWriter writer = new BatchedTableWriter(table);
+        for (int i = 0; i < 50; i++) {
+            writer.add(new Person("p", String.format("row-%02d", i), (i % 5 == 0 ? "J" : "M") + i));
+        }
+        writer.add(new Person("other", "row-00", "J0"));
+        writer.flush();
+
+        PersonQuery query = PersonQuery.partition("p").rowKeyRange("row-10", "row-40").select()
+            .filter(PersonFilter.startsWith(PersonQuery.NAME, "J")).pageSize(2);
+        PersonScanner scanner = new PersonScanner(table::query, query);
+        List<String> rowKeys = new ArrayList<>();
+        while (scanner.hasNext()) {
+            Person person = scanner.next();
+            assertNull(person.Name);
+            rowKeys.add(person.RowKey);
+        }
+        assertEquals(Arrays.asList("row-10", "row-15", "row-20", "row-25", "row-30", "row-35"), rowKeys);
+        // A full page hands back a token even when nothing matches after it, so the last page is empty
+        assertEquals(4, scanner.getPagesFetched());
+    }
+
+    @Test
+    public void rejectsAContinuationTokenOfAnotherPartition() {
+        String token = PersonPage.of("p", new ArrayList<>(), "row-1", 0).getContinuationToken();
+        assertEquals("row-1", PersonPage.decodeToken(token, "p"));
+        assertThrows(IllegalArgumentException.class, () -> PersonPage.decodeToken(token, "q"));
+        assertNull(PersonPage.of("p", new ArrayList<>(), null, 0).getContinuationToken());
+    }
+}
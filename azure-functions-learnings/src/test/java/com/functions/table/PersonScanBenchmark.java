@@ -0,0 +1,86 @@
+package com.functions.table;
+
+import com.functions.TableFunction.Person;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a whole partition with N point reads against one paged range-scan on
+ * {@link InMemoryTable}. Each round-trip is charged a simulated service latency, which is what
+ * dominates in the real table.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.table.PersonScanBenchmark [rows] [roundTripMicros]
+ */
+public class PersonScanBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        long roundTripNanos = TimeUnit.MICROSECONDS.toNanos(args.length > 1 ? Long.parseLong(args[1]) : 50);
+
+        InMemoryTable table = new InMemoryTable();
+        BatchedTableWriter writer = new BatchedTableWriter(table);
+        List<String> rowKeys = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            String rowKey = String.format("row-%08d", i);
+            rowKeys.add(rowKey);
+            writer.add(new Person("report", rowKey, (i % 10 == 0 ? "J" : "M") + "name-" + i));
+        }
+        writer.flush();
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            int found = 0;
+            for (String rowKey : rowKeys) {
+                spin(roundTripNanos);
+                if (table.get("report", rowKey) != null) {
+                    found++;
+                }
+            }
+            long pointNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int scanned = 0;
+            PersonScanner scanner = new PersonScanner((query, token) -> {
+                spin(roundTripNanos);
+                return table.query(query, token);
+            }, PersonQuery.partition("report").select(PersonQuery.NAME));
+            while (scanner.hasNext()) {
+                scanner.next();
+                scanned++;
+            }
+            long scanNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int filtered = 0;
+            PersonScanner pushdown = new PersonScanner((query, token) -> {
+                spin(roundTripNanos);
+                return table.query(query, token);
+            }, PersonQuery.partition("report").select().filter(PersonFilter.startsWith(PersonQuery.NAME, "J")));
+            while (pushdown.hasNext()) {
+                pushdown.next();
+                filtered++;
+            }
+            long pushdownNanos = System.nanoTime() - start;
+
+            int expectedFiltered = (rows + 9) / 10;
+            if (found != rows || scanned != rows || filtered != expectedFiltered) {
+                throw new AssertionError("expected " + rows + " rows and " + expectedFiltered + " filtered, got point reads=" + found
+                    + " range scan=" + scanned + " filtered scan=" + filtered);
+            }
+
+            System.out.printf("point reads: %d rows in %6d ms | range scan: %d rows, %d pages in %5d ms | filtered scan: %d rows, %d pages in %5d ms%n",
+                found, TimeUnit.NANOSECONDS.toMillis(pointNanos),
+                scanned, scanner.getPagesFetched(), TimeUnit.NANOSECONDS.toMillis(scanNanos),
+                filtered, pushdown.getPagesFetched(), TimeUnit.NANOSECONDS.toMillis(pushdownNanos));
+        }
+    }
+
+    private static void spin(long nanos) {
+        long until = System.nanoTime() + nanos;
+        while (System.nanoTime() < until) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.functions.windowing;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Feeds synthetic Event Hub batches (8 partitions lagging each other by up to 3.5 s, 1000
+ * partition keys, 1% of events half a minute late) through tumbling and sliding windows, and
+ * prints events/s and bytes allocated per event next to a HashMap keyed by "key@start". Then
+ * restarts an aggregator from its snapshot halfway through, redelivers the last events before
+ * the snapshot, and checks that the windows it emits match an uninterrupted run once the
+ * windows still pending in the snapshot, which it emits again, are removed. The run fails if the
+ * tumbling windows and the HashMap disagree or the restarted windows differ.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes com.functions.windowing.WindowedAggregatorBenchmark [events]
+ */
+public class WindowedAggregatorBenchmark {
+    private static final int PARTITIONS = 8;
+    private static final int KEYS = 1000;
+    private static final int BATCH = 100;
+    private static final long SIZE_MILLIS = 10_000;
+    private static final long LATENESS_MILLIS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Event[] events = events(count);
+
+        for (int round = 0; round < 2; round++) {
+            System.out.println(round == 0 ? "warm-up" : count + " events, " + KEYS + " keys, " + SIZE_MILLIS / 1000 + " s windows");
+            long tumbling = run("tumbling", events, new WindowedAggregator("tumbling-" + round, SIZE_MILLIS, SIZE_MILLIS, LATENESS_MILLIS, null));
+            run("sliding every 2 s", events, new WindowedAggregator("sliding-" + round, SIZE_MILLIS, 2_000, LATENESS_MILLIS, null));
+            long hashMap = runHashMap("tumbling, HashMap", events);
+            if (tumbling == 0 || tumbling != hashMap) {
+                throw new AssertionError("tumbling emitted " + tumbling + " windows, the HashMap " + hashMap);
+            }
+        }
+        checkRestart(events);
+    }
+
+    private static long run(String label, Event[] events, WindowedAggregator aggregator) {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long emitted = 0;
+        for (int i = 0; i < events.length; i++) {
+            Event e = events[i];
+            aggregator.add(e.partition, e.sequenceNumber, e.key, e.time, e.value);
+            if (i % BATCH == BATCH - 1) {
+                emitted += aggregator.closeWindows().size();
+            }
+        }
+        print(label, events.length, System.nanoTime() - start, allocatedBytes() - allocatedBefore,
+            emitted + " windows, " + aggregator.getLateEvents() + " late");
+        return emitted;
+    }
+
+    private static long runHashMap(String label, Event[] events) {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        Map<String, double[]> windows = new HashMap<>();
+        long maxTime = Long.MIN_VALUE;
+        long closedUpTo = Long.MIN_VALUE;
+        long emitted = 0;
+        for (int i = 0; i < events.length; i++) {
+            Event e = events[i];
+            maxTime = Math.max(maxTime, e.time);
+            long windowStart = Math.floorDiv(e.time, SIZE_MILLIS) * SIZE_MILLIS;
+            if (windowStart + SIZE_MILLIS > closedUpTo) {
+                double[] window = windows.computeIfAbsent(e.key + "@" + windowStart, k -> new double[2]);
+                window[0]++;
+                window[1] += e.value;
+            }
+            if (i % BATCH == BATCH - 1) {
+                long watermark = maxTime - LATENESS_MILLIS;
+                List<String> closed = new ArrayList<>();
+                for (String key : windows.keySet()) {
+                    if (Long.parseLong(key.substring(key.indexOf('@') + 1)) + SIZE_MILLIS <= watermark) {
+                        closed.add(key);
+                    }
+                }
+                windows.keySet().removeAll(closed);
+                emitted += closed.size();
+                closedUpTo = Math.max(closedUpTo, watermark);
+            }
+        }
+        print(label, events.length, System.nanoTime() - start, allocatedBytes() - allocatedBefore, emitted + " windows");
+        return emitted;
+    }
+
+    private static void checkRestart(Event[] events) throws Exception {
+        Path file = Files.createTempDirectory("windows").resolve("windows.snapshot");
+        List<String> uninterrupted = new ArrayList<>();
+        WindowedAggregator reference = new WindowedAggregator("reference", SIZE_MILLIS, SIZE_MILLIS, LATENESS_MILLIS, null);
+        feed(reference, events, 0, events.length, uninterrupted);
+
+        List<String> restarted = new ArrayList<>();
+        int half = events.length / 2 / BATCH * BATCH;
+        WindowedAggregator first = new WindowedAggregator("restarted", SIZE_MILLIS, SIZE_MILLIS, LATENESS_MILLIS, file);
+        feed(first, events, 0, half, restarted);
+        first.snapshot();
+        // The hub checkpointed a few batches before the snapshot and redelivers from there
+        WindowedAggregator second = new WindowedAggregator("restarted", SIZE_MILLIS, SIZE_MILLIS, LATENESS_MILLIS, file);
+        feed(second, events, half - 5 * BATCH, events.length, restarted);
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(restarted));
+        System.out.printf("restart from snapshot: %d windows, %d emitted again, identical to uninterrupted run: %b, redeliveries skipped: %d%n",
+            distinct.size(), restarted.size() - distinct.size(), distinct.equals(uninterrupted), second.getDuplicateEvents());
+        if (!distinct.equals(uninterrupted) || second.getDuplicateEvents() != 5 * BATCH) {
+            throw new AssertionError("the restarted aggregator did not emit the uninterrupted windows exactly once");
+        }
+    }
+
+    private static void feed(WindowedAggregator aggregator, Event[] events, int from, int to, List<String> emitted) {
+        for (int i = from; i < to; i++) {
+            Event e = events[i];
+            aggregator.add(e.partition, e.sequenceNumber, e.key, e.time, e.value);
+            if (i % BATCH == BATCH - 1) {
+                for (WindowResult window : aggregator.closeWindows()) {
+                    emitted.add(window.toJson());
+                }
+            }
+        }
+    }
+
+    private static Event[] events(int count) {
+        Random random = new Random(42);
+        long[] sequenceNumbers = new long[PARTITIONS];
+        String[] keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "device-" + i;
+        }
+        Event[] events = new Event[count];
+        long clock = 1_700_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            clock += random.nextInt(3);
+            int partition = random.nextInt(PARTITIONS);
+            long time = clock - partition * 500L - (random.nextInt(100) == 0 ? 30_000 : 0);
+            events[i] = new Event("p" + partition, sequenceNumbers[partition]++, keys[random.nextInt(KEYS)], time, random.nextInt(100));
+        }
+        return events;
+    }
+
+    private static void print(String label, int events, long elapsedNanos, long allocated, String detail) {
+        System.out.printf("%-20s %10.0f events/s  %6s bytes/event  %s%n", label, events * 1e9 / elapsedNanos,
+            allocated < 0 ? "n/a" : String.format("%.1f", (double) allocated / events), detail);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static final class Event {
+        final String partition;
+        final long sequenceNumber;
+        final String key;
+        final long time;
+        final double value;
+
+        Event(String partition, long sequenceNumber, String key, long time, double value) {
+            this.partition = partition;
+            this.sequenceNumber = sequenceNumber;
+            this.key = key;
+            this.time = time;
+            this.value = value;
+        }
+    }
+}
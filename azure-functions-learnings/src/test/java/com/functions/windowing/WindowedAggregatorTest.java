@@ -0,0 +1,131 @@
+package com.functions.windowing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WindowedAggregatorTest {
+    private static final long SIZE_MILLIS = 10_000;
+    private static final long LATENESS_MILLIS = 2_000;
+
+    @Test
+    public void dropsEventsForWindowsAlreadyEmitted() {
+        WindowedAggregator aggregator = aggregator("late", null);
+        assertTrue(aggregator.add("0", 1, "device", 1_000, 1));
+        assertTrue(aggregator.add("0", 2, "device", 13_000, 1));
+        assertEquals(1, aggregator.closeWindows("0").size());
+
+        assertFalse(aggregator.add("1", 1, "device", 9_000, 1));
+        assertEquals(1, aggregator.getLateEvents());
+        // Within the lateness of the open window, an event from a lagging partition still counts
+        assertTrue(aggregator.add("1", 2, "device", 11_000, 1));
+    }
+
+    @Test
+    public void countsRedeliveredEventsOnce() {
+        WindowedAggregator aggregator = aggregator("duplicate", null);
+        assertTrue(aggregator.add("0", 5, "device", 1_000, 2));
+        assertFalse(aggregator.add("0", 5, "device", 1_000, 2));
+        assertFalse(aggregator.add("0", 4, "device", 1_000, 2));
+        assertTrue(aggregator.add("1", 5, "device", 1_000, 2));
+        assertEquals(2, aggregator.getDuplicateEvents());
+
+        aggregator.add("0", 6, "device", 20_000, 0);
+        WindowResult window = aggregator.closeWindows("0").get(0);
+        assertEquals(2, window.getCount());
+        assertEquals(4, window.getSum());
+    }
+
+    @Test
+    public void restoresFromSnapshotAndSkipsRedeliveredEvents() throws IOException {
+        Path file = snapshotFile();
+        WindowedAggregator first = aggregator("restore", file);
+        first.add("0", 1, "a", 1_000, 1);
+        first.add("0", 2, "b", 2_000, 2);
+        first.add("0", 3, "a", 3_000, 3);
+        first.snapshot();
+
+        // The hub checkpointed after sequence number 1 and redelivers from there
+        WindowedAggregator second = aggregator("restore", file);
+        assertFalse(second.add("0", 2, "b", 2_000, 2));
+        assertFalse(second.add("0", 3, "a", 3_000, 3));
+        assertTrue(second.add("0", 4, "a", 4_000, 4));
+        assertEquals(2, second.getDuplicateEvents());
+        second.add("0", 5, "a", 20_000, 0);
+
+        List<String> closed = json(second.closeWindows("0"));
+        assertEquals(2, closed.size());
+        assertEquals(new WindowResult("a", 0, SIZE_MILLIS, 3, 8).toJson(), closed.get(0));
+        assertEquals(new WindowResult("b", 0, SIZE_MILLIS, 1, 2).toJson(), closed.get(1));
+    }
+
+    @Test
+    public void emitsPendingWindowsAgainAfterRestart() throws IOException {
+        Path file = snapshotFile();
+        WindowedAggregator first = aggregator("pending", file);
+        first.add("0", 1, "a", 1_000, 1);
+        first.add("0", 2, "a", 20_000, 1);
+        List<String> emitted = json(first.closeWindows("0"));
+        assertEquals(1, emitted.size());
+        // The instance dies after the snapshot, before the host writes the output
+        first.snapshot();
+
+        WindowedAggregator second = aggregator("pending", file);
+        assertEquals(emitted, json(second.closeWindows("1")));
+        second.snapshot();
+        // Once the partition that emitted them is invoked again they are gone from the snapshot
+        assertTrue(second.closeWindows("1").isEmpty());
+        second.snapshot();
+        assertTrue(aggregator("pending", file).closeWindows("1").isEmpty());
+    }
+
+    @Test
+    public void keepsWindowsPendingUntilTheSamePartitionIsInvokedAgain() throws IOException {
+        Path file = snapshotFile();
+        WindowedAggregator aggregator = aggregator("owner", file);
+        aggregator.add("0", 1, "a", 1_000, 1);
+        aggregator.add("0", 2, "a", 20_000, 1);
+        List<String> emitted = json(aggregator.closeWindows("0"));
+        // Another partition's invocation does not show that partition 0's output was written
+        aggregator.closeWindows("1");
+        aggregator.snapshot();
+        assertEquals(emitted, json(aggregator("owner", file).closeWindows("0")));
+    }
+
+    @Test
+    public void readsOnlyTheTopLevelNumberField() {
+        assertEquals(3.5, WindowedAggregator.numberField("{\"meta\":{\"value\":9},\"value\":3.5}", "value", 0));
+        assertEquals(-2e3, WindowedAggregator.numberField("{ \"value\" : -2e3 }", "value", 0));
+        assertEquals(0, WindowedAggregator.numberField("{\"meta\":{\"value\":9}}", "value", 0));
+        assertEquals(0, WindowedAggregator.numberField("{\"value\":\"12\"}", "value", 0));
+        assertEquals(0, WindowedAggregator.numberField("[{\"value\":1}]", "value", 0));
+        assertEquals(0, WindowedAggregator.numberField("{\"value\":", "value", 0));
+    }
+
+    private static WindowedAggregator aggregator(String name, Path file) {
+        return new WindowedAggregator("test-" + name, SIZE_MILLIS, SIZE_MILLIS, LATENESS_MILLIS, file);
+    }
+
+    private static Path snapshotFile() throws IOException {
+        Path file = Files.createTempFile("windows", ".snapshot");
+        Files.delete(file);
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    private static List<String> json(List<WindowResult> windows) {
+        List<String> json = new ArrayList<>();
+        for (WindowResult window : windows) {
+            json.add(window.toJson());
+        }
+        return json;
+    }
+}
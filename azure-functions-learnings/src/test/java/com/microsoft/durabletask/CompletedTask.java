@@ -0,0 +1,38 @@
+package com.microsoft.durabletask;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An already completed {@link Task} for orchestrator tests and benchmarks. Task can only be
+ * extended from its own package, hence the location.
+ */
+public final class CompletedTask<V> extends Task<V> {
+
+    public CompletedTask(V value) {
+        super(CompletableFuture.completedFuture(value));
+    }
+
+    public static <V> CompletedTask<V> failed(Throwable failure) {
+        CompletedTask<V> task = new CompletedTask<>(null);
+        task.future.obtrudeException(failure);
+        return task;
+    }
+
+    @Override
+    public V await() {
+        return future.join();
+    }
+
+    @Override
+    public <U> Task<U> thenApply(Function<V, U> fn) {
+        return new CompletedTask<>(fn.apply(await()));
+    }
+
+    @Override
+    public Task<Void> thenAccept(Consumer<V> fn) {
+        fn.accept(await());
+        return new CompletedTask<>(null);
+    }
+}